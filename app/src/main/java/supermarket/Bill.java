@@ -0,0 +1,92 @@
+package supermarket;
+
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.List;
+
+// ---------------------------
+// A completed bill
+// ---------------------------
+// Amounts are in paise, percentages in basis points (see Money). discount includes the
+// promotions; discountBps applies to the subtotal after promotions. taxBps is the rate for
+// items without a GST rate of their own; taxes breaks tax down by HSN code and rate.
+// customerId is the customer's key for purchase history (see CustomerIndex.key), "" for
+// walk-in customers.
+class Bill {
+
+    final String billNo;
+    final String lane;
+    final String customer;
+    final String customerId;
+    final String cashier;
+    final LocalDateTime time;
+    final List<CartLine> lines;
+    final long subtotal;
+    final int discountBps;
+    final long discount;
+    final long promotion;
+    final long[] linePromotion;     // per line, or null when not known (older records)
+    final int taxBps;
+    final long tax;
+    final long total;
+    final List<TaxLine> taxes;
+
+    // Tax on one HSN code at one rate, after discounts. GST within the state is split
+    // equally into central and state tax; the odd paisa goes to CGST.
+    static final class TaxLine {
+        final String hsn;       // "" for items without a code
+        final int bps;
+        final long taxable;
+        final long tax;
+
+        TaxLine(String hsn, int bps, long taxable, long tax) {
+            this.hsn = hsn;
+            this.bps = bps;
+            this.taxable = taxable;
+            this.tax = tax;
+        }
+
+        long cgst() {
+            return tax - tax / 2;
+        }
+
+        long sgst() {
+            return tax / 2;
+        }
+    }
+
+    Bill(String billNo, String lane, String customer, String cashier, LocalDateTime time, List<CartLine> lines,
+         long subtotal, int discountBps, long discount, int taxBps, long tax, long total) {
+        this(billNo, lane, customer, cashier, time, lines, subtotal, 0, null, discountBps, discount, taxBps, tax, total, null);
+    }
+
+    Bill(String billNo, String lane, String customer, String cashier, LocalDateTime time, List<CartLine> lines,
+         long subtotal, long promotion, long[] linePromotion, int discountBps, long discount, int taxBps, long tax,
+         long total, List<TaxLine> taxes) {
+        this(billNo, lane, customer, "", cashier, time, lines, subtotal, promotion, linePromotion, discountBps, discount,
+                taxBps, tax, total, taxes);
+    }
+
+    // taxes null: one line at taxBps on the whole discounted subtotal.
+    Bill(String billNo, String lane, String customer, String customerId, String cashier, LocalDateTime time,
+         List<CartLine> lines, long subtotal, long promotion, long[] linePromotion, int discountBps, long discount,
+         int taxBps, long tax, long total, List<TaxLine> taxes) {
+        this.billNo = billNo;
+        this.lane = lane;
+        this.customer = customer;
+        this.customerId = customerId;
+        this.cashier = cashier;
+        this.time = time;
+        this.lines = Collections.unmodifiableList(lines);
+        this.subtotal = subtotal;
+        this.discountBps = discountBps;
+        this.discount = discount;
+        this.promotion = promotion;
+        this.linePromotion = linePromotion;
+        this.taxBps = taxBps;
+        this.tax = tax;
+        this.total = total;
+        this.taxes = taxes != null ? Collections.unmodifiableList(taxes)
+                : Collections.singletonList(new TaxLine("", taxBps, subtotal - discount, tax));
+    }
+}
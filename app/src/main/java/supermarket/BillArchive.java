@@ -0,0 +1,455 @@
+package supermarket;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+// ---------------------------
+// Daily bill segments
+// ---------------------------
+// One segment per day in the bills/ directory:
+//   2026-10-17.journal   today's bills, appended as they are printed (BillStore)
+//   2026-10-16.seg       an earlier day, sealed: block-compressed with an index (SealedSegment)
+//   2026-10-16.z.txt     that day's Z-report, written when the day is sealed
+//   customers.log        customer key -> bills and spend (CustomerIndex)
+// Startup indexes only today's journal; earlier days are opened when a report or the bill
+// list asks for them. The first bill dated after the current day rotates the journal, and
+// the finished day is sealed on a background thread (a day left unsealed by a restart or
+// crash is sealed at the next start). The segment is written under a temporary name and
+// moved into place before the journal is deleted, so a crash never loses a day.
+// An older single bills.journal (and before it bills.txt) is split into days once.
+final class BillArchive implements Closeable {
+
+    private static final String JOURNAL = ".journal", SEALED = ".seg", Z_REPORT = ".z.txt";
+    private static final String CUSTOMERS = "customers.log";
+    private static final DateTimeFormatter LEGACY_DATE = DateTimeFormatter.ofPattern("dd-MM-yyyy HH:mm:ss");
+
+    private final Path dir;
+    private final ExecutorService sealer = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "bill-sealer");
+        t.setDaemon(true);
+        return t;
+    });
+    private BillStore active;
+    private LocalDate activeDay;
+    private final Map<LocalDate, BillStore> unsealed = new HashMap<>();    // earlier days still being sealed
+    private final Map<LocalDate, SealedSegment> sealed = new HashMap<>();  // opened on demand
+    private final List<BillStore> retired = new ArrayList<>();   // sealed days' journals, readers may hold them
+    private CustomerIndex customers;
+    private boolean closed = false;
+
+    private BillArchive(Path dir) {
+        this.dir = dir;
+    }
+
+    // Opens the archive in dir, creating it and importing legacyJournal / legacyText (either
+    // may be null) the first time, then indexes today's journal.
+    static BillArchive open(Path dir, Path legacyJournal, File legacyText) throws IOException {
+        Files.createDirectories(dir);
+        BillArchive archive = new BillArchive(dir);
+        try {
+            if (legacyJournal != null) {
+                if (!Files.exists(legacyJournal) && legacyText != null && legacyText.exists()) {
+                    BillStore.open(legacyJournal, legacyText).close();
+                }
+                if (Files.exists(legacyJournal)) {
+                    archive.split(legacyJournal);
+                    Files.move(legacyJournal, legacyJournal.resolveSibling(legacyJournal.getFileName() + ".migrated"),
+                            StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+            synchronized (archive) {
+                // after the clock was set back, keep appending to the newest day; a day is
+                // never reopened once sealed
+                LocalDate current = LocalDate.now();
+                for (LocalDate day : archive.days(JOURNAL)) {
+                    if (day.isAfter(current)) current = day;
+                }
+                while (Files.exists(archive.file(current, SEALED))) current = current.plusDays(1);
+                archive.activeDay = current;
+                archive.active = BillStore.open(archive.file(current, JOURNAL), null);
+                archive.customers = CustomerIndex.open(dir.resolve(CUSTOMERS));
+                archive.indexCustomers();
+                for (LocalDate day : archive.days(JOURNAL)) {
+                    if (day.isBefore(current)) archive.sealer.execute(() -> archive.seal(day));
+                }
+            }
+            return archive;
+        } catch (IOException | RuntimeException e) {
+            archive.close();
+            throw e;
+        }
+    }
+
+    // Appends a bill to its day's journal, rotating first if the bill starts a new day.
+    // A bill dated before the current day (clock set back) stays in the current day.
+    synchronized int append(Bill bill) throws IOException {
+        if (closed) throw new IOException("Bill archive is closed");
+        LocalDate day = bill.time.toLocalDate();
+        if (day.isAfter(activeDay)) rotate(day);
+        int ordinal = active.append(bill);
+        try {
+            customers.add(bill, activeDay, ordinal);
+        } catch (IOException e) {
+            // the bill is safe; the next start indexes it from the journal
+            System.err.println("Customer index: " + e.getMessage());
+        }
+        return ordinal;
+    }
+
+    synchronized void sync() throws IOException {
+        if (closed) return;
+        active.sync();
+        customers.sync();
+    }
+
+    // Purchase history by customer key; kept up to date by append().
+    CustomerIndex customers() {
+        return customers;
+    }
+
+    // Printable receipt of the bill at a CustomerIndex position, or null if it is gone.
+    String receipt(long position) throws IOException {
+        BillSegment segment = segment(CustomerIndex.dayOf(position));
+        int ordinal = CustomerIndex.ordinalOf(position);
+        if (segment == null || ordinal >= segment.size()) return null;
+        return segment.readRange(ordinal, ordinal + 1)[0];
+    }
+
+    synchronized LocalDate activeDay() {
+        return activeDay;
+    }
+
+    // Today's bills (the journal being appended to).
+    synchronized BillStore active() {
+        return active;
+    }
+
+    // Days with bills on disk, oldest first, always including the current day.
+    synchronized List<LocalDate> days() throws IOException {
+        TreeSet<LocalDate> days = new TreeSet<>(days(JOURNAL));
+        days.addAll(days(SEALED));
+        days.add(activeDay);
+        return new ArrayList<>(days);
+    }
+
+    // The bills of one day, or null if there are none. Stays open until the archive closes,
+    // also once the day is sealed (later calls then return the sealed segment).
+    synchronized BillSegment segment(LocalDate day) throws IOException {
+        if (closed) throw new IOException("Bill archive is closed");
+        if (day.equals(activeDay)) return active;
+        BillStore pending = unsealed.get(day);
+        if (pending != null) return pending;
+        SealedSegment segment = sealed.get(day);
+        if (segment != null) return segment;
+        Path seg = file(day, SEALED);
+        if (Files.exists(seg)) {
+            segment = SealedSegment.open(seg);
+            sealed.put(day, segment);
+            return segment;
+        }
+        Path journal = file(day, JOURNAL);
+        if (Files.exists(journal)) {
+            pending = BillStore.open(journal, null);
+            unsealed.put(day, pending);
+            return pending;
+        }
+        return null;
+    }
+
+    // Segments of the days from..to inclusive that have bills.
+    List<BillSegment> segments(LocalDate from, LocalDate to) throws IOException {
+        List<BillSegment> out = new ArrayList<>();
+        for (LocalDate day : days()) {
+            if (day.isBefore(from) || day.isAfter(to)) continue;
+            BillSegment segment = segment(day);
+            if (segment != null) out.add(segment);
+        }
+        return out;
+    }
+
+    // Z-report of a day: totals and per-cashier figures from one streaming pass over the
+    // day's bills. Uses the report written at sealing if there is one.
+    String zReport(LocalDate day) throws IOException {
+        Path saved = file(day, Z_REPORT);
+        if (!day.equals(activeDay()) && Files.exists(saved)) {
+            return new String(Files.readAllBytes(saved), StandardCharsets.UTF_8);
+        }
+        BillSegment segment = segment(day);
+        SalesReport report = segment == null ? new SalesReport() : new SalesAnalytics(segment).stream();
+        return ZReport.format(day, report, !day.equals(activeDay()));
+    }
+
+    // Stops sealing and closes every segment. An interrupted seal leaves its journal in
+    // place, so that day and any still queued are sealed at the next start.
+    @Override
+    public void close() throws IOException {
+        sealer.shutdownNow();
+        try {
+            sealer.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        IOException failure = null;
+        synchronized (this) {
+            closed = true;
+            if (customers != null && active != null) {
+                try {
+                    customers.mark(activeDay, active.size());
+                } catch (IOException e) {
+                    failure = e;
+                }
+            }
+            List<Closeable> all = new ArrayList<>(unsealed.values());
+            all.addAll(sealed.values());
+            all.addAll(retired);
+            if (customers != null) all.add(customers);
+            if (active != null) all.add(active);
+            unsealed.clear();
+            sealed.clear();
+            retired.clear();
+            for (Closeable c : all) {
+                try {
+                    c.close();
+                } catch (IOException e) {
+                    if (failure == null) failure = e;
+                }
+            }
+        }
+        if (failure != null) throw failure;
+    }
+
+    // ---------------------------
+    // Rotation and sealing
+    // ---------------------------
+    private void rotate(LocalDate day) throws IOException {
+        BillStore next = BillStore.open(file(day, JOURNAL), null);
+        active.sync();
+        LocalDate finished = activeDay;
+        unsealed.put(finished, active);
+        active = next;
+        activeDay = day;
+        sealer.execute(() -> seal(finished));
+    }
+
+    // Runs on the sealer thread. A failure leaves the journal in place for the next try.
+    private void seal(LocalDate day) {
+        long started = System.nanoTime();
+        Path target = file(day, SEALED);
+        Path tmp = file(day, SEALED + ".tmp");
+        try {
+            BillStore source;
+            synchronized (this) {
+                if (closed) return;
+                source = unsealed.get(day);
+                if (source == null) {
+                    Path journal = file(day, JOURNAL);
+                    if (!Files.exists(journal)) return;
+                    if (Files.exists(target)) {
+                        // sealed earlier; the crash came before the journal was deleted
+                        Files.delete(journal);
+                        return;
+                    }
+                    source = BillStore.open(journal, null);
+                    unsealed.put(day, source);
+                }
+            }
+            try (SealedSegment.Writer out = new SealedSegment.Writer(tmp)) {
+                source.scanRange(0, source.size(), SalesAnalytics.CHUNK_BYTES,
+                        (ordinal, record) -> out.add(record, millisOf(record)));
+                out.finish();
+            }
+            Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            synchronized (this) {
+                // later lookups get the sealed segment; a list or report still reading the
+                // journal keeps its open channel, so it is closed with the archive, not here
+                unsealed.remove(day);
+                retired.add(source);
+            }
+            Files.delete(file(day, JOURNAL));
+            Metrics.SEGMENT_SEAL.recordSince(started);
+            writeZReport(day);
+        } catch (IOException | UncheckedIOException e) {
+            System.err.println("Bill archive: cannot seal " + day + ": " + e.getMessage());
+        }
+    }
+
+    private void writeZReport(LocalDate day) throws IOException {
+        SalesReport report;
+        try (SealedSegment segment = SealedSegment.open(file(day, SEALED))) {
+            report = new SalesAnalytics(segment).stream();
+        }
+        Path tmp = file(day, Z_REPORT + ".tmp");
+        Files.write(tmp, ZReport.format(day, report, true).getBytes(StandardCharsets.UTF_8));
+        Files.move(tmp, file(day, Z_REPORT), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    // ---------------------------
+    // Customer index catch-up
+    // ---------------------------
+    // Indexes the bills after the index's last recorded position: none after a clean
+    // shutdown, the last group commit's worth after a crash, and every day once when the
+    // index is new. An index that is ahead of the bills (their journal lost its tail in
+    // the same crash) is rebuilt. Runs while open() holds the lock, before sealing starts.
+    private void indexCustomers() throws IOException {
+        long from = customers.indexedTo();
+        long end = CustomerIndex.position(activeDay, active.size());
+        if (from > end) {
+            customers.clear();
+            from = -1;
+        }
+        LocalDate fromDay = from < 0 ? LocalDate.MIN : CustomerIndex.dayOf(from);
+        for (LocalDate day : days()) {
+            if (day.isBefore(fromDay)) continue;
+            int start = day.equals(fromDay) ? CustomerIndex.ordinalOf(from) : 0;
+            BillSegment.RawVisitor index = (ordinal, record) -> {
+                if (BillCodec.isStructured(record)) customers.add(BillCodec.decode(record), day, ordinal);
+            };
+            Path seg = file(day, SEALED);
+            if (!day.equals(activeDay) && Files.exists(seg)) {
+                // most days are never looked at again; do not keep them open
+                try (SealedSegment segment = SealedSegment.open(seg)) {
+                    segment.scanRange(start, segment.size(), 0, index);
+                }
+            } else {
+                BillSegment segment = segment(day);
+                if (segment != null) segment.scanRange(start, segment.size(), SalesAnalytics.CHUNK_BYTES, index);
+            }
+        }
+        customers.mark(activeDay, active.size());
+    }
+
+    // ---------------------------
+    // One-time split of the single journal
+    // ---------------------------
+    // Bills are in the order they were printed, so each day's bills are contiguous; a bill
+    // dated before the one it follows (clock set back) stays in the later day, as append()
+    // would have done. Earlier days are sealed directly; today's bills start today's journal.
+    private void split(Path journal) throws IOException {
+        LocalDate today = LocalDate.now();
+        LocalDate[] day = {null};
+        SealedSegment.Writer[] out = {null};
+        BillJournal[] todays = {null};
+        List<byte[]> undated = new ArrayList<>();      // leading text receipts without a date
+        try (BillStore source = BillStore.open(journal, null)) {
+            source.scanRange(0, source.size(), SalesAnalytics.CHUNK_BYTES, (ordinal, record) -> {
+                LocalDate recordDay = dayOf(record);
+                if (recordDay == null && day[0] == null) {
+                    byte[] copy = new byte[record.remaining()];
+                    record.duplicate().get(copy);
+                    undated.add(copy);
+                    return;
+                }
+                if (recordDay != null && (day[0] == null || recordDay.isAfter(day[0]))) {
+                    finishSplitDay(day[0], out[0]);
+                    out[0] = null;
+                    day[0] = recordDay.isAfter(today) ? today : recordDay;
+                    if (day[0].isBefore(today)) {
+                        out[0] = new SealedSegment.Writer(file(day[0], SEALED + ".tmp"));
+                    } else if (todays[0] == null) {
+                        todays[0] = BillJournal.open(file(today, JOURNAL));
+                    }
+                    for (byte[] u : undated) splitAppend(ByteBuffer.wrap(u), out[0], todays[0]);
+                    undated.clear();
+                }
+                splitAppend(record, out[0], todays[0]);
+            });
+            if (!undated.isEmpty()) {
+                if (todays[0] == null) todays[0] = BillJournal.open(file(today, JOURNAL));
+                for (byte[] u : undated) todays[0].append(u);
+            }
+            finishSplitDay(day[0], out[0]);
+            out[0] = null;
+        } finally {
+            if (out[0] != null) out[0].close();
+            if (todays[0] != null) todays[0].close();
+        }
+    }
+
+    private void splitAppend(ByteBuffer record, SealedSegment.Writer out, BillJournal todays) throws IOException {
+        if (out != null) {
+            out.add(record, millisOf(record));
+        } else {
+            byte[] copy = new byte[record.remaining()];
+            record.duplicate().get(copy);
+            todays.append(copy);
+        }
+    }
+
+    private void finishSplitDay(LocalDate day, SealedSegment.Writer out) throws IOException {
+        if (out == null) return;
+        try {
+            out.finish();
+        } finally {
+            out.close();
+        }
+        Files.move(file(day, SEALED + ".tmp"), file(day, SEALED), StandardCopyOption.ATOMIC_MOVE,
+                StandardCopyOption.REPLACE_EXISTING);
+        writeZReport(day);
+    }
+
+    // ---------------------------
+    // Helpers
+    // ---------------------------
+    private Path file(LocalDate day, String suffix) {
+        return dir.resolve(day + suffix);
+    }
+
+    private List<LocalDate> days(String suffix) throws IOException {
+        List<LocalDate> days = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "*" + suffix)) {
+            for (Path f : files) {
+                String name = f.getFileName().toString();
+                try {
+                    days.add(LocalDate.parse(name.substring(0, name.length() - suffix.length())));
+                } catch (DateTimeParseException ignored) {
+                    // not one of ours
+                }
+            }
+        }
+        return days;
+    }
+
+    // Bill time from a structured record, or 0 for a text receipt.
+    private static long millisOf(ByteBuffer record) {
+        return BillCodec.isStructured(record) ? record.getLong(record.position() + 1) : 0;
+    }
+
+    // Day of a structured record or of a text receipt's "Date:" line; null if neither.
+    private static LocalDate dayOf(ByteBuffer record) {
+        if (BillCodec.isStructured(record)) {
+            return Instant.ofEpochMilli(millisOf(record)).atZone(ZoneId.systemDefault()).toLocalDate();
+        }
+        String text = new String(record.array(), record.arrayOffset() + record.position(), record.remaining(),
+                StandardCharsets.UTF_8);
+        int at = text.indexOf("Date: ");
+        if (at < 0) return null;
+        int end = text.indexOf('\n', at);
+        try {
+            return LocalDateTime.parse(text.substring(at + 6, end < 0 ? text.length() : end).trim(), LEGACY_DATE).toLocalDate();
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package supermarket;
+
+import java.io.*;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+
+// ---------------------------
+// Structured bill records
+// ---------------------------
+// Journal payload for a bill (big-endian; strings are writeUTF):
+//
+//   0  byte  STRUCTURED_V1
+//   1  long  epoch millis          9  long subtotal      17 long discount
+//   25 long  tax                   33 long total         41 int discountBps
+//   45 int   taxBps                49 int lineCount
+//   53 utf billNo, utf lane, utf customer, utf cashier
+//   lines: [int sku][int qty][long unitPrice][long lineDiscount][long lineTax][utf item]
+//   long promotion                 (the part of discount from promotions; absent in
+//                                   records written before promotions, read as 0)
+//   int taxCount, taxCount x [utf hsn][int bps][long taxable][long tax]
+//                                  (GST by HSN and rate; absent in older records, read
+//                                   as one line at taxBps)
+//   utf customerId                 (phone or loyalty id; absent in older records, read
+//                                   as "")
+//
+// Amounts are paise. Promotions are charged to the lines they apply to and the rest of the
+// bill-level discount is allocated across lines (largest line first for the leftover
+// paise); line GST is the line's own rate on its discounted value, rounding leftovers
+// again on the largest line, so per-line figures sum exactly to the bill's. Records written before
+// this format are plain receipt text and still readable.
+final class BillCodec {
+
+    static final byte STRUCTURED_V1 = 1;
+    static final int FIXED_HEADER = 53;
+
+    private static final ZoneId ZONE = ZoneId.systemDefault();
+
+    private BillCodec() {
+    }
+
+    static byte[] encode(Bill bill) {
+        List<CartLine> lines = bill.lines;
+        long[] lineDiscount = allocate(bill.discount - bill.promotion, lines, bill.linePromotion);
+        if (bill.linePromotion != null) {
+            for (int i = 0; i < lines.size(); i++) lineDiscount[i] += bill.linePromotion[i];
+        } else if (bill.promotion != 0) {
+            lineDiscount = allocate(bill.discount, lines, null);
+        }
+        long[] lineTax = lineTax(bill, lineDiscount);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(FIXED_HEADER + 64 + lines.size() * 48);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(STRUCTURED_V1);
+            out.writeLong(bill.time.atZone(ZONE).toInstant().toEpochMilli());
+            out.writeLong(bill.subtotal);
+            out.writeLong(bill.discount);
+            out.writeLong(bill.tax);
+            out.writeLong(bill.total);
+            out.writeInt(bill.discountBps);
+            out.writeInt(bill.taxBps);
+            out.writeInt(lines.size());
+            out.writeUTF(bill.billNo);
+            out.writeUTF(bill.lane);
+            out.writeUTF(bill.customer);
+            out.writeUTF(bill.cashier);
+            for (int i = 0; i < lines.size(); i++) {
+                CartLine line = lines.get(i);
+                out.writeInt(line.sku);
+                out.writeInt(line.qty);
+                out.writeLong(line.unitPrice);
+                out.writeLong(lineDiscount[i]);
+                out.writeLong(lineTax[i]);
+                out.writeUTF(line.item);
+            }
+            out.writeLong(bill.promotion);
+            out.writeInt(bill.taxes.size());
+            for (Bill.TaxLine t : bill.taxes) {
+                out.writeUTF(t.hsn);
+                out.writeInt(t.bps);
+                out.writeLong(t.taxable);
+                out.writeLong(t.tax);
+            }
+            out.writeUTF(bill.customerId);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);  // cannot happen for an in-memory stream
+        }
+        return bytes.toByteArray();
+    }
+
+    static boolean isStructured(ByteBuffer record) {
+        return record.remaining() >= FIXED_HEADER && record.get(record.position()) == STRUCTURED_V1;
+    }
+
+    // Decodes a structured record; the buffer's position..limit must span exactly one record.
+    static Bill decode(ByteBuffer record) throws IOException {
+        ByteBuffer in = record.duplicate();
+        in.get();
+        long millis = in.getLong();
+        long subtotal = in.getLong();
+        long discount = in.getLong();
+        long tax = in.getLong();
+        long total = in.getLong();
+        int discountBps = in.getInt();
+        int taxBps = in.getInt();
+        int lineCount = in.getInt();
+        String billNo = readUTF(in);
+        String lane = readUTF(in);
+        String customer = readUTF(in);
+        String cashier = readUTF(in);
+        List<CartLine> lines = new ArrayList<>(lineCount);
+        for (int i = 0; i < lineCount; i++) {
+            int sku = in.getInt();
+            int qty = in.getInt();
+            long unitPrice = in.getLong();
+            in.getLong();
+            in.getLong();
+            lines.add(new CartLine(sku, readUTF(in), qty, unitPrice));
+        }
+        long promotion = in.remaining() >= 8 ? in.getLong() : 0;
+        List<Bill.TaxLine> taxes = null;
+        if (in.remaining() >= 4) {
+            int n = in.getInt();
+            taxes = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) taxes.add(new Bill.TaxLine(readUTF(in), in.getInt(), in.getLong(), in.getLong()));
+        }
+        String customerId = in.remaining() >= 2 ? readUTF(in) : "";
+        LocalDateTime time = LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZONE);
+        return new Bill(billNo, lane, customer, customerId, cashier, time, lines, subtotal, promotion, null,
+                discountBps, discount, taxBps, tax, total, taxes);
+    }
+
+    // Printable receipt for any journal record, structured or legacy text.
+    static String receipt(byte[] buf, int off, int len) throws IOException {
+        ByteBuffer record = ByteBuffer.wrap(buf, off, len);
+        if (isStructured(record)) return BillingEngine.formatReceipt(decode(record));
+        return new String(buf, off, len, StandardCharsets.UTF_8);
+    }
+
+    // Bill number of any journal record, or "" if it has none.
+    static String billNo(byte[] buf, int off, int len) throws IOException {
+        ByteBuffer record = ByteBuffer.wrap(buf, off, len);
+        if (isStructured(record)) {
+            record.position(off + FIXED_HEADER);
+            return readUTF(record);
+        }
+        return BillStore.billNoOf(new String(buf, off, len, StandardCharsets.UTF_8));
+    }
+
+    // Reads a writeUTF string; plain ASCII (the common case) skips the modified-UTF-8 decoder.
+    static String readUTF(ByteBuffer in) throws IOException {
+        int len = in.getShort() & 0xFFFF;
+        int start = in.position();
+        boolean ascii = true;
+        for (int i = 0; i < len && ascii; i++) ascii = in.get(start + i) >= 0;
+        String s;
+        if (ascii && in.hasArray()) {
+            s = new String(in.array(), in.arrayOffset() + start, len, StandardCharsets.ISO_8859_1);
+        } else {
+            byte[] bytes = new byte[len + 2];
+            bytes[0] = (byte) (len >>> 8);
+            bytes[1] = (byte) len;
+            in.get(start, bytes, 2, len);
+            s = new DataInputStream(new ByteArrayInputStream(bytes)).readUTF();
+        }
+        in.position(start + len);
+        return s;
+    }
+
+    static void skipUTF(ByteBuffer in) {
+        int len = in.getShort() & 0xFFFF;
+        in.position(in.position() + len);
+    }
+
+    private static long[] lineTax(Bill bill, long[] lineDiscount) {
+        List<CartLine> lines = bill.lines;
+        int n = lines.size();
+        long[] tax = new long[n];
+        if (n == 0) return tax;
+        long given = 0;
+        int largest = 0;
+        for (int i = 0; i < n; i++) {
+            CartLine line = lines.get(i);
+            int bps = line.taxBps >= 0 ? line.taxBps : bill.taxBps;
+            tax[i] = Money.percent(line.total() - lineDiscount[i], bps, BillingEngine.GST_ROUNDING);
+            given += tax[i];
+            if (line.total() > lines.get(largest).total()) largest = i;
+        }
+        tax[largest] += bill.tax - given;
+        return tax;
+    }
+
+    // Splits amount across lines in proportion to each line's total (minus "less", if given).
+    private static long[] allocate(long amount, List<CartLine> lines, long[] less) {
+        int n = lines.size();
+        long[] share = new long[n];
+        if (amount == 0 || n == 0) return share;
+        long base = 0;
+        long[] weight = new long[n];
+        for (int i = 0; i < n; i++) {
+            weight[i] = lines.get(i).total() - (less == null ? 0 : less[i]);
+            base += weight[i];
+        }
+        if (base <= 0) {
+            share[0] = amount;
+            return share;
+        }
+        long given = 0;
+        int largest = 0;
+        for (int i = 0; i < n; i++) {
+            share[i] = Money.divide(Math.multiplyExact(amount, weight[i]), base, RoundingMode.FLOOR);
+            given += share[i];
+            if (weight[i] > weight[largest]) largest = i;
+        }
+        // rounding leftovers (a few paise at most) go to the largest line
+        share[largest] += amount - given;
+        return share;
+    }
+}
@@ -0,0 +1,173 @@
+package supermarket;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+// ---------------------------
+// Bill numbers
+// ---------------------------
+// Bill numbers look like LANE-1-261017-00004321: terminal, date, then a per-terminal
+// sequence that never restarts (a long, so it does not run out). Sequence numbers are
+// handed out by an atomic increment from a block reserved on disk in advance; the disk is
+// only written once per block, on a background thread while half of the current block is
+// still unused. After a crash the unused rest of the block is skipped, so numbers can
+// have gaps but are never issued twice.
+//
+// The file holds two 16-byte slots written alternately (long reservedUpTo, int crc32,
+// int magic), so a torn write loses at most the newer slot. It stays locked while open:
+// a second process for the same terminal fails instead of issuing duplicates.
+// Properties:
+//   billing.billIds.block   1000   numbers reserved per disk write
+final class BillIdAllocator implements Closeable {
+
+    private static final int MAGIC = 0x42494431;          // "BID1"
+    private static final int SLOT = 16;
+    private static final long DAY_MILLIS = 86_400_000L;
+    private static final DateTimeFormatter DATE = DateTimeFormatter.ofPattern("yyMMdd");
+
+    private final String prefix;
+    private final FileChannel channel;
+    private final FileLock lock;
+    private final long block;
+    private final AtomicLong next;
+    private volatile long limit;                          // first number not reserved on disk
+    private volatile long refillAt;                       // next number that starts a background reservation
+    private int slot;                                     // guarded by this
+    private volatile String datePart = "";
+    private volatile long dateUntil = 0;                  // millis at which datePart goes stale
+
+    private BillIdAllocator(String terminal, FileChannel channel, FileLock lock, long reserved, int slot) {
+        this.prefix = terminal.toUpperCase() + "-";
+        this.channel = channel;
+        this.lock = lock;
+        this.block = Math.max(2, Long.getLong("billing.billIds.block", 1000L));
+        this.next = new AtomicLong(reserved + 1);
+        this.limit = reserved + 1;
+        this.refillAt = Long.MAX_VALUE;
+        this.slot = slot;
+    }
+
+    // Opens (or creates) the terminal's allocator file and reserves the first block.
+    static BillIdAllocator open(Path file, String terminal) throws IOException {
+        FileChannel ch = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            FileLock lock;
+            try {
+                lock = ch.tryLock();
+            } catch (OverlappingFileLockException e) {
+                lock = null;
+            }
+            if (lock == null) throw new IOException(file + " is in use by another billing program for this terminal");
+            long a = readSlot(ch, 0), b = readSlot(ch, 1);
+            BillIdAllocator ids = new BillIdAllocator(terminal, ch, lock, Math.max(0, Math.max(a, b)), a >= b ? 1 : 0);
+            synchronized (ids) {
+                ids.reserve();
+            }
+            return ids;
+        } catch (IOException | RuntimeException e) {
+            ch.close();
+            throw e;
+        }
+    }
+
+    // The next bill number; lock-free unless the reserved block is used up.
+    String next() {
+        long seq = next.getAndIncrement();
+        if (seq >= limit) {
+            synchronized (this) {
+                try {
+                    while (seq >= limit) reserve();
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Cannot reserve bill numbers", e);
+                }
+            }
+        } else if (seq == refillAt) {
+            CompletableFuture.runAsync(this::reserveAhead);
+        }
+        return format(seq);
+    }
+
+    private String format(long seq) {
+        long now = System.currentTimeMillis();
+        if (now >= dateUntil || now < dateUntil - DAY_MILLIS) {
+            LocalDate today = LocalDate.now();
+            datePart = today.format(DATE) + "-";
+            dateUntil = today.plusDays(1).atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        }
+        String digits = Long.toString(seq);
+        StringBuilder id = new StringBuilder(prefix.length() + 16).append(prefix).append(datePart);
+        for (int i = digits.length(); i < 8; i++) id.append('0');
+        return id.append(digits).toString();
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            try {
+                lock.release();
+            } finally {
+                channel.close();
+            }
+        }
+    }
+
+    // ---------------------------
+    // Reservation
+    // ---------------------------
+    private synchronized void reserveAhead() {
+        // started just before close(): the numbers are not needed any more
+        if (!channel.isOpen()) return;
+        try {
+            if (limit - next.get() <= block) reserve();
+        } catch (IOException e) {
+            // the caller that runs out will retry and report it
+            System.err.println("Bill numbers: " + e.getMessage());
+        }
+    }
+
+    // Extends the reservation by one block and makes it durable before any of it is used.
+    private void reserve() throws IOException {
+        long upTo = limit - 1 + block;
+        ByteBuffer buf = ByteBuffer.allocate(SLOT);
+        buf.putLong(upTo).putInt(crc(upTo)).putInt(MAGIC).flip();
+        long pos = (long) slot * SLOT;
+        while (buf.hasRemaining()) pos += channel.write(buf, pos);
+        channel.force(false);
+        slot ^= 1;
+        refillAt = upTo + 1 - block / 2;
+        limit = upTo + 1;
+    }
+
+    private static long readSlot(FileChannel ch, int slot) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(SLOT);
+        long pos = (long) slot * SLOT;
+        while (buf.hasRemaining()) {
+            int n = ch.read(buf, pos + buf.position());
+            if (n < 0) return -1;
+        }
+        buf.flip();
+        long upTo = buf.getLong();
+        int crc = buf.getInt();
+        int magic = buf.getInt();
+        return magic == MAGIC && crc == crc(upTo) && upTo >= 0 ? upTo : -1;
+    }
+
+    private static int crc(long value) {
+        CRC32 crc = new CRC32();
+        for (int shift = 56; shift >= 0; shift -= 8) crc.update((int) (value >>> shift));
+        return (int) crc.getValue();
+    }
+}
@@ -0,0 +1,265 @@
+package supermarket;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+// ---------------------------
+// Append-only bill journal
+// ---------------------------
+// File layout: 8-byte magic, then records of [int length][int crc32][payload].
+// A sale appends exactly one record, so persistence cost no longer grows with history.
+// A torn trailing record (crash mid-write) fails its length/crc check; readers stop
+// there and the writer truncates it away before appending again. A record that fails
+// with valid-looking data still behind it is damage, not a crash: opening or reading
+// the file then throws and leaves it as it is, rather than dropping what follows.
+// The same framing backs other append-only logs (e.g. the stock delta log), which
+// pass their own 8-byte magic.
+class BillJournal implements Closeable {
+
+    static final byte[] MAGIC = {'B', 'I', 'L', 'L', 'J', 'N', 'L', '1'};
+    static final int HEADER_SIZE = 8;
+    static final int RECORD_HEADER = 8;
+    static final int MAX_RECORD = 16 * 1024 * 1024;
+
+    // Receives each valid record during a scan; buf is reused between calls.
+    interface RecordVisitor {
+        void visit(long offset, byte[] buf, int len);
+    }
+
+    interface BillSink {
+        void accept(String bill) throws IOException;
+    }
+
+    enum SyncPolicy {
+        NONE,   // leave flushing to the OS
+        EACH,   // fsync after every appended bill
+        GROUP   // fsync once per groupSize bills or groupMillis, whichever comes first
+    }
+
+    private final Path path;
+    private final byte[] magic;
+    private final FileChannel channel;
+    private final SyncPolicy policy;
+    private final int groupSize;
+    private final long groupMillis;
+    private final CRC32 crc = new CRC32();
+    private ByteBuffer writeBuf = ByteBuffer.allocate(4096);
+
+    private int unsynced = 0;
+    private long lastSync = System.currentTimeMillis();
+    private Thread groupFlusher;
+    private volatile boolean closed = false;
+
+    BillJournal(Path path, SyncPolicy policy, int groupSize, long groupMillis) throws IOException {
+        this(path, policy, groupSize, groupMillis, null);
+    }
+
+    // The visitor, if given, sees every existing record during the recovery scan,
+    // so callers can build an index without reading the file a second time.
+    BillJournal(Path path, SyncPolicy policy, int groupSize, long groupMillis, RecordVisitor visitor) throws IOException {
+        this(path, MAGIC, policy, groupSize, groupMillis, visitor);
+    }
+
+    BillJournal(Path path, byte[] magic, SyncPolicy policy, int groupSize, long groupMillis, RecordVisitor visitor) throws IOException {
+        if (magic.length != HEADER_SIZE) throw new IllegalArgumentException("magic must be " + HEADER_SIZE + " bytes");
+        this.path = path;
+        this.magic = magic.clone();
+        this.policy = policy;
+        this.groupSize = Math.max(1, groupSize);
+        this.groupMillis = Math.max(1, groupMillis);
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        try {
+            if (channel.size() == 0) {
+                channel.write(ByteBuffer.wrap(this.magic), 0);
+                channel.force(true);
+            } else {
+                checkMagic(channel, this.magic);
+            }
+            // drop a torn tail left behind by a crash so new records follow a valid one
+            long validEnd = scan(path, channel, visitor);
+            if (validEnd < channel.size()) channel.truncate(validEnd);
+            channel.position(validEnd);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+
+        if (policy == SyncPolicy.GROUP) {
+            groupFlusher = new Thread(this::groupFlushLoop, "bill-journal-sync");
+            groupFlusher.setDaemon(true);
+            groupFlusher.start();
+        }
+    }
+
+    // Journal configured from system properties:
+    //   billing.journal.sync = none | each | group   (default group)
+    //   billing.journal.groupSize (default 32), billing.journal.groupMillis (default 200)
+    static BillJournal open(Path path) throws IOException {
+        return open(path, null);
+    }
+
+    static BillJournal open(Path path, RecordVisitor visitor) throws IOException {
+        SyncPolicy policy;
+        try {
+            policy = SyncPolicy.valueOf(System.getProperty("billing.journal.sync", "group").trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            policy = SyncPolicy.GROUP;
+        }
+        int size = Integer.getInteger("billing.journal.groupSize", 32);
+        long millis = Long.getLong("billing.journal.groupMillis", 200L);
+        return new BillJournal(path, policy, size, millis, visitor);
+    }
+
+    Path path() {
+        return path;
+    }
+
+    // Appends one bill and returns the file offset of its record.
+    long append(String bill) throws IOException {
+        return append(bill.getBytes(StandardCharsets.UTF_8));
+    }
+
+    synchronized long append(byte[] payload) throws IOException {
+        if (payload.length > MAX_RECORD) throw new IOException("Bill too large for journal: " + payload.length + " bytes");
+
+        int needed = RECORD_HEADER + payload.length;
+        if (writeBuf.capacity() < needed) writeBuf = ByteBuffer.allocate(Math.max(needed, writeBuf.capacity() * 2));
+        crc.reset();
+        crc.update(payload, 0, payload.length);
+        writeBuf.clear();
+        writeBuf.putInt(payload.length).putInt((int) crc.getValue()).put(payload).flip();
+
+        long offset = channel.position();
+        while (writeBuf.hasRemaining()) channel.write(writeBuf);
+
+        unsynced++;
+        if (policy == SyncPolicy.EACH || (policy == SyncPolicy.GROUP && unsynced >= groupSize)) {
+            syncLocked();
+        }
+        return offset;
+    }
+
+    // Forces everything appended so far to disk regardless of policy.
+    synchronized void sync() throws IOException {
+        syncLocked();
+    }
+
+    private void syncLocked() throws IOException {
+        if (unsynced == 0) return;
+        long started = System.nanoTime();
+        channel.force(false);
+        Metrics.JOURNAL_SYNC.recordSince(started);
+        unsynced = 0;
+        lastSync = System.currentTimeMillis();
+    }
+
+    private void groupFlushLoop() {
+        while (!closed) {
+            try {
+                Thread.sleep(groupMillis);
+                synchronized (this) {
+                    if (!closed && unsynced > 0 && System.currentTimeMillis() - lastSync >= groupMillis) syncLocked();
+                }
+            } catch (InterruptedException e) {
+                return;
+            } catch (IOException e) {
+                // retried on the next tick or the next append
+            }
+        }
+    }
+
+    // Streams every complete bill to the consumer, stopping cleanly at a torn trailing record.
+    void readAll(Consumer<String> consumer) throws IOException {
+        scanAll((offset, buf, len) -> consumer.accept(new String(buf, 0, len, StandardCharsets.UTF_8)));
+    }
+
+    // Visits every complete record with its file offset; returns the end of the valid data.
+    long scanAll(RecordVisitor visitor) throws IOException {
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            checkMagic(ch, magic);
+            return scan(path, ch, visitor);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        if (groupFlusher != null) groupFlusher.interrupt();
+        try {
+            syncLocked();
+        } finally {
+            channel.close();
+        }
+    }
+
+    // Returns the offset just past the last valid record. Only a record that runs to the
+    // end of the file counts as torn; a bad one with more data after it throws.
+    private static long scan(Path path, FileChannel ch, RecordVisitor visitor) throws IOException {
+        ch.position(HEADER_SIZE);
+        DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(ch), 64 * 1024));
+        long pos = HEADER_SIZE;
+        long size = ch.size();
+        CRC32 check = new CRC32();
+        byte[] buf = new byte[1024];
+        while (pos + RECORD_HEADER <= size) {
+            int len = in.readInt();
+            int sum = in.readInt();
+            if (len < 0 || len > MAX_RECORD) throw damaged(path, pos, size);
+            if (pos + RECORD_HEADER + len > size) break;
+            if (buf.length < len) buf = new byte[Math.max(len, buf.length * 2)];
+            in.readFully(buf, 0, len);
+            check.reset();
+            check.update(buf, 0, len);
+            if ((int) check.getValue() != sum) {
+                if (pos + RECORD_HEADER + len < size) throw damaged(path, pos, size);
+                break;
+            }
+            if (visitor != null) visitor.visit(pos, buf, len);
+            pos += RECORD_HEADER + len;
+        }
+        return pos;
+    }
+
+    private static IOException damaged(Path path, long pos, long size) {
+        return new IOException(path.getFileName() + " is damaged at byte " + pos + " with " + (size - pos)
+                + " bytes after it; the file was left unchanged, restore it from a backup or move it aside");
+    }
+
+    private static void checkMagic(FileChannel ch, byte[] magic) throws IOException {
+        ByteBuffer head = ByteBuffer.allocate(HEADER_SIZE);
+        while (head.hasRemaining() && ch.read(head, head.position()) > 0) { }
+        if (head.position() < HEADER_SIZE) throw new IOException("Journal header is truncated");
+        for (int i = 0; i < HEADER_SIZE; i++) {
+            if (head.get(i) != magic[i]) {
+                throw new IOException("Unexpected journal header, expected " + new String(magic, StandardCharsets.US_ASCII));
+            }
+        }
+    }
+
+    // One-time import of the old "###END###"-delimited bills.txt; each bill goes to sink.
+    static int migrateLegacy(File legacy, BillSink sink) throws IOException {
+        int count = 0;
+        try (BufferedReader r = new BufferedReader(new InputStreamReader(new FileInputStream(legacy), StandardCharsets.UTF_8))) {
+            StringBuilder bill = new StringBuilder();
+            String line;
+            while ((line = r.readLine()) != null) {
+                if (line.equals("###END###")) {
+                    sink.accept(bill.toString());
+                    bill.setLength(0);
+                    count++;
+                } else {
+                    bill.append(line).append("\n");
+                }
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,74 @@
+package supermarket;
+
+import javax.swing.*;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// ---------------------------
+// Paged list model over one day of bills
+// ---------------------------
+// JList only asks for visible rows (given a fixed cell size), so only the pages
+// under the viewport are read from disk; a small LRU keeps recently shown pages.
+class BillListModel extends AbstractListModel<String> {
+
+    static final int PAGE_SIZE = 64;
+    private static final int MAX_PAGES = 16;
+
+    private final BillSegment store;
+    private final int size;
+
+    private final Map<Integer, String[]> pages = new LinkedHashMap<Integer, String[]>(MAX_PAGES, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, String[]> eldest) {
+            return size() > MAX_PAGES;
+        }
+    };
+
+    BillListModel(BillSegment store) {
+        this.store = store;
+        this.size = store.size();
+    }
+
+    @Override
+    public int getSize() {
+        return size;
+    }
+
+    // One-line summary shown in the list.
+    @Override
+    public String getElementAt(int index) {
+        return summarize(index, getBill(index));
+    }
+
+    // Full receipt text of the bill at index.
+    String getBill(int index) {
+        int page = index / PAGE_SIZE;
+        String[] bills = pages.get(page);
+        if (bills == null) {
+            try {
+                bills = store.readRange(page * PAGE_SIZE, (page + 1) * PAGE_SIZE);
+            } catch (IOException e) {
+                return "Error reading bill: " + e.getMessage();
+            }
+            pages.put(page, bills);
+        }
+        int at = index - page * PAGE_SIZE;
+        return at < bills.length ? bills[at] : "";
+    }
+
+    private static String summarize(int index, String bill) {
+        String customer = field(bill, "Customer: ");
+        String date = field(bill, "Date: ");
+        String total = field(bill, "Total: ");
+        return String.format("#%-6d %-12s %-20s %-18s %s", index + 1, BillStore.billNoOf(bill), date, customer, total);
+    }
+
+    private static String field(String bill, String tag) {
+        int at = bill.indexOf("\n" + tag);
+        if (at < 0) return "";
+        at += tag.length() + 1;
+        int end = bill.indexOf('\n', at);
+        return bill.substring(at, end < 0 ? bill.length() : end).trim();
+    }
+}
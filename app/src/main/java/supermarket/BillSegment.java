@@ -0,0 +1,29 @@
+package supermarket;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+// ---------------------------
+// One day of bills
+// ---------------------------
+// Read side shared by today's journal (BillStore) and sealed, compressed days
+// (SealedSegment); see BillArchive. Bills are addressed by ordinal within the segment.
+interface BillSegment {
+
+    // Receives one raw record per call; record.position()..limit() spans the payload.
+    interface RawVisitor {
+        void visit(int ordinal, ByteBuffer record) throws IOException;
+    }
+
+    int size();
+
+    // Printable receipts of bills [from, to).
+    String[] readRange(int from, int to) throws IOException;
+
+    // Ordinal of the most recent bill with this number, or -1.
+    int find(String billNo) throws IOException;
+
+    // Streams records [from, to) to the visitor, reading about chunkBytes at a time.
+    // Safe to call from several threads at once.
+    void scanRange(int from, int to, int chunkBytes, RawVisitor visitor) throws IOException;
+}
@@ -0,0 +1,232 @@
+package supermarket;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.Arrays;
+
+// ---------------------------
+// Offset-indexed bill store
+// ---------------------------
+// Keeps only file offsets, record lengths and a bill-number hash table in memory.
+// Bill records (see BillCodec) stay in the journal and are read on demand with
+// positional reads. BillArchive keeps one per day for the day's bills.
+class BillStore implements BillSegment, Closeable {
+
+    private final BillJournal journal;
+    private final FileChannel reader;
+
+    // ordinal -> record location
+    private long[] offsets = new long[1024];
+    private int[] lengths = new int[1024];
+    private int[] keyHashes = new int[1024];
+    private int count = 0;
+
+    // open-addressed bill-number index: slot holds ordinal + 1, 0 = empty
+    private int[] table = new int[2048];
+
+    private BillStore(Path path) throws IOException {
+        this.journal = BillJournal.open(path, (offset, buf, len) -> index(offset, len, billNoHash(buf, 0, len)));
+        this.reader = FileChannel.open(path, StandardOpenOption.READ);
+    }
+
+    // Opens (creating if needed) the journal at path, migrating a legacy bills.txt once.
+    static BillStore open(Path path, File legacy) throws IOException {
+        boolean migrate = !Files.exists(path) && legacy != null && legacy.exists();
+        BillStore store = new BillStore(path);
+        if (migrate) {
+            BillJournal.migrateLegacy(legacy, store::append);
+            store.sync();
+            legacy.renameTo(new File(legacy.getPath() + ".migrated"));
+        }
+        return store;
+    }
+
+    @Override
+    public synchronized int size() {
+        return count;
+    }
+
+    // Appends a bill as a structured record and indexes it; returns its ordinal.
+    int append(Bill bill) throws IOException {
+        long started = System.nanoTime();
+        byte[] record = BillCodec.encode(bill);
+        int ordinal = append(record);
+        Metrics.BILL_APPEND.recordSince(started);
+        Metrics.JOURNAL_BYTES.add(record.length + BillJournal.RECORD_HEADER);
+        return ordinal;
+    }
+
+    // Appends a plain-text receipt (legacy bills.txt migration only).
+    int append(String receipt) throws IOException {
+        return append(receipt.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private synchronized int append(byte[] record) throws IOException {
+        long offset = journal.append(record);
+        index(offset, record.length, billNoHash(record, 0, record.length));
+        return count - 1;
+    }
+
+    void sync() throws IOException {
+        journal.sync();
+    }
+
+    // Printable receipt of the bill at ordinal.
+    String read(int ordinal) throws IOException {
+        byte[] raw = readRaw(ordinal);
+        return BillCodec.receipt(raw, 0, raw.length);
+    }
+
+    synchronized byte[] readRaw(int ordinal) throws IOException {
+        checkOrdinal(ordinal);
+        ByteBuffer buf = ByteBuffer.allocate(lengths[ordinal]);
+        readFully(buf, offsets[ordinal] + BillJournal.RECORD_HEADER);
+        return buf.array();
+    }
+
+    // Reads bills [from, to) with a single positional read of the contiguous file range.
+    @Override
+    public synchronized String[] readRange(int from, int to) throws IOException {
+        to = Math.min(to, count);
+        if (from >= to) return new String[0];
+        checkOrdinal(from);
+        long start = offsets[from];
+        long end = offsets[to - 1] + BillJournal.RECORD_HEADER + lengths[to - 1];
+        ByteBuffer buf = ByteBuffer.allocate((int) (end - start));
+        readFully(buf, start);
+        String[] out = new String[to - from];
+        for (int i = from; i < to; i++) {
+            int at = (int) (offsets[i] - start) + BillJournal.RECORD_HEADER;
+            out[i - from] = BillCodec.receipt(buf.array(), at, lengths[i]);
+        }
+        return out;
+    }
+
+    // Returns the ordinal of the most recent bill with this number, or -1. Expected O(1).
+    @Override
+    public synchronized int find(String billNo) throws IOException {
+        if (billNo == null || billNo.isEmpty()) return -1;
+        int hash = mix(billNo.hashCode());
+        int mask = table.length - 1;
+        int best = -1;
+        for (int slot = hash & mask; table[slot] != 0; slot = (slot + 1) & mask) {
+            int ordinal = table[slot] - 1;
+            if (keyHashes[ordinal] == hash && ordinal > best) {
+                byte[] raw = readRaw(ordinal);
+                if (billNo.equals(BillCodec.billNo(raw, 0, raw.length))) best = ordinal;
+            }
+        }
+        return best;
+    }
+
+    // Streams records [from, to) to the visitor, reading the file in chunks of about
+    // chunkBytes with positional reads. Safe to call from several threads at once.
+    @Override
+    public void scanRange(int from, int to, int chunkBytes, RawVisitor visitor) throws IOException {
+        long[] offs;
+        int[] lens;
+        synchronized (this) {
+            to = Math.min(to, count);
+            if (from >= to) return;
+            checkOrdinal(from);
+            offs = Arrays.copyOfRange(offsets, from, to);
+            lens = Arrays.copyOfRange(lengths, from, to);
+        }
+        ByteBuffer buf = ByteBuffer.allocate(Math.max(chunkBytes, 1024));
+        int i = 0;
+        while (i < offs.length) {
+            // gather as many whole records as fit in one chunk (at least one)
+            long start = offs[i];
+            int j = i;
+            long end = start;
+            do {
+                end = offs[j] + BillJournal.RECORD_HEADER + lens[j];
+                j++;
+            } while (j < offs.length && offs[j] + BillJournal.RECORD_HEADER + lens[j] - start <= buf.capacity());
+            int span = (int) (end - start);
+            if (buf.capacity() < span) buf = ByteBuffer.allocate(span);
+            buf.clear().limit(span);
+            readFully(buf, start);
+            for (int k = i; k < j; k++) {
+                int at = (int) (offs[k] - start) + BillJournal.RECORD_HEADER;
+                buf.limit(at + lens[k]).position(at);
+                visitor.visit(from + k, buf);
+                buf.limit(span);
+            }
+            i = j;
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            journal.close();
+        } finally {
+            reader.close();
+        }
+    }
+
+    // Bill number of a plain-text receipt, or "".
+    static String billNoOf(String bill) {
+        int at = bill.indexOf("Bill No: ");
+        if (at < 0) return "";
+        int end = bill.indexOf('\n', at);
+        return bill.substring(at + "Bill No: ".length(), end < 0 ? bill.length() : end).trim();
+    }
+
+    private void index(long offset, int len, int hash) {
+        if (count == offsets.length) {
+            int cap = offsets.length * 2;
+            offsets = Arrays.copyOf(offsets, cap);
+            lengths = Arrays.copyOf(lengths, cap);
+            keyHashes = Arrays.copyOf(keyHashes, cap);
+        }
+        offsets[count] = offset;
+        lengths[count] = len;
+        keyHashes[count] = hash;
+        count++;
+        if (count * 2 > table.length) rehash(table.length * 2);
+        else insert(count - 1);
+    }
+
+    private void insert(int ordinal) {
+        int mask = table.length - 1;
+        int slot = keyHashes[ordinal] & mask;
+        while (table[slot] != 0) slot = (slot + 1) & mask;
+        table[slot] = ordinal + 1;
+    }
+
+    private void rehash(int capacity) {
+        table = new int[capacity];
+        for (int i = 0; i < count; i++) insert(i);
+    }
+
+    private void readFully(ByteBuffer buf, long position) throws IOException {
+        while (buf.hasRemaining()) {
+            int n = reader.read(buf, position + buf.position());
+            if (n < 0) throw new EOFException("Bill journal ended unexpectedly");
+        }
+    }
+
+    private void checkOrdinal(int ordinal) {
+        if (ordinal < 0 || ordinal >= count) throw new IndexOutOfBoundsException("No bill #" + ordinal);
+    }
+
+    // Hash of the record's bill number; unreadable records hash like "no number".
+    private static int billNoHash(byte[] buf, int off, int len) {
+        try {
+            return mix(BillCodec.billNo(buf, off, len).hashCode());
+        } catch (IOException | RuntimeException e) {
+            return mix("".hashCode());
+        }
+    }
+
+    private static int mix(int h) {
+        h ^= (h >>> 16);
+        h *= 0x85ebca6b;
+        return h ^ (h >>> 13);
+    }
+}
@@ -0,0 +1,159 @@
+package supermarket;
+
+import javax.swing.*;
+import javax.swing.table.AbstractTableModel;
+import javax.swing.table.DefaultTableCellRenderer;
+import java.util.Arrays;
+import java.util.List;
+
+// ---------------------------
+// Bill grid model
+// ---------------------------
+// Lines are kept in parallel primitive arrays (SKU, qty, unit price in paise); names
+// come from the catalog and amounts are formatted by MoneyRenderer only for the cells
+// JTable actually paints. Every change fires the narrowest row event it can, so adding
+// to or trimming a 10k-line bill repaints only the rows that moved.
+class BillTableModel extends AbstractTableModel {
+
+    static final int ITEM = 0, QTY = 1, PRICE = 2, TOTAL = 3;
+    private static final String[] COLUMNS = {"Item", "Qty", "Price", "Total"};
+
+    private Catalog catalog;
+    private int[] skus = new int[64];
+    private int[] qtys = new int[64];
+    private long[] prices = new long[64];
+    private int count = 0;
+
+    BillTableModel(Catalog catalog) {
+        this.catalog = catalog;
+    }
+
+    void setCatalog(Catalog catalog) {
+        this.catalog = catalog;
+        if (count > 0) fireTableRowsUpdated(0, count - 1);
+    }
+
+    @Override
+    public int getRowCount() {
+        return count;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMNS.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMNS[column];
+    }
+
+    @Override
+    public Class<?> getColumnClass(int column) {
+        return column == ITEM ? String.class : column == QTY ? Integer.class : Long.class;
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        switch (column) {
+            case ITEM:
+                return catalog.name(skus[row]);
+            case QTY:
+                return qtys[row];
+            case PRICE:
+                return prices[row];
+            default:
+                return Money.times(prices[row], qtys[row]);
+        }
+    }
+
+    int sku(int row) {
+        return skus[row];
+    }
+
+    int qty(int row) {
+        return qtys[row];
+    }
+
+    void add(CartLine line) {
+        ensureCapacity(count + 1);
+        put(count++, line);
+        fireTableRowsInserted(count - 1, count - 1);
+    }
+
+    void addAll(List<CartLine> lines) {
+        if (lines.isEmpty()) return;
+        ensureCapacity(count + lines.size());
+        int first = count;
+        for (CartLine line : lines) put(count++, line);
+        fireTableRowsInserted(first, count - 1);
+    }
+
+    // Removes rows [from, to).
+    void removeRange(int from, int to) {
+        if (from >= to) return;
+        System.arraycopy(skus, to, skus, from, count - to);
+        System.arraycopy(qtys, to, qtys, from, count - to);
+        System.arraycopy(prices, to, prices, from, count - to);
+        count -= to - from;
+        fireTableRowsDeleted(from, to - 1);
+    }
+
+    void clear() {
+        removeRange(0, count);
+    }
+
+    // Brings the model in line with the cart, one event per contiguous run of changes.
+    void sync(List<CartLine> lines) {
+        int common = Math.min(count, lines.size());
+        int runStart = -1;
+        for (int i = 0; i < common; i++) {
+            CartLine line = lines.get(i);
+            boolean same = skus[i] == line.sku && qtys[i] == line.qty && prices[i] == line.unitPrice;
+            if (!same) {
+                put(i, line);
+                if (runStart < 0) runStart = i;
+            } else if (runStart >= 0) {
+                fireTableRowsUpdated(runStart, i - 1);
+                runStart = -1;
+            }
+        }
+        if (runStart >= 0) fireTableRowsUpdated(runStart, common - 1);
+        if (lines.size() > count) addAll(lines.subList(count, lines.size()));
+        else removeRange(lines.size(), count);
+    }
+
+    private void put(int row, CartLine line) {
+        skus[row] = line.sku;
+        qtys[row] = line.qty;
+        prices[row] = line.unitPrice;
+    }
+
+    private void ensureCapacity(int needed) {
+        if (needed <= skus.length) return;
+        int cap = Math.max(needed, skus.length * 2);
+        skus = Arrays.copyOf(skus, cap);
+        qtys = Arrays.copyOf(qtys, cap);
+        prices = Arrays.copyOf(prices, cap);
+    }
+
+    // Renders paise as "₹1234.50" at paint time.
+    static class MoneyRenderer extends DefaultTableCellRenderer {
+        private final StringBuilder text = new StringBuilder(16);
+
+        MoneyRenderer() {
+            setHorizontalAlignment(SwingConstants.RIGHT);
+        }
+
+        @Override
+        protected void setValue(Object value) {
+            if (!(value instanceof Long)) {
+                super.setValue(value);
+                return;
+            }
+            text.setLength(0);
+            Money.appendTo(text.append('₹'), (Long) value);
+            setText(text.toString());
+        }
+    }
+}
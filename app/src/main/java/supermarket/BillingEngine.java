@@ -0,0 +1,264 @@
+package supermarket;
+
+import java.io.IOException;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+// ---------------------------
+// Headless billing engine
+// ---------------------------
+// All billing rules live here, independent of Swing. Any number of lanes may call it
+// concurrently, each with its own Cart: stock is taken per SKU with a CAS on the
+// catalog's counters, so lanes never oversell and never share a global lock.
+// Money is fixed-point paise throughout (see Money); rounding happens only when the
+// discount and GST percentages are applied.
+class BillingEngine {
+
+    static final RoundingMode DISCOUNT_ROUNDING = RoundingMode.HALF_UP;
+    static final RoundingMode GST_ROUNDING = RoundingMode.HALF_UP;
+
+    private static final ReceiptTemplate RECEIPT_TEXT = ReceiptTemplate.compile(ReceiptTemplate.DEFAULT, ReceiptTemplate.Encoding.TEXT);
+    private static final ThreadLocal<ByteBuffer> RECEIPT_BUFFER = ThreadLocal.withInitial(() -> ByteBuffer.allocate(4096));
+
+    // Persists completed bills, normally BillArchive::append.
+    interface BillRecorder {
+        void record(Bill bill) throws IOException;
+    }
+
+    // Where stock comes from when the local count runs short, e.g. a lease from the
+    // store's inventory server (InventoryClient). Without one the catalog is the stock.
+    interface StockSource {
+        // Adds up to needed units of sku to the catalog; returns how many it added.
+        int topUp(int sku, int needed);
+
+        // Called after every take with the units left; may refill in the background.
+        void taken(int sku, int remaining);
+    }
+
+    // Told about every change to a SKU's stock: units taken by a line (sold > 0), given
+    // back by a removed line or abandoned cart (sold < 0), or set by an edit (sold == 0).
+    // Called on the thread that made the change, e.g. the scan worker; must not block.
+    interface StockListener {
+        void stockChanged(int sku, int stock, int sold);
+    }
+
+    private final Catalog catalog;
+    private final BillRecorder recorder;  // may be null: bills are then not persisted
+    private volatile StockSource stockSource;
+    private volatile StockListener stockListener;
+    private volatile BillIdAllocator billIds;                  // null: numbers restart with the process
+    private volatile Promotions promotions = Promotions.NONE;
+    private final AtomicInteger billCounter = new AtomicInteger(1);
+    private final LongAdder totalSales = new LongAdder();      // paise
+
+    BillingEngine(Catalog catalog, BillRecorder recorder) {
+        this.catalog = catalog;
+        this.recorder = recorder;
+    }
+
+    Catalog catalog() {
+        return catalog;
+    }
+
+    void setStockSource(StockSource source) {
+        this.stockSource = source;
+    }
+
+    void setStockListener(StockListener listener) {
+        this.stockListener = listener;
+    }
+
+    // Reports a stock level set outside the engine (Edit Stock, a catalog import).
+    void stockEdited(int sku) {
+        StockListener listener = stockListener;
+        if (listener != null) listener.stockChanged(sku, catalog.stock(sku), 0);
+    }
+
+    void setBillIds(BillIdAllocator ids) {
+        this.billIds = ids;
+    }
+
+    // Applies to carts opened from now on.
+    void setPromotions(Promotions promotions) {
+        this.promotions = promotions == null ? Promotions.NONE : promotions;
+    }
+
+    Cart newCart(String lane) {
+        BillIdAllocator ids = billIds;
+        String billNo = ids != null ? ids.next() : String.format("BILL-%04d", billCounter.getAndIncrement());
+        return new Cart(lane, billNo, promotions);
+    }
+
+    long totalSales() {
+        return totalSales.sum();
+    }
+
+    // Adds sales recorded before this run (e.g. earlier today) to the running total.
+    void addRestoredSales(long paise) {
+        totalSales.add(paise);
+    }
+
+    CartLine addItem(Cart cart, String item, int qty) throws BillingException {
+        if (item == null || item.isEmpty()) throw new BillingException("Enter item and quantity!");
+        int sku = catalog.skuOf(item);
+        if (sku < 0) throw new BillingException("Item not found in stock!");
+        return addSku(cart, sku, qty);
+    }
+
+    CartLine addBarcode(Cart cart, String barcode, int qty) throws BillingException {
+        int sku = catalog.skuForBarcode(barcode);
+        if (sku < 0) throw new BillingException("Barcode not found in system.");
+        return addSku(cart, sku, qty);
+    }
+
+    CartLine addSku(Cart cart, int sku, int qty) throws BillingException {
+        CartLine line = take(sku, qty);
+        synchronized (cart) {
+            checkOpen(cart, line);
+            cart.add(line);
+        }
+        return line;
+    }
+
+    // A scanned product: repeat scans of the same SKU raise the quantity of its existing
+    // line instead of adding rows. Returns the index of the line that holds the scan.
+    int addScanned(Cart cart, String barcode, int qty) throws BillingException {
+        int sku = catalog.skuForBarcode(barcode);
+        if (sku < 0) throw new BillingException("Barcode " + barcode + " not found in system.");
+        CartLine line = take(sku, qty);
+        synchronized (cart) {
+            checkOpen(cart, line);
+            return cart.addOrMerge(line);
+        }
+    }
+
+    private CartLine take(int sku, int qty) throws BillingException {
+        if (qty <= 0) throw new BillingException("Invalid quantity.");
+        int available = catalog.tryTake(sku, qty);
+        StockSource source = stockSource;
+        if (available < qty && source != null && source.topUp(sku, qty - available) > 0) {
+            available = catalog.tryTake(sku, qty);
+        }
+        if (available < qty) {
+            throw new BillingException("Insufficient stock for " + catalog.name(sku) + "! Only " + available + " left.");
+        }
+        if (source != null) source.taken(sku, available - qty);
+        StockListener listener = stockListener;
+        if (listener != null) listener.stockChanged(sku, available - qty, qty);
+        return new CartLine(sku, catalog.name(sku), qty, catalog.price(sku), catalog.hsn(sku), catalog.taxBps(sku));
+    }
+
+    private void checkOpen(Cart cart, CartLine line) throws BillingException {
+        if (cart.isClosed()) {
+            giveBack(line.sku, line.qty);
+            throw new BillingException("Bill " + cart.billNo + " is already closed.");
+        }
+    }
+
+    // Removes a line and returns its quantity to stock.
+    CartLine removeLine(Cart cart, int index) throws BillingException {
+        CartLine line;
+        synchronized (cart) {
+            if (cart.isClosed()) throw new BillingException("Bill " + cart.billNo + " is already closed.");
+            if (index < 0 || index >= cart.size()) throw new BillingException("Select an item to remove!");
+            line = cart.remove(index);
+        }
+        giveBack(line.sku, line.qty);
+        return line;
+    }
+
+    // Abandons an open cart, returning all of its stock.
+    void cancel(Cart cart) {
+        for (CartLine line : cart.close()) giveBack(line.sku, line.qty);
+    }
+
+    private void giveBack(int sku, int qty) {
+        catalog.giveBack(sku, qty);
+        StockListener listener = stockListener;
+        if (listener != null) listener.stockChanged(sku, catalog.stock(sku), -qty);
+    }
+
+    // Closes the cart into a bill. Stock was already taken as lines were added, and GST
+    // summed per slab; taxBps applies to items without a rate of their own.
+    Bill checkout(Cart cart, String customer, int discountBps, int taxBps, String cashier) throws BillingException {
+        return checkout(cart, customer, "", discountBps, taxBps, cashier);
+    }
+
+    // customerId: the key the bill is filed under in the customer's history, or "".
+    Bill checkout(Cart cart, String customer, String customerId, int discountBps, int taxBps, String cashier)
+            throws BillingException {
+        if (discountBps < 0 || discountBps > Money.MAX_DISCOUNT_BPS) throw new BillingException("Discount cannot be over 100%.");
+        List<CartLine> lines;
+        long subtotal, promotion;
+        long[] linePromotion;
+        List<Bill.TaxLine> slabs;
+        synchronized (cart) {
+            if (cart.isEmpty()) throw new BillingException("No items in bill!");
+            subtotal = cart.subtotal();
+            promotion = cart.promotion();
+            lines = cart.close();
+            linePromotion = promotion > 0 ? cart.promotionPerLine(lines) : null;
+            slabs = cart.slabs();
+        }
+        if (lines.isEmpty()) throw new BillingException("Bill " + cart.billNo + " is already closed.");
+        if (customer == null || customer.isEmpty()) customer = "Guest";
+
+        long discount = promotion + Money.percent(subtotal - promotion, discountBps, DISCOUNT_ROUNDING);
+        long discountedTotal = subtotal - discount;
+        List<Bill.TaxLine> taxes = taxes(slabs, subtotal, discount, taxBps);
+        long tax = 0;
+        for (Bill.TaxLine t : taxes) tax += t.tax;
+        long finalTotal = discountedTotal + tax;
+        totalSales.add(finalTotal);
+        Metrics.BILLS.increment();
+        return new Bill(cart.billNo, cart.lane, customer, customerId, cashier, LocalDateTime.now(), lines,
+                subtotal, promotion, linePromotion, discountBps, discount, taxBps, tax, finalTotal, taxes);
+    }
+
+    // Bill-level discounts lower each slab's taxable value in proportion to it (leftover
+    // paise to the largest slab); the scan-time tax drops by the tax on that share, so an
+    // undiscounted slab's tax is exactly the sum of its lines'.
+    private static List<Bill.TaxLine> taxes(List<Bill.TaxLine> slabs, long subtotal, long discount, int taxBps) {
+        int n = slabs.size();
+        long[] share = new long[n];
+        if (discount != 0 && subtotal > 0) {
+            long given = 0;
+            int largest = 0;
+            for (int i = 0; i < n; i++) {
+                share[i] = Money.divide(Math.multiplyExact(discount, slabs.get(i).taxable), subtotal, RoundingMode.FLOOR);
+                given += share[i];
+                if (slabs.get(i).taxable > slabs.get(largest).taxable) largest = i;
+            }
+            share[largest] += discount - given;
+        }
+        List<Bill.TaxLine> out = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            Bill.TaxLine s = slabs.get(i);
+            long net = s.taxable - share[i];
+            if (s.bps < 0) {
+                out.add(new Bill.TaxLine(s.hsn, taxBps, net, Money.percent(net, taxBps, GST_ROUNDING)));
+            } else {
+                out.add(new Bill.TaxLine(s.hsn, s.bps, net, s.tax - Money.percent(share[i], s.bps, GST_ROUNDING)));
+            }
+        }
+        return out;
+    }
+
+    // Persists the bill as a structured record.
+    void record(Bill bill) throws IOException {
+        if (recorder != null) recorder.record(bill);
+    }
+
+    // The receipt as text (the default template); see ReceiptTemplate for printer output.
+    static String formatReceipt(Bill bill) {
+        ByteBuffer b = RECEIPT_TEXT.render(bill, RECEIPT_BUFFER.get());
+        RECEIPT_BUFFER.set(b);
+        return new String(b.array(), 0, b.limit(), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,12 @@
+package supermarket;
+
+// ---------------------------
+// Rejected billing operation
+// ---------------------------
+// The message is meant for the cashier as-is (e.g. "Insufficient stock! Only 3 left.").
+class BillingException extends Exception {
+
+    BillingException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,149 @@
+package supermarket;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// ---------------------------
+// Open bill on one checkout lane
+// ---------------------------
+// Stock for every line is already taken from the catalog; BillingEngine gives it back
+// when a line is removed or the cart is abandoned. Promotions are tallied as lines come
+// and go, so the running total is always current, and so is GST: each line's tax is
+// computed when it is scanned and summed per slab (HSN code and rate).
+class Cart {
+
+    final String lane;
+    final String billNo;
+    private final List<CartLine> lines = new ArrayList<>();
+    private final Promotions.Tally promotions;
+    private long subtotal = 0;      // paise
+    // slabs; rate -1 gathers items taxed at the bill's rate (their tax is not known yet)
+    private int slabCount = 0;
+    private String[] slabHsn = new String[4];
+    private int[] slabBps = new int[4];
+    private long[] slabTaxable = new long[4];
+    private long[] slabTax = new long[4];
+    private boolean closed = false;
+
+    Cart(String lane, String billNo) {
+        this(lane, billNo, Promotions.NONE);
+    }
+
+    Cart(String lane, String billNo, Promotions promotions) {
+        this.lane = lane;
+        this.billNo = billNo;
+        this.promotions = promotions.newTally();
+    }
+
+    synchronized int size() {
+        return lines.size();
+    }
+
+    synchronized boolean isEmpty() {
+        return lines.isEmpty();
+    }
+
+    synchronized CartLine line(int index) {
+        return lines.get(index);
+    }
+
+    synchronized List<CartLine> lines() {
+        return new ArrayList<>(lines);
+    }
+
+    synchronized long subtotal() {
+        return subtotal;
+    }
+
+    // Promotion discount on the current lines, never more than the subtotal.
+    synchronized long promotion() {
+        return Math.max(0, Math.min(promotions.discount(), subtotal));
+    }
+
+    // Promotion discount per line of lines() as of now; sums to promotion().
+    synchronized long[] promotionPerLine(List<CartLine> of) {
+        return promotions.perLine(of, promotion());
+    }
+
+    // GST on the current lines that carry their own rate, before bill discounts.
+    synchronized long tax() {
+        long sum = 0;
+        for (int i = 0; i < slabCount; i++) sum += slabTax[i];
+        return sum;
+    }
+
+    // Slabs with any value, as TaxLines holding gross taxable value and scan-time tax.
+    synchronized List<Bill.TaxLine> slabs() {
+        List<Bill.TaxLine> out = new ArrayList<>(slabCount);
+        for (int i = 0; i < slabCount; i++) {
+            if (slabTaxable[i] != 0) out.add(new Bill.TaxLine(slabHsn[i], slabBps[i], slabTaxable[i], slabTax[i]));
+        }
+        return out;
+    }
+
+    private void slab(CartLine line, int sign) {
+        String hsn = line.hsn == null ? "" : line.hsn;
+        int i = 0;
+        while (i < slabCount && !(slabBps[i] == line.taxBps && slabHsn[i].equals(hsn))) i++;
+        if (i == slabCount) {
+            if (i == slabHsn.length) {
+                slabHsn = Arrays.copyOf(slabHsn, i * 2);
+                slabBps = Arrays.copyOf(slabBps, i * 2);
+                slabTaxable = Arrays.copyOf(slabTaxable, i * 2);
+                slabTax = Arrays.copyOf(slabTax, i * 2);
+            }
+            slabHsn[i] = hsn;
+            slabBps[i] = line.taxBps;
+            slabCount++;
+        }
+        slabTaxable[i] += sign * line.total();
+        slabTax[i] += sign * line.tax;
+    }
+
+    synchronized boolean isClosed() {
+        return closed;
+    }
+
+    synchronized void add(CartLine line) {
+        lines.add(line);
+        subtotal += line.total();
+        promotions.add(line.sku, line.qty, line.total());
+        slab(line, 1);
+    }
+
+    // Folds line into an existing line for the same SKU at the same price, or appends
+    // it. Returns the index of the line that now holds it.
+    synchronized int addOrMerge(CartLine line) {
+        subtotal += line.total();
+        promotions.add(line.sku, line.qty, line.total());
+        for (int i = lines.size() - 1; i >= 0; i--) {
+            CartLine l = lines.get(i);
+            if (l.sku == line.sku && l.unitPrice == line.unitPrice && l.taxBps == line.taxBps) {
+                CartLine merged = l.withQty(l.qty + line.qty);
+                slab(l, -1);
+                slab(merged, 1);
+                lines.set(i, merged);
+                return i;
+            }
+        }
+        slab(line, 1);
+        lines.add(line);
+        return lines.size() - 1;
+    }
+
+    synchronized CartLine remove(int index) {
+        CartLine line = lines.remove(index);
+        subtotal -= line.total();
+        promotions.add(line.sku, -line.qty, -line.total());
+        slab(line, -1);
+        return line;
+    }
+
+    // Marks the cart done and hands back its lines; later calls return an empty list.
+    synchronized List<CartLine> close() {
+        if (closed) return new ArrayList<>();
+        closed = true;
+        return new ArrayList<>(lines);
+    }
+}
@@ -0,0 +1,41 @@
+package supermarket;
+
+// ---------------------------
+// One line of a cart
+// ---------------------------
+// Amounts are in paise (see Money). The GST rate and HSN code are captured when the item
+// is scanned and the line's tax computed then; taxBps -1 means the item has no rate of
+// its own and is taxed at the bill's rate at checkout (tax is 0 until then).
+class CartLine {
+
+    final int sku;
+    final String item;
+    final int qty;
+    final long unitPrice;
+    final String hsn;       // may be null
+    final int taxBps;
+    final long tax;
+
+    CartLine(int sku, String item, int qty, long unitPrice) {
+        this(sku, item, qty, unitPrice, null, -1);
+    }
+
+    CartLine(int sku, String item, int qty, long unitPrice, String hsn, int taxBps) {
+        this.sku = sku;
+        this.item = item;
+        this.qty = qty;
+        this.unitPrice = unitPrice;
+        this.hsn = hsn;
+        this.taxBps = taxBps;
+        this.tax = taxBps < 0 ? 0 : Money.percent(total(), taxBps, BillingEngine.GST_ROUNDING);
+    }
+
+    long total() {
+        return Money.times(unitPrice, qty);
+    }
+
+    // Same line with a different quantity (tax recomputed).
+    CartLine withQty(int newQty) {
+        return new CartLine(sku, item, newQty, unitPrice, hsn, taxBps);
+    }
+}
@@ -0,0 +1,417 @@
+package supermarket;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.locks.StampedLock;
+
+// ---------------------------
+// Product catalog
+// ---------------------------
+// Each product gets a dense int SKU id; name, price and stock live in parallel arrays
+// indexed by SKU. Barcodes are indexed both ways: barcode -> barcode entry (and so SKU),
+// and SKU -> chain of barcode entries, so a product can carry several barcodes.
+//
+// A product's tax category is its HSN code. Its effective GST rate is resolved from
+// TaxRates into a per-SKU rate table once, whenever the code or the rates change.
+//
+// Thread safety: structural edits (new SKUs, barcodes, prices) take the write lock;
+// lookups use optimistic StampedLock reads, so lanes never block each other. Stock lives
+// in fixed-size AtomicIntegerArray pages that are never copied on growth, so per-SKU
+// counters are lock-free and no decrement is lost while the catalog grows.
+class Catalog {
+
+    private static final int PAGE_BITS = 12;
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+
+    private final StampedLock lock = new StampedLock();
+
+    private volatile int size = 0;
+    private String[] names;
+    private long[] prices;               // paise
+    private int[] firstBarcode;          // sku -> head of barcode chain, -1 if none
+    private String[] hsn;                // null: no tax category
+    private int[] taxBps;                // effective GST rate, -1: none (the bill's rate applies)
+    private int[] reorderLevel;          // units at which to reorder, -1: none (see StockAlerts)
+    private TaxRates taxRates = TaxRates.NONE;
+    private volatile AtomicIntegerArray[] stockPages = new AtomicIntegerArray[0];
+    private volatile long edits = 0;     // see edits()
+
+    private int barcodeCount = 0;
+    private String[] barcodes;           // barcode entry -> barcode text
+    private int[] barcodeSku;            // barcode entry -> owning sku
+    private int[] nextBarcode;           // barcode entry -> next entry of the same sku, -1 at end
+
+    private final StringIntMap nameIndex;
+    private final StringIntMap barcodeIndex;
+
+    Catalog() {
+        this(64);
+    }
+
+    Catalog(int expectedSkus) {
+        int cap = Math.max(16, expectedSkus);
+        names = new String[cap];
+        prices = new long[cap];
+        firstBarcode = new int[cap];
+        hsn = new String[cap];
+        taxBps = new int[cap];
+        reorderLevel = new int[cap];
+        barcodes = new String[cap];
+        barcodeSku = new int[cap];
+        nextBarcode = new int[cap];
+        nameIndex = new StringIntMap(cap);
+        barcodeIndex = new StringIntMap(cap);
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    // Bumped by every change to names, prices, barcodes or GST rates (not stock), so a
+    // reader keeping its own copy (PriceLookup) can tell when it is out of date.
+    long edits() {
+        return edits;
+    }
+
+    // SKU id for a display name, or -1.
+    int skuOf(String name) {
+        long stamp = lock.tryOptimisticRead();
+        int sku;
+        try {
+            sku = nameIndex.get(name);
+        } catch (RuntimeException racedWithResize) {
+            sku = -1;
+            stamp = 0;
+        }
+        if (lock.validate(stamp)) return sku;
+        stamp = lock.readLock();
+        try {
+            return nameIndex.get(name);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    // SKU id for a barcode, or -1.
+    int skuForBarcode(String barcode) {
+        long stamp = lock.tryOptimisticRead();
+        int sku;
+        try {
+            int entry = barcodeIndex.get(barcode);
+            sku = entry < 0 ? -1 : barcodeSku[entry];
+        } catch (RuntimeException racedWithResize) {
+            sku = -1;
+            stamp = 0;
+        }
+        if (lock.validate(stamp)) return sku;
+        stamp = lock.readLock();
+        try {
+            int entry = barcodeIndex.get(barcode);
+            return entry < 0 ? -1 : barcodeSku[entry];
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    String name(int sku) {
+        long stamp = lock.tryOptimisticRead();
+        String name = names[sku];
+        if (lock.validate(stamp)) return name;
+        stamp = lock.readLock();
+        try {
+            return names[sku];
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    // Unit price in paise.
+    long price(int sku) {
+        long stamp = lock.tryOptimisticRead();
+        long price = prices[sku];
+        if (lock.validate(stamp)) return price;
+        stamp = lock.readLock();
+        try {
+            return prices[sku];
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    // HSN code, or null.
+    String hsn(int sku) {
+        long stamp = lock.tryOptimisticRead();
+        String code = hsn[sku];
+        if (lock.validate(stamp)) return code;
+        stamp = lock.readLock();
+        try {
+            return hsn[sku];
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    // GST rate in basis points, or -1 if the product has no rate of its own.
+    int taxBps(int sku) {
+        long stamp = lock.tryOptimisticRead();
+        int bps = taxBps[sku];
+        if (lock.validate(stamp)) return bps;
+        stamp = lock.readLock();
+        try {
+            return taxBps[sku];
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    // Reorder threshold in units, or -1 if the product has none.
+    int reorderLevel(int sku) {
+        long stamp = lock.tryOptimisticRead();
+        int level = reorderLevel[sku];
+        if (lock.validate(stamp)) return level;
+        stamp = lock.readLock();
+        try {
+            return reorderLevel[sku];
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    void setReorderLevel(int sku, int level) {
+        long stamp = lock.writeLock();
+        try {
+            reorderLevel[sku] = Math.max(-1, level);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    int stock(int sku) {
+        return stockPages[sku >>> PAGE_BITS].get(sku & PAGE_MASK);
+    }
+
+    void setPrice(int sku, long price) {
+        long stamp = lock.writeLock();
+        try {
+            edits++;
+            prices[sku] = price;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    // Sets the product's HSN code (null or "" clears it) and resolves its rate.
+    void setHsn(int sku, String code) {
+        long stamp = lock.writeLock();
+        try {
+            edits++;
+            setHsnLocked(sku, code);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    // Replaces the rate table and re-resolves every product's rate.
+    void setTaxRates(TaxRates rates) {
+        long stamp = lock.writeLock();
+        try {
+            edits++;
+            taxRates = rates;
+            for (int sku = 0; sku < size; sku++) taxBps[sku] = rates.rateOf(hsn[sku]);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    private void setHsnLocked(int sku, String code) {
+        hsn[sku] = code == null || code.isEmpty() ? null : code.intern();
+        taxBps[sku] = taxRates.rateOf(hsn[sku]);
+    }
+
+    void setStock(int sku, int qty) {
+        stockPages[sku >>> PAGE_BITS].set(sku & PAGE_MASK, qty);
+    }
+
+    // Atomically takes qty units if available. Returns the stock left before the attempt,
+    // so callers can tell "took it" (result >= qty) from "insufficient" (result < qty).
+    int tryTake(int sku, int qty) {
+        AtomicIntegerArray page = stockPages[sku >>> PAGE_BITS];
+        int i = sku & PAGE_MASK;
+        while (true) {
+            int available = page.get(i);
+            if (available < qty) return available;
+            if (page.compareAndSet(i, available, available - qty)) return available;
+        }
+    }
+
+    // Returns qty units to stock (line removed or cart abandoned).
+    void giveBack(int sku, int qty) {
+        stockPages[sku >>> PAGE_BITS].addAndGet(sku & PAGE_MASK, qty);
+    }
+
+    // Adds a product or updates price/stock of an existing one; returns its SKU.
+    int put(String name, long price, int qty) {
+        long stamp = lock.writeLock();
+        try {
+            edits++;
+            return putLocked(name, price, qty);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    // Points barcode at sku, detaching it from any previous product.
+    // Returns the SKU that previously owned the barcode, or -1.
+    int assignBarcode(String barcode, int sku) {
+        long stamp = lock.writeLock();
+        try {
+            edits++;
+            return assignLocked(barcode, sku);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    // Source for putAll: row i is one product and its barcodes, in assignment order.
+    interface Rows {
+        int count();
+
+        String name(int row);
+
+        long price(int row);
+
+        int stock(int row);
+
+        int barcodeCount(int row);
+
+        String barcode(int row, int i);
+
+        // null leaves the product's HSN code as it is.
+        String hsn(int row);
+    }
+
+    // Puts every row and assigns its barcodes under one write lock, so lookups see the
+    // catalog either before or after the whole batch. Returns the number of new SKUs.
+    // Only new SKUs take the row's stock: an existing one keeps its live count, since open
+    // carts hold units taken from it (given back if they are cancelled) and a lane with an
+    // inventory lease counts leased units there.
+    int putAll(Rows rows) {
+        long stamp = lock.writeLock();
+        try {
+            edits++;
+            int before = size;
+            int n = rows.count();
+            if (size + n > names.length) growSkus(size + n);
+            for (int r = 0; r < n; r++) {
+                int sku = nameIndex.get(rows.name(r));
+                if (sku >= 0) prices[sku] = rows.price(r);
+                else sku = putLocked(rows.name(r), rows.price(r), rows.stock(r));
+                if (rows.hsn(r) != null) setHsnLocked(sku, rows.hsn(r));
+                for (int i = 0, b = rows.barcodeCount(r); i < b; i++) assignLocked(rows.barcode(r, i), sku);
+            }
+            return size - before;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    private int putLocked(String name, long price, int qty) {
+        int sku = nameIndex.get(name);
+        if (sku < 0) {
+            sku = size;
+            if (sku == names.length) growSkus(sku * 2);
+            if ((sku >>> PAGE_BITS) == stockPages.length) {
+                AtomicIntegerArray[] pages = Arrays.copyOf(stockPages, stockPages.length + 1);
+                pages[pages.length - 1] = new AtomicIntegerArray(PAGE_SIZE);
+                stockPages = pages;
+            }
+            names[sku] = name;
+            firstBarcode[sku] = -1;
+            taxBps[sku] = -1;
+            reorderLevel[sku] = -1;
+            nameIndex.put(name, sku);
+            size = sku + 1;
+        }
+        prices[sku] = price;
+        setStock(sku, qty);
+        return sku;
+    }
+
+    private int assignLocked(String barcode, int sku) {
+        int entry = barcodeIndex.get(barcode);
+        int previous = -1;
+        if (entry >= 0) {
+            previous = barcodeSku[entry];
+            if (previous == sku) return previous;
+            unlink(entry);
+        } else {
+            if (barcodeCount == barcodes.length) growBarcodes(barcodeCount * 2);
+            entry = barcodeCount++;
+            barcodes[entry] = barcode;
+            barcodeIndex.put(barcode, entry);
+        }
+        barcodeSku[entry] = sku;
+        nextBarcode[entry] = firstBarcode[sku];
+        firstBarcode[sku] = entry;
+        return previous;
+    }
+
+    // All barcodes of a product, most recently assigned first.
+    List<String> barcodesOf(int sku) {
+        long stamp = lock.readLock();
+        try {
+            List<String> out = new ArrayList<>(2);
+            for (int e = firstBarcode[sku]; e >= 0; e = nextBarcode[e]) out.add(barcodes[e]);
+            return out;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    // Primary (most recently assigned) barcode, or null.
+    String barcodeOf(int sku) {
+        long stamp = lock.readLock();
+        try {
+            int e = firstBarcode[sku];
+            return e < 0 ? null : barcodes[e];
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private void unlink(int entry) {
+        int sku = barcodeSku[entry];
+        if (firstBarcode[sku] == entry) {
+            firstBarcode[sku] = nextBarcode[entry];
+            return;
+        }
+        for (int e = firstBarcode[sku]; e >= 0; e = nextBarcode[e]) {
+            if (nextBarcode[e] == entry) {
+                nextBarcode[e] = nextBarcode[entry];
+                return;
+            }
+        }
+    }
+
+    private void growSkus(int cap) {
+        names = Arrays.copyOf(names, cap);
+        prices = Arrays.copyOf(prices, cap);
+        firstBarcode = Arrays.copyOf(firstBarcode, cap);
+        hsn = Arrays.copyOf(hsn, cap);
+        taxBps = Arrays.copyOf(taxBps, cap);
+        reorderLevel = Arrays.copyOf(reorderLevel, cap);
+    }
+
+    private void growBarcodes(int cap) {
+        barcodes = Arrays.copyOf(barcodes, cap);
+        barcodeSku = Arrays.copyOf(barcodeSku, cap);
+        nextBarcode = Arrays.copyOf(nextBarcode, cap);
+    }
+}
@@ -0,0 +1,518 @@
+package supermarket;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+// ---------------------------
+// Bulk catalog CSV
+// ---------------------------
+// One product per line: item,price,stock[,barcode...]. The item may be quoted (commas and
+// doubled quotes inside), prices are rupees, barcodes are assigned in column order so the
+// last one becomes the primary. A first line starting with "item" is a header; if its
+// fourth column is "hsn", every line has the HSN code there (empty: none) before the
+// barcodes. Files without it leave HSN codes unchanged. The stock column only applies to
+// new items; items already in the catalog keep their stock (see Catalog.putAll).
+//
+// read() streams the file through a fixed window; each window is cut at line breaks into
+// chunks parsed in parallel on the fork-join pool, then merged in order into the staged
+// rows, checking for items and barcodes repeated across the file. Nothing touches the
+// catalog until the whole file is valid; Import.applyTo() then puts it in one write lock.
+// Quoted fields cannot span lines (chunks are cut at every line break).
+final class CatalogCsv {
+
+    static final int WINDOW_BYTES = 8 << 20;
+    static final int CHUNK_BYTES = 256 << 10;
+    static final int MAX_ERRORS = 1000;
+    static final String HEADER = "item,price,stock,hsn,barcode";
+
+    private CatalogCsv() {
+    }
+
+    static Import read(Path path) throws IOException {
+        return read(path, ForkJoinPool.commonPool());
+    }
+
+    static Import read(Path path, ForkJoinPool pool) throws IOException {
+        Import result = new Import();
+        ByteBuffer window = ByteBuffer.allocate(WINDOW_BYTES);
+        try (FileChannel in = FileChannel.open(path, StandardOpenOption.READ)) {
+            boolean eof = false;
+            while (!eof) {
+                eof = in.read(window) < 0;
+                if (!eof && window.hasRemaining()) continue;
+                byte[] buf = window.array();
+                int filled = window.position();
+                int end = filled;
+                if (!eof) {
+                    while (end > 0 && buf[end - 1] != '\n') end--;
+                    if (end == 0) throw new IOException("Line " + (result.lines + 1) + " is longer than " + (WINDOW_BYTES >> 20) + " MiB");
+                }
+                parseWindow(buf, end, result, pool);
+                window.position(end).limit(filled);
+                window.compact();
+            }
+        }
+        return result;
+    }
+
+    private static void parseWindow(byte[] buf, int end, Import result, ForkJoinPool pool) {
+        List<Chunk> chunks = new ArrayList<>();
+        int from = 0;
+        if (result.lines == 0) {
+            from = bom(buf, end);
+            int body = skipHeader(buf, from, end);
+            if (body > from) {
+                result.lines = 1;
+                result.hsnColumn = hsnColumn(new String(buf, from, body - from, StandardCharsets.UTF_8));
+            }
+            from = body;
+        }
+        while (from < end) {
+            int to = Math.min(end, from + CHUNK_BYTES);
+            while (to < end && buf[to - 1] != '\n') to++;
+            chunks.add(new Chunk(buf, from, to, result.hsnColumn));
+            from = to;
+        }
+        if (chunks.isEmpty()) return;
+        pool.invoke(new RecursiveAction() {
+            @Override
+            protected void compute() {
+                ForkJoinTask.invokeAll(chunks);
+            }
+        });
+        for (Chunk c : chunks) result.merge(c);
+    }
+
+    private static int bom(byte[] buf, int end) {
+        return end >= 3 && (buf[0] & 0xFF) == 0xEF && (buf[1] & 0xFF) == 0xBB && (buf[2] & 0xFF) == 0xBF ? 3 : 0;
+    }
+
+    // Index of the first data line: past the header if the line starts with the word "item".
+    private static int skipHeader(byte[] buf, int from, int end) {
+        int i = from;
+        while (i < end && (buf[i] == ' ' || buf[i] == '"')) i++;
+        boolean header = end - i >= 4 && (buf[i] | 0x20) == 'i' && (buf[i + 1] | 0x20) == 't'
+                && (buf[i + 2] | 0x20) == 'e' && (buf[i + 3] | 0x20) == 'm'
+                && (end - i == 4 || !Character.isLetterOrDigit(buf[i + 4]));
+        if (!header) return from;
+        while (i < end && buf[i] != '\n') i++;
+        return Math.min(end, i + 1);
+    }
+
+    private static boolean hsnColumn(String header) {
+        String[] f = header.split(",");
+        return f.length > 3 && f[3].trim().replace("\"", "").equalsIgnoreCase("hsn");
+    }
+
+    // Writes the whole catalog, one SKU at a time, through a temp file renamed into place.
+    // Returns the number of rows written.
+    static int write(Catalog catalog, Path path) throws IOException {
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        int n = catalog.size();
+        StringBuilder line = new StringBuilder(128);
+        try (BufferedWriter out = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            out.write(HEADER);
+            out.write('\n');
+            for (int sku = 0; sku < n; sku++) {
+                line.setLength(0);
+                appendField(line, catalog.name(sku));
+                Money.appendTo(line.append(','), catalog.price(sku));
+                line.append(',').append(catalog.stock(sku));
+                String hsn = catalog.hsn(sku);
+                line.append(',').append(hsn == null ? "" : hsn);
+                List<String> codes = catalog.barcodesOf(sku);
+                for (int i = codes.size() - 1; i >= 0; i--) appendField(line.append(','), codes.get(i));
+                out.append(line).write('\n');
+            }
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return n;
+    }
+
+    static void appendField(StringBuilder sb, String value) {
+        String v = value.replace('\n', ' ').replace('\r', ' ');
+        if (v.indexOf(',') < 0 && v.indexOf('"') < 0 && v.trim().length() == v.length()) {
+            sb.append(v);
+            return;
+        }
+        sb.append('"').append(v.replace("\"", "\"\"")).append('"');
+    }
+
+    // ---------------------------
+    // Staged rows
+    // ---------------------------
+    // Every valid row of the file in parallel arrays (barcodes flattened, row r owning
+    // barcodes[barcodeStart[r] .. barcodeStart[r + 1])), plus the first MAX_ERRORS errors.
+    static final class Import implements Catalog.Rows {
+        private int rows = 0;
+        private String[] names = new String[1024];
+        private long[] prices = new long[1024];
+        private int[] stock = new int[1024];
+        private int[] lineOf = new int[1024];
+        private int[] barcodeStart = new int[1025];
+        private String[] barcodes = new String[1024];
+        private String[] hsns = new String[1024];
+        private int barcodeTotal = 0;
+        private boolean hsnColumn = false;
+
+        private final StringIntMap nameRows = new StringIntMap(1024);
+        private final StringIntMap barcodeRows = new StringIntMap(1024);
+        private final List<String> errors = new ArrayList<>();
+        private int errorCount = 0;
+        private int lines = 0;
+        private int added = 0;
+
+        boolean ok() {
+            return errorCount == 0;
+        }
+
+        int errorCount() {
+            return errorCount;
+        }
+
+        // "line N: problem", in file order, at most MAX_ERRORS of them.
+        List<String> errors() {
+            return errors;
+        }
+
+        int lines() {
+            return lines;
+        }
+
+        // SKUs created by applyTo.
+        int added() {
+            return added;
+        }
+
+        // Applies every row atomically; refuses if any line failed validation.
+        int applyTo(Catalog catalog) {
+            if (!ok()) throw new IllegalStateException(errorCount + " invalid lines; nothing applied");
+            added = catalog.putAll(this);
+            return added;
+        }
+
+        @Override
+        public int count() {
+            return rows;
+        }
+
+        @Override
+        public String name(int row) {
+            return names[row];
+        }
+
+        @Override
+        public long price(int row) {
+            return prices[row];
+        }
+
+        @Override
+        public int stock(int row) {
+            return stock[row];
+        }
+
+        @Override
+        public String hsn(int row) {
+            return hsns[row];
+        }
+
+        @Override
+        public int barcodeCount(int row) {
+            return barcodeStart[row + 1] - barcodeStart[row];
+        }
+
+        @Override
+        public String barcode(int row, int i) {
+            return barcodes[barcodeStart[row] + i];
+        }
+
+        private void error(int line, String message) {
+            errorCount++;
+            if (errors.size() < MAX_ERRORS) errors.add("line " + line + ": " + message);
+        }
+
+        private void merge(Chunk c) {
+            int base = lines;
+            int e = 0;
+            for (int r = 0; r < c.rows; r++) {
+                // chunk errors are in line order: report those that come before this row
+                while (e < c.errorCount && c.errorLines[e] < c.lineOf[r]) {
+                    error(base + c.errorLines[e], c.errorMessages.get(e));
+                    e++;
+                }
+                int line = base + c.lineOf[r];
+                String name = c.names[r];
+                int earlier = nameRows.get(name);
+                if (earlier >= 0) {
+                    error(line, "duplicate item '" + name + "' (also on line " + lineOf[earlier] + ")");
+                    continue;
+                }
+                String conflict = null;
+                for (int b = c.barcodeStart[r]; b < c.barcodeStart[r + 1]; b++) {
+                    int owner = barcodeRows.get(c.barcodes[b]);
+                    if (owner >= 0) {
+                        conflict = "barcode " + c.barcodes[b] + " already used by '" + names[owner] + "' on line " + lineOf[owner];
+                        break;
+                    }
+                }
+                if (conflict != null) {
+                    error(line, conflict);
+                    continue;
+                }
+                add(line, name, c.prices[r], c.stock[r], c.hsns[r], c.barcodes, c.barcodeStart[r], c.barcodeStart[r + 1]);
+            }
+            for (; e < c.errorCount; e++) error(base + c.errorLines[e], c.errorMessages.get(e));
+            lines += c.lines;
+        }
+
+        private void add(int line, String name, long price, int qty, String hsn, String[] codes, int from, int to) {
+            if (rows == names.length) {
+                int cap = rows * 2;
+                names = Arrays.copyOf(names, cap);
+                prices = Arrays.copyOf(prices, cap);
+                stock = Arrays.copyOf(stock, cap);
+                lineOf = Arrays.copyOf(lineOf, cap);
+                hsns = Arrays.copyOf(hsns, cap);
+                barcodeStart = Arrays.copyOf(barcodeStart, cap + 1);
+            }
+            names[rows] = name;
+            hsns[rows] = hsn;
+            prices[rows] = price;
+            stock[rows] = qty;
+            lineOf[rows] = line;
+            nameRows.put(name, rows);
+            for (int b = from; b < to; b++) {
+                if (barcodeTotal == barcodes.length) barcodes = Arrays.copyOf(barcodes, barcodeTotal * 2);
+                barcodes[barcodeTotal++] = codes[b];
+                barcodeRows.put(codes[b], rows);
+            }
+            barcodeStart[++rows] = barcodeTotal;
+        }
+    }
+
+    // ---------------------------
+    // Chunk parser
+    // ---------------------------
+    // Parses buf[from, to) (whole lines) into its own arrays; line numbers are relative to
+    // the chunk (first line = 1) until Import.merge rebases them.
+    private static final class Chunk extends RecursiveAction {
+        private static final int MAX_FIELDS = 64;
+
+        private final byte[] buf;
+        private final int from, to;
+        private final boolean hsnColumn;
+
+        int rows = 0, lines = 0;
+        String[] names = new String[256];
+        long[] prices = new long[256];
+        int[] stock = new int[256];
+        int[] lineOf = new int[256];
+        String[] hsns = new String[256];
+        int[] barcodeStart = new int[257];
+        String[] barcodes = new String[256];
+        int barcodeTotal = 0;
+        int errorCount = 0;
+        int[] errorLines = new int[16];
+        final List<String> errorMessages = new ArrayList<>();
+
+        private final int[] starts = new int[MAX_FIELDS];
+        private final int[] ends = new int[MAX_FIELDS];
+        private final boolean[] quoted = new boolean[MAX_FIELDS];
+        private byte[] scratch = new byte[256];
+
+        Chunk(byte[] buf, int from, int to, boolean hsnColumn) {
+            this.buf = buf;
+            this.from = from;
+            this.to = to;
+            this.hsnColumn = hsnColumn;
+        }
+
+        @Override
+        protected void compute() {
+            int i = from;
+            while (i < to) {
+                int eol = i;
+                while (eol < to && buf[eol] != '\n') eol++;
+                int end = eol > i && buf[eol - 1] == '\r' ? eol - 1 : eol;
+                lines++;
+                if (!blank(i, end)) parseLine(i, end);
+                i = eol + 1;
+            }
+        }
+
+        private boolean blank(int i, int end) {
+            for (; i < end; i++) if (buf[i] != ' ' && buf[i] != '\t') return false;
+            return true;
+        }
+
+        private void parseLine(int i, int end) {
+            int n = 0;
+            while (true) {
+                while (i < end && (buf[i] == ' ' || buf[i] == '\t')) i++;
+                if (n == MAX_FIELDS) {
+                    error("more than " + MAX_FIELDS + " fields");
+                    return;
+                }
+                if (i < end && buf[i] == '"') {
+                    int s = ++i;
+                    while (true) {
+                        while (i < end && buf[i] != '"') i++;
+                        if (i >= end) {
+                            error("unterminated quote");
+                            return;
+                        }
+                        if (i + 1 < end && buf[i + 1] == '"') {
+                            i += 2;
+                            continue;
+                        }
+                        break;
+                    }
+                    starts[n] = s;
+                    ends[n] = i++;
+                    quoted[n] = true;
+                    while (i < end && (buf[i] == ' ' || buf[i] == '\t')) i++;
+                    if (i < end && buf[i] != ',') {
+                        error("text after closing quote");
+                        return;
+                    }
+                } else {
+                    int s = i;
+                    while (i < end && buf[i] != ',') i++;
+                    int e = i;
+                    while (e > s && (buf[e - 1] == ' ' || buf[e - 1] == '\t')) e--;
+                    starts[n] = s;
+                    ends[n] = e;
+                    quoted[n] = false;
+                }
+                n++;
+                if (i >= end) break;
+                i++;    // comma
+            }
+            if (n < 3) {
+                error("expected item,price,stock[,barcode...]");
+                return;
+            }
+
+            String name = text(0);
+            if (name.isEmpty()) {
+                error("item name is empty");
+                return;
+            }
+            long price = price(starts[1], ends[1]);
+            if (price < 0) {
+                error("invalid price '" + text(1) + "'");
+                return;
+            }
+            int qty = quantity(starts[2], ends[2]);
+            if (qty < 0) {
+                error("invalid stock '" + text(2) + "'");
+                return;
+            }
+
+            String hsn = null;
+            if (hsnColumn) {
+                hsn = n > 3 ? text(3) : "";
+                if (!hsn.isEmpty() && !TaxRates.validHsn(hsn)) {
+                    error("invalid HSN code '" + hsn + "'");
+                    return;
+                }
+            }
+
+            if (rows == names.length) grow();
+            int b0 = barcodeTotal;
+            for (int f = hsnColumn ? 4 : 3; f < n; f++) {
+                if (starts[f] == ends[f]) continue;
+                String code = text(f);
+                for (int b = b0; b < barcodeTotal; b++) {
+                    if (barcodes[b].equals(code)) {
+                        code = null;
+                        break;
+                    }
+                }
+                if (code == null) continue;
+                if (barcodeTotal == barcodes.length) barcodes = Arrays.copyOf(barcodes, barcodeTotal * 2);
+                barcodes[barcodeTotal++] = code;
+            }
+            names[rows] = name;
+            prices[rows] = price;
+            stock[rows] = qty;
+            hsns[rows] = hsn;
+            lineOf[rows] = lines;
+            barcodeStart[++rows] = barcodeTotal;
+        }
+
+        // Rupees to paise; -1 if not a non-negative amount.
+        private long price(int s, int e) {
+            long whole = 0;
+            int i = s;
+            while (i < e && i - s < 15 && buf[i] >= '0' && buf[i] <= '9') whole = whole * 10 + (buf[i++] - '0');
+            if (i == e && i > s) return whole * 100;
+            if (i > s && buf[i] == '.' && e - i <= 3) {
+                int cents = 0, digits = 0;
+                for (int j = i + 1; j < e; j++, digits++) {
+                    if (buf[j] < '0' || buf[j] > '9') return slowPrice(s, e);
+                    cents = cents * 10 + (buf[j] - '0');
+                }
+                return whole * 100 + (digits == 1 ? cents * 10 : cents);
+            }
+            return slowPrice(s, e);
+        }
+
+        private long slowPrice(int s, int e) {
+            try {
+                long paise = Money.parse(new String(buf, s, e - s, StandardCharsets.UTF_8));
+                return paise < 0 ? -1 : paise;
+            } catch (NumberFormatException ex) {
+                return -1;
+            }
+        }
+
+        private int quantity(int s, int e) {
+            if (s == e || e - s > 10) return -1;
+            long v = 0;
+            for (int i = s; i < e; i++) {
+                if (buf[i] < '0' || buf[i] > '9') return -1;
+                v = v * 10 + (buf[i] - '0');
+            }
+            return v > Integer.MAX_VALUE ? -1 : (int) v;
+        }
+
+        private String text(int f) {
+            int s = starts[f], e = ends[f];
+            if (!quoted[f]) return new String(buf, s, e - s, StandardCharsets.UTF_8);
+            if (scratch.length < e - s) scratch = new byte[e - s];
+            int n = 0;
+            for (int i = s; i < e; i++) {
+                scratch[n++] = buf[i];
+                if (buf[i] == '"') i++;   // "" -> "
+            }
+            return new String(scratch, 0, n, StandardCharsets.UTF_8).trim();
+        }
+
+        private void error(String message) {
+            if (errorCount == errorLines.length) errorLines = Arrays.copyOf(errorLines, errorCount * 2);
+            errorLines[errorCount++] = lines;
+            errorMessages.add(message);
+        }
+
+        private void grow() {
+            int cap = rows * 2;
+            names = Arrays.copyOf(names, cap);
+            prices = Arrays.copyOf(prices, cap);
+            stock = Arrays.copyOf(stock, cap);
+            lineOf = Arrays.copyOf(lineOf, cap);
+            hsns = Arrays.copyOf(hsns, cap);
+            barcodeStart = Arrays.copyOf(barcodeStart, cap + 1);
+        }
+    }
+}
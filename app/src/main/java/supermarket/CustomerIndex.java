@@ -0,0 +1,246 @@
+package supermarket;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+// ---------------------------
+// Customer purchase history
+// ---------------------------
+// Maps a customer key (phone number or loyalty id, see key()) to where that customer's
+// bills are in the archive and their running totals, so a lookup at the lane is a hash
+// probe however many bills the customer has. BillArchive adds each keyed bill as it is
+// appended. The index is kept in memory and logged next to the day segments
+// (bills/customers.log, BillJournal framing with magic "CUSTIDX1"):
+//
+//   'B' [int epochDay][int ordinal][long millis][long total][utf key]   one keyed bill
+//   'W' [int epochDay][int ordinal]     every bill before this position has been indexed
+//
+// A bill is at (day, ordinal) in BillArchive. The log is read once at startup; bills the
+// log missed (a crash before its group commit) are found again from the last position
+// it recorded, see BillArchive.open.
+final class CustomerIndex implements Closeable {
+
+    static final byte[] MAGIC = {'C', 'U', 'S', 'T', 'I', 'D', 'X', '1'};
+
+    private static final byte BILL = 'B';
+    private static final byte WATERMARK = 'W';
+
+    // A customer's totals at the time of the lookup.
+    static final class Summary {
+        final String key;
+        final int bills;
+        final long spend;           // paise, net of discounts and including GST
+        final long firstMillis;
+        final long lastMillis;
+
+        Summary(String key, int bills, long spend, long firstMillis, long lastMillis) {
+            this.key = key;
+            this.bills = bills;
+            this.spend = spend;
+            this.firstMillis = firstMillis;
+            this.lastMillis = lastMillis;
+        }
+    }
+
+    private static final class Customer {
+        long[] bills = new long[4];     // position(day, ordinal), oldest first
+        int count;
+        long spend;
+        long firstMillis;
+        long lastMillis;
+    }
+
+    private final Path path;
+    private final Map<String, Customer> customers = new HashMap<>();
+    private BillJournal log;
+    private long indexedTo = -1;    // position of the next bill to index; -1 for a new index
+
+    private CustomerIndex(Path path) {
+        this.path = path;
+    }
+
+    // Loads the log at path, creating an empty index if there is none.
+    static CustomerIndex open(Path path) throws IOException {
+        CustomerIndex index = new CustomerIndex(path);
+        IOException[] failure = {null};
+        index.log = openLog(path, (offset, buf, len) -> {
+            if (failure[0] != null) return;
+            try {
+                index.replay(ByteBuffer.wrap(buf, 0, len));
+            } catch (RuntimeException | IOException e) {
+                failure[0] = new IOException(path + " at offset " + offset + ": " + e.getMessage());
+            }
+        });
+        if (failure[0] != null) {
+            index.log.close();
+            throw failure[0];
+        }
+        return index;
+    }
+
+    // Normalises what the cashier typed: a phone number keeps its last ten digits, so
+    // "+91 98450 12345" and "9845012345" are the same customer; a loyalty id is
+    // upper-cased without spaces or dashes. "" when there is nothing to key on.
+    static String key(String typed) {
+        if (typed == null) return "";
+        StringBuilder sb = new StringBuilder(typed.length());
+        boolean digits = true;
+        for (int i = 0; i < typed.length(); i++) {
+            char c = typed.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                sb.append(Character.toUpperCase(c));
+                if (c < '0' || c > '9') digits = false;
+            } else if (c != ' ' && c != '-' && c != '+' && c != '(' && c != ')') {
+                digits = false;
+            }
+        }
+        if (digits && sb.length() > 10) return sb.substring(sb.length() - 10);
+        return sb.toString();
+    }
+
+    static long position(LocalDate day, int ordinal) {
+        return day.toEpochDay() << 32 | (ordinal & 0xFFFFFFFFL);
+    }
+
+    static LocalDate dayOf(long position) {
+        return LocalDate.ofEpochDay(position >> 32);
+    }
+
+    static int ordinalOf(long position) {
+        return (int) position;
+    }
+
+    // The position after the last bill indexed, or -1 if the index has just been created.
+    synchronized long indexedTo() {
+        return indexedTo;
+    }
+
+    synchronized int customers() {
+        return customers.size();
+    }
+
+    // Records a bill appended at (day, ordinal); bills without a customer key only move
+    // the position on.
+    synchronized void add(Bill bill, LocalDate day, int ordinal) throws IOException {
+        add(bill.customerId, day, ordinal, bill.time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli(),
+                bill.total);
+    }
+
+    synchronized void add(String key, LocalDate day, int ordinal, long millis, long total) throws IOException {
+        long position = position(day, ordinal);
+        if (position < indexedTo) return;           // already indexed (catch-up after a crash)
+        indexedTo = position + 1;
+        if (key.isEmpty()) return;
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(32 + key.length());
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(BILL);
+            out.writeInt((int) day.toEpochDay());
+            out.writeInt(ordinal);
+            out.writeLong(millis);
+            out.writeLong(total);
+            out.writeUTF(key);
+        }
+        log.append(bytes.toByteArray());
+        apply(key, position, millis, total);
+    }
+
+    // Notes that every bill before (day, ordinal) has been indexed, so the next start does
+    // not look for missed bills before it.
+    synchronized void mark(LocalDate day, int ordinal) throws IOException {
+        long position = position(day, ordinal);
+        if (position < indexedTo) return;
+        indexedTo = position;
+        ByteBuffer record = ByteBuffer.allocate(9);
+        record.put(WATERMARK).putInt((int) day.toEpochDay()).putInt(ordinal);
+        log.append(record.array());
+    }
+
+    // The customer's totals, or null for a customer with no bills.
+    synchronized Summary lookup(String key) {
+        Customer c = customers.get(key);
+        return c == null ? null : new Summary(key, c.count, c.spend, c.firstMillis, c.lastMillis);
+    }
+
+    // Positions of the customer's most recent bills (at most max), newest first.
+    synchronized long[] recentBills(String key, int max) {
+        Customer c = customers.get(key);
+        if (c == null) return new long[0];
+        long[] out = new long[Math.min(max, c.count)];
+        for (int i = 0; i < out.length; i++) out[i] = c.bills[c.count - 1 - i];
+        return out;
+    }
+
+    void sync() throws IOException {
+        log.sync();
+    }
+
+    // Drops everything, for a rebuild from the bills themselves.
+    synchronized void clear() throws IOException {
+        log.close();
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        Files.deleteIfExists(tmp);
+        openLog(tmp, null).close();
+        Files.move(tmp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        log = openLog(path, null);
+        customers.clear();
+        indexedTo = -1;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        log.close();
+    }
+
+    // ---------------------------
+    // Helpers
+    // ---------------------------
+    private void replay(ByteBuffer in) throws IOException {
+        byte kind = in.get();
+        LocalDate day = LocalDate.ofEpochDay(in.getInt());
+        int ordinal = in.getInt();
+        long position = position(day, ordinal);
+        if (kind == WATERMARK) {
+            indexedTo = Math.max(indexedTo, position);
+        } else if (kind == BILL) {
+            long millis = in.getLong();
+            long total = in.getLong();
+            String key = BillCodec.readUTF(in);
+            if (position < indexedTo) return;
+            indexedTo = position + 1;
+            apply(key, position, millis, total);
+        } else {
+            throw new IOException("unknown record type " + kind);
+        }
+    }
+
+    private void apply(String key, long position, long millis, long total) {
+        Customer c = customers.computeIfAbsent(key, k -> new Customer());
+        if (c.count == c.bills.length) c.bills = Arrays.copyOf(c.bills, c.count * 2);
+        c.bills[c.count++] = position;
+        c.spend += total;
+        if (c.firstMillis == 0) c.firstMillis = millis;
+        c.lastMillis = millis;
+    }
+
+    private static BillJournal openLog(Path path, BillJournal.RecordVisitor visitor) throws IOException {
+        BillJournal.SyncPolicy policy;
+        try {
+            policy = BillJournal.SyncPolicy.valueOf(System.getProperty("billing.journal.sync", "group").trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            policy = BillJournal.SyncPolicy.GROUP;
+        }
+        return new BillJournal(path, MAGIC, policy, Integer.getInteger("billing.journal.groupSize", 32),
+                Long.getLong("billing.journal.groupMillis", 200L), visitor);
+    }
+}
@@ -0,0 +1,96 @@
+package supermarket;
+
+import javax.swing.SwingUtilities;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// ---------------------------
+// EDT stall detector
+// ---------------------------
+// Posts a heartbeat to the EDT every tick. When the EDT has not run one for longer than
+// the threshold it is stalled: the watchdog samples the EDT's stack each tick until the
+// EDT catches up, then records the stall's length and the most frequent frame among
+// the samples (where the time went) in Metrics.
+class EdtWatchdog implements Runnable {
+
+    private static final int MAX_SAMPLES = 50;
+
+    private final long tickMillis;
+    private final long thresholdNanos;
+    private volatile long lastBeat = System.nanoTime();
+    private volatile Thread edt;
+    private volatile boolean beatPending = false;
+    private volatile boolean running = true;
+
+    EdtWatchdog(long tickMillis, long thresholdMillis) {
+        this.tickMillis = tickMillis;
+        this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+    }
+
+    void start() {
+        Thread t = new Thread(this, "edt-watchdog");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    void stop() {
+        running = false;
+    }
+
+    @Override
+    public void run() {
+        StackTraceElement[][] samples = new StackTraceElement[MAX_SAMPLES][];
+        int sampled = 0;
+        long stallStart = 0;
+        while (running) {
+            try {
+                Thread.sleep(tickMillis);
+            } catch (InterruptedException e) {
+                return;
+            }
+            long beat = lastBeat;
+            boolean stalled = System.nanoTime() - beat > thresholdNanos;
+            if (stalled && edt != null) {
+                if (stallStart == 0) {
+                    stallStart = beat;
+                    sampled = 0;
+                }
+                if (sampled < MAX_SAMPLES) samples[sampled++] = edt.getStackTrace();
+            } else if (!stalled && stallStart != 0) {
+                Metrics.edtStall(beat - stallStart, hotFrames(samples, sampled));
+                stallStart = 0;
+            }
+            // one heartbeat in flight at a time, so a stalled EDT does not pile them up
+            if (!beatPending) {
+                beatPending = true;
+                SwingUtilities.invokeLater(() -> {
+                    edt = Thread.currentThread();
+                    lastBeat = System.nanoTime();
+                    beatPending = false;
+                });
+            }
+        }
+    }
+
+    // The innermost application frame seen most often, plus the first sample's top frames.
+    private static String hotFrames(StackTraceElement[][] samples, int n) {
+        if (n == 0) return "";
+        Map<String, Integer> hits = new HashMap<>();
+        for (int i = 0; i < n; i++) {
+            for (StackTraceElement f : samples[i]) {
+                if (f.getClassName().startsWith("supermarket.")) {
+                    hits.merge(f.toString(), 1, Integer::sum);
+                    break;
+                }
+            }
+        }
+        StringBuilder sb = new StringBuilder();
+        hits.entrySet().stream().max(Map.Entry.comparingByValue())
+                .ifPresent(e -> sb.append("hot: ").append(e.getKey()).append(" (")
+                        .append(e.getValue()).append('/').append(n).append(" samples)"));
+        StackTraceElement[] first = samples[0];
+        for (int i = 0; i < Math.min(first.length, 8); i++) sb.append(sb.length() == 0 ? "" : " <- ").append(first[i]);
+        return sb.toString();
+    }
+}
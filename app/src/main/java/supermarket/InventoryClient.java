@@ -0,0 +1,318 @@
+package supermarket;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// ---------------------------
+// Lane side of the inventory server
+// ---------------------------
+// With a client attached the lane's catalog stock is its lease: units the server granted
+// to this lane and not yet sold. Scans take from it locally through the engine as usual;
+// only a shortfall leases more synchronously (BillingEngine.StockSource), and a SKU
+// running low is topped up in the background. Sales are reported after checkout, and
+// leases left idle are returned so slow movers are not stranded on one lane.
+//
+// If the server goes away the lane keeps selling from what it holds, queues its sales
+// and reconnects in the background; on reconnect it re-registers its leases (the server
+// may grant fewer if it reclaimed them meanwhile) and sends the queued sales.
+// Properties:
+//   billing.inventory.lease       20     units leased per top-up
+//   billing.inventory.idleSeconds 120    unused leases older than this are returned
+class InventoryClient implements BillingEngine.StockSource, Closeable {
+
+    private static final int TIMEOUT_MILLIS = 2000;
+    private static final long RECONNECT_MILLIS = 1000;
+
+    private final String lane;
+    private final Catalog catalog;
+    private final String host;
+    private final int port;
+    private final int batch;
+    private final int lowWater;
+    private final long idleMillis;
+    private final ScheduledExecutorService background = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "inventory-client");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // guarded by this
+    private Socket socket;
+    private DataInputStream in;
+    private DataOutputStream out;
+    private int[] leased = new int[1024];         // units held per sku: on the shelf here or in carts
+    private int[] unsentSold = new int[1024];
+    private long[] lastTaken = new long[1024];
+    private final BitSet soldDirty = new BitSet();
+    private final BitSet held = new BitSet();
+    private final BitSet refilling = new BitSet();
+    private boolean reconnecting = false;
+    private volatile boolean online = false;
+    private volatile boolean closed = false;
+
+    private InventoryClient(String lane, Catalog catalog, String host, int port) {
+        this.lane = lane;
+        this.catalog = catalog;
+        this.host = host;
+        this.port = port;
+        this.batch = Math.max(1, Integer.getInteger("billing.inventory.lease", 20));
+        this.lowWater = Math.max(1, batch / 4);
+        this.idleMillis = TimeUnit.SECONDS.toMillis(Long.getLong("billing.inventory.idleSeconds", 120L));
+    }
+
+    // Attaches the lane's catalog to the server: local stock drops to zero and is leased
+    // from then on, so the catalog must not be persisted as the lane's stock any more.
+    // Fails if the server cannot be reached or serves another catalog.
+    static InventoryClient connect(String lane, Catalog catalog, String host, int port) throws IOException {
+        InventoryClient client = new InventoryClient(lane, catalog, host, port);
+        synchronized (client) {
+            client.open();
+            for (int sku = 0, n = catalog.size(); sku < n; sku++) catalog.setStock(sku, 0);
+        }
+        long sweep = Math.max(1000, client.idleMillis / 4);
+        client.background.scheduleWithFixedDelay(client::returnIdle, sweep, sweep, TimeUnit.MILLISECONDS);
+        return client;
+    }
+
+    // "host:port" or "host" (default port).
+    static InventoryClient connect(String lane, Catalog catalog, String address) throws IOException {
+        int colon = address.lastIndexOf(':');
+        if (colon < 0) return connect(lane, catalog, address, InventoryServer.DEFAULT_PORT);
+        return connect(lane, catalog, address.substring(0, colon), Integer.parseInt(address.substring(colon + 1)));
+    }
+
+    boolean isOnline() {
+        return online;
+    }
+
+    // ---------------------------
+    // BillingEngine.StockSource
+    // ---------------------------
+    @Override
+    public int topUp(int sku, int needed) {
+        return lease(sku, Math.max(needed, batch));
+    }
+
+    @Override
+    public void taken(int sku, int remaining) {
+        synchronized (this) {
+            grow(sku);
+            lastTaken[sku] = System.currentTimeMillis();
+            if (remaining >= lowWater || !online || refilling.get(sku)) return;
+            refilling.set(sku);
+        }
+        background.execute(() -> {
+            try {
+                lease(sku, batch - catalog.stock(sku));
+            } finally {
+                synchronized (this) {
+                    refilling.clear(sku);
+                }
+            }
+        });
+    }
+
+    // Reports a checked-out bill's units as sold; sent in the background.
+    void sold(Bill bill) {
+        synchronized (this) {
+            for (CartLine line : bill.lines) {
+                grow(line.sku);
+                leased[line.sku] -= line.qty;
+                unsentSold[line.sku] += line.qty;
+                soldDirty.set(line.sku);
+            }
+        }
+        background.execute(this::sendSold);
+    }
+
+    // Sends queued sales and returns every unit not in a cart.
+    @Override
+    public void close() {
+        closed = true;
+        background.shutdown();
+        try {
+            background.awaitTermination(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            if (!online) return;
+            sendSold();
+            for (int sku = held.nextSetBit(0); sku >= 0; sku = held.nextSetBit(sku + 1)) giveBack(sku, catalog.stock(sku));
+            disconnect();
+        }
+    }
+
+    // ---------------------------
+    // Requests (callers hold no lock; each request runs under this)
+    // ---------------------------
+    private synchronized int lease(int sku, int qty) {
+        if (!online || qty <= 0) return 0;
+        try {
+            out.writeByte(InventoryServer.LEASE);
+            out.writeInt(sku);
+            out.writeInt(qty);
+            out.flush();
+            expect(InventoryServer.GRANT);
+            int granted = in.readInt();
+            if (granted > 0) {
+                grow(sku);
+                leased[sku] += granted;
+                lastTaken[sku] = System.currentTimeMillis();
+                held.set(sku);
+                catalog.giveBack(sku, granted);
+            }
+            return granted;
+        } catch (IOException e) {
+            lost(e);
+            return 0;
+        }
+    }
+
+    private synchronized void sendSold() {
+        if (!online || soldDirty.isEmpty()) return;
+        try {
+            out.writeByte(InventoryServer.SOLD);
+            out.writeInt(soldDirty.cardinality());
+            for (int sku = soldDirty.nextSetBit(0); sku >= 0; sku = soldDirty.nextSetBit(sku + 1)) {
+                out.writeInt(sku);
+                out.writeInt(unsentSold[sku]);
+            }
+            out.flush();
+            expect(InventoryServer.OK);
+            for (int sku = soldDirty.nextSetBit(0); sku >= 0; sku = soldDirty.nextSetBit(sku + 1)) unsentSold[sku] = 0;
+            soldDirty.clear();
+        } catch (IOException e) {
+            lost(e);
+        }
+    }
+
+    // Takes up to qty idle units off the local shelf and hands them back to the server.
+    private synchronized void giveBack(int sku, int qty) {
+        int back = 0;
+        while (back < qty) {
+            int have = catalog.stock(sku);
+            int take = Math.min(qty - back, have);
+            if (take <= 0) break;
+            if (catalog.tryTake(sku, take) >= take) back += take;
+        }
+        if (back == 0) return;
+        try {
+            out.writeByte(InventoryServer.RETURN);
+            out.writeInt(sku);
+            out.writeInt(back);
+            out.flush();
+            expect(InventoryServer.OK);
+            leased[sku] -= back;
+            if (leased[sku] <= 0) held.clear(sku);
+        } catch (IOException e) {
+            catalog.giveBack(sku, back);    // still ours: the server will see it at HELLO
+            lost(e);
+        }
+    }
+
+    private synchronized void returnIdle() {
+        if (!online) return;
+        long cutoff = System.currentTimeMillis() - idleMillis;
+        for (int sku = held.nextSetBit(0); sku >= 0 && online; sku = held.nextSetBit(sku + 1)) {
+            if (lastTaken[sku] < cutoff) giveBack(sku, catalog.stock(sku));
+        }
+    }
+
+    // ---------------------------
+    // Connection
+    // ---------------------------
+    // Connects and re-registers held leases; the server may confirm fewer than we hold.
+    private void open() throws IOException {
+        Socket s = new Socket();
+        s.connect(new InetSocketAddress(host, port), TIMEOUT_MILLIS);
+        s.setSoTimeout(TIMEOUT_MILLIS);
+        s.setTcpNoDelay(true);
+        DataInputStream i = new DataInputStream(new BufferedInputStream(s.getInputStream()));
+        DataOutputStream o = new DataOutputStream(new BufferedOutputStream(s.getOutputStream()));
+        try {
+            o.writeByte(InventoryServer.HELLO);
+            o.writeUTF(lane);
+            o.writeInt(catalog.size());
+            o.writeInt(held.cardinality());
+            for (int sku = held.nextSetBit(0); sku >= 0; sku = held.nextSetBit(sku + 1)) {
+                o.writeInt(sku);
+                o.writeInt(Math.max(0, leased[sku]));
+            }
+            o.flush();
+            socket = s;
+            in = i;
+            out = o;
+            expect(InventoryServer.WELCOME);
+            int n = in.readInt();
+            for (int k = 0; k < n; k++) {
+                int sku = in.readInt();
+                int granted = in.readInt();
+                int lost = leased[sku] - granted;
+                if (lost > 0) {
+                    // reclaimed while we were away: drop what is still on our shelf; units
+                    // already in carts are sold anyway and reported as such
+                    int drop = Math.min(lost, catalog.stock(sku));
+                    if (drop > 0 && catalog.tryTake(sku, drop) >= drop) leased[sku] -= drop;
+                }
+            }
+        } catch (IOException e) {
+            s.close();
+            socket = null;
+            throw e;
+        }
+        online = true;
+    }
+
+    private void expect(byte reply) throws IOException {
+        byte got = in.readByte();
+        if (got == reply) return;
+        if (got == InventoryServer.ERROR) throw new IOException("Inventory server: " + in.readUTF());
+        throw new IOException("Inventory server: unexpected reply " + got);
+    }
+
+    private void lost(IOException e) {
+        if (!online) return;
+        System.err.println("Inventory server lost (" + e.getMessage() + "); selling from lease");
+        disconnect();
+        if (!closed && !reconnecting) {
+            reconnecting = true;
+            background.schedule(this::reconnect, RECONNECT_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private synchronized void reconnect() {
+        if (closed) return;
+        try {
+            open();
+            reconnecting = false;
+            System.err.println("Inventory server back; leases reconciled");
+            sendSold();
+        } catch (IOException e) {
+            if (!closed) background.schedule(this::reconnect, RECONNECT_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void disconnect() {
+        online = false;
+        try {
+            if (socket != null) socket.close();
+        } catch (IOException ignored) {
+        }
+        socket = null;
+    }
+
+    private void grow(int sku) {
+        if (sku < leased.length) return;
+        int cap = Math.max(sku + 1, leased.length * 2);
+        leased = Arrays.copyOf(leased, cap);
+        unsentSold = Arrays.copyOf(unsentSold, cap);
+        lastTaken = Arrays.copyOf(lastTaken, cap);
+    }
+}
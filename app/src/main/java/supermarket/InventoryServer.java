@@ -0,0 +1,367 @@
+package supermarket;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// ---------------------------
+// Store inventory server
+// ---------------------------
+// Holds the authoritative shelf stock for every checkout terminal. Lanes do not ask per
+// scan: they lease a batch of units per SKU and sell from the lease locally (see
+// InventoryClient), reporting sales and returning unused units as they go. The server
+// only ever grants what is on the shelf and not leased to another lane, so two lanes
+// cannot sell the same last unit.
+//
+// Per SKU: shelf = units not yet sold (what stock.snap/stock.delta persist), leased =
+// units granted to lanes and not yet sold or returned. A lane that stays disconnected
+// for longer than the lease TTL loses its outstanding leases; if it sold from them while
+// offline, its late sales are still applied on reconnect (and logged if they oversold).
+//
+// Wire format (DataInput/DataOutput, one reply per request):
+//   HELLO  'H' utf lane, int catalogSize, int n, n x (int sku, int held)
+//              -> 'W' int n, n x (int sku, int granted)   held leases re-registered
+//   LEASE  'L' int sku, int qty       -> 'G' int granted
+//   RETURN 'R' int sku, int qty       -> 'K'
+//   SOLD   'S' int n, n x (int sku, int qty) -> 'K'
+//   QUERY  'Q' int sku                -> 'A' int shelf, int available
+//   errors -> 'E' utf message
+//
+// Run on the back-office box from the directory holding its stock files:
+//   java -cp supermarket-billing.jar supermarket.InventoryServer [port] [leaseTtlSeconds]
+public class InventoryServer implements Closeable {
+
+    static final int DEFAULT_PORT = 7070;
+    static final byte HELLO = 'H', WELCOME = 'W', LEASE = 'L', GRANT = 'G', RETURN = 'R', SOLD = 'S',
+            QUERY = 'Q', AMOUNT = 'A', OK = 'K', ERROR = 'E';
+
+    private static final class Lane {
+        final String id;
+        int[] outstanding = new int[64];    // by sku
+        int connections = 0;
+        long disconnectedAt = 0;
+
+        Lane(String id) {
+            this.id = id;
+        }
+
+        void add(int sku, int qty) {
+            if (sku >= outstanding.length) outstanding = Arrays.copyOf(outstanding, Math.max(sku + 1, outstanding.length * 2));
+            outstanding[sku] += qty;
+        }
+
+        int get(int sku) {
+            return sku < outstanding.length ? outstanding[sku] : 0;
+        }
+    }
+
+    private final Catalog catalog;          // stock() is shelf stock
+    private final StockStore store;         // null: nothing persisted (tests)
+    private final long leaseTtlMillis;
+    private final ServerSocket server;
+    private final Map<String, Lane> lanes = new HashMap<>();
+    private final List<Socket> open = new ArrayList<>();
+    private int[] leased = new int[1024];   // by sku, guarded by this
+    private volatile boolean closed = false;
+
+    InventoryServer(Catalog catalog, StockStore store, int port, long leaseTtlMillis) throws IOException {
+        this.catalog = catalog;
+        this.store = store;
+        this.leaseTtlMillis = leaseTtlMillis;
+        this.server = new ServerSocket();
+        server.setReuseAddress(true);
+        server.bind(new InetSocketAddress(port));
+    }
+
+    int port() {
+        return server.getLocalPort();
+    }
+
+    void start() {
+        Thread accept = new Thread(this::acceptLoop, "inventory-accept");
+        accept.setDaemon(true);
+        accept.start();
+        Thread reaper = new Thread(this::reapLoop, "inventory-reaper");
+        reaper.setDaemon(true);
+        reaper.start();
+    }
+
+    synchronized int shelf(int sku) {
+        return catalog.stock(sku);
+    }
+
+    synchronized int available(int sku) {
+        return catalog.stock(sku) - leasedOf(sku);
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        server.close();
+        synchronized (open) {
+            for (Socket s : open) s.close();
+        }
+        if (store != null) store.sync();
+    }
+
+    // ---------------------------
+    // Stock operations
+    // ---------------------------
+    private synchronized int lease(Lane lane, int sku, int qty) {
+        int grant = Math.max(0, Math.min(qty, catalog.stock(sku) - leasedOf(sku)));
+        if (grant == 0) return 0;
+        addLeased(sku, grant);
+        lane.add(sku, grant);
+        return grant;
+    }
+
+    private synchronized void giveBack(Lane lane, int sku, int qty) {
+        int back = Math.min(qty, lane.get(sku));
+        if (back <= 0) return;
+        addLeased(sku, -back);
+        lane.add(sku, -back);
+    }
+
+    private synchronized void sold(Lane lane, int[] skus, int[] qtys, int n) throws IOException {
+        for (int i = 0; i < n; i++) {
+            int sku = skus[i], qty = qtys[i];
+            int fromLease = Math.min(qty, lane.get(sku));
+            if (fromLease > 0) {
+                lane.add(sku, -fromLease);
+                addLeased(sku, -fromLease);
+            }
+            int shelf = catalog.stock(sku);
+            if (qty - fromLease > shelf - leasedOf(sku)) {
+                System.err.println("Inventory: lane " + lane.id + " sold " + qty + " x " + catalog.name(sku)
+                        + " beyond its lease while offline; shelf goes to " + (shelf - qty));
+            }
+            catalog.setStock(sku, shelf - qty);
+            if (store != null) store.recordStock(sku);
+        }
+    }
+
+    // A (re)connecting lane declares the leases it still holds. Leases the server still
+    // has on record are confirmed; anything beyond that is re-granted if still available.
+    private synchronized int[] welcome(Lane lane, int[] skus, int[] held, int n) {
+        int[] granted = new int[n];
+        for (int i = 0; i < n; i++) {
+            int sku = skus[i];
+            int known = lane.get(sku);
+            int confirmed = Math.min(known, held[i]);
+            granted[i] = confirmed + lease(lane, sku, held[i] - confirmed);
+            if (known > held[i]) giveBack(lane, sku, known - held[i]);
+        }
+        return granted;
+    }
+
+    private int leasedOf(int sku) {
+        return sku < leased.length ? leased[sku] : 0;
+    }
+
+    private void addLeased(int sku, int delta) {
+        if (sku >= leased.length) leased = Arrays.copyOf(leased, Math.max(sku + 1, leased.length * 2));
+        leased[sku] += delta;
+    }
+
+    private void reapLoop() {
+        while (!closed) {
+            try {
+                Thread.sleep(Math.max(1000, leaseTtlMillis / 4));
+            } catch (InterruptedException e) {
+                return;
+            }
+            long now = System.currentTimeMillis();
+            synchronized (this) {
+                for (Lane lane : lanes.values()) {
+                    if (lane.connections > 0 || lane.disconnectedAt == 0 || now - lane.disconnectedAt < leaseTtlMillis) continue;
+                    for (int sku = 0; sku < lane.outstanding.length; sku++) {
+                        if (lane.outstanding[sku] > 0) giveBack(lane, sku, lane.outstanding[sku]);
+                    }
+                    lane.disconnectedAt = 0;
+                }
+            }
+        }
+    }
+
+    // ---------------------------
+    // Connections
+    // ---------------------------
+    private void acceptLoop() {
+        while (!closed) {
+            Socket socket;
+            try {
+                socket = server.accept();
+                socket.setTcpNoDelay(true);
+            } catch (IOException e) {
+                if (closed) return;
+                continue;
+            }
+            Thread t = new Thread(() -> serve(socket), "inventory-" + socket.getRemoteSocketAddress());
+            t.setDaemon(true);
+            t.start();
+        }
+    }
+
+    private void serve(Socket socket) {
+        synchronized (open) {
+            open.add(socket);
+        }
+        Lane lane = null;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()))) {
+            int[] skus = new int[64], qtys = new int[64];
+            while (true) {
+                int op;
+                try {
+                    op = in.readByte();
+                } catch (EOFException e) {
+                    return;
+                }
+                if (lane == null && op != HELLO) {
+                    error(out, "HELLO expected");
+                    return;
+                }
+                switch (op) {
+                    case HELLO: {
+                        String id = in.readUTF();
+                        int size = in.readInt();
+                        int n = in.readInt();
+                        if (skus.length < n) {
+                            skus = new int[n];
+                            qtys = new int[n];
+                        }
+                        for (int i = 0; i < n; i++) {
+                            skus[i] = in.readInt();
+                            qtys[i] = in.readInt();
+                        }
+                        if (size != catalog.size()) {
+                            error(out, "Catalog mismatch: lane has " + size + " items, server has " + catalog.size());
+                            return;
+                        }
+                        if (!validSkus(skus, n, out)) return;
+                        synchronized (this) {
+                            lane = lanes.computeIfAbsent(id, Lane::new);
+                            lane.connections++;
+                        }
+                        int[] granted = welcome(lane, skus, qtys, n);
+                        out.writeByte(WELCOME);
+                        out.writeInt(n);
+                        for (int i = 0; i < n; i++) {
+                            out.writeInt(skus[i]);
+                            out.writeInt(granted[i]);
+                        }
+                        break;
+                    }
+                    case LEASE: {
+                        int sku = in.readInt();
+                        int qty = in.readInt();
+                        if (!validSkus(new int[]{sku}, 1, out)) return;
+                        out.writeByte(GRANT);
+                        out.writeInt(qty > 0 ? lease(lane, sku, qty) : 0);
+                        break;
+                    }
+                    case RETURN: {
+                        int sku = in.readInt();
+                        int qty = in.readInt();
+                        if (!validSkus(new int[]{sku}, 1, out)) return;
+                        giveBack(lane, sku, qty);
+                        out.writeByte(OK);
+                        break;
+                    }
+                    case SOLD: {
+                        int n = in.readInt();
+                        if (skus.length < n) {
+                            skus = new int[n];
+                            qtys = new int[n];
+                        }
+                        for (int i = 0; i < n; i++) {
+                            skus[i] = in.readInt();
+                            qtys[i] = in.readInt();
+                        }
+                        if (!validSkus(skus, n, out)) return;
+                        sold(lane, skus, qtys, n);
+                        out.writeByte(OK);
+                        break;
+                    }
+                    case QUERY: {
+                        int sku = in.readInt();
+                        if (!validSkus(new int[]{sku}, 1, out)) return;
+                        synchronized (this) {
+                            out.writeByte(AMOUNT);
+                            out.writeInt(shelf(sku));
+                            out.writeInt(available(sku));
+                        }
+                        break;
+                    }
+                    default:
+                        error(out, "Unknown request " + op);
+                        return;
+                }
+                if (in.available() == 0) out.flush();
+            }
+        } catch (IOException e) {
+            if (!closed) System.err.println("Inventory: " + socket.getRemoteSocketAddress() + ": " + e.getMessage());
+        } finally {
+            synchronized (open) {
+                open.remove(socket);
+            }
+            if (lane != null) {
+                synchronized (this) {
+                    if (--lane.connections == 0) lane.disconnectedAt = System.currentTimeMillis();
+                }
+            }
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private boolean validSkus(int[] skus, int n, DataOutputStream out) throws IOException {
+        int size = catalog.size();
+        for (int i = 0; i < n; i++) {
+            if (skus[i] < 0 || skus[i] >= size) {
+                error(out, "Unknown SKU " + skus[i]);
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void error(DataOutputStream out, String message) throws IOException {
+        out.writeByte(ERROR);
+        out.writeUTF(message);
+        out.flush();
+    }
+
+    // ---------------------------
+    // Main
+    // ---------------------------
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        long ttl = (args.length > 1 ? Long.parseLong(args[1]) : 300) * 1000L;
+        Path snapshot = Paths.get("stock.snap");
+        Path delta = Paths.get("stock.delta");
+        Catalog catalog = StockStore.load(snapshot, delta);
+        StockStore store = StockStore.open(snapshot, delta, catalog);
+        InventoryServer server = new InventoryServer(catalog, store, port, ttl);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                server.close();
+                store.close();
+            } catch (IOException ignored) {
+            }
+        }, "inventory-close"));
+        server.start();
+        System.out.println("Inventory server: " + catalog.size() + " items on port " + server.port());
+        Thread.currentThread().join();     // serve until killed; the hook flushes stock
+    }
+}
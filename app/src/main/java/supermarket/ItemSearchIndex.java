@@ -0,0 +1,418 @@
+package supermarket;
+
+import java.text.Normalizer;
+import java.util.Arrays;
+
+// ---------------------------
+// Typeahead item search
+// ---------------------------
+// In-memory index over catalog names, folded to lower case without diacritics
+// ("Crème Brûlée" matches "creme brul"). Results come in tiers, best first:
+//   0  the name starts with the query            (sorted name list)
+//   1  a later word of the name starts with it    (sorted word-start list)
+//   2  the query appears inside a word            (trigram postings)
+//   3  fuzzy: a word starts with the query give or take one typo per four letters
+//      typed, at most two                          (trigram postings + edit distance)
+// Tiers 0 and 1 are binary searches that stop after `limit` hits. Tiers 2 and 3 only run
+// when those come up short: candidates are counted from trigram posting lists and
+// visited most-shared-trigrams first, again stopping once `limit` are found.
+//
+// Catalog names never change once a SKU exists, so keeping up with the catalog only
+// means indexing new SKUs (sync). Methods are synchronized: edits and queries both run
+// on the EDT, and a query costs well under a millisecond at 150k SKUs.
+class ItemSearchIndex {
+
+    private static final int BULK = 256;
+    private static final int OFFSET_BITS = 16;
+
+    private String[] folded = new String[1024];      // sku -> folded name
+    private int size = 0;
+
+    // Word starts packed as (sku << 16 | offset into folded name), sorted by the text
+    // from there on. Offset 0 entries (whole names) are kept apart as tier 0.
+    private long[] names = new long[1024];
+    private int nameCount = 0;
+    private long[] words = new long[1024];
+    private int wordCount = 0;
+
+    // trigram -> posting list of SKUs, ascending (open addressing, key 0 = empty)
+    private long[] gramKeys = new long[1 << 12];
+    private int[][] gramSkus = new int[1 << 12][];
+    private int[] gramSizes = new int[1 << 12];
+    private int gramCount = 0;
+
+    // per-query scratch, indexed by SKU
+    private int[] hits = new int[1024];
+    private int[] touched = new int[1024];
+
+    synchronized int size() {
+        return size;
+    }
+
+    // Indexes SKUs added to the catalog since the last call.
+    synchronized void sync(Catalog catalog) {
+        int target = catalog.size();
+        if (target <= size) return;
+        boolean bulk = target - size > BULK;
+        for (int sku = size; sku < target; sku++) add(sku, catalog.name(sku), !bulk);
+        if (bulk) {
+            sortTails(names, 0, nameCount, 0);
+            sortTails(words, 0, wordCount, 0);
+        }
+    }
+
+    // Up to limit SKUs best matching the query, best first.
+    synchronized int[] search(String query, int limit) {
+        String q = fold(query);
+        if (q.isEmpty() || limit <= 0) return new int[0];
+        int[] out = new int[limit];
+        int n = prefixHits(names, nameCount, q, out, 0);
+        if (n < limit) n = prefixHits(words, wordCount, q, out, n);
+        if (n < limit && q.length() >= 3) n = trigramHits(q, out, n);
+        if (n == 0) n = swappedPrefixHits(q, out);
+        return n == limit ? out : Arrays.copyOf(out, n);
+    }
+
+    // SKU for typed text: an exact match after folding, or the only match; -1 otherwise.
+    synchronized int resolve(String text) {
+        String q = fold(text);
+        if (q.isEmpty()) return -1;
+        int[] best = search(text, 2);
+        if (best.length == 0) return -1;
+        if (folded[best[0]].equals(q)) return best[0];
+        return best.length == 1 ? best[0] : -1;
+    }
+
+    // ---------------------------
+    // Folding
+    // ---------------------------
+    // Lower case, diacritics removed, anything but letters and digits turned into
+    // single spaces.
+    static String fold(String s) {
+        if (s == null) return "";
+        boolean ascii = true;
+        for (int i = 0; i < s.length() && ascii; i++) ascii = s.charAt(i) < 0x80;
+        if (!ascii) s = Normalizer.normalize(s, Normalizer.Form.NFD);
+        StringBuilder out = new StringBuilder(s.length());
+        boolean space = true;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (Character.getType(c) == Character.NON_SPACING_MARK) continue;
+            if (Character.isLetterOrDigit(c)) {
+                out.append(Character.toLowerCase(c));
+                space = false;
+            } else if (!space) {
+                out.append(' ');
+                space = true;
+            }
+        }
+        int len = out.length();
+        if (len > 0 && out.charAt(len - 1) == ' ') out.setLength(len - 1);
+        return out.toString();
+    }
+
+    // ---------------------------
+    // Tiers 0 and 1: sorted word starts
+    // ---------------------------
+    private int prefixHits(long[] tails, int count, String q, int[] out, int n) {
+        for (int i = lowerBound(tails, count, q); i < count && n < out.length; i++) {
+            long tail = tails[i];
+            String name = folded[(int) (tail >>> OFFSET_BITS)];
+            if (!name.startsWith(q, (int) (tail & 0xFFFF))) break;
+            n = addUnique(out, n, (int) (tail >>> OFFSET_BITS));
+        }
+        return n;
+    }
+
+    // Last resort for typos the trigrams cannot see ("mlik"): retry with each pair of
+    // adjacent letters swapped.
+    private int swappedPrefixHits(String q, int[] out) {
+        int n = 0;
+        char[] c = q.toCharArray();
+        for (int i = 0; i + 1 < c.length && n < out.length; i++) {
+            if (c[i] == c[i + 1]) continue;
+            char t = c[i];
+            c[i] = c[i + 1];
+            c[i + 1] = t;
+            String swapped = new String(c);
+            n = prefixHits(names, nameCount, swapped, out, n);
+            if (n < out.length) n = prefixHits(words, wordCount, swapped, out, n);
+            c[i + 1] = c[i];
+            c[i] = t;
+        }
+        return n;
+    }
+
+    private int lowerBound(long[] tails, int count, String key) {
+        int lo = 0, hi = count;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (compareTail(tails[mid], key) < 0) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    private int compareTail(long tail, String key) {
+        String s = folded[(int) (tail >>> OFFSET_BITS)];
+        int off = (int) (tail & 0xFFFF);
+        int len = Math.min(s.length() - off, key.length());
+        for (int i = 0; i < len; i++) {
+            int d = s.charAt(off + i) - key.charAt(i);
+            if (d != 0) return d;
+        }
+        return (s.length() - off) - key.length();
+    }
+
+    private int compareTails(long a, long b) {
+        String s = folded[(int) (a >>> OFFSET_BITS)];
+        int off = (int) (a & 0xFFFF);
+        String t = folded[(int) (b >>> OFFSET_BITS)];
+        int toff = (int) (b & 0xFFFF);
+        int len = Math.min(s.length() - off, t.length() - toff);
+        for (int i = 0; i < len; i++) {
+            int d = s.charAt(off + i) - t.charAt(toff + i);
+            if (d != 0) return d;
+        }
+        int d = (s.length() - off) - (t.length() - toff);
+        return d != 0 ? d : Long.compare(a, b);
+    }
+
+    // Multikey quicksort (Bentley & Sedgewick): names share long prefixes ("milk amul ..."),
+    // which this compares once per partition instead of once per comparison.
+    private void sortTails(long[] a, int lo, int hi, int d) {
+        while (hi - lo > 12) {
+            swap(a, lo, (lo + hi) >>> 1);
+            int v = charAt(a[lo], d);
+            int lt = lo, gt = hi - 1, i = lo + 1;
+            while (i <= gt) {
+                int c = charAt(a[i], d);
+                if (c < v) swap(a, lt++, i++);
+                else if (c > v) swap(a, i, gt--);
+                else i++;
+            }
+            sortTails(a, lo, lt, d);
+            if (v >= 0) sortTails(a, lt, gt + 1, d + 1);
+            lo = gt + 1;
+        }
+        for (int i = lo + 1; i < hi; i++) {
+            for (int j = i; j > lo && compareTails(a[j - 1], a[j]) > 0; j--) swap(a, j - 1, j);
+        }
+    }
+
+    private int charAt(long tail, int d) {
+        String s = folded[(int) (tail >>> OFFSET_BITS)];
+        int at = (int) (tail & 0xFFFF) + d;
+        return at < s.length() ? s.charAt(at) : -1;
+    }
+
+    private static void swap(long[] a, int i, int j) {
+        long t = a[i];
+        a[i] = a[j];
+        a[j] = t;
+    }
+
+    private long[] insertTail(long[] tails, int count, long tail) {
+        if (count == tails.length) tails = Arrays.copyOf(tails, count * 2);
+        int lo = 0, hi = count;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (compareTails(tails[mid], tail) < 0) lo = mid + 1;
+            else hi = mid;
+        }
+        System.arraycopy(tails, lo, tails, lo + 1, count - lo);
+        tails[lo] = tail;
+        return tails;
+    }
+
+    // ---------------------------
+    // Tiers 2 and 3: trigrams
+    // ---------------------------
+    private int trigramHits(String q, int[] out, int n) {
+        long[] grams = gramsOf(" " + q);
+        int typos = q.length() < 4 ? 0 : q.length() < 8 ? 1 : 2;
+        int needed = Math.max(1, grams.length - 3 * typos);
+
+        int touchedCount = 0;
+        for (long g : grams) {
+            int slot = gramSlot(g);
+            if (gramKeys[slot] == 0) continue;
+            int[] skus = gramSkus[slot];
+            for (int i = 0, len = gramSizes[slot]; i < len; i++) {
+                int sku = skus[i];
+                if (hits[sku]++ == 0) touched[touchedCount++] = sku;
+            }
+        }
+
+        // visit candidates sharing the most trigrams first; substrings share them all
+        int first = n;
+        for (int want = grams.length; want >= needed && n < out.length; want--) {
+            for (int i = 0; i < touchedCount && n < out.length; i++) {
+                int sku = touched[i];
+                if (hits[sku] != want) continue;
+                String name = folded[sku];
+                if (name.contains(q) || (typos > 0 && fuzzyWordPrefix(name, q, typos))) {
+                    n = addUnique(out, n, sku);
+                }
+            }
+        }
+        for (int i = 0; i < touchedCount; i++) hits[touched[i]] = 0;
+        // real substrings ahead of fuzzy matches
+        sortBySubstring(out, first, n, q);
+        return n;
+    }
+
+    private void sortBySubstring(int[] out, int from, int to, String q) {
+        int w = from;
+        for (int i = from; i < to; i++) {
+            if (folded[out[i]].contains(q)) {
+                int sku = out[i];
+                System.arraycopy(out, w, out, w + 1, i - w);
+                out[w++] = sku;
+            }
+        }
+    }
+
+    private boolean fuzzyWordPrefix(String name, String q, int typos) {
+        int start = 0;
+        while (start >= 0) {
+            if (prefixDistance(q, name, start, typos) <= typos) return true;
+            int space = name.indexOf(' ', start);
+            start = space < 0 ? -1 : space + 1;
+        }
+        return false;
+    }
+
+    // Smallest edit distance (with transpositions) between q and any prefix of
+    // name[start..], giving up once it exceeds max.
+    private static int prefixDistance(String q, String name, int start, int max) {
+        int cols = Math.min(name.length() - start, q.length() + max);
+        int[] prev2 = new int[cols + 1];
+        int[] prev = new int[cols + 1];
+        int[] cur = new int[cols + 1];
+        for (int j = 0; j <= cols; j++) prev[j] = j;
+        for (int i = 1; i <= q.length(); i++) {
+            cur[0] = i;
+            int rowMin = cur[0];
+            char qc = q.charAt(i - 1);
+            for (int j = 1; j <= cols; j++) {
+                char nc = name.charAt(start + j - 1);
+                int d = Math.min(Math.min(prev[j] + 1, cur[j - 1] + 1), prev[j - 1] + (qc == nc ? 0 : 1));
+                if (i > 1 && j > 1 && qc == name.charAt(start + j - 2) && q.charAt(i - 2) == nc) {
+                    d = Math.min(d, prev2[j - 2] + 1);
+                }
+                cur[j] = d;
+                rowMin = Math.min(rowMin, d);
+            }
+            if (rowMin > max) return max + 1;
+            int[] t = prev2;
+            prev2 = prev;
+            prev = cur;
+            cur = t;
+        }
+        int best = max + 1;
+        for (int j = 0; j <= cols; j++) best = Math.min(best, prev[j]);
+        return best;
+    }
+
+    private int gramSlot(long gram) {
+        int mask = gramKeys.length - 1;
+        int slot = (int) (gram ^ (gram >>> 29)) * 0x9E3779B9 >>> 7 & mask;
+        while (gramKeys[slot] != 0 && gramKeys[slot] != gram) slot = (slot + 1) & mask;
+        return slot;
+    }
+
+    private void addPosting(long gram, int sku) {
+        int slot = gramSlot(gram);
+        if (gramKeys[slot] == 0) {
+            if ((gramCount + 1) * 2 > gramKeys.length) {
+                growGrams();
+                slot = gramSlot(gram);
+            }
+            gramKeys[slot] = gram;
+            gramSkus[slot] = new int[4];
+            gramCount++;
+        }
+        int len = gramSizes[slot];
+        int[] skus = gramSkus[slot];
+        if (len > 0 && skus[len - 1] == sku) return;     // same trigram twice in one name
+        if (len == skus.length) gramSkus[slot] = skus = Arrays.copyOf(skus, len * 2);
+        skus[len] = sku;
+        gramSizes[slot] = len + 1;
+    }
+
+    private void growGrams() {
+        long[] keys = gramKeys;
+        int[][] skus = gramSkus;
+        int[] sizes = gramSizes;
+        gramKeys = new long[keys.length * 2];
+        gramSkus = new int[keys.length * 2][];
+        gramSizes = new int[keys.length * 2];
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] == 0) continue;
+            int slot = gramSlot(keys[i]);
+            gramKeys[slot] = keys[i];
+            gramSkus[slot] = skus[i];
+            gramSizes[slot] = sizes[i];
+        }
+    }
+
+    // Distinct trigrams of s, each packed as three 21-bit chars (never 0: s has no NULs).
+    private static long[] gramsOf(String s) {
+        int n = Math.max(0, s.length() - 2);
+        long[] grams = new long[n];
+        int m = 0;
+        for (int i = 0; i < n; i++) {
+            long g = ((long) s.charAt(i) << 42) | ((long) s.charAt(i + 1) << 21) | s.charAt(i + 2);
+            boolean seen = false;
+            for (int j = 0; j < m && !seen; j++) seen = grams[j] == g;
+            if (!seen) grams[m++] = g;
+        }
+        return m == n ? grams : Arrays.copyOf(grams, m);
+    }
+
+    // ---------------------------
+    // Indexing
+    // ---------------------------
+    private void add(int sku, String name, boolean keepSorted) {
+        if (sku >= folded.length) {
+            int cap = Math.max(sku + 1, folded.length * 2);
+            folded = Arrays.copyOf(folded, cap);
+            hits = Arrays.copyOf(hits, cap);
+            touched = Arrays.copyOf(touched, cap);
+        }
+        String f = fold(name);
+        if (f.length() > 0xFFFF) f = f.substring(0, 0xFFFF);
+        folded[sku] = f;
+        size = sku + 1;
+
+        String padded = " " + f + " ";
+        for (int i = 0; i + 2 < padded.length(); i++) {
+            addPosting(((long) padded.charAt(i) << 42) | ((long) padded.charAt(i + 1) << 21) | padded.charAt(i + 2), sku);
+        }
+
+        if (f.isEmpty()) return;
+        long head = (long) sku << OFFSET_BITS;
+        if (keepSorted) {
+            names = insertTail(names, nameCount++, head);
+        } else {
+            if (nameCount == names.length) names = Arrays.copyOf(names, nameCount * 2);
+            names[nameCount++] = head;
+        }
+        for (int at = f.indexOf(' '); at >= 0; at = f.indexOf(' ', at + 1)) {
+            long tail = head | (at + 1);
+            if (keepSorted) {
+                words = insertTail(words, wordCount++, tail);
+            } else {
+                if (wordCount == words.length) words = Arrays.copyOf(words, wordCount * 2);
+                words[wordCount++] = tail;
+            }
+        }
+    }
+
+    private static int addUnique(int[] out, int n, int sku) {
+        for (int i = 0; i < n; i++) if (out[i] == sku) return n;
+        out[n] = sku;
+        return n + 1;
+    }
+}
@@ -0,0 +1,107 @@
+package supermarket;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// ---------------------------
+// Latency histogram
+// ---------------------------
+// HDR-style log-linear buckets over nanoseconds: every power of two is split into 32
+// sub-buckets, so any recorded value is reported within ~3% from 1 ns up to hours,
+// in a fixed 15 KB of counters. record() is a couple of atomic increments and never
+// allocates, so it is safe on the EDT and the scan worker.
+class LatencyHistogram {
+
+    private static final int SUB_BITS = 5;
+    private static final int SUB = 1 << SUB_BITS;
+    private static final int BUCKETS = (64 - SUB_BITS + 1) * SUB;
+
+    final String name;
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong max = new AtomicLong();
+
+    LatencyHistogram(String name) {
+        this.name = name;
+    }
+
+    void record(long nanos) {
+        if (nanos < 0) nanos = 0;
+        counts.incrementAndGet(bucket(nanos));
+        long m = max.get();
+        while (nanos > m && !max.compareAndSet(m, nanos)) m = max.get();
+    }
+
+    // Records the time since startNanos (a System.nanoTime() reading).
+    void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    Snapshot snapshot() {
+        long[] copy = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) copy[i] = counts.get(i);
+        return new Snapshot(copy, max.get());
+    }
+
+    private static int bucket(long v) {
+        if (v < SUB) return (int) v;
+        int magnitude = 63 - Long.numberOfLeadingZeros(v);
+        int shift = magnitude - SUB_BITS;
+        return (shift + 1) * SUB + (int) ((v >>> shift) - SUB);
+    }
+
+    // Highest value that falls into bucket i.
+    private static long upperBound(int i) {
+        if (i < SUB) return i;
+        int shift = i / SUB - 1;
+        long sub = i % SUB + SUB;
+        return ((sub + 1) << shift) - 1;
+    }
+
+    // Immutable counts at one moment; minus() gives the activity between two snapshots.
+    static final class Snapshot {
+        private final long[] counts;
+        final long count;
+        final long max;
+        private final double sum;
+
+        private Snapshot(long[] counts, long max) {
+            this.counts = counts;
+            this.max = max;
+            long n = 0;
+            double s = 0;
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] == 0) continue;
+                n += counts[i];
+                s += (double) counts[i] * upperBound(i);
+            }
+            this.count = n;
+            this.sum = s;
+        }
+
+        Snapshot minus(Snapshot earlier) {
+            long[] diff = new long[counts.length];
+            long m = 0;
+            for (int i = 0; i < counts.length; i++) {
+                diff[i] = counts[i] - earlier.counts[i];
+                if (diff[i] > 0) m = upperBound(i);
+            }
+            return new Snapshot(diff, Math.min(m, max));
+        }
+
+        double mean() {
+            return count == 0 ? 0 : sum / count;
+        }
+
+        // Value at quantile q (0..1), in nanoseconds.
+        long percentile(double q) {
+            if (count == 0) return 0;
+            long rank = Math.max(1, (long) Math.ceil(q * count));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) return Math.min(upperBound(i), max);
+            }
+            return max;
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package supermarket;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// ---------------------------
+// Loyalty points and tier discounts
+// ---------------------------
+// Worked out at the lane from the customer's lifetime spend in CustomerIndex, so nothing
+// extra is stored: a customer earns a point per pointRupees spent, and the highest tier
+// their spend has reached gives its discount.
+// Properties:
+//   billing.loyalty.pointRupees   100                spend per point
+//   billing.loyalty.tiers         10000:2,50000:5    lifetime rupees:discount %, or none
+final class Loyalty {
+
+    private final long pointPaise;
+    private final long[] tierSpend;     // ascending
+    private final int[] tierBps;
+
+    Loyalty(long pointPaise, long[] tierSpend, int[] tierBps) {
+        this.pointPaise = Math.max(1, pointPaise);
+        this.tierSpend = tierSpend;
+        this.tierBps = tierBps;
+    }
+
+    // Falls back to the defaults for a setting that does not parse.
+    static Loyalty fromProperties() {
+        long point;
+        try {
+            point = Money.parse(System.getProperty("billing.loyalty.pointRupees", "100").trim());
+        } catch (NumberFormatException e) {
+            point = Money.parse("100");
+        }
+        String tiers = System.getProperty("billing.loyalty.tiers", "10000:2,50000:5").trim();
+        List<long[]> parsed;
+        try {
+            parsed = parseTiers(tiers);
+        } catch (NumberFormatException e) {
+            System.err.println("billing.loyalty.tiers: cannot read \"" + tiers + "\"; using the defaults");
+            parsed = parseTiers("10000:2,50000:5");
+        }
+        parsed.sort((a, b) -> Long.compare(a[0], b[0]));
+        long[] spend = new long[parsed.size()];
+        int[] bps = new int[parsed.size()];
+        for (int i = 0; i < spend.length; i++) {
+            spend[i] = parsed.get(i)[0];
+            bps[i] = (int) parsed.get(i)[1];
+        }
+        return new Loyalty(point, spend, bps);
+    }
+
+    long points(long spend) {
+        return Math.max(0, spend) / pointPaise;
+    }
+
+    // Discount of the highest tier reached, in basis points; 0 below the first tier.
+    int discountBps(long spend) {
+        int bps = 0;
+        for (int i = 0; i < tierSpend.length && spend >= tierSpend[i]; i++) bps = tierBps[i];
+        return bps;
+    }
+
+    // "12 bills, ₹8400.00 spent, 84 points, 2.0% off" for the lane.
+    String describe(CustomerIndex.Summary s) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(s.bills).append(s.bills == 1 ? " bill, ₹" : " bills, ₹");
+        Money.appendTo(sb, s.spend).append(" spent, ").append(points(s.spend)).append(" points");
+        int bps = discountBps(s.spend);
+        if (bps > 0) Money.appendPercent(sb.append(", "), bps).append("% off");
+        return sb.toString();
+    }
+
+    private static List<long[]> parseTiers(String tiers) {
+        List<long[]> out = new ArrayList<>();
+        if (tiers.isEmpty() || tiers.equalsIgnoreCase("none")) return out;
+        for (String tier : tiers.split(",")) {
+            int colon = tier.indexOf(':');
+            if (colon < 0) throw new NumberFormatException(tier);
+            out.add(new long[]{Money.parse(tier.substring(0, colon).trim()),
+                    Money.parseDiscount(tier.substring(colon + 1).trim())});
+        }
+        return out;
+    }
+}
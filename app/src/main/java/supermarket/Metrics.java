@@ -0,0 +1,296 @@
+package supermarket;
+
+import javax.management.ObjectName;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// ---------------------------
+// Lane metrics
+// ---------------------------
+// Process-wide latency histograms and counters, recorded in place by the code they
+// measure (cheap enough to leave on). start() publishes them over JMX and appends one
+// line per interval to metrics/metrics-<date>.log, keeping a week of files, so store IT
+// can collect from every terminal. Properties:
+//   billing.metrics.dir              metrics               (empty string: no file)
+//   billing.metrics.intervalSeconds  60
+//   billing.metrics.stallMillis      200                   (EDT watchdog threshold)
+//   billing.metrics.retentionDays    7
+final class Metrics {
+
+    static final LatencyHistogram SCAN_TO_ROW = new LatencyHistogram("scanToRow");
+    static final LatencyHistogram CHECKOUT = new LatencyHistogram("checkout");
+    static final LatencyHistogram BILL_APPEND = new LatencyHistogram("billAppend");
+    static final LatencyHistogram JOURNAL_SYNC = new LatencyHistogram("journalSync");
+    static final LatencyHistogram SAVE_BILLS = new LatencyHistogram("saveBills");
+    static final LatencyHistogram STOCK_COMPACT = new LatencyHistogram("stockCompact");
+    static final LatencyHistogram PERSIST_COMMIT = new LatencyHistogram("persistCommit");
+    static final LatencyHistogram PERSIST_LAG = new LatencyHistogram("persistLag");
+    static final LatencyHistogram EDT_STALL = new LatencyHistogram("edtStall");
+    static final LatencyHistogram RECEIPT_PRINT = new LatencyHistogram("receiptPrint");
+    static final LatencyHistogram SEGMENT_SEAL = new LatencyHistogram("segmentSeal");
+    static final LatencyHistogram CUSTOMER_LOOKUP = new LatencyHistogram("customerLookup");
+    static final LatencyHistogram PRICE_LOOKUP = new LatencyHistogram("priceLookup");
+
+    static final LongAdder SCANS = new LongAdder();
+    static final LongAdder UNKNOWN_BARCODES = new LongAdder();
+    static final LongAdder BILLS = new LongAdder();
+    static final LongAdder JOURNAL_BYTES = new LongAdder();
+    static final LongAdder STOCK_DELTA_BYTES = new LongAdder();
+    static final AtomicLong STOCK_LOAD_NANOS = new AtomicLong();
+
+    private static final LatencyHistogram[] HISTOGRAMS = {
+            SCAN_TO_ROW, CHECKOUT, BILL_APPEND, JOURNAL_SYNC, SAVE_BILLS, STOCK_COMPACT, PERSIST_COMMIT, PERSIST_LAG, EDT_STALL,
+            RECEIPT_PRINT, SEGMENT_SEAL, CUSTOMER_LOOKUP, PRICE_LOOKUP
+    };
+    private static final DateTimeFormatter STAMP = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss");
+
+    private static volatile String lastStall = "";
+    private static volatile Interval last = new Interval(0, 0, 0, 0);
+    private static ScheduledExecutorService reporter;
+    private static Reporter task;
+    private static EdtWatchdog watchdog;
+
+    private Metrics() {
+    }
+
+    static synchronized void start() {
+        if (reporter != null) return;
+        long interval = Math.max(1, Long.getLong("billing.metrics.intervalSeconds", 60L));
+        String dir = System.getProperty("billing.metrics.dir", "metrics");
+        int retention = Integer.getInteger("billing.metrics.retentionDays", 7);
+
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new Bean(), new ObjectName("supermarket:type=Metrics"));
+        } catch (Exception e) {
+            System.err.println("Metrics: JMX registration failed: " + e.getMessage());
+        }
+
+        watchdog = new EdtWatchdog(50, Long.getLong("billing.metrics.stallMillis", 200L));
+        watchdog.start();
+
+        reporter = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "metrics-reporter");
+            t.setDaemon(true);
+            return t;
+        });
+        Path folder = dir.isEmpty() ? null : Paths.get(dir);
+        task = new Reporter(folder, retention, interval);
+        reporter.scheduleAtFixedRate(task, interval, interval, TimeUnit.SECONDS);
+    }
+
+    static synchronized void stop() {
+        if (reporter == null) return;
+        watchdog.stop();
+        reporter.shutdown();
+        reporter = null;
+        task = null;
+    }
+
+    static void edtStall(long nanos, String where) {
+        EDT_STALL.record(nanos);
+        String stamp = LocalDateTime.now().format(STAMP);
+        long ms = TimeUnit.NANOSECONDS.toMillis(nanos);
+        lastStall = stamp + " " + ms + " ms " + where;
+        System.err.println("EDT stall: " + lastStall);
+        synchronized (Metrics.class) {
+            Reporter r = task;
+            if (r != null && r.folder != null) {
+                reporter.execute(() -> r.write(stamp + " edtStall ms=" + ms + " at=" + where + "\n"));
+            }
+        }
+    }
+
+    // Counter rates over the last reporting interval.
+    private static final class Interval {
+        final double scansPerSecond, billsPerHour, unknownRate;
+        final long seconds;
+
+        Interval(long seconds, long scans, long unknown, long bills) {
+            this.seconds = seconds;
+            this.scansPerSecond = seconds == 0 ? 0 : (double) scans / seconds;
+            this.billsPerHour = seconds == 0 ? 0 : bills * 3600.0 / seconds;
+            this.unknownRate = scans == 0 ? 0 : (double) unknown / scans;
+        }
+    }
+
+    private static final class Reporter implements Runnable {
+        private final Path folder;
+        private final int retentionDays;
+        private final long seconds;
+        private final LatencyHistogram.Snapshot[] previous = new LatencyHistogram.Snapshot[HISTOGRAMS.length];
+        private long scans, unknown, bills;
+        private LocalDate pruned;
+
+        Reporter(Path folder, int retentionDays, long seconds) {
+            this.folder = folder;
+            this.retentionDays = retentionDays;
+            this.seconds = seconds;
+            for (int i = 0; i < HISTOGRAMS.length; i++) previous[i] = HISTOGRAMS[i].snapshot();
+        }
+
+        @Override
+        public void run() {
+            long s = SCANS.sum(), u = UNKNOWN_BARCODES.sum(), b = BILLS.sum();
+            Interval iv = new Interval(seconds, s - scans, u - unknown, b - bills);
+            last = iv;
+
+            StringBuilder line = new StringBuilder(512);
+            line.append(LocalDateTime.now().format(STAMP))
+                    .append(" scans=").append(s - scans)
+                    .append(" scansPerSec=").append(String.format("%.2f", iv.scansPerSecond))
+                    .append(" unknownBarcodeRate=").append(String.format("%.4f", iv.unknownRate))
+                    .append(" bills=").append(b - bills)
+                    .append(" billsPerHour=").append(String.format("%.1f", iv.billsPerHour))
+                    .append(" journalBytes=").append(JOURNAL_BYTES.sum())
+                    .append(" stockDeltaBytes=").append(STOCK_DELTA_BYTES.sum())
+                    .append(" stockLoadMs=").append(TimeUnit.NANOSECONDS.toMillis(STOCK_LOAD_NANOS.get()));
+            scans = s;
+            unknown = u;
+            bills = b;
+            for (int i = 0; i < HISTOGRAMS.length; i++) {
+                LatencyHistogram.Snapshot now = HISTOGRAMS[i].snapshot();
+                LatencyHistogram.Snapshot delta = now.minus(previous[i]);
+                previous[i] = now;
+                String n = HISTOGRAMS[i].name;
+                line.append(' ').append(n).append(".count=").append(delta.count);
+                if (delta.count == 0) continue;
+                line.append(' ').append(n).append(".p50us=").append(delta.percentile(0.50) / 1000)
+                        .append(' ').append(n).append(".p99us=").append(delta.percentile(0.99) / 1000)
+                        .append(' ').append(n).append(".maxUs=").append(delta.max / 1000);
+            }
+            if (folder != null) write(line.append('\n').toString());
+        }
+
+        private void write(String line) {
+            LocalDate today = LocalDate.now();
+            try {
+                Files.createDirectories(folder);
+                try (BufferedWriter w = Files.newBufferedWriter(folder.resolve("metrics-" + today + ".log"),
+                        StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                    w.write(line);
+                }
+                if (!today.equals(pruned)) {
+                    prune(today.minusDays(retentionDays));
+                    pruned = today;
+                }
+            } catch (IOException e) {
+                System.err.println("Metrics: cannot write " + folder + ": " + e.getMessage());
+            }
+        }
+
+        private void prune(LocalDate oldest) throws IOException {
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(folder, "metrics-*.log")) {
+                for (Path f : files) {
+                    String name = f.getFileName().toString();
+                    try {
+                        LocalDate day = LocalDate.parse(name.substring(8, name.length() - 4));
+                        if (day.isBefore(oldest)) Files.deleteIfExists(f);
+                    } catch (RuntimeException notOurs) {
+                        // leave files we did not write alone
+                    }
+                }
+            }
+        }
+    }
+
+    private static long micros(LatencyHistogram h, double q) {
+        return h.snapshot().percentile(q) / 1000;
+    }
+
+    private static final class Bean implements MetricsMXBean {
+        public double getScansPerSecond() {
+            return last.scansPerSecond;
+        }
+
+        public double getBillsPerHour() {
+            return last.billsPerHour;
+        }
+
+        public double getUnknownBarcodeRate() {
+            return last.unknownRate;
+        }
+
+        public long getScans() {
+            return SCANS.sum();
+        }
+
+        public long getUnknownBarcodes() {
+            return UNKNOWN_BARCODES.sum();
+        }
+
+        public long getBills() {
+            return BILLS.sum();
+        }
+
+        public long getScanToRowP50Micros() {
+            return micros(SCAN_TO_ROW, 0.50);
+        }
+
+        public long getScanToRowP99Micros() {
+            return micros(SCAN_TO_ROW, 0.99);
+        }
+
+        public long getScanToRowMaxMicros() {
+            return SCAN_TO_ROW.snapshot().max / 1000;
+        }
+
+        public long getCheckoutP99Micros() {
+            return micros(CHECKOUT, 0.99);
+        }
+
+        public long getBillAppendP99Micros() {
+            return micros(BILL_APPEND, 0.99);
+        }
+
+        public long getJournalSyncP99Micros() {
+            return micros(JOURNAL_SYNC, 0.99);
+        }
+
+        public long getSaveBillsP99Micros() {
+            return micros(SAVE_BILLS, 0.99);
+        }
+
+        public long getStockLoadMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(STOCK_LOAD_NANOS.get());
+        }
+
+        public long getStockCompactP99Millis() {
+            return micros(STOCK_COMPACT, 0.99) / 1000;
+        }
+
+        public long getPersistLagP99Micros() {
+            return micros(PERSIST_LAG, 0.99);
+        }
+
+        public long getJournalBytes() {
+            return JOURNAL_BYTES.sum();
+        }
+
+        public long getStockDeltaBytes() {
+            return STOCK_DELTA_BYTES.sum();
+        }
+
+        public long getEdtStalls() {
+            return EDT_STALL.snapshot().count;
+        }
+
+        public long getEdtStallMaxMillis() {
+            return EDT_STALL.snapshot().max / 1_000_000;
+        }
+
+        public String getLastEdtStall() {
+            return lastStall;
+        }
+    }
+}
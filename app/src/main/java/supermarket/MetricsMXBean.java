@@ -0,0 +1,48 @@
+package supermarket;
+
+// JMX view of Metrics (domain "supermarket", type=Metrics). Rates cover the last
+// reporting interval; latencies are since start, in microseconds unless named otherwise.
+public interface MetricsMXBean {
+
+    double getScansPerSecond();
+
+    double getBillsPerHour();
+
+    double getUnknownBarcodeRate();
+
+    long getScans();
+
+    long getUnknownBarcodes();
+
+    long getBills();
+
+    long getScanToRowP50Micros();
+
+    long getScanToRowP99Micros();
+
+    long getScanToRowMaxMicros();
+
+    long getCheckoutP99Micros();
+
+    long getBillAppendP99Micros();
+
+    long getJournalSyncP99Micros();
+
+    long getSaveBillsP99Micros();
+
+    long getStockLoadMillis();
+
+    long getStockCompactP99Millis();
+
+    long getPersistLagP99Micros();
+
+    long getJournalBytes();
+
+    long getStockDeltaBytes();
+
+    long getEdtStalls();
+
+    long getEdtStallMaxMillis();
+
+    String getLastEdtStall();
+}
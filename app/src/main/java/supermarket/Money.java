@@ -0,0 +1,112 @@
+package supermarket;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+// ---------------------------
+// Fixed-point money
+// ---------------------------
+// Amounts are plain longs in paise (1/100 rupee) and percentages are ints in basis points
+// (1/100 percent), so sums stay exact over any number of lines and nothing is boxed.
+// Rounding only happens where a percentage is applied, with an explicit RoundingMode.
+final class Money {
+
+    static final int MAX_DISCOUNT_BPS = 10_000;
+
+    private Money() {
+    }
+
+    // "12.5" -> 1250 paise; extra decimals round half-up to the nearest paisa.
+    // Throws NumberFormatException for malformed or out-of-range text.
+    static long parse(String rupees) {
+        try {
+            return new BigDecimal(rupees.trim()).setScale(2, RoundingMode.HALF_UP).movePointRight(2).longValueExact();
+        } catch (ArithmeticException e) {
+            throw new NumberFormatException("Amount out of range: " + rupees);
+        }
+    }
+
+    // "12.5" (%) -> 1250 basis points.
+    static int parsePercent(String percent) {
+        long bps = parse(percent);
+        if (bps < 0 || bps > 1_000_000) throw new NumberFormatException("Percentage out of range: " + percent);
+        return (int) bps;
+    }
+
+    // A discount percentage: as parsePercent, but no more than 100%.
+    static int parseDiscount(String percent) {
+        int bps = parsePercent(percent);
+        if (bps > MAX_DISCOUNT_BPS) throw new NumberFormatException("Discount over 100%: " + percent);
+        return bps;
+    }
+
+    // Converts a legacy double rupee value (old stock files) to paise.
+    static long ofRupees(double rupees) {
+        return BigDecimal.valueOf(rupees).setScale(2, RoundingMode.HALF_UP).movePointRight(2).longValueExact();
+    }
+
+    static long times(long paise, int qty) {
+        return Math.multiplyExact(paise, (long) qty);
+    }
+
+    // paise * bps / 10000, rounded with mode.
+    static long percent(long paise, int bps, RoundingMode mode) {
+        return divide(Math.multiplyExact(paise, (long) bps), 10_000L, mode);
+    }
+
+    static long divide(long num, long den, RoundingMode mode) {
+        if (den <= 0) throw new ArithmeticException("Divisor must be positive");
+        long q = num / den;
+        long r = num % den;
+        if (r == 0) return q;
+        long away = num < 0 ? q - 1 : q + 1;
+        long twice = Math.abs(r) * 2;
+        switch (mode) {
+            case DOWN:
+                return q;
+            case UP:
+                return away;
+            case FLOOR:
+                return num < 0 ? away : q;
+            case CEILING:
+                return num < 0 ? q : away;
+            case HALF_UP:
+                return twice >= den ? away : q;
+            case HALF_DOWN:
+                return twice > den ? away : q;
+            case HALF_EVEN:
+                return twice > den || (twice == den && (q & 1) != 0) ? away : q;
+            default:
+                throw new ArithmeticException("Rounding necessary for " + num + "/" + den);
+        }
+    }
+
+    // Appends "1234.50" (no currency sign) without going through String.format.
+    static StringBuilder appendTo(StringBuilder sb, long paise) {
+        if (paise < 0) {
+            sb.append('-');
+            paise = -paise;
+        }
+        long cents = paise % 100;
+        sb.append(paise / 100).append('.');
+        if (cents < 10) sb.append('0');
+        return sb.append(cents);
+    }
+
+    // Appends a basis-point percentage as "12.5" / "12.25" / "18.0".
+    static StringBuilder appendPercent(StringBuilder sb, int bps) {
+        sb.append(bps / 100).append('.');
+        int frac = bps % 100;
+        if (frac % 10 == 0) return sb.append(frac / 10);
+        if (frac < 10) sb.append('0');
+        return sb.append(frac);
+    }
+
+    static String format(long paise) {
+        return appendTo(new StringBuilder(12), paise).toString();
+    }
+
+    static String formatPercent(int bps) {
+        return appendPercent(new StringBuilder(8), bps).toString();
+    }
+}
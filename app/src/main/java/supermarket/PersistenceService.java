@@ -0,0 +1,327 @@
+package supermarket;
+
+import javax.swing.SwingUtilities;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+// ---------------------------
+// Write-behind persistence
+// ---------------------------
+// The UI only enqueues change events; one worker thread writes them and makes them
+// durable with a group commit: it keeps draining until the batch is full or the oldest
+// pending event is flushMillis old, then fsyncs the stock delta log and the bill journal
+// once for the whole batch. Stock events are coalesced per SKU (the record carries the
+// current value), file rewrites such as users.dat by key (the last one wins). Bills and
+// stock that fail to write stay queued, in order, and are retried every flushMillis.
+// Properties:
+//   billing.persist.flushMillis  200   longest an event waits for its commit
+//   billing.persist.batchSize    256   events that force an early commit
+class PersistenceService implements Closeable {
+
+    // Runs on the EDT.
+    interface Listener {
+        void persistFailed(String what, IOException error);
+    }
+
+    interface IOAction {
+        void run() throws IOException;
+    }
+
+    private static final int STOCK = 0, PUT = 1, BARCODE = 2, BILL = 3, TASK = 4, COMPACT = 5, FLUSH = 6, STOP = 7;
+
+    private static final class Event {
+        final int kind;
+        final int sku;
+        final Object payload;
+        final long queuedNanos = System.nanoTime();
+
+        Event(int kind, int sku, Object payload) {
+            this.kind = kind;
+            this.sku = sku;
+            this.payload = payload;
+        }
+    }
+
+    private final BillingEngine engine;
+    private final IOAction syncBills;
+    private final StockStore stockStore;       // null: stock is not persisted
+    private final Listener listener;
+    private final long flushNanos;
+    private final int batchSize;
+    private final LinkedBlockingQueue<Event> queue = new LinkedBlockingQueue<>();
+    private final Thread worker;
+    private volatile boolean closed = false;
+
+    // batch state, worker thread only
+    private final BitSet dirtyStock = new BitSet();
+    private final BitSet dirtyPuts = new BitSet();
+    private final List<Event> barcodes = new ArrayList<>();
+    private final List<Bill> bills = new ArrayList<>();       // not yet recorded, oldest first
+    private boolean billsFailing = false;     // each reported once per run of failures
+    private boolean stockFailing = false;
+    private final Map<String, Event> tasks = new HashMap<>();
+    private final List<CompletableFuture<?>> waiting = new ArrayList<>();
+    private boolean billsWritten = false;
+    private boolean compactRequested = false;
+    private long oldestNanos = 0;
+    private IOException failure;
+
+    PersistenceService(BillingEngine engine, IOAction syncBills, StockStore stockStore, Listener listener) {
+        this.engine = engine;
+        this.syncBills = syncBills;
+        this.stockStore = stockStore;
+        this.listener = listener;
+        this.flushNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, Long.getLong("billing.persist.flushMillis", 200L)));
+        this.batchSize = Math.max(1, Integer.getInteger("billing.persist.batchSize", 256));
+        this.worker = new Thread(this::run, "write-behind");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    // ---------------------------
+    // Events (any thread, never blocks)
+    // ---------------------------
+    // A checked-out bill: its record, then the stock it sold.
+    void bill(Bill bill) {
+        enqueue(new Event(BILL, -1, bill));
+    }
+
+    void stock(int sku) {
+        enqueue(new Event(STOCK, sku, null));
+    }
+
+    // New or edited product (name, price, stock, HSN code and reorder level).
+    void put(int sku) {
+        enqueue(new Event(PUT, sku, null));
+    }
+
+    void barcode(int sku, String barcode) {
+        enqueue(new Event(BARCODE, sku, barcode));
+    }
+
+    // Rewrites a whole file; a later task with the same key replaces a pending one.
+    void task(String key, IOAction action) {
+        enqueue(new Event(TASK, -1, new Object[]{key, action}));
+    }
+
+    // Folds the delta log into a fresh stock snapshot after the next commit.
+    void compactStock() {
+        enqueue(new Event(COMPACT, -1, null));
+    }
+
+    // Completes once everything enqueued before the call is on disk.
+    CompletableFuture<Void> flush() {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        if (!enqueue(new Event(FLUSH, -1, done))) done.complete(null);
+        return done;
+    }
+
+    // Commits whatever is pending and stops the worker, waiting at most timeoutMillis.
+    // Returns false if the worker did not finish in time.
+    // Calling it again keeps waiting for the same shutdown.
+    boolean close(long timeoutMillis) {
+        synchronized (this) {
+            if (!closed) {
+                closed = true;
+                queue.add(new Event(STOP, -1, null));
+            }
+        }
+        try {
+            worker.join(timeoutMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return !worker.isAlive();
+    }
+
+    @Override
+    public void close() {
+        close(10_000);
+    }
+
+    private synchronized boolean enqueue(Event e) {
+        if (closed) return false;
+        queue.add(e);
+        return true;
+    }
+
+    // ---------------------------
+    // Worker
+    // ---------------------------
+    private void run() {
+        List<Event> drained = new ArrayList<>();
+        boolean stop = false;
+        int pending = 0;
+        while (!stop) {
+            try {
+                Event first = pending == 0 ? queue.take()
+                        : queue.poll(Math.max(0, oldestNanos + flushNanos - System.nanoTime()), TimeUnit.NANOSECONDS);
+                if (first != null) drained.add(first);
+            } catch (InterruptedException e) {
+                stop = true;
+            }
+            queue.drainTo(drained);
+            boolean commitNow = false;
+            for (Event e : drained) {
+                if (pending++ == 0) oldestNanos = e.queuedNanos;
+                switch (e.kind) {
+                    case STOP:
+                        stop = true;
+                        break;
+                    case FLUSH:
+                        waiting.add((CompletableFuture<?>) e.payload);
+                        commitNow = true;
+                        break;
+                    default:
+                        apply(e);
+                }
+            }
+            drained.clear();
+            if (stop || commitNow || pending >= batchSize || System.nanoTime() - oldestNanos >= flushNanos) {
+                if (pending > 0 && commit()) {
+                    // something failed: try again a flush interval from now, even if nothing new arrives
+                    pending = 1;
+                    oldestNanos = System.nanoTime();
+                } else {
+                    pending = 0;
+                }
+            }
+        }
+        for (Bill bill : bills) System.err.println("Persistence: bill " + bill.billNo + " was not saved");
+    }
+
+    private void apply(Event e) {
+        switch (e.kind) {
+            case STOCK:
+                dirtyStock.set(e.sku);
+                break;
+            case PUT:
+                dirtyPuts.set(e.sku);
+                break;
+            case BARCODE:
+                barcodes.add(e);
+                break;
+            case BILL:
+                Bill bill = (Bill) e.payload;
+                bills.add(bill);
+                for (CartLine line : bill.lines) dirtyStock.set(line.sku);
+                break;
+            case TASK:
+                tasks.put((String) ((Object[]) e.payload)[0], e);
+                break;
+            case COMPACT:
+                compactRequested = true;
+                break;
+            default:
+                break;
+        }
+    }
+
+    // Returns true if anything is left to retry.
+    private boolean commit() {
+        long started = System.nanoTime();
+        // bills in order; a failed one and those after it stay queued for the next commit
+        int recorded = 0;
+        try {
+            for (Bill bill : bills) {
+                engine.record(bill);
+                recorded++;
+                billsWritten = true;
+            }
+            billsFailing = false;
+        } catch (IOException ex) {
+            failAgain(billsFailing, "bill " + bills.get(recorded).billNo + " (will retry)", ex);
+            billsFailing = true;
+        } finally {
+            bills.subList(0, recorded).clear();
+        }
+        if (stockStore != null) {
+            try {
+                // puts carry stock too, and a barcode record must follow its product's put
+                for (int sku = dirtyPuts.nextSetBit(0); sku >= 0; sku = dirtyPuts.nextSetBit(sku + 1)) {
+                    stockStore.recordPut(sku);
+                    stockStore.recordHsn(sku);
+                    stockStore.recordReorderLevel(sku);
+                    dirtyPuts.clear(sku);
+                    dirtyStock.clear(sku);
+                }
+                int written = 0;
+                try {
+                    for (Event b : barcodes) {
+                        stockStore.recordBarcode(b.sku, (String) b.payload);
+                        written++;
+                    }
+                } finally {
+                    barcodes.subList(0, written).clear();
+                }
+                for (int sku = dirtyStock.nextSetBit(0); sku >= 0; sku = dirtyStock.nextSetBit(sku + 1)) {
+                    stockStore.recordStock(sku);
+                    dirtyStock.clear(sku);
+                }
+                stockStore.sync();
+                if (compactRequested) {
+                    compactRequested = false;
+                    stockStore.compact();
+                }
+                stockFailing = false;
+            } catch (IOException ex) {
+                // dirty SKUs stay marked and are retried with the next commit
+                failAgain(stockFailing, "stock (will retry)", ex);
+                stockFailing = true;
+            }
+            IOException compaction = stockStore.takeCompactionFailure();
+            if (compaction != null) fail("stock snapshot", compaction);
+        } else {
+            dirtyPuts.clear();
+            dirtyStock.clear();
+            barcodes.clear();
+            compactRequested = false;
+        }
+        if (billsWritten) {
+            try {
+                syncBills.run();
+                billsWritten = false;
+            } catch (IOException ex) {
+                fail("bills", ex);
+            }
+        }
+        for (Event t : tasks.values()) {
+            Object[] task = (Object[]) t.payload;
+            try {
+                ((IOAction) task[1]).run();
+            } catch (IOException ex) {
+                fail((String) task[0], ex);
+            }
+        }
+        tasks.clear();
+        Metrics.PERSIST_COMMIT.recordSince(started);
+        Metrics.PERSIST_LAG.recordSince(oldestNanos);
+        for (CompletableFuture<?> f : waiting) {
+            if (failure == null) f.complete(null);
+            else f.completeExceptionally(failure);
+        }
+        waiting.clear();
+        failure = null;
+        return !bills.isEmpty() || !dirtyStock.isEmpty() || !dirtyPuts.isEmpty() || !barcodes.isEmpty();
+    }
+
+    // A failure that is retried every flush interval is shown once, not every time.
+    private void failAgain(boolean reported, String what, IOException error) {
+        if (!reported) fail(what, error);
+        else if (failure == null) failure = error;
+    }
+
+    private void fail(String what, IOException error) {
+        if (failure == null) failure = error;
+        System.err.println("Persistence: " + what + ": " + error.getMessage());
+        SwingUtilities.invokeLater(() -> listener.persistFailed(what, error));
+    }
+}
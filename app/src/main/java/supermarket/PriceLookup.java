@@ -0,0 +1,387 @@
+package supermarket;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// ---------------------------
+// Price lookup for handhelds
+// ---------------------------
+// A small HTTP/JSON service so floor staff can check a price or stock level without
+// taking over a lane. Requests are answered from an immutable Snapshot of names, prices,
+// GST rates and barcodes with its own name and barcode maps. When Catalog.edits() shows
+// the catalog has changed, the next request starts a rebuild on a background thread and
+// keeps using the old snapshot until the new one is swapped in. Lookups never touch the
+// catalog's lock or the lane's search index (whose monitor the EDT's typeahead holds):
+// each snapshot carries a name index of its own, rebuilt only when SKUs were added. Stock
+// changes with every scan, so it is read live from the catalog's lock-free stock counters
+// instead of being copied.
+//
+//   GET  /item?barcode=8901234567890   or ?name=Milk 1L      one item; 404 lists close names
+//   GET  /search?q=milk&limit=10                            items by name, best first
+//   POST /items   one barcode or name per line               {"items": [...]} in request order
+//   GET  /health                                             catalog size and snapshot age
+//
+// An item is {"sku":12,"name":"Milk 1L","price":"54.00","gst":"5.0","stock":31,
+// "barcodes":["8901234567890"]}; gst is null when the bill's rate applies.
+//
+// Each request runs on its own virtual thread when the JDK has them (looked up
+// reflectively, so the build stays on release 17), otherwise on a fixed pool.
+// Properties:
+//   billing.lookup.port       unset: off         e.g. 8080
+//   billing.lookup.bind       all interfaces     address to listen on
+//   billing.lookup.threads    2 x cores          pool size without virtual threads
+//   billing.lookup.maxBatch   500                lines accepted by POST /items
+final class PriceLookup implements Closeable {
+
+    private static final String[] NO_BARCODES = new String[0];
+
+    // The catalog as of one edits() count; never modified after construction (its index
+    // is shared with the next snapshot if no SKUs were added, but never synced again).
+    static final class Snapshot {
+        final long edits;
+        final long builtMillis;
+        final int size;
+        final String[] names;
+        final long[] prices;        // paise
+        final int[] taxBps;         // -1: the bill's rate applies
+        final String[][] barcodes;  // most recently assigned first
+        private final StringIntMap byName;
+        private final StringIntMap byBarcode;
+        private final ItemSearchIndex index;    // may cover SKUs newer than this snapshot
+
+        Snapshot(Catalog catalog) {
+            this(catalog, null);
+        }
+
+        // Reuses previous's name index when it already covers every SKU: names never change.
+        Snapshot(Catalog catalog, Snapshot previous) {
+            edits = catalog.edits();
+            builtMillis = System.currentTimeMillis();
+            size = catalog.size();
+            names = new String[size];
+            prices = new long[size];
+            taxBps = new int[size];
+            barcodes = new String[size][];
+            byName = new StringIntMap(size);
+            byBarcode = new StringIntMap(size);
+            for (int sku = 0; sku < size; sku++) {
+                names[sku] = catalog.name(sku);
+                prices[sku] = catalog.price(sku);
+                taxBps[sku] = catalog.taxBps(sku);
+                List<String> codes = catalog.barcodesOf(sku);
+                barcodes[sku] = codes.isEmpty() ? NO_BARCODES : codes.toArray(NO_BARCODES);
+                byName.put(names[sku], sku);
+                for (String code : codes) byBarcode.put(code, sku);
+            }
+            if (previous != null && previous.index.size() >= size) {
+                index = previous.index;
+            } else {
+                index = new ItemSearchIndex();
+                index.sync(catalog);
+            }
+        }
+    }
+
+    // Fills json for one request against the snapshot; returns the HTTP status.
+    private interface Endpoint {
+        int respond(HttpExchange exchange, Snapshot snapshot, StringBuilder json) throws IOException;
+    }
+
+    private final Catalog catalog;
+    private final int maxBatch;
+    private final HttpServer server;
+    private final ExecutorService handlers;
+    private final String handlerKind;
+    private final ExecutorService refresher = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "price-lookup-refresh");
+        t.setDaemon(true);
+        return t;
+    });
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+    private volatile Snapshot snapshot;        // null until the first one is built
+
+    // Returns at once; requests get 503 until the first snapshot is ready.
+    PriceLookup(Catalog catalog, String bind, int port, int threads, int maxBatch) throws IOException {
+        this.catalog = catalog;
+        this.maxBatch = Math.max(1, maxBatch);
+        // headers and body go out as separate small writes; with Nagle on, every response
+        // waits for the client's delayed ACK (~40 ms). Read once, when the first server starts.
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) System.setProperty("sun.net.httpserver.nodelay", "true");
+        this.server = HttpServer.create(bind.isEmpty() ? new InetSocketAddress(port) : new InetSocketAddress(bind, port), 256);
+        ExecutorService virtual = virtualThreadExecutor();
+        if (virtual != null) {
+            handlers = virtual;
+            handlerKind = "virtual threads";
+        } else {
+            int n = Math.max(1, threads);
+            handlers = Executors.newFixedThreadPool(n, r -> {
+                Thread t = new Thread(r, "price-lookup");
+                t.setDaemon(true);
+                return t;
+            });
+            handlerKind = n + " threads";
+        }
+        server.setExecutor(handlers);
+        server.createContext("/item", exchange -> handle(exchange, "GET", this::item));
+        server.createContext("/search", exchange -> handle(exchange, "GET", this::search));
+        server.createContext("/items", exchange -> handle(exchange, "POST", this::batch));
+        server.createContext("/health", exchange -> handle(exchange, "GET", this::health));
+        server.start();
+        current();
+    }
+
+    // The running service, or null when billing.lookup.port is not set.
+    static PriceLookup fromProperties(Catalog catalog) throws IOException {
+        int port = Integer.getInteger("billing.lookup.port", 0);
+        if (port <= 0) return null;
+        return new PriceLookup(catalog, System.getProperty("billing.lookup.bind", "").trim(), port,
+                Integer.getInteger("billing.lookup.threads", 2 * Runtime.getRuntime().availableProcessors()),
+                Integer.getInteger("billing.lookup.maxBatch", 500));
+    }
+
+    int port() {
+        return server.getAddress().getPort();
+    }
+
+    // The snapshot to answer from (null before the first); schedules a rebuild if the
+    // catalog has moved on.
+    Snapshot current() {
+        Snapshot s = snapshot;
+        if ((s == null || s.edits != catalog.edits()) && refreshing.compareAndSet(false, true)) {
+            refresher.execute(() -> {
+                try {
+                    snapshot = new Snapshot(catalog, s);
+                } finally {
+                    refreshing.set(false);
+                }
+            });
+        }
+        return s;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        handlers.shutdownNow();
+        refresher.shutdownNow();
+    }
+
+    // ---------------------------
+    // Endpoints
+    // ---------------------------
+    private int item(HttpExchange exchange, Snapshot s, StringBuilder json) {
+        Map<String, String> q = query(exchange);
+        String barcode = q.getOrDefault("barcode", "").trim();
+        String name = q.getOrDefault("name", "").trim();
+        if (barcode.isEmpty() && name.isEmpty()) return error(json, "give barcode or name");
+        int sku = barcode.isEmpty() ? resolve(s, name) : s.byBarcode.get(barcode);
+        if (sku >= 0) {
+            appendItem(json, s, sku, null);
+            return 200;
+        }
+        json.append("{\"error\":\"not found\",\"matches\":[");
+        if (!name.isEmpty()) {
+            boolean first = true;
+            for (int match : search(s, name, 5)) {
+                if (!first) json.append(',');
+                appendString(json, s.names[match]);
+                first = false;
+            }
+        }
+        json.append("]}");
+        return 404;
+    }
+
+    private int search(HttpExchange exchange, Snapshot s, StringBuilder json) {
+        Map<String, String> q = query(exchange);
+        String text = q.getOrDefault("q", "").trim();
+        if (text.isEmpty()) return error(json, "give q");
+        int limit;
+        try {
+            limit = Math.max(1, Math.min(50, Integer.parseInt(q.getOrDefault("limit", "10").trim())));
+        } catch (NumberFormatException e) {
+            return error(json, "limit must be a number");
+        }
+        json.append("{\"items\":[");
+        boolean first = true;
+        for (int sku : search(s, text, limit)) {
+            if (!first) json.append(',');
+            appendItem(json, s, sku, null);
+            first = false;
+        }
+        json.append("]}");
+        return 200;
+    }
+
+    // Batch lookup: one barcode or name per line, answered in order; a miss is
+    // {"query":...,"error":"not found"} so positions still line up.
+    private int batch(HttpExchange exchange, Snapshot s, StringBuilder json) throws IOException {
+        String[] lines = readBody(exchange.getRequestBody(), 64 * maxBatch).split("\r?\n");
+        if (lines.length > maxBatch) return error(json, "at most " + maxBatch + " lines per request");
+        json.append("{\"items\":[");
+        boolean first = true;
+        for (String line : lines) {
+            String key = line.trim();
+            if (key.isEmpty()) continue;
+            if (!first) json.append(',');
+            first = false;
+            int sku = s.byBarcode.get(key);
+            if (sku < 0) sku = resolve(s, key);
+            if (sku >= 0) {
+                appendItem(json, s, sku, key);
+            } else {
+                appendString(json.append("{\"query\":"), key).append(",\"error\":\"not found\"}");
+            }
+        }
+        json.append("]}");
+        return 200;
+    }
+
+    private int health(HttpExchange exchange, Snapshot s, StringBuilder json) {
+        json.append("{\"skus\":").append(s.size)
+                .append(",\"snapshotAgeMillis\":").append(System.currentTimeMillis() - s.builtMillis)
+                .append(",\"current\":").append(s.edits == catalog.edits())
+                .append(",\"handlers\":");
+        appendString(json, handlerKind).append('}');
+        return 200;
+    }
+
+    // ---------------------------
+    // Helpers
+    // ---------------------------
+    private void handle(HttpExchange exchange, String method, Endpoint endpoint) throws IOException {
+        long started = System.nanoTime();
+        StringBuilder json = new StringBuilder(256);
+        int status;
+        try {
+            Snapshot s = current();
+            if (!method.equals(exchange.getRequestMethod())) {
+                status = 405;
+                error(json, "use " + method);
+            } else if (s == null) {
+                status = 503;
+                error(json, "catalog is still loading");
+            } else {
+                status = endpoint.respond(exchange, s, json);
+            }
+        } catch (IOException | RuntimeException e) {
+            status = 500;
+            json.setLength(0);
+            error(json, String.valueOf(e.getMessage()));
+        }
+        try {
+            byte[] body = json.append('\n').toString().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+            exchange.sendResponseHeaders(status, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } finally {
+            exchange.close();
+            Metrics.PRICE_LOOKUP.recordSince(started);
+        }
+    }
+
+    // Exact name, then a case/accent-insensitive or unambiguous match, as at the lane.
+    private int resolve(Snapshot s, String name) {
+        int sku = s.byName.get(name);
+        if (sku < 0) sku = s.index.resolve(name);
+        return sku < s.size ? sku : -1;
+    }
+
+    // The index may already cover SKUs newer than the snapshot; those are left out.
+    private int[] search(Snapshot s, String text, int limit) {
+        int[] hits = s.index.search(text, limit);
+        int n = 0;
+        for (int sku : hits) if (sku < s.size) hits[n++] = sku;
+        return n == hits.length ? hits : Arrays.copyOf(hits, n);
+    }
+
+    private void appendItem(StringBuilder json, Snapshot s, int sku, String query) {
+        json.append('{');
+        if (query != null) appendString(json.append("\"query\":"), query).append(',');
+        json.append("\"sku\":").append(sku).append(",\"name\":");
+        appendString(json, s.names[sku]).append(",\"price\":\"");
+        Money.appendTo(json, s.prices[sku]).append("\",\"gst\":");
+        if (s.taxBps[sku] < 0) {
+            json.append("null");
+        } else {
+            Money.appendPercent(json.append('"'), s.taxBps[sku]).append('"');
+        }
+        json.append(",\"stock\":").append(catalog.stock(sku)).append(",\"barcodes\":[");
+        String[] codes = s.barcodes[sku];
+        for (int i = 0; i < codes.length; i++) {
+            if (i > 0) json.append(',');
+            appendString(json, codes[i]);
+        }
+        json.append("]}");
+    }
+
+    private static int error(StringBuilder json, String message) {
+        appendString(json.append("{\"error\":"), message).append('}');
+        return 400;
+    }
+
+    private static StringBuilder appendString(StringBuilder json, String s) {
+        json.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            } else if (c < 0x20) {
+                json.append(String.format("\\u%04x", (int) c));
+            } else {
+                json.append(c);
+            }
+        }
+        return json.append('"');
+    }
+
+    private static Map<String, String> query(HttpExchange exchange) {
+        Map<String, String> out = new HashMap<>();
+        String raw = exchange.getRequestURI().getRawQuery();
+        if (raw == null) return out;
+        for (String pair : raw.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq <= 0) continue;
+            out.put(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+                    URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+        }
+        return out;
+    }
+
+    private static String readBody(InputStream in, int max) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream(1024);
+        byte[] buf = new byte[8192];
+        for (int n = in.read(buf); n > 0; n = in.read(buf)) {
+            body.write(buf, 0, n);
+            if (body.size() > max) throw new IOException("request body over " + max + " bytes");
+        }
+        return body.toString(StandardCharsets.UTF_8);
+    }
+
+    // Executors.newVirtualThreadPerTaskExecutor() on JDK 21+, null before.
+    private static ExecutorService virtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,294 @@
+package supermarket;
+
+import java.io.IOException;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// ---------------------------
+// Promotions
+// ---------------------------
+// Rules are compiled once into a per-SKU index (sku -> rules that mention it), and each
+// cart keeps a Tally that is updated as lines are added or removed: a scan re-prices only
+// the rules on its SKU, never the whole cart. A rule's discount is a pure function of the
+// quantity and amount it covers, so the tally applies new value - old value.
+//
+// promotions.txt, one rule per line ('#' starts a comment), fields separated by '|',
+// items by ',' (item names or barcodes):
+//   BUY_GET    | Soap 2+1             | 2 1           | Soap            buy 2, get 1 free, per item
+//   MULTI_BUY  | Juice 3 for 100      | 3 100.00      | Juice, Mango    3 for ₹100, per item
+//   QTY_TIER   | Rice bulk            | 10:5 25:10    | Rice, Basmati   10+ units 5% off, 25+ 10%
+//   SPEND_TIER | Dairy                | 500:10        | Milk, Butter    ₹500+ on these items 10% off
+// BUY_GET and MULTI_BUY count each listed item separately; the tiers count the listed
+// items together, which is how category promotions are written. Rules on the same item
+// stack; the bill's promotions never exceed its subtotal.
+final class Promotions {
+
+    static final int BUY_GET = 0, MULTI_BUY = 1, QTY_TIER = 2, SPEND_TIER = 3;
+    static final int MAX_ERRORS = 100;
+
+    private static final String[] KINDS = {"BUY_GET", "MULTI_BUY", "QTY_TIER", "SPEND_TIER"};
+    private static final RoundingMode ROUNDING = RoundingMode.HALF_UP;
+    private static final int[] NO_RULES = new int[0];
+
+    static final Promotions NONE = new Promotions(new Rule[0], new int[0][]);
+
+    static final class Rule {
+        final String name;
+        final int kind;
+        final long n;               // BUY_GET: units bought, MULTI_BUY: units per set
+        final long m;               // BUY_GET: units free, MULTI_BUY: price per set (paise)
+        final long[] thresholds;    // tiers, ascending: units (QTY_TIER) or paise (SPEND_TIER)
+        final int[] bps;
+
+        Rule(String name, int kind, long n, long m, long[] thresholds, int[] bps) {
+            this.name = name;
+            this.kind = kind;
+            this.n = n;
+            this.m = m;
+            this.thresholds = thresholds;
+            this.bps = bps;
+        }
+
+        boolean perItem() {
+            return kind == BUY_GET || kind == MULTI_BUY;
+        }
+
+        // Discount in paise on qty units worth amount paise.
+        long value(long qty, long amount) {
+            if (qty <= 0 || amount <= 0) return 0;
+            switch (kind) {
+                case BUY_GET: {
+                    long free = qty / (n + m) * m;
+                    return Money.divide(amount * free, qty, ROUNDING);
+                }
+                case MULTI_BUY: {
+                    long inSets = qty / n * n;
+                    long worth = Money.divide(amount * inSets, qty, ROUNDING);
+                    return Math.max(0, worth - inSets / n * m);
+                }
+                default: {
+                    long measure = kind == QTY_TIER ? qty : amount;
+                    for (int t = thresholds.length - 1; t >= 0; t--) {
+                        if (measure >= thresholds[t]) return Money.percent(amount, bps[t], ROUNDING);
+                    }
+                    return 0;
+                }
+            }
+        }
+    }
+
+    private final Rule[] rules;
+    private final int[][] bySku;
+
+    private Promotions(Rule[] rules, int[][] bySku) {
+        this.rules = rules;
+        this.bySku = bySku;
+    }
+
+    int size() {
+        return rules.length;
+    }
+
+    Rule rule(int id) {
+        return rules[id];
+    }
+
+    int[] rulesFor(int sku) {
+        return sku >= 0 && sku < bySku.length && bySku[sku] != null ? bySku[sku] : NO_RULES;
+    }
+
+    Tally newTally() {
+        return new Tally(this);
+    }
+
+    // ---------------------------
+    // Per-cart running state
+    // ---------------------------
+    // Not thread-safe: Cart updates it under its own lock.
+    static final class Tally {
+        private final Promotions promotions;
+        private final Map<Integer, long[]> items = new HashMap<>();   // sku -> {qty, amount}, promoted SKUs only
+        private final Map<Integer, long[]> groups = new HashMap<>();  // rule -> {qty, amount}, tier rules only
+        private long discount = 0;
+
+        private Tally(Promotions promotions) {
+            this.promotions = promotions;
+        }
+
+        // Total promotion discount so far (not capped; see Cart.promotion()).
+        long discount() {
+            return discount;
+        }
+
+        // Applies a line change: qty units worth amount paise (negative when removed).
+        void add(int sku, int qty, long amount) {
+            int[] ids = promotions.rulesFor(sku);
+            if (ids.length == 0) return;
+            long[] item = items.computeIfAbsent(sku, k -> new long[2]);
+            long oldQty = item[0], oldAmount = item[1];
+            item[0] += qty;
+            item[1] += amount;
+            for (int id : ids) {
+                Rule r = promotions.rules[id];
+                if (r.perItem()) {
+                    discount += r.value(item[0], item[1]) - r.value(oldQty, oldAmount);
+                } else {
+                    long[] group = groups.computeIfAbsent(id, k -> new long[2]);
+                    long before = r.value(group[0], group[1]);
+                    group[0] += qty;
+                    group[1] += amount;
+                    discount += r.value(group[0], group[1]) - before;
+                    if (group[0] == 0) groups.remove(id);
+                }
+            }
+            if (item[0] == 0) items.remove(sku);
+        }
+
+        // Splits total (the capped discount) across lines: each rule's value goes to the
+        // lines it covers in proportion to their amounts; rounding leftovers to the largest.
+        long[] perLine(List<CartLine> lines, long total) {
+            long[] share = new long[lines.size()];
+            if (total <= 0) return share;
+            long given = 0;
+            int largest = 0;
+            for (int i = 0; i < share.length; i++) {
+                CartLine line = lines.get(i);
+                long[] item = items.get(line.sku);
+                if (item == null || discount <= 0) continue;
+                long value = 0;
+                for (int id : promotions.rulesFor(line.sku)) {
+                    Rule r = promotions.rules[id];
+                    long[] covered = r.perItem() ? item : groups.get(id);
+                    long qty = covered[0], amount = covered[1];
+                    if (amount > 0) {
+                        value += Money.divide(Math.multiplyExact(r.value(qty, amount), line.total()), amount, RoundingMode.FLOOR);
+                    }
+                }
+                share[i] = Money.divide(Math.multiplyExact(value, total), discount, RoundingMode.FLOOR);
+                given += share[i];
+                if (share[i] > share[largest]) largest = i;
+            }
+            share[largest] += total - given;
+            return share;
+        }
+    }
+
+    // ---------------------------
+    // Loading
+    // ---------------------------
+    // Reads a rules file against catalog. Problems are added to errors by line number
+    // (at most MAX_ERRORS); callers should not use the result if any were added.
+    static Promotions load(Path file, Catalog catalog, List<String> errors) throws IOException {
+        return parse(Files.readAllLines(file, StandardCharsets.UTF_8), catalog, errors);
+    }
+
+    static Promotions parse(List<String> lines, Catalog catalog, List<String> errors) {
+        List<Rule> rules = new ArrayList<>();
+        List<int[]> skus = new ArrayList<>();
+        for (int ln = 0; ln < lines.size() && errors.size() < MAX_ERRORS; ln++) {
+            String line = lines.get(ln);
+            int hash = line.indexOf('#');
+            if (hash >= 0) line = line.substring(0, hash);
+            if (line.trim().isEmpty()) continue;
+            String[] f = line.split("\\|", -1);
+            try {
+                if (f.length != 4) throw new IllegalArgumentException("expected kind | name | parameters | items");
+                Rule rule = compile(f[0].trim(), f[1].trim(), f[2].trim().split("\\s+"));
+                skus.add(items(f[3], catalog));
+                rules.add(rule);
+            } catch (IllegalArgumentException e) {
+                errors.add("Line " + (ln + 1) + ": " + e.getMessage());
+            }
+        }
+        int[][] bySku = new int[catalog.size()][];
+        for (int id = 0; id < rules.size(); id++) {
+            for (int sku : skus.get(id)) {
+                int[] had = bySku[sku];
+                if (had == null) {
+                    bySku[sku] = new int[]{id};
+                } else if (had[had.length - 1] != id) {
+                    int[] more = Arrays.copyOf(had, had.length + 1);
+                    more[had.length] = id;
+                    bySku[sku] = more;
+                }
+            }
+        }
+        return new Promotions(rules.toArray(new Rule[0]), bySku);
+    }
+
+    private static Rule compile(String kindName, String name, String[] p) {
+        int kind = Arrays.asList(KINDS).indexOf(kindName.toUpperCase());
+        if (kind < 0) throw new IllegalArgumentException("unknown kind '" + kindName + "'");
+        if (name.isEmpty()) throw new IllegalArgumentException("missing name");
+        switch (kind) {
+            case BUY_GET: {
+                if (p.length != 2) throw new IllegalArgumentException("BUY_GET needs: bought free");
+                long n = count(p[0]), m = count(p[1]);
+                return new Rule(name, kind, n, m, null, null);
+            }
+            case MULTI_BUY: {
+                if (p.length != 2) throw new IllegalArgumentException("MULTI_BUY needs: units price");
+                long n = count(p[0]);
+                long price;
+                try {
+                    price = Money.parse(p[1]);
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("invalid price '" + p[1] + "'");
+                }
+                if (price < 0) throw new IllegalArgumentException("invalid price '" + p[1] + "'");
+                return new Rule(name, kind, n, price, null, null);
+            }
+            default: {
+                long[] thresholds = new long[p.length];
+                int[] bps = new int[p.length];
+                for (int t = 0; t < p.length; t++) {
+                    int colon = p[t].indexOf(':');
+                    if (colon < 0) throw new IllegalArgumentException("tier '" + p[t] + "' should be threshold:percent");
+                    try {
+                        thresholds[t] = kind == QTY_TIER ? count(p[t].substring(0, colon)) : Money.parse(p[t].substring(0, colon));
+                        bps[t] = Money.parsePercent(p[t].substring(colon + 1));
+                    } catch (NumberFormatException e) {
+                        throw new IllegalArgumentException("invalid tier '" + p[t] + "'");
+                    }
+                    if (bps[t] > Money.MAX_DISCOUNT_BPS) throw new IllegalArgumentException("tier '" + p[t] + "' is over 100%");
+                    if (t > 0 && thresholds[t] <= thresholds[t - 1]) {
+                        throw new IllegalArgumentException("tiers must be in ascending order");
+                    }
+                }
+                return new Rule(name, kind, 0, 0, thresholds, bps);
+            }
+        }
+    }
+
+    private static long count(String s) {
+        try {
+            long v = Long.parseLong(s);
+            if (v > 0) return v;
+        } catch (NumberFormatException ignored) {
+        }
+        throw new IllegalArgumentException("invalid quantity '" + s + "'");
+    }
+
+    private static int[] items(String field, Catalog catalog) {
+        String[] names = field.split(",");
+        int[] skus = new int[names.length];
+        int n = 0;
+        for (String name : names) {
+            name = name.trim();
+            if (name.isEmpty()) continue;
+            int sku = catalog.skuOf(name);
+            if (sku < 0) sku = catalog.skuForBarcode(name);
+            if (sku < 0) throw new IllegalArgumentException("unknown item '" + name + "'");
+            skus[n++] = sku;
+        }
+        if (n == 0) throw new IllegalArgumentException("no items");
+        return Arrays.copyOf(skus, n);
+    }
+}
@@ -0,0 +1,186 @@
+package supermarket;
+
+import javax.swing.SwingUtilities;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.concurrent.LinkedBlockingQueue;
+
+// ---------------------------
+// Receipt printing
+// ---------------------------
+// Checkout only queues the bill; one worker thread renders it into a reused buffer and
+// writes it with NIO, so a slow or jammed printer never holds up the next customer.
+// Properties:
+//   billing.receipt.printer    receipts/   a device or file to append to (e.g. /dev/usb/lp0),
+//                                          spool:<dir> for one file per receipt, or none;
+//                                          by default a daily text file in receipts/
+//   billing.receipt.encoding   escpos for a device or spool, else text
+//   billing.receipt.template   (built-in)  a template file, see ReceiptTemplate
+//   billing.receipt.preview    true unless a printer or spool is set: show the receipt on screen
+class ReceiptPrinter implements Closeable {
+
+    // Runs on the EDT.
+    interface Listener {
+        void printFailed(String billNo, IOException error);
+    }
+
+    private static final Bill STOP = new Bill("", "", "", "", null, Collections.emptyList(), 0, 0, 0, 0, 0, 0);
+    private static final String DEFAULT_DIR = "receipts";
+
+    private final ReceiptTemplate template;
+    private final Path device;          // appended to; null with spool or none
+    private final Path spool;           // one file per receipt; null otherwise
+    private final boolean daily;        // device is today's file in receipts/
+    private final boolean preview;
+    private final Listener listener;
+    private final LinkedBlockingQueue<Bill> queue = new LinkedBlockingQueue<>();
+    private final Thread worker;
+    private volatile boolean closed = false;
+
+    // worker thread only
+    private ByteBuffer buffer = ByteBuffer.allocateDirect(8192);
+    private FileChannel channel;
+    private LocalDate channelDay;
+
+    // Reads the billing.receipt.* properties. Throws IOException if the template cannot be
+    // read and IllegalArgumentException if it does not compile.
+    static ReceiptPrinter fromProperties(Listener listener) throws IOException {
+        String target = System.getProperty("billing.receipt.printer", "").trim();
+        Path device = null, spool = null;
+        boolean daily = target.isEmpty();
+        if (target.startsWith("spool:")) {
+            spool = Paths.get(target.substring("spool:".length()));
+        } else if (!target.equalsIgnoreCase("none")) {
+            device = daily ? Paths.get(DEFAULT_DIR) : Paths.get(target);
+        }
+        boolean printer = device != null && !daily || spool != null;
+        String enc = System.getProperty("billing.receipt.encoding", printer ? "escpos" : "text");
+        ReceiptTemplate.Encoding encoding = enc.trim().equalsIgnoreCase("escpos")
+                ? ReceiptTemplate.Encoding.ESC_POS : ReceiptTemplate.Encoding.TEXT;
+        String file = System.getProperty("billing.receipt.template", "").trim();
+        ReceiptTemplate template = file.isEmpty() ? ReceiptTemplate.compile(ReceiptTemplate.DEFAULT, encoding)
+                : ReceiptTemplate.load(Paths.get(file), encoding);
+        boolean preview = Boolean.parseBoolean(System.getProperty("billing.receipt.preview", Boolean.toString(!printer)));
+        return new ReceiptPrinter(template, device, spool, daily, preview, listener);
+    }
+
+    ReceiptPrinter(ReceiptTemplate template, Path device, Path spool, boolean daily, boolean preview, Listener listener) {
+        this.template = template;
+        this.device = device;
+        this.spool = spool;
+        this.daily = daily;
+        this.preview = preview;
+        this.listener = listener;
+        this.worker = new Thread(this::run, "receipt-printer");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    // Whether the cashier should also see the receipt on screen.
+    boolean preview() {
+        return preview;
+    }
+
+    // Queues bill for printing; never blocks.
+    void print(Bill bill) {
+        if (device == null && spool == null) return;
+        synchronized (this) {
+            if (!closed) queue.add(bill);
+        }
+    }
+
+    // Prints what is queued and stops the worker, waiting at most timeoutMillis.
+    boolean close(long timeoutMillis) {
+        synchronized (this) {
+            if (!closed) {
+                closed = true;
+                queue.add(STOP);
+            }
+        }
+        try {
+            worker.join(timeoutMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return !worker.isAlive();
+    }
+
+    @Override
+    public void close() {
+        close(5_000);
+    }
+
+    // ---------------------------
+    // Worker
+    // ---------------------------
+    private void run() {
+        try {
+            for (Bill bill = queue.take(); bill != STOP; bill = queue.take()) {
+                long started = System.nanoTime();
+                try {
+                    buffer = template.render(bill, buffer);
+                    write(bill);
+                } catch (IOException e) {
+                    closeChannel();
+                    System.err.println("Receipt " + bill.billNo + ": " + e.getMessage());
+                    String billNo = bill.billNo;
+                    SwingUtilities.invokeLater(() -> listener.printFailed(billNo, e));
+                }
+                Metrics.RECEIPT_PRINT.recordSince(started);
+            }
+        } catch (InterruptedException ignored) {
+            // daemon thread; exit
+        } finally {
+            closeChannel();
+        }
+    }
+
+    private void write(Bill bill) throws IOException {
+        if (spool != null) {
+            Files.createDirectories(spool);
+            Path tmp = spool.resolve(bill.billNo + ".tmp");
+            try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.WRITE)) {
+                while (buffer.hasRemaining()) ch.write(buffer);
+            }
+            // the spooler only ever sees complete receipts
+            Files.move(tmp, spool.resolve(bill.billNo + ".prn"), StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+            return;
+        }
+        LocalDate today = daily ? LocalDate.now() : null;
+        if (channel == null || daily && !today.equals(channelDay)) {
+            closeChannel();
+            Path target = device;
+            if (daily) {
+                Files.createDirectories(device);
+                target = device.resolve("receipts-" + today + ".txt");
+            }
+            // a device is opened for writing only: character devices cannot be appended to
+            channel = Files.isRegularFile(target) || daily
+                    ? FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)
+                    : FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            channelDay = today;
+        }
+        while (buffer.hasRemaining()) channel.write(buffer);
+    }
+
+    private void closeChannel() {
+        if (channel == null) return;
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+            // nothing more to do with a channel that failed
+        }
+        channel = null;
+    }
+}
@@ -0,0 +1,491 @@
+package supermarket;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// ---------------------------
+// Receipt templates
+// ---------------------------
+// A template is compiled once into pre-encoded literal bytes and field ids; rendering a
+// bill writes straight into a caller-owned ByteBuffer (numbers and dates digit by digit),
+// so a receipt costs no Strings and, once the buffer has grown to size, no allocation.
+//
+// One template line is one receipt line. Fields are {name}; "{{" is a literal brace.
+// A line may start with directives, each followed by one space:
+//   @lines          repeat for every bill line: {item} {qty} {price} {lineTotal}
+//   @taxes          repeat for every GST slab: {hsn} {taxPct} {taxable} {cgst} {sgst} {tax}
+//   @if f / @unless f   print only if field f is (not) non-zero / non-empty
+//   @center @bold @large   ESC/POS styling; ignored in plain text
+//   @cut            (alone) cut the paper; ignored in plain text
+//   @# text         a comment line
+// Consecutive lines with the same repeat form one block, printed together per line/slab.
+// Bill fields: {billNo} {lane} {customer} {cashier} {date} {subtotal} {promotion}
+// {discountPct} {discount} (percentage part only) {taxPct} {tax} {total} {singleTax}
+// (one GST rate and no HSN codes).
+//
+// ESC_POS output is ASCII for thermal printers: "₹" prints as "Rs.", emoji are dropped and
+// other non-ASCII characters print as '?'. TEXT output is UTF-8.
+final class ReceiptTemplate {
+
+    enum Encoding { TEXT, ESC_POS }
+
+    // Reproduces the receipt the application has always shown.
+    static final String DEFAULT = ""
+            + "@center @large 🧾 Supermarket Bill\n"
+            + "---------------------------------\n"
+            + "Bill No: {billNo}\n"
+            + "Customer: {customer}\n"
+            + "Cashier: {cashier}\n"
+            + "Date: {date}\n"
+            + "\n"
+            + "@lines {item} x {qty} = ₹{lineTotal}\n"
+            + "---------------------------------\n"
+            + "Subtotal: ₹{subtotal}\n"
+            + "@if promotion Promotions: -₹{promotion}\n"
+            + "Discount: {discountPct}% (-₹{discount})\n"
+            + "@if singleTax GST: {taxPct}% (+₹{tax})\n"
+            + "@unless singleTax GST: +₹{tax}\n"
+            + "@unless singleTax @taxes @if hsn   {taxPct}% HSN {hsn} on ₹{taxable}: CGST ₹{cgst} + SGST ₹{sgst}\n"
+            + "@unless singleTax @taxes @unless hsn   {taxPct}% on ₹{taxable}: CGST ₹{cgst} + SGST ₹{sgst}\n"
+            + "@bold Total: ₹{total}\n"
+            + "---------------------------------\n"
+            + "@center Thank You! Visit Again!\n"
+            + "\n"
+            + "@cut\n";
+
+    // field ids: bill, then line, then slab
+    private static final int BILL_NO = 0, LANE = 1, CUSTOMER = 2, CASHIER = 3, DATE = 4, SUBTOTAL = 5,
+            PROMOTION = 6, DISCOUNT_PCT = 7, DISCOUNT = 8, TAX_PCT = 9, TAX = 10, TOTAL = 11, SINGLE_TAX = 12,
+            ITEM = 13, QTY = 14, PRICE = 15, LINE_TOTAL = 16,
+            HSN = 17, SLAB_PCT = 18, TAXABLE = 19, CGST = 20, SGST = 21, SLAB_TAX = 22;
+    private static final int ONCE = 0, LINES = 1, TAXES = 2;
+    private static final Map<String, Integer> BILL_FIELDS = new HashMap<>();
+    private static final Map<String, Integer> LINE_FIELDS = new HashMap<>();
+    private static final Map<String, Integer> TAX_FIELDS = new HashMap<>();
+
+    static {
+        String[] bill = {"billNo", "lane", "customer", "cashier", "date", "subtotal", "promotion",
+                "discountPct", "discount", "taxPct", "tax", "total", "singleTax"};
+        for (int i = 0; i < bill.length; i++) BILL_FIELDS.put(bill[i], i);
+        LINE_FIELDS.put("item", ITEM);
+        LINE_FIELDS.put("qty", QTY);
+        LINE_FIELDS.put("price", PRICE);
+        LINE_FIELDS.put("lineTotal", LINE_TOTAL);
+        TAX_FIELDS.put("hsn", HSN);
+        TAX_FIELDS.put("taxPct", SLAB_PCT);
+        TAX_FIELDS.put("taxable", TAXABLE);
+        TAX_FIELDS.put("cgst", CGST);
+        TAX_FIELDS.put("sgst", SGST);
+        TAX_FIELDS.put("tax", SLAB_TAX);
+    }
+
+    // ESC/POS commands
+    private static final byte ESC = 0x1B, GS = 0x1D;
+    private static final byte[] INIT = {ESC, '@'};
+    private static final byte[] CENTER_ON = {ESC, 'a', 1}, CENTER_OFF = {ESC, 'a', 0};
+    private static final byte[] BOLD_ON = {ESC, 'E', 1}, BOLD_OFF = {ESC, 'E', 0};
+    private static final byte[] LARGE_ON = {GS, '!', 0x11}, LARGE_OFF = {GS, '!', 0};
+    private static final byte[] CUT = {GS, 'V', 66, 0};
+
+    private static final class Line {
+        int repeat = ONCE;
+        int[] ifTrue = new int[0];
+        int[] ifFalse = new int[0];
+        boolean center, bold, large, cut;
+        byte[][] literals;      // literals[i] precedes fields[i]; one more literal than fields
+        int[] fields;
+    }
+
+    private final Encoding encoding;
+    private final Line[] lines;
+
+    private ReceiptTemplate(Encoding encoding, Line[] lines) {
+        this.encoding = encoding;
+        this.lines = lines;
+    }
+
+    Encoding encoding() {
+        return encoding;
+    }
+
+    static ReceiptTemplate load(Path file, Encoding encoding) throws IOException {
+        return compile(new String(Files.readAllBytes(file), StandardCharsets.UTF_8), encoding);
+    }
+
+    // Throws IllegalArgumentException naming the template line for unknown fields or directives.
+    static ReceiptTemplate compile(String source, Encoding encoding) {
+        String[] text = source.replace("\r\n", "\n").split("\n", -1);
+        int count = source.endsWith("\n") ? text.length - 1 : text.length;
+        List<Line> lines = new ArrayList<>();
+        for (int ln = 0; ln < count; ln++) {
+            try {
+                Line line = compileLine(text[ln], encoding);
+                if (line != null) lines.add(line);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Line " + (ln + 1) + ": " + e.getMessage());
+            }
+        }
+        return new ReceiptTemplate(encoding, lines.toArray(new Line[0]));
+    }
+
+    private static Line compileLine(String s, Encoding encoding) {
+        Line line = new Line();
+        List<String> ifTrue = new ArrayList<>(), ifFalse = new ArrayList<>();
+        while (s.startsWith("@") && !s.startsWith("@@")) {
+            int end = s.indexOf(' ');
+            String directive = end < 0 ? s : s.substring(0, end);
+            s = end < 0 ? "" : s.substring(end + 1);
+            switch (directive) {
+                case "@#":
+                    return null;
+                case "@lines":
+                case "@taxes":
+                    int repeat = directive.equals("@lines") ? LINES : TAXES;
+                    if (line.repeat != ONCE && line.repeat != repeat) throw new IllegalArgumentException("@lines and @taxes on one line");
+                    line.repeat = repeat;
+                    break;
+                case "@if":
+                case "@unless":
+                    end = s.indexOf(' ');
+                    String field = end < 0 ? s : s.substring(0, end);
+                    if (field.isEmpty()) throw new IllegalArgumentException(directive + " needs a field name");
+                    (directive.equals("@if") ? ifTrue : ifFalse).add(field);
+                    s = end < 0 ? "" : s.substring(end + 1);
+                    break;
+                case "@center":
+                    line.center = true;
+                    break;
+                case "@bold":
+                    line.bold = true;
+                    break;
+                case "@large":
+                    line.large = true;
+                    break;
+                case "@cut":
+                    if (!s.isEmpty()) throw new IllegalArgumentException("@cut must be alone on its line");
+                    line.cut = true;
+                    break;
+                default:
+                    throw new IllegalArgumentException("unknown directive " + directive);
+            }
+        }
+        if (s.startsWith("@@")) s = s.substring(1);
+        line.ifTrue = resolve(ifTrue, line.repeat);
+        line.ifFalse = resolve(ifFalse, line.repeat);
+
+        List<byte[]> literals = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        StringBuilder literal = new StringBuilder();
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '{' && i + 1 < s.length() && s.charAt(i + 1) == '{') {
+                literal.append('{');
+                i++;
+            } else if (c == '{') {
+                int close = s.indexOf('}', i);
+                if (close < 0) throw new IllegalArgumentException("unclosed {");
+                literals.add(encode(literal, encoding));
+                literal.setLength(0);
+                names.add(s.substring(i + 1, close).trim());
+                i = close;
+            } else {
+                literal.append(c);
+            }
+        }
+        literals.add(encode(literal, encoding));
+        line.literals = literals.toArray(new byte[0][]);
+        line.fields = resolve(names, line.repeat);
+        return line;
+    }
+
+    private static int[] resolve(List<String> names, int repeat) {
+        int[] ids = new int[names.size()];
+        for (int i = 0; i < ids.length; i++) {
+            String name = names.get(i);
+            Integer id = repeat == LINES ? LINE_FIELDS.get(name) : repeat == TAXES ? TAX_FIELDS.get(name) : null;
+            if (id == null) id = BILL_FIELDS.get(name);
+            if (id == null) {
+                boolean elsewhere = LINE_FIELDS.containsKey(name) || TAX_FIELDS.containsKey(name);
+                throw new IllegalArgumentException(elsewhere
+                        ? "{" + name + "} needs @" + (LINE_FIELDS.containsKey(name) ? "lines" : "taxes")
+                        : "unknown field {" + name + "}");
+            }
+            ids[i] = id;
+        }
+        return ids;
+    }
+
+    private static byte[] encode(CharSequence s, Encoding encoding) {
+        ByteBuffer b = putText(ByteBuffer.allocate(s.length() * 3), s, encoding);
+        byte[] bytes = new byte[b.position()];
+        b.flip();
+        b.get(bytes);
+        return bytes;
+    }
+
+    // ---------------------------
+    // Rendering
+    // ---------------------------
+    // Renders bill into into (cleared first; a larger heap buffer replaces it if it is too
+    // small) and returns the buffer, flipped for reading or writing to a channel.
+    ByteBuffer render(Bill bill, ByteBuffer into) {
+        ByteBuffer b = into != null ? into : ByteBuffer.allocate(1024);
+        b.clear();
+        if (encoding == Encoding.ESC_POS) b = put(b, INIT);
+        for (int i = 0; i < lines.length; ) {
+            Line first = lines[i];
+            int end = i + 1;
+            if (first.repeat == ONCE) {
+                b = renderLine(b, first, bill, null, null);
+            } else {
+                while (end < lines.length && lines[end].repeat == first.repeat) end++;
+                int n = first.repeat == LINES ? bill.lines.size() : bill.taxes.size();
+                for (int k = 0; k < n; k++) {
+                    CartLine cl = first.repeat == LINES ? bill.lines.get(k) : null;
+                    Bill.TaxLine tl = first.repeat == TAXES ? bill.taxes.get(k) : null;
+                    for (int j = i; j < end; j++) b = renderLine(b, lines[j], bill, cl, tl);
+                }
+            }
+            i = end;
+        }
+        b.flip();
+        return b;
+    }
+
+    private ByteBuffer renderLine(ByteBuffer b, Line line, Bill bill, CartLine cl, Bill.TaxLine tl) {
+        for (int f : line.ifTrue) if (!truthy(f, bill, cl, tl)) return b;
+        for (int f : line.ifFalse) if (truthy(f, bill, cl, tl)) return b;
+        boolean escPos = encoding == Encoding.ESC_POS;
+        if (line.cut) return escPos ? put(b, CUT) : b;
+        if (escPos) {
+            if (line.center) b = put(b, CENTER_ON);
+            if (line.bold) b = put(b, BOLD_ON);
+            if (line.large) b = put(b, LARGE_ON);
+        }
+        for (int i = 0; i < line.fields.length; i++) {
+            b = put(b, line.literals[i]);
+            b = field(b, line.fields[i], bill, cl, tl);
+        }
+        b = put(b, line.literals[line.fields.length]);
+        if (escPos) {
+            if (line.large) b = put(b, LARGE_OFF);
+            if (line.bold) b = put(b, BOLD_OFF);
+        }
+        b = room(b, 1).put((byte) '\n');
+        if (escPos && line.center) b = put(b, CENTER_OFF);
+        return b;
+    }
+
+    private ByteBuffer field(ByteBuffer b, int id, Bill bill, CartLine cl, Bill.TaxLine tl) {
+        switch (id) {
+            case BILL_NO:
+                return putText(b, bill.billNo, encoding);
+            case LANE:
+                return putText(b, bill.lane, encoding);
+            case CUSTOMER:
+                return putText(b, bill.customer, encoding);
+            case CASHIER:
+                return putText(b, bill.cashier, encoding);
+            case DATE:
+                return putDate(b, bill.time);
+            case SUBTOTAL:
+                return putMoney(b, bill.subtotal);
+            case PROMOTION:
+                return putMoney(b, bill.promotion);
+            case DISCOUNT_PCT:
+                return putPercent(b, bill.discountBps);
+            case DISCOUNT:
+                return putMoney(b, bill.discount - bill.promotion);
+            case TAX_PCT:
+                return putPercent(b, bill.taxBps);
+            case TAX:
+                return putMoney(b, bill.tax);
+            case TOTAL:
+                return putMoney(b, bill.total);
+            case SINGLE_TAX:
+                return putText(b, singleTax(bill) ? "yes" : "no", encoding);
+            case ITEM:
+                return putText(b, cl.item, encoding);
+            case QTY:
+                return putLong(b, cl.qty);
+            case PRICE:
+                return putMoney(b, cl.unitPrice);
+            case LINE_TOTAL:
+                return putMoney(b, cl.total());
+            case HSN:
+                return putText(b, tl.hsn, encoding);
+            case SLAB_PCT:
+                return putPercent(b, tl.bps);
+            case TAXABLE:
+                return putMoney(b, tl.taxable);
+            case CGST:
+                return putMoney(b, tl.cgst());
+            case SGST:
+                return putMoney(b, tl.sgst());
+            default:
+                return putMoney(b, tl.tax);
+        }
+    }
+
+    private static boolean truthy(int id, Bill bill, CartLine cl, Bill.TaxLine tl) {
+        switch (id) {
+            case BILL_NO:
+                return !bill.billNo.isEmpty();
+            case LANE:
+                return bill.lane != null && !bill.lane.isEmpty();
+            case CUSTOMER:
+                return !bill.customer.isEmpty();
+            case CASHIER:
+                return !bill.cashier.isEmpty();
+            case DATE:
+                return true;
+            case SUBTOTAL:
+                return bill.subtotal != 0;
+            case PROMOTION:
+                return bill.promotion != 0;
+            case DISCOUNT_PCT:
+                return bill.discountBps != 0;
+            case DISCOUNT:
+                return bill.discount != bill.promotion;
+            case TAX_PCT:
+                return bill.taxBps != 0;
+            case TAX:
+                return bill.tax != 0;
+            case TOTAL:
+                return bill.total != 0;
+            case SINGLE_TAX:
+                return singleTax(bill);
+            case ITEM:
+                return !cl.item.isEmpty();
+            case QTY:
+                return cl.qty != 0;
+            case PRICE:
+                return cl.unitPrice != 0;
+            case LINE_TOTAL:
+                return cl.total() != 0;
+            case HSN:
+                return !tl.hsn.isEmpty();
+            case SLAB_PCT:
+                return tl.bps != 0;
+            case TAXABLE:
+                return tl.taxable != 0;
+            case CGST:
+                return tl.cgst() != 0;
+            case SGST:
+                return tl.sgst() != 0;
+            default:
+                return tl.tax != 0;
+        }
+    }
+
+    private static boolean singleTax(Bill bill) {
+        return bill.taxes.size() == 1 && bill.taxes.get(0).hsn.isEmpty();
+    }
+
+    // ---------------------------
+    // Byte writers
+    // ---------------------------
+    private static ByteBuffer room(ByteBuffer b, int n) {
+        if (b.remaining() >= n) return b;
+        ByteBuffer bigger = ByteBuffer.allocate(Math.max(b.capacity() * 2, b.position() + n));
+        b.flip();
+        return bigger.put(b);
+    }
+
+    private static ByteBuffer put(ByteBuffer b, byte[] bytes) {
+        return room(b, bytes.length).put(bytes);
+    }
+
+    private static ByteBuffer putText(ByteBuffer b, CharSequence s, Encoding encoding) {
+        if (s == null) return b;
+        b = room(b, s.length() * 3);
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                b.put((byte) c);
+            } else if (encoding == Encoding.ESC_POS) {
+                if (c == '₹') {
+                    b.put((byte) 'R').put((byte) 's').put((byte) '.');
+                } else if (Character.isHighSurrogate(c)) {
+                    i++;                                            // emoji: drop it and one following space
+                    if (i + 1 < s.length() && s.charAt(i + 1) == ' ') i++;
+                } else {
+                    b.put((byte) '?');
+                }
+            } else if (c < 0x800) {
+                b.put((byte) (0xC0 | c >> 6)).put((byte) (0x80 | c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, s.charAt(++i));
+                b.put((byte) (0xF0 | cp >> 18)).put((byte) (0x80 | cp >> 12 & 0x3F))
+                        .put((byte) (0x80 | cp >> 6 & 0x3F)).put((byte) (0x80 | cp & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                b.put((byte) '?');
+            } else {
+                b.put((byte) (0xE0 | c >> 12)).put((byte) (0x80 | c >> 6 & 0x3F)).put((byte) (0x80 | c & 0x3F));
+            }
+        }
+        return b;
+    }
+
+    private static ByteBuffer putLong(ByteBuffer b, long v) {
+        if (v == Long.MIN_VALUE) return putText(b, Long.toString(v), Encoding.TEXT);
+        b = room(b, 20);
+        if (v < 0) {
+            b.put((byte) '-');
+            v = -v;
+        }
+        int digits = 1;
+        for (long t = v; t >= 10; t /= 10) digits++;
+        int end = b.position() + digits;
+        for (int p = end - 1; p >= b.position(); p--) {
+            b.put(p, (byte) ('0' + v % 10));
+            v /= 10;
+        }
+        return b.position(end);
+    }
+
+    // Same text as Money.appendTo.
+    private static ByteBuffer putMoney(ByteBuffer b, long paise) {
+        if (paise < 0 && paise != Long.MIN_VALUE) {
+            b = room(b, 1).put((byte) '-');
+            paise = -paise;
+        }
+        long cents = Math.abs(paise % 100);
+        b = putLong(b, paise / 100);
+        return room(b, 3).put((byte) '.').put((byte) ('0' + cents / 10)).put((byte) ('0' + cents % 10));
+    }
+
+    // Same text as Money.appendPercent.
+    private static ByteBuffer putPercent(ByteBuffer b, int bps) {
+        b = putLong(b, bps / 100);
+        int frac = bps % 100;
+        b = room(b, 3).put((byte) '.');
+        if (frac % 10 == 0) return b.put((byte) ('0' + frac / 10));
+        return b.put((byte) ('0' + frac / 10)).put((byte) ('0' + frac % 10));
+    }
+
+    // dd-MM-yyyy HH:mm:ss
+    private static ByteBuffer putDate(ByteBuffer b, LocalDateTime t) {
+        b = room(b, 19);
+        two(b, t.getDayOfMonth()).put((byte) '-');
+        two(b, t.getMonthValue()).put((byte) '-');
+        int y = t.getYear();
+        two(b, y / 100);
+        two(b, y % 100).put((byte) ' ');
+        two(b, t.getHour()).put((byte) ':');
+        two(b, t.getMinute()).put((byte) ':');
+        return two(b, t.getSecond());
+    }
+
+    private static ByteBuffer two(ByteBuffer b, int v) {
+        return b.put((byte) ('0' + v / 10)).put((byte) ('0' + v % 10));
+    }
+}
@@ -0,0 +1,217 @@
+package supermarket;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.zone.ZoneRules;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+// ---------------------------
+// Parallel sales analytics
+// ---------------------------
+// Splits each day's bills (BillSegment) into ordinal ranges and aggregates each range on
+// the fork-join pool straight from the raw records: each leaf reads its part of the file
+// in large chunks (BillSegment.scanRange) and decodes only the fields it needs, keyed by
+// SKU in primitive arrays. Leaf reports are merged pairwise on the way back up.
+// Receipts stored as text before structured records are parsed on a best-effort basis.
+class SalesAnalytics {
+
+    static final int LEAF_BILLS = 8192;
+    static final int CHUNK_BYTES = 1 << 20;
+
+    private static final DateTimeFormatter LEGACY_DATE = DateTimeFormatter.ofPattern("dd-MM-yyyy HH:mm:ss");
+
+    private final List<? extends BillSegment> segments;
+    private final ZoneRules zone = ZoneId.systemDefault().getRules();
+
+    SalesAnalytics(BillSegment segment) {
+        this(Collections.singletonList(segment));
+    }
+
+    SalesAnalytics(List<? extends BillSegment> segments) {
+        this.segments = segments;
+    }
+
+    // Aggregates bills with fromMillis <= time < toMillis.
+    SalesReport run(long fromMillis, long toMillis) throws IOException {
+        return run(fromMillis, toMillis, ForkJoinPool.commonPool());
+    }
+
+    SalesReport run(long fromMillis, long toMillis, ForkJoinPool pool) throws IOException {
+        SalesReport report = new SalesReport();
+        try {
+            for (BillSegment segment : segments) {
+                report.merge(pool.invoke(new Range(segment, 0, segment.size(), fromMillis, toMillis)));
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return report.finish();
+    }
+
+    // All bills of the segments in one sequential pass on the calling thread, e.g. the
+    // end-of-day Z-report over a sealed day: each block is read and inflated once.
+    SalesReport stream() throws IOException {
+        SalesReport report = new SalesReport();
+        for (BillSegment segment : segments) {
+            segment.scanRange(0, segment.size(), CHUNK_BYTES, (ordinal, record) -> add(report, record, Long.MIN_VALUE, Long.MAX_VALUE));
+        }
+        return report.finish();
+    }
+
+    private void add(SalesReport report, ByteBuffer record, long fromMillis, long toMillis) throws IOException {
+        if (BillCodec.isStructured(record)) {
+            addStructured(report, record, fromMillis, toMillis);
+        } else {
+            addLegacy(report, record, fromMillis, toMillis);
+        }
+    }
+
+    private final class Range extends RecursiveTask<SalesReport> {
+        private final BillSegment segment;
+        private final int from, to;
+        private final long fromMillis, toMillis;
+
+        Range(BillSegment segment, int from, int to, long fromMillis, long toMillis) {
+            this.segment = segment;
+            this.from = from;
+            this.to = to;
+            this.fromMillis = fromMillis;
+            this.toMillis = toMillis;
+        }
+
+        @Override
+        protected SalesReport compute() {
+            if (to - from <= LEAF_BILLS) {
+                SalesReport report = new SalesReport();
+                try {
+                    segment.scanRange(from, to, CHUNK_BYTES, (ordinal, record) -> add(report, record, fromMillis, toMillis));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return report;
+            }
+            int mid = (from + to) >>> 1;
+            Range left = new Range(segment, from, mid, fromMillis, toMillis);
+            left.fork();
+            SalesReport right = new Range(segment, mid, to, fromMillis, toMillis).compute();
+            return left.join().merge(right);
+        }
+    }
+
+    // Reads the layout documented in BillCodec without building a Bill.
+    private void addStructured(SalesReport report, ByteBuffer in, long fromMillis, long toMillis) throws IOException {
+        int base = in.position();
+        long millis = in.getLong(base + 1);
+        if (millis < fromMillis || millis >= toMillis) return;
+        long subtotal = in.getLong(base + 9);
+        long discount = in.getLong(base + 17);
+        long tax = in.getLong(base + 25);
+        long total = in.getLong(base + 33);
+        int lineCount = in.getInt(base + 49);
+
+        in.position(base + BillCodec.FIXED_HEADER);
+        BillCodec.skipUTF(in);                      // billNo
+        BillCodec.skipUTF(in);                      // lane
+        BillCodec.skipUTF(in);                      // customer
+        String cashier = BillCodec.readUTF(in);
+
+        long units = 0;
+        for (int i = 0; i < lineCount; i++) {
+            int sku = in.getInt();
+            int qty = in.getInt();
+            long unitPrice = in.getLong();
+            long lineDiscount = in.getLong();
+            in.getLong();                           // line GST: not part of item revenue
+            String name = null;
+            if (report.knowsSku(sku)) {
+                BillCodec.skipUTF(in);
+            } else {
+                name = BillCodec.readUTF(in);
+            }
+            report.addSkuLine(sku, name, qty, Money.times(unitPrice, qty) - lineDiscount);
+            units += qty;
+        }
+        report.addBill(cashier, hourOf(millis), units, subtotal, discount, tax, total);
+    }
+
+    private int hourOf(long millis) {
+        long seconds = Math.floorDiv(millis, 1000L) + zone.getOffset(Instant.ofEpochMilli(millis)).getTotalSeconds();
+        return (int) (Math.floorMod(seconds, 86400L) / 3600);
+    }
+
+    // Old receipts: "Cashier: x", "Date: dd-MM-yyyy HH:mm:ss", "item x qty = ₹amount",
+    // "Subtotal: ₹", "Discount: p% (-₹d)", "GST: p% (+₹t)", "Total: ₹". The first receipts
+    // printed only "Discount: p%" and "GST: p%": the discount is then p% of the subtotal
+    // and the tax whatever the total adds to the discounted subtotal.
+    private void addLegacy(SalesReport report, ByteBuffer record, long fromMillis, long toMillis) {
+        String text = new String(record.array(), record.arrayOffset() + record.position(), record.remaining(),
+                StandardCharsets.UTF_8);
+        String cashier = "unknown";
+        LocalDateTime time = null;
+        long subtotal = 0, discount = 0, tax = 0, total = 0, units = 0;
+        int discountBps = -1;
+        boolean taxInTotal = false;
+        SalesReport lines = new SalesReport();
+        for (String line : text.split("\n")) {
+            try {
+                if (line.startsWith("Cashier: ")) {
+                    cashier = line.substring(9).trim();
+                } else if (line.startsWith("Date: ")) {
+                    time = LocalDateTime.parse(line.substring(6).trim(), LEGACY_DATE);
+                } else if (line.startsWith("Subtotal: ₹")) {
+                    subtotal = Money.parse(line.substring(11).trim());
+                } else if (line.startsWith("Discount: ")) {
+                    if (line.indexOf('₹') >= 0) discount = amountInParens(line);
+                    else discountBps = percentOf(line);
+                } else if (line.startsWith("GST: ")) {
+                    if (line.indexOf('₹') >= 0) tax = amountInParens(line);
+                    else taxInTotal = true;
+                } else if (line.startsWith("Total: ₹")) {
+                    total = Money.parse(line.substring(8).trim());
+                } else {
+                    int eq = line.lastIndexOf(" = ₹");
+                    int x = eq < 0 ? -1 : line.lastIndexOf(" x ", eq);
+                    if (x > 0) {
+                        int qty = Integer.parseInt(line.substring(x + 3, eq).trim());
+                        lines.addNamedLine(line.substring(0, x), qty, Money.parse(line.substring(eq + 4).trim()));
+                        units += qty;
+                    }
+                }
+            } catch (RuntimeException unparsable) {
+                // skip the line; the rest of the receipt still counts
+            }
+        }
+        if (time == null) return;
+        long millis = time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        if (millis < fromMillis || millis >= toMillis) return;
+        if (discountBps >= 0) discount = Money.percent(subtotal, discountBps, RoundingMode.HALF_UP);
+        if (taxInTotal) tax = total - (subtotal - discount);
+        // legacy line amounts are before the bill discount: spread it in proportion
+        if (discount != 0 && subtotal > 0) {
+            for (long[] v : lines.items.values()) v[1] -= v[1] * discount / subtotal;
+        }
+        report.merge(lines);
+        report.addBill(cashier, time.getHour(), units, subtotal, discount, tax, total);
+    }
+
+    private static long amountInParens(String line) {
+        int open = line.indexOf('₹');
+        int close = line.indexOf(')', open);
+        return Money.parse(line.substring(open + 1, close).trim());
+    }
+
+    // "Discount: 5.0%" -> 500 bps; printed in the default locale, so "5,0%" too.
+    private static int percentOf(String line) {
+        return Money.parsePercent(line.substring(line.indexOf(':') + 1, line.indexOf('%')).trim().replace(',', '.'));
+    }
+}
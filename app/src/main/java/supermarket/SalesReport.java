@@ -0,0 +1,136 @@
+package supermarket;
+
+import java.util.*;
+
+// ---------------------------
+// Aggregated sales figures
+// ---------------------------
+// Built by SalesAnalytics: each fork-join leaf fills its own report and the results
+// are merged pairwise. Amounts are paise. Per-item figures are net of the allocated
+// bill discount and before GST.
+class SalesReport {
+
+    long bills;
+    long lines;
+    long units;
+    long gross;         // sum of subtotals
+    long discount;
+    long tax;
+    long net;           // sum of bill totals
+    final long[] hourlyRevenue = new long[24];
+    final long[] hourlyBills = new long[24];
+
+    // per SKU while aggregating structured records (primitive, grown on demand)
+    private long[] skuUnits = new long[0];
+    private long[] skuRevenue = new long[0];
+    private String[] skuName = new String[0];
+
+    // per item name: legacy text bills, and the final view after finish()
+    final Map<String, long[]> items = new HashMap<>();          // name -> {units, revenue}
+    final Map<String, long[]> cashiers = new HashMap<>();       // name -> {bills, units, revenue, gross, discount, tax}
+
+    boolean knowsSku(int sku) {
+        return sku < skuName.length && skuName[sku] != null;
+    }
+
+    void addSkuLine(int sku, String nameIfNew, int qty, long revenue) {
+        if (sku >= skuUnits.length) {
+            int cap = Math.max(sku + 1, skuUnits.length * 2);
+            skuUnits = Arrays.copyOf(skuUnits, cap);
+            skuRevenue = Arrays.copyOf(skuRevenue, cap);
+            skuName = Arrays.copyOf(skuName, cap);
+        }
+        if (skuName[sku] == null) skuName[sku] = nameIfNew;
+        skuUnits[sku] += qty;
+        skuRevenue[sku] += revenue;
+        lines++;
+        units += qty;
+    }
+
+    void addNamedLine(String item, int qty, long revenue) {
+        long[] v = items.computeIfAbsent(item, k -> new long[2]);
+        v[0] += qty;
+        v[1] += revenue;
+        lines++;
+        units += qty;
+    }
+
+    void addBill(String cashier, int hour, long billUnits, long subtotal, long billDiscount, long billTax, long total) {
+        bills++;
+        gross += subtotal;
+        discount += billDiscount;
+        tax += billTax;
+        net += total;
+        if (hour >= 0 && hour < 24) {
+            hourlyRevenue[hour] += total;
+            hourlyBills[hour]++;
+        }
+        long[] c = cashiers.computeIfAbsent(cashier, k -> new long[6]);
+        c[0]++;
+        c[1] += billUnits;
+        c[2] += total;
+        c[3] += subtotal;
+        c[4] += billDiscount;
+        c[5] += billTax;
+    }
+
+    SalesReport merge(SalesReport other) {
+        bills += other.bills;
+        lines += other.lines;
+        units += other.units;
+        gross += other.gross;
+        discount += other.discount;
+        tax += other.tax;
+        net += other.net;
+        for (int h = 0; h < 24; h++) {
+            hourlyRevenue[h] += other.hourlyRevenue[h];
+            hourlyBills[h] += other.hourlyBills[h];
+        }
+        if (other.skuUnits.length > skuUnits.length) {
+            skuUnits = Arrays.copyOf(skuUnits, other.skuUnits.length);
+            skuRevenue = Arrays.copyOf(skuRevenue, other.skuUnits.length);
+            skuName = Arrays.copyOf(skuName, other.skuUnits.length);
+        }
+        for (int sku = 0; sku < other.skuUnits.length; sku++) {
+            if (other.skuName[sku] == null) continue;
+            if (skuName[sku] == null) skuName[sku] = other.skuName[sku];
+            skuUnits[sku] += other.skuUnits[sku];
+            skuRevenue[sku] += other.skuRevenue[sku];
+        }
+        mergeInto(items, other.items);
+        mergeInto(cashiers, other.cashiers);
+        return this;
+    }
+
+    // Folds the per-SKU arrays into the per-item map; call once on the final report.
+    SalesReport finish() {
+        for (int sku = 0; sku < skuName.length; sku++) {
+            if (skuName[sku] == null) continue;
+            long[] v = items.computeIfAbsent(skuName[sku], k -> new long[2]);
+            v[0] += skuUnits[sku];
+            v[1] += skuRevenue[sku];
+        }
+        skuUnits = new long[0];
+        skuRevenue = new long[0];
+        skuName = new String[0];
+        return this;
+    }
+
+    // Entries sorted by the given column, largest first.
+    static List<Map.Entry<String, long[]>> sortedBy(Map<String, long[]> map, int column) {
+        List<Map.Entry<String, long[]>> list = new ArrayList<>(map.entrySet());
+        list.sort((a, b) -> Long.compare(b.getValue()[column], a.getValue()[column]));
+        return list;
+    }
+
+    private static void mergeInto(Map<String, long[]> into, Map<String, long[]> from) {
+        for (Map.Entry<String, long[]> e : from.entrySet()) {
+            long[] v = into.get(e.getKey());
+            if (v == null) {
+                into.put(e.getKey(), e.getValue().clone());
+            } else {
+                for (int i = 0; i < v.length; i++) v[i] += e.getValue()[i];
+            }
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package supermarket;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+
+// ---------------------------
+// Scan log
+// ---------------------------
+// What the cashiers did, one event per line, replayable by ScanReplay:
+//
+//   2026-10-17T10:00:01.250,lane-1,scan,8901234567890,1     barcode, qty
+//   2026-10-17T10:00:02.900,lane-1,item,2,Milk 1L           qty, then the item name
+//   2026-10-17T10:00:04.000,lane-1,remove,0                 line index
+//   2026-10-17T10:00:09.000,lane-1,pay,5,18,9845012345      discount %, GST %, customer id
+//   2026-10-17T10:00:12.000,lane-2,void                     abandons the open bill
+//
+// The time is ISO local date-time or epoch millis. Lines starting with # are comments. A
+// bill is every event of a lane up to its pay or void. The item name is the rest of the
+// line, so it may contain commas.
+final class ScanLog {
+
+    static final byte SCAN = 0, ITEM = 1, REMOVE = 2, PAY = 3, VOID = 4;
+    private static final String[] KINDS = {"scan", "item", "remove", "pay", "void"};
+    private static final ZoneId ZONE = ZoneId.systemDefault();
+
+    static final class Event {
+        final long millis;
+        final String lane;
+        final byte kind;
+        final String text;      // barcode, item name or customer id
+        final int number;       // qty, line index or discount bps
+        final int taxBps;       // pay only
+
+        Event(long millis, String lane, byte kind, String text, int number, int taxBps) {
+            this.millis = millis;
+            this.lane = lane;
+            this.kind = kind;
+            this.text = text;
+            this.number = number;
+            this.taxBps = taxBps;
+        }
+    }
+
+    private ScanLog() {
+    }
+
+    // Reads a whole log; malformed lines are listed in errors (at most maxErrors) and skipped.
+    static List<Event> read(Path path, List<String> errors, int maxErrors) throws IOException {
+        List<Event> events = new ArrayList<>();
+        int lineNo = 0;
+        try (BufferedReader in = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            for (String line = in.readLine(); line != null; line = in.readLine()) {
+                lineNo++;
+                if (line.trim().isEmpty() || line.startsWith("#")) continue;
+                try {
+                    events.add(parse(line));
+                } catch (IllegalArgumentException | DateTimeParseException e) {
+                    if (errors.size() < maxErrors) errors.add("Line " + lineNo + ": " + e.getMessage());
+                }
+            }
+        }
+        return events;
+    }
+
+    static Event parse(String line) {
+        String[] f = line.split(",", 4);
+        if (f.length < 3) throw new IllegalArgumentException("expected time,lane,event");
+        long millis = f[0].trim().chars().allMatch(Character::isDigit) ? Long.parseLong(f[0].trim())
+                : LocalDateTime.parse(f[0].trim()).atZone(ZONE).toInstant().toEpochMilli();
+        String lane = f[1].trim();
+        if (lane.isEmpty()) throw new IllegalArgumentException("no lane");
+        String kind = f[2].trim().toLowerCase();
+        String rest = f.length > 3 ? f[3] : "";
+        switch (kind) {
+            case "scan": {
+                String[] p = rest.split(",");
+                int qty = p.length > 1 ? Integer.parseInt(p[1].trim()) : 1;
+                if (p[0].trim().isEmpty()) throw new IllegalArgumentException("scan without a barcode");
+                return new Event(millis, lane, SCAN, p[0].trim(), qty, 0);
+            }
+            case "item": {
+                int comma = rest.indexOf(',');
+                if (comma < 0) throw new IllegalArgumentException("expected item,qty,name");
+                return new Event(millis, lane, ITEM, rest.substring(comma + 1).trim(),
+                        Integer.parseInt(rest.substring(0, comma).trim()), 0);
+            }
+            case "remove":
+                return new Event(millis, lane, REMOVE, "", Integer.parseInt(rest.trim()), 0);
+            case "pay": {
+                String[] p = rest.split(",", 3);
+                int discount = p.length > 0 && !p[0].trim().isEmpty() ? Money.parseDiscount(p[0].trim()) : 0;
+                int tax = p.length > 1 && !p[1].trim().isEmpty() ? Money.parsePercent(p[1].trim()) : 0;
+                return new Event(millis, lane, PAY, p.length > 2 ? p[2].trim() : "", discount, tax);
+            }
+            case "void":
+                return new Event(millis, lane, VOID, "", 0, 0);
+            default:
+                throw new IllegalArgumentException("unknown event '" + kind + "'");
+        }
+    }
+
+    // ---------------------------
+    // Recording
+    // ---------------------------
+    // Appends events as the lane produces them; a bill's lines reach the file when it is
+    // paid or voided. Failures are reported once and recording stops: the log is a
+    // diagnostic, never a reason to hold up a sale.
+    static final class Writer implements Closeable {
+        private final Path path;
+        private final StringBuilder line = new StringBuilder(96);
+        private BufferedWriter out;
+
+        Writer(Path path) throws IOException {
+            this.path = path;
+            this.out = Files.newBufferedWriter(path, StandardCharsets.UTF_8, StandardOpenOption.CREATE,
+                    StandardOpenOption.APPEND);
+        }
+
+        // billing.scanlog=<file>, or null when not set.
+        static Writer fromProperties() throws IOException {
+            String file = System.getProperty("billing.scanlog", "").trim();
+            return file.isEmpty() ? null : new Writer(Path.of(file));
+        }
+
+        synchronized void scan(String lane, String barcode, int qty) {
+            write(lane, SCAN).append(barcode).append(',').append(qty);
+            end(false);
+        }
+
+        synchronized void item(String lane, String name, int qty) {
+            write(lane, ITEM).append(qty).append(',').append(name.replace('\n', ' '));
+            end(false);
+        }
+
+        synchronized void remove(String lane, int index) {
+            write(lane, REMOVE).append(index);
+            end(false);
+        }
+
+        synchronized void pay(String lane, int discountBps, int taxBps, String customerId) {
+            StringBuilder sb = write(lane, PAY);
+            Money.appendPercent(sb, discountBps).append(',');
+            Money.appendPercent(sb, taxBps).append(',').append(customerId);
+            end(true);
+        }
+
+        synchronized void cancel(String lane) {
+            write(lane, VOID);
+            line.setLength(line.length() - 1);
+            end(true);
+        }
+
+        @Override
+        public synchronized void close() {
+            if (out == null) return;
+            try {
+                out.close();
+            } catch (IOException ignored) {
+                // recording is best effort
+            }
+            out = null;
+        }
+
+        private StringBuilder write(String lane, byte kind) {
+            line.setLength(0);
+            LocalDateTime now = LocalDateTime.ofInstant(Instant.ofEpochMilli(System.currentTimeMillis()), ZONE);
+            line.append(now).append(',').append(lane).append(',').append(KINDS[kind]).append(',');
+            return line;
+        }
+
+        private void end(boolean flush) {
+            if (out == null) return;
+            try {
+                out.append(line).write('\n');
+                if (flush) out.flush();
+            } catch (IOException e) {
+                System.err.println("Scan log " + path + ": " + e.getMessage() + "; recording stopped");
+                close();
+            }
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package supermarket;
+
+import javax.swing.SwingUtilities;
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+// ---------------------------
+// Scanner burst pipeline
+// ---------------------------
+// The barcode field only enqueues; a worker thread resolves scans against the engine.
+// Each wake-up drains everything queued so far, so a burst of identical scans becomes a
+// single quantity increment on the bill, and the EDT gets at most one pending update
+// however fast the scanner fires. Failures (unknown barcode, no stock) are handed to
+// the listener instead of opening a dialog. Each scan's enqueue time rides along so
+// the EDT can record scan-to-row latency once the row is actually shown.
+class ScanPipeline implements Closeable {
+
+    // Both methods run on the EDT.
+    interface Listener {
+        void cartChanged(Cart cart);
+
+        void scanFailed(String barcode, String message);
+    }
+
+    private static final Scan STOP = new Scan(null);
+
+    private static final class Scan {
+        final String barcode;
+        final long queuedNanos = System.nanoTime();
+
+        Scan(String barcode) {
+            this.barcode = barcode;
+        }
+    }
+
+    private final BillingEngine engine;
+    private final Supplier<Cart> currentCart;
+    private final Listener listener;
+    private final LinkedBlockingQueue<Scan> queue = new LinkedBlockingQueue<>();
+    private final ConcurrentLinkedQueue<String[]> failures = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean uiPending = new AtomicBoolean(false);
+    private final Thread worker;
+    private int inFlight = 0;      // guarded by this
+    private long[] landed = new long[64];  // enqueue times resolved but not yet shown; guarded by this
+    private int landedCount = 0;   // guarded by this
+
+    ScanPipeline(BillingEngine engine, Supplier<Cart> currentCart, Listener listener) {
+        this.engine = engine;
+        this.currentCart = currentCart;
+        this.listener = listener;
+        this.worker = new Thread(this::run, "scan-worker");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    void submit(String barcode) {
+        synchronized (this) {
+            inFlight++;
+        }
+        queue.add(new Scan(barcode));
+    }
+
+    // Waits up to timeoutMillis for queued scans to reach the cart, then applies the
+    // pending UI update directly. Call on the EDT before acting on the whole bill.
+    boolean awaitIdle(long timeoutMillis) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        boolean idle;
+        synchronized (this) {
+            while (inFlight > 0) {
+                long left = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (left <= 0) break;
+                try {
+                    wait(left);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+            idle = inFlight == 0;
+        }
+        applyUpdates();
+        return idle;
+    }
+
+    @Override
+    public void close() {
+        queue.add(STOP);
+    }
+
+    private void run() {
+        List<Scan> batch = new ArrayList<>();
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        while (true) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            queue.drainTo(batch);
+
+            // identical scans in one burst become one quantity
+            boolean stop = false;
+            for (Scan scan : batch) {
+                if (scan == STOP) stop = true;
+                else counts.merge(scan.barcode, 1, Integer::sum);
+            }
+            Cart cart = currentCart.get();
+            for (Map.Entry<String, Integer> e : counts.entrySet()) {
+                try {
+                    engine.addScanned(cart, e.getKey(), e.getValue());
+                } catch (BillingException ex) {
+                    // as if scanned one by one: keep what stock allows, report the rest
+                    int added = 0;
+                    if (e.getValue() > 1) {
+                        try {
+                            while (added < e.getValue()) {
+                                engine.addScanned(cart, e.getKey(), 1);
+                                added++;
+                            }
+                        } catch (BillingException again) {
+                            ex = again;
+                        }
+                    }
+                    if (engine.catalog().skuForBarcode(e.getKey()) < 0) Metrics.UNKNOWN_BARCODES.add(e.getValue());
+                    failures.add(new String[]{e.getKey(), ex.getMessage()});
+                }
+            }
+            int done = batch.size() - (stop ? 1 : 0);
+            Metrics.SCANS.add(done);
+            synchronized (this) {
+                if (landedCount + done > landed.length) {
+                    landed = Arrays.copyOf(landed, Math.max(landed.length * 2, landedCount + done));
+                }
+                for (Scan scan : batch) if (scan != STOP) landed[landedCount++] = scan.queuedNanos;
+            }
+            batch.clear();
+            counts.clear();
+
+            if (uiPending.compareAndSet(false, true)) SwingUtilities.invokeLater(this::applyUpdates);
+            synchronized (this) {
+                inFlight -= done;
+                notifyAll();
+            }
+            if (stop) return;
+        }
+    }
+
+    private void applyUpdates() {
+        uiPending.set(false);
+        listener.cartChanged(currentCart.get());
+        long now = System.nanoTime();
+        synchronized (this) {
+            for (int i = 0; i < landedCount; i++) Metrics.SCAN_TO_ROW.record(now - landed[i]);
+            landedCount = 0;
+        }
+        String[] failure;
+        while ((failure = failures.poll()) != null) listener.scanFailed(failure[0], failure[1]);
+    }
+}
@@ -0,0 +1,335 @@
+package supermarket;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.zip.CRC32;
+
+// ---------------------------
+// Headless scan-log replay
+// ---------------------------
+// Drives a recorded ScanLog through the real billing path without the UI: the engine
+// takes stock as lines are scanned, checked-out bills go through PersistenceService into
+// a BillArchive and the stock delta log, exactly as at the lane. Recorded lanes are dealt
+// to `--lanes` worker threads in order of first appearance, so each lane's events stay in
+// order. At full speed (the default) every worker runs flat out; with --speed X events
+// are replayed at X times the recorded pace.
+//
+//   java -jar supermarket-billing-1.0-SNAPSHOT.jar --replay scans.log --catalog catalog.csv
+//        [--stock stock.snap] [--gst gst-rates.txt] [--promotions promotions.txt]
+//        [--lanes N] [--speed X] [--out dir] [--stock-out final.csv]
+//
+// Everything is written under --out (a new temp directory by default), never to the
+// store's own files. The report is "key value" lines: timing.* varies from run to run,
+// total.* should not, so `grep '^total\.'` of two builds' reports diff cleanly. Lanes
+// racing for the last units of an item can make totals differ between runs.
+public final class ScanReplay {
+
+    private static final int MAX_ERRORS = 20;
+
+    private final List<ScanLog.Event> events;
+    private final Catalog catalog;
+    private final BillingEngine engine;
+    private final PersistenceService persistence;
+    private final double speed;             // 0: full speed
+
+    private final LatencyHistogram scanLatency = new LatencyHistogram("replayScan");
+    private final LatencyHistogram checkoutLatency = new LatencyHistogram("replayCheckout");
+    private final LongAdder scans = new LongAdder();
+    private final LongAdder removes = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder bills = new LongAdder();
+    private final LongAdder voids = new LongAdder();
+    private final LongAdder leftOpen = new LongAdder();
+    private final LongAdder units = new LongAdder();
+    private final AtomicLong maxBehindNanos = new AtomicLong();
+    private final ConcurrentLinkedQueue<String> rejections = new ConcurrentLinkedQueue<>();
+
+    private ScanReplay(List<ScanLog.Event> events, Catalog catalog, BillingEngine engine,
+                       PersistenceService persistence, double speed) {
+        this.events = events;
+        this.catalog = catalog;
+        this.engine = engine;
+        this.persistence = persistence;
+        this.speed = speed;
+    }
+
+    public static void main(String[] args) {
+        System.exit(run(args, System.out));
+    }
+
+    // Returns the process exit status: 0 after a replay, 1 for bad arguments or input.
+    static int run(String[] args, PrintStream report) {
+        Map<String, String> opts = new LinkedHashMap<>();
+        String log = null;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].startsWith("--") && i + 1 < args.length) {
+                opts.put(args[i].substring(2), args[++i]);
+            } else if (log == null && !args[i].startsWith("--")) {
+                log = args[i];
+            } else {
+                return usage("unexpected argument " + args[i]);
+            }
+        }
+        if (log == null) return usage("no scan log given");
+        if (!opts.containsKey("catalog") && !opts.containsKey("stock")) return usage("give --catalog or --stock");
+        int lanes;
+        double speed;
+        try {
+            lanes = Integer.parseInt(opts.getOrDefault("lanes", "0"));
+            speed = Double.parseDouble(opts.getOrDefault("speed", "0"));
+        } catch (NumberFormatException e) {
+            return usage("--lanes and --speed take numbers");
+        }
+        if (lanes < 0 || speed < 0) return usage("--lanes and --speed cannot be negative");
+
+        // as at the lane: PersistenceService fsyncs once per commit
+        if (System.getProperty("billing.journal.sync") == null) System.setProperty("billing.journal.sync", "none");
+        if (System.getProperty("billing.stock.sync") == null) System.setProperty("billing.stock.sync", "none");
+
+        try {
+            List<String> errors = new ArrayList<>();
+            List<ScanLog.Event> events = ScanLog.read(Path.of(log), errors, MAX_ERRORS);
+            Catalog catalog = loadCatalog(opts, errors);
+            Promotions promotions = errors.isEmpty() && opts.containsKey("promotions")
+                    ? Promotions.load(Path.of(opts.get("promotions")), catalog, errors) : Promotions.NONE;
+            if (!errors.isEmpty()) {
+                for (String e : errors) System.err.println(e);
+                return 1;
+            }
+            Path out = opts.containsKey("out") ? Path.of(opts.get("out")) : Files.createTempDirectory("replay");
+            Files.createDirectories(out);
+            if (Files.exists(out.resolve("stock.snap")) || Files.exists(out.resolve("bills"))) {
+                return usage(out + " already holds a replay; give an empty --out directory");
+            }
+
+            StockStore.writeSnapshot(catalog, out.resolve("stock.snap"));
+            StockStore stockStore = StockStore.open(out.resolve("stock.snap"), out.resolve("stock.delta"), catalog);
+            BillArchive archive = BillArchive.open(out.resolve("bills"), null, null);
+            BillingEngine engine = new BillingEngine(catalog, archive::append);
+            engine.setPromotions(promotions);
+            PersistenceService persistence = new PersistenceService(engine, archive::sync, stockStore,
+                    (what, error) -> System.err.println("Error saving " + what + ": " + error.getMessage()));
+
+            ScanReplay replay = new ScanReplay(events, catalog, engine, persistence, speed);
+            long wallNanos;
+            int workers;
+            try {
+                long started = System.nanoTime();
+                workers = replay.play(lanes);
+                persistence.flush().join();
+                wallNanos = System.nanoTime() - started;
+            } finally {
+                persistence.close(30_000);
+                archive.close();
+                stockStore.close();
+            }
+            if (opts.containsKey("stock-out")) CatalogCsv.write(catalog, Path.of(opts.get("stock-out")));
+            replay.report(report, log, out, workers, wallNanos);
+            String first = replay.rejections.peek();
+            if (first != null) System.err.println("First rejected event: " + first);
+            return 0;
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Replay failed: " + e);
+            return 1;
+        }
+    }
+
+    // ---------------------------
+    // Replay
+    // ---------------------------
+    // Deals the recorded lanes to workers and runs them; returns the number of workers.
+    private int play(int lanes) throws IOException {
+        Map<String, Integer> laneWorker = new LinkedHashMap<>();
+        for (ScanLog.Event e : events) laneWorker.putIfAbsent(e.lane, laneWorker.size());
+        int workers = Math.max(1, lanes == 0 ? laneWorker.size() : Math.min(lanes, laneWorker.size()));
+        List<List<ScanLog.Event>> queues = new ArrayList<>();
+        for (int w = 0; w < workers; w++) queues.add(new ArrayList<>());
+        for (ScanLog.Event e : events) queues.get(laneWorker.get(e.lane) % workers).add(e);
+
+        long firstMillis = events.isEmpty() ? 0 : events.get(0).millis;
+        for (ScanLog.Event e : events) firstMillis = Math.min(firstMillis, e.millis);
+        long origin = firstMillis;
+        long startNanos = System.nanoTime();
+        Thread[] threads = new Thread[workers];
+        for (int w = 0; w < workers; w++) {
+            List<ScanLog.Event> queue = queues.get(w);
+            threads[w] = new Thread(() -> drive(queue, origin, startNanos), "replay-" + (w + 1));
+            threads[w].start();
+        }
+        try {
+            for (Thread t : threads) t.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted");
+        }
+        return workers;
+    }
+
+    // One worker: its lanes' events in log order, one open cart per lane.
+    private void drive(List<ScanLog.Event> queue, long originMillis, long startNanos) {
+        Map<String, Cart> carts = new LinkedHashMap<>();
+        for (ScanLog.Event e : queue) {
+            if (speed > 0) pace(e, originMillis, startNanos);
+            Cart cart = carts.computeIfAbsent(e.lane, engine::newCart);
+            long t0 = System.nanoTime();
+            try {
+                switch (e.kind) {
+                    case ScanLog.SCAN:
+                        engine.addScanned(cart, e.text, e.number);
+                        scanLatency.recordSince(t0);
+                        scans.increment();
+                        break;
+                    case ScanLog.ITEM:
+                        engine.addItem(cart, e.text, e.number);
+                        scanLatency.recordSince(t0);
+                        scans.increment();
+                        break;
+                    case ScanLog.REMOVE:
+                        engine.removeLine(cart, e.number);
+                        removes.increment();
+                        break;
+                    case ScanLog.PAY:
+                        carts.remove(e.lane);
+                        Bill bill = engine.checkout(cart, "", CustomerIndex.key(e.text), e.number, e.taxBps, "replay");
+                        persistence.bill(bill);
+                        checkoutLatency.recordSince(t0);
+                        bills.increment();
+                        for (CartLine line : bill.lines) units.add(line.qty);
+                        break;
+                    case ScanLog.VOID:
+                        carts.remove(e.lane);
+                        engine.cancel(cart);
+                        voids.increment();
+                        break;
+                    default:
+                        break;
+                }
+            } catch (BillingException ex) {
+                rejected.increment();
+                if (rejections.isEmpty()) rejections.add(e.lane + " " + e.text + ": " + ex.getMessage());
+            }
+        }
+        // a lane whose log ends mid-bill: give its stock back, as newBill would
+        for (Cart cart : carts.values()) {
+            if (cart.isEmpty()) continue;
+            engine.cancel(cart);
+            leftOpen.increment();
+        }
+    }
+
+    // Waits until the event is due at the replay speed and notes how late it is.
+    private void pace(ScanLog.Event e, long originMillis, long startNanos) {
+        long due = startNanos + (long) (TimeUnit.MILLISECONDS.toNanos(e.millis - originMillis) / speed);
+        long now = System.nanoTime();
+        while (now < due) {
+            LockSupport.parkNanos(due - now);
+            now = System.nanoTime();
+        }
+        long behind = now - due;
+        maxBehindNanos.accumulateAndGet(behind, Math::max);
+    }
+
+    // ---------------------------
+    // Report
+    // ---------------------------
+    private void report(PrintStream out, String log, Path dir, int workers, long wallNanos) {
+        double seconds = wallNanos / 1e9;
+        long lanes = events.stream().map(e -> e.lane).distinct().count();
+        out.println("replay.log " + log);
+        out.println("replay.out " + dir);
+        out.println("replay.lanes " + lanes + " on " + workers + (workers == 1 ? " thread" : " threads"));
+        out.println("replay.speed " + (speed > 0 ? fmt("%.2fx", speed) : "full"));
+        out.println("timing.wallSeconds " + fmt("%.3f", seconds));
+        out.println("timing.scansPerSecond " + fmt("%.0f", scans.sum() / seconds));
+        out.println("timing.billsPerSecond " + fmt("%.0f", bills.sum() / seconds));
+        latency(out, "timing.scan", scanLatency.snapshot());
+        latency(out, "timing.checkout", checkoutLatency.snapshot());
+        if (speed > 0) out.println("timing.maxBehindMillis " + fmt("%.1f", maxBehindNanos.get() / 1e6));
+
+        long stockUnits = 0;
+        CRC32 crc = new CRC32();
+        StringBuilder row = new StringBuilder(64);
+        for (int sku = 0; sku < catalog.size(); sku++) {
+            int stock = catalog.stock(sku);
+            stockUnits += stock;
+            row.setLength(0);
+            row.append(catalog.name(sku)).append('=').append(stock).append('\n');
+            crc.update(row.toString().getBytes(StandardCharsets.UTF_8));
+        }
+        out.println("total.events " + events.size());
+        out.println("total.scans " + scans.sum());
+        out.println("total.removes " + removes.sum());
+        out.println("total.rejected " + rejected.sum());
+        out.println("total.bills " + bills.sum());
+        out.println("total.voids " + voids.sum());
+        out.println("total.leftOpen " + leftOpen.sum());
+        out.println("total.unitsSold " + units.sum());
+        out.println("total.sales " + Money.format(engine.totalSales()));
+        out.println("total.stockUnits " + stockUnits);
+        out.println("total.stockCrc32 " + String.format("%08x", crc.getValue()));
+    }
+
+    private static void latency(PrintStream out, String key, LatencyHistogram.Snapshot s) {
+        out.println(key + ".count " + s.count);
+        if (s.count == 0) return;
+        out.println(key + ".micros p50 " + micros(s.percentile(0.50)) + " p90 " + micros(s.percentile(0.90))
+                + " p99 " + micros(s.percentile(0.99)) + " p99.9 " + micros(s.percentile(0.999))
+                + " max " + micros(s.max));
+    }
+
+    // ---------------------------
+    // Helpers
+    // ---------------------------
+    private static Catalog loadCatalog(Map<String, String> opts, List<String> errors) throws IOException {
+        Catalog catalog;
+        if (opts.containsKey("stock")) {
+            Path snap = Path.of(opts.get("stock"));
+            catalog = StockStore.load(snap, snap.resolveSibling("stock.delta"));
+        } else {
+            catalog = new Catalog();
+        }
+        if (opts.containsKey("catalog")) {
+            CatalogCsv.Import csv = CatalogCsv.read(Path.of(opts.get("catalog")));
+            if (csv.ok()) {
+                csv.applyTo(catalog);
+            } else {
+                for (String e : csv.errors()) errors.add(opts.get("catalog") + ": " + e);
+            }
+        }
+        if (opts.containsKey("gst")) {
+            List<String> rateErrors = new ArrayList<>();
+            TaxRates rates = TaxRates.load(Path.of(opts.get("gst")), rateErrors);
+            for (String e : rateErrors) errors.add(opts.get("gst") + ": " + e);
+            if (rateErrors.isEmpty()) catalog.setTaxRates(rates);
+        }
+        return catalog;
+    }
+
+    private static String micros(long nanos) {
+        return fmt("%.1f", nanos / 1e3);
+    }
+
+    private static String fmt(String format, double value) {
+        return String.format(Locale.ROOT, format, value);
+    }
+
+    private static int usage(String problem) {
+        System.err.println("Replay: " + problem);
+        System.err.println("usage: --replay <scan log> --catalog <catalog.csv> | --stock <stock.snap>"
+                + " [--gst file] [--promotions file] [--lanes N] [--speed X] [--out dir] [--stock-out file.csv]");
+        return 1;
+    }
+}
@@ -0,0 +1,312 @@
+package supermarket;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+// ---------------------------
+// Sealed (compressed) bill segment
+// ---------------------------
+// A finished day of bills, written once by BillArchive and read-only afterwards. Records
+// are packed into blocks of about blockBytes that are deflated on their own, so reading a
+// bill inflates one block and a full scan holds one block at a time.
+//
+// File layout (big-endian):
+//   8-byte magic "BILLSEG1"
+//   blocks: [int rawLength][int compressedLength][int crc32 of raw][deflated bytes]
+//           raw = records of [int length][payload] (payload as in BillCodec)
+//   index:  per block [long fileOffset][int firstOrdinal][long firstMillis]
+//   footer: [long indexOffset][int blockCount][int billCount][long firstMillis]
+//           [long lastMillis][int crc32 of index][8-byte magic "BILLSEGE"]
+// The footer is written last, so a segment cut short by a crash fails to open instead of
+// being read as a shorter day. Millis are 0 for plain-text receipts (older bills).
+// Properties:
+//   billing.archive.blockBytes   65536   uncompressed bytes per block
+final class SealedSegment implements BillSegment, Closeable {
+
+    private static final byte[] MAGIC = {'B', 'I', 'L', 'L', 'S', 'E', 'G', '1'};
+    private static final byte[] END_MAGIC = {'B', 'I', 'L', 'L', 'S', 'E', 'G', 'E'};
+    private static final int BLOCK_HEADER = 12;
+    private static final int INDEX_ENTRY = 20;
+    private static final int FOOTER = 44;
+
+    private final Path path;
+    private final FileChannel channel;
+    private final long[] blockOffsets;
+    private final int[] firstOrdinals;
+    private final int billCount;
+    private final long firstMillis;
+    private final long lastMillis;
+
+    private SealedSegment(Path path, FileChannel channel, long[] blockOffsets, int[] firstOrdinals, int billCount,
+                          long firstMillis, long lastMillis) {
+        this.path = path;
+        this.channel = channel;
+        this.blockOffsets = blockOffsets;
+        this.firstOrdinals = firstOrdinals;
+        this.billCount = billCount;
+        this.firstMillis = firstMillis;
+        this.lastMillis = lastMillis;
+    }
+
+    // Reads the footer and block index; bills stay on disk.
+    static SealedSegment open(Path path) throws IOException {
+        FileChannel ch = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            long size = ch.size();
+            if (size < MAGIC.length + FOOTER) throw new IOException(path + " is not a sealed bill segment");
+            ByteBuffer head = ByteBuffer.allocate(MAGIC.length);
+            readFully(ch, head, 0);
+            ByteBuffer footer = ByteBuffer.allocate(FOOTER);
+            readFully(ch, footer, size - FOOTER);
+            footer.flip();
+            long indexOffset = footer.getLong();
+            int blocks = footer.getInt();
+            int bills = footer.getInt();
+            long first = footer.getLong();
+            long last = footer.getLong();
+            int indexCrc = footer.getInt();
+            byte[] end = new byte[END_MAGIC.length];
+            footer.get(end);
+            if (!Arrays.equals(head.array(), MAGIC) || !Arrays.equals(end, END_MAGIC) || blocks < 0 || bills < 0
+                    || indexOffset < MAGIC.length || indexOffset + (long) blocks * INDEX_ENTRY != size - FOOTER) {
+                throw new IOException(path + " is not a complete sealed bill segment");
+            }
+            ByteBuffer index = ByteBuffer.allocate(blocks * INDEX_ENTRY);
+            readFully(ch, index, indexOffset);
+            CRC32 crc = new CRC32();
+            crc.update(index.array(), 0, index.capacity());
+            if ((int) crc.getValue() != indexCrc) throw new IOException(path + ": block index is damaged");
+            index.flip();
+            long[] offsets = new long[blocks];
+            int[] ordinals = new int[blocks];
+            for (int b = 0; b < blocks; b++) {
+                offsets[b] = index.getLong();
+                ordinals[b] = index.getInt();
+                index.getLong();                    // block's first bill time, for tools
+            }
+            return new SealedSegment(path, ch, offsets, ordinals, bills, first, last);
+        } catch (IOException | RuntimeException e) {
+            ch.close();
+            throw e;
+        }
+    }
+
+    Path path() {
+        return path;
+    }
+
+    @Override
+    public int size() {
+        return billCount;
+    }
+
+    long firstMillis() {
+        return firstMillis;
+    }
+
+    long lastMillis() {
+        return lastMillis;
+    }
+
+    @Override
+    public String[] readRange(int from, int to) throws IOException {
+        to = Math.min(to, billCount);
+        if (from >= to) return new String[0];
+        String[] out = new String[to - from];
+        int start = from;
+        scanRange(from, to, 0, (ordinal, record) ->
+                out[ordinal - start] = BillCodec.receipt(record.array(), record.position(), record.remaining()));
+        return out;
+    }
+
+    // A full scan: sealed days are read rarely and a day's blocks inflate quickly.
+    @Override
+    public int find(String billNo) throws IOException {
+        if (billNo == null || billNo.isEmpty()) return -1;
+        int[] best = {-1};
+        scanRange(0, billCount, 0, (ordinal, record) -> {
+            if (billNo.equals(BillCodec.billNo(record.array(), record.position(), record.remaining()))) best[0] = ordinal;
+        });
+        return best[0];
+    }
+
+    // Inflates only the blocks holding [from, to), one at a time; chunkBytes is not used
+    // since blocks are the unit of reading.
+    @Override
+    public void scanRange(int from, int to, int chunkBytes, RawVisitor visitor) throws IOException {
+        to = Math.min(to, billCount);
+        if (from >= to) return;
+        if (from < 0) throw new IndexOutOfBoundsException("No bill #" + from);
+        int b = Arrays.binarySearch(firstOrdinals, from);
+        if (b < 0) b = -b - 2;
+        Inflater inflater = new Inflater();
+        try {
+            ByteBuffer header = ByteBuffer.allocate(BLOCK_HEADER);
+            byte[] packed = new byte[0];
+            byte[] raw = new byte[0];
+            CRC32 crc = new CRC32();
+            for (; b < blockOffsets.length && firstOrdinals[b] < to; b++) {
+                header.clear();
+                readFully(channel, header, blockOffsets[b]);
+                int rawLength = header.getInt(0), packedLength = header.getInt(4), sum = header.getInt(8);
+                if (rawLength < 0 || packedLength < 0) throw new IOException(path + ": damaged block " + b);
+                if (packed.length < packedLength) packed = new byte[packedLength];
+                if (raw.length < rawLength) raw = new byte[rawLength];
+                readFully(channel, ByteBuffer.wrap(packed, 0, packedLength), blockOffsets[b] + BLOCK_HEADER);
+                inflater.reset();
+                inflater.setInput(packed, 0, packedLength);
+                try {
+                    int n = 0;
+                    while (!inflater.finished() && !inflater.needsInput() && !inflater.needsDictionary() && n < rawLength) {
+                        n += inflater.inflate(raw, n, rawLength - n);
+                    }
+                    if (n != rawLength || !inflater.finished()) throw new IOException(path + ": damaged block " + b);
+                } catch (DataFormatException e) {
+                    throw new IOException(path + ": damaged block " + b, e);
+                }
+                crc.reset();
+                crc.update(raw, 0, rawLength);
+                if ((int) crc.getValue() != sum) throw new IOException(path + ": damaged block " + b);
+
+                ByteBuffer block = ByteBuffer.wrap(raw, 0, rawLength);
+                int ordinal = firstOrdinals[b];
+                while (block.limit() - block.position() >= 4 && ordinal < to) {
+                    int len = block.getInt();
+                    int at = block.position();
+                    if (len < 0 || at + len > rawLength) throw new IOException(path + ": damaged block " + b);
+                    if (ordinal >= from) {
+                        block.limit(at + len);
+                        visitor.visit(ordinal, block);
+                        block.limit(rawLength);
+                    }
+                    block.position(at + len);
+                    ordinal++;
+                }
+            }
+        } finally {
+            inflater.end();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private static void readFully(FileChannel ch, ByteBuffer buf, long position) throws IOException {
+        while (buf.hasRemaining()) {
+            if (ch.read(buf, position + buf.position()) < 0) throw new EOFException("Bill segment ended unexpectedly");
+        }
+    }
+
+    // ---------------------------
+    // Writing
+    // ---------------------------
+    // Writes a segment from records given in ordinal order; the file is complete once
+    // finish() returns. Callers write to a temporary name and move it into place.
+    static final class Writer implements Closeable {
+        private final FileChannel channel;
+        private final int blockBytes;
+        private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+        private final CRC32 crc = new CRC32();
+        private ByteBuffer raw;
+        private byte[] packed;
+        private final List<long[]> index = new ArrayList<>();   // {offset, firstOrdinal, firstMillis}
+        private int bills = 0;
+        private int blockFirst = 0;
+        private long blockMillis = 0;
+        private long firstMillis = 0;
+        private long lastMillis = 0;
+
+        Writer(Path file) throws IOException {
+            this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.WRITE);
+            this.blockBytes = Math.max(1024, Integer.getInteger("billing.archive.blockBytes", 64 * 1024));
+            this.raw = ByteBuffer.allocate(blockBytes + 1024);
+            this.packed = new byte[blockBytes + 1024];
+            write(ByteBuffer.wrap(MAGIC));
+        }
+
+        // Adds the record in record.position()..limit(); millis is the bill's time, or 0.
+        void add(ByteBuffer record, long millis) throws IOException {
+            int len = record.remaining();
+            if (raw.position() > 0 && raw.position() + 4 + len > blockBytes) flushBlock();
+            if (raw.position() == 0) {
+                blockFirst = bills;
+                blockMillis = millis;
+            }
+            if (raw.remaining() < 4 + len) {
+                ByteBuffer bigger = ByteBuffer.allocate(raw.position() + 4 + len);
+                raw.flip();
+                raw = bigger.put(raw);
+            }
+            raw.putInt(len).put(record.duplicate());
+            if (bills == 0) firstMillis = millis;
+            if (millis != 0) lastMillis = millis;
+            bills++;
+        }
+
+        int size() {
+            return bills;
+        }
+
+        // Writes the last block, the index and the footer, and forces them to disk.
+        void finish() throws IOException {
+            if (raw.position() > 0) flushBlock();
+            long indexOffset = channel.position();
+            ByteBuffer buf = ByteBuffer.allocate(index.size() * INDEX_ENTRY);
+            for (long[] e : index) buf.putLong(e[0]).putInt((int) e[1]).putLong(e[2]);
+            crc.reset();
+            crc.update(buf.array(), 0, buf.capacity());
+            buf.flip();
+            write(buf);
+            ByteBuffer footer = ByteBuffer.allocate(FOOTER);
+            footer.putLong(indexOffset).putInt(index.size()).putInt(bills).putLong(firstMillis).putLong(lastMillis)
+                    .putInt((int) crc.getValue()).put(END_MAGIC).flip();
+            write(footer);
+            channel.force(true);
+        }
+
+        @Override
+        public void close() throws IOException {
+            deflater.end();
+            channel.close();
+        }
+
+        private void flushBlock() throws IOException {
+            int rawLength = raw.position();
+            crc.reset();
+            crc.update(raw.array(), 0, rawLength);
+            deflater.reset();
+            deflater.setInput(raw.array(), 0, rawLength);
+            deflater.finish();
+            int packedLength = 0;
+            while (!deflater.finished()) {
+                if (packedLength == packed.length) packed = Arrays.copyOf(packed, packed.length * 2);
+                packedLength += deflater.deflate(packed, packedLength, packed.length - packedLength);
+            }
+            index.add(new long[]{channel.position(), blockFirst, blockMillis});
+            ByteBuffer header = ByteBuffer.allocate(BLOCK_HEADER);
+            header.putInt(rawLength).putInt(packedLength).putInt((int) crc.getValue()).flip();
+            write(header);
+            write(ByteBuffer.wrap(packed, 0, packedLength));
+            raw.clear();
+        }
+
+        private void write(ByteBuffer buf) throws IOException {
+            while (buf.hasRemaining()) channel.write(buf);
+        }
+    }
+}
@@ -0,0 +1,1949 @@
+package supermarket;
+
+import javax.swing.*;
+import javax.swing.table.DefaultTableModel;
+import java.awt.*;
+import java.awt.event.*;
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+
+public class SmartSupermarketBillingWithLogin extends JFrame {
+
+    // UI fields
+    private JTextField itemNameField, quantityField, customerNameField, discountField, taxField;
+    private JTextField barcodeField, customerIdField;
+    private JLabel totalLabel, totalSalesLabel, billNoLabel, loggedInLabel, loyaltyLabel;
+    private JTable billTable;
+    private BillTableModel tableModel;
+
+    // Data structures
+    private Catalog catalog = new Catalog();
+    private ItemSearchIndex searchIndex = new ItemSearchIndex();
+    private TypeaheadPopup itemTypeahead;
+    private StockStore stockStore;
+    private BillingEngine engine;
+    private volatile Cart cart;       // read by the scan worker
+    private ScanPipeline scanPipeline;
+
+    // Persistence files
+    private final String BILL_DIR = "bills";                 // one segment per day, see BillArchive
+    private final String BILL_FILE = "bills.journal";        // legacy single journal, split on startup
+    private final String LEGACY_BILL_FILE = "bills.txt";
+    private final String STOCK_FILE = "stock.dat";            // legacy, migrated on startup
+    private final String STOCK_SNAPSHOT_FILE = "stock.snap";
+    private final String STOCK_DELTA_FILE = "stock.delta";
+    private final String SEED_CATALOG_FILE = "catalog.csv";  // first-run assortment, if present
+    private final String PROMOTIONS_FILE = "promotions.txt";  // see Promotions for the format
+    private final String GST_RATES_FILE = "gst-rates.txt";    // see TaxRates for the format
+    // Optional store inventory server ("host:port"); without it this lane's stock is its own.
+    private final String INVENTORY_SERVER = System.getProperty("billing.inventory.server", "");
+    private final String LANE = System.getProperty("billing.lane", "lane-1");
+    private final String USERS_FILE = "users.dat";
+    private final String BILL_IDS_FILE = "billids.dat";
+
+    // User management
+    private Map<String, User> users = new HashMap<>(); // username -> User
+    private User loggedInUser = null;
+
+    private PersistenceService persistence;   // created with the engine, once stock is loaded
+    private InventoryClient inventory;         // null unless billing.inventory.server is set
+    private BillIdAllocator billIds;
+    private ReceiptPrinter printer;            // created with the engine
+    private final Loyalty loyalty = Loyalty.fromProperties();
+    private ScanLog.Writer scanLog;            // null unless billing.scanlog is set
+    private StockAlerts stockAlerts;           // created with the engine
+    private PriceLookup priceLookup;           // null unless billing.lookup.port is set
+    private DefaultListModel<String> alertModel;
+    private JPanel alertPanel;
+    private final AtomicBoolean alertsQueued = new AtomicBoolean();
+    private boolean alertsSeeded = false;
+    private String loyaltyShown = "";      // customer key the Loyalty label is for
+    private String loyaltyDiscount = "0";  // what lookUpCustomer put in the Discount field
+
+    // Staged startup: only users load before login; catalog and bill history load on
+    // background threads and scans that arrive before the catalog are queued. Catalog
+    // imports run on the same threads later.
+    private static volatile long startNanos = System.nanoTime();
+    private final ExecutorService startupLoader = Executors.newFixedThreadPool(2, r -> {
+        Thread t = new Thread(r, "startup-loader");
+        t.setDaemon(true);
+        return t;
+    });
+    private CompletableFuture<StockLoad> stockFuture;
+    // The bill archive, opened or being opened; null when closed. Guarded by archiveLock,
+    // which is never held while waiting for it.
+    private CompletableFuture<BillArchive> billArchiveFuture;
+    private final Object archiveLock = new Object();
+    private final java.util.List<String> pendingScans = new ArrayList<>();
+    private JProgressBar loadProgress;
+    private JLabel statusLabel;
+    private JLabel scanStatusLabel;
+    private String catalogStatus = "Loading catalog…";
+    private String billsStatus = "Loading bill history…";
+    private boolean firstScanReported = false;
+    private long restoredSales = -1;    // today's sales before this run, once computed
+    private String saveStatus = "";
+    private String loadWarnings = "";  // optional features that did not start
+
+    // Roles
+    private static final String ROLE_ADMIN = "admin";
+    private static final String ROLE_CASHIER = "cashier";
+
+    public SmartSupermarketBillingWithLogin() {
+        // load persisted data: users now, everything else in the background
+        loadUsers();
+        startBackgroundLoads();
+        // flush bills still waiting for a group commit on Exit or window close
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            if (persistence != null) persistence.close(5000);
+            if (printer != null) printer.close(2000);
+            if (scanLog != null) scanLog.close();
+            closeBillArchive();
+            closeStockStore();
+        }, "persistence-close"));
+
+        // show login dialog (blocks until successful or exit)
+        boolean ok = showLoginDialog();
+        if (!ok) {
+            // user cancelled/closed login -> exit
+            System.exit(0);
+        }
+
+        // Frame Setup
+        setTitle("🛒 Smart Supermarket Billing System (with Login & Barcode)");
+        setSize(1340, 700);
+        setDefaultCloseOperation(DO_NOTHING_ON_CLOSE);
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(WindowEvent e) {
+                exitApplication();
+            }
+        });
+        setLocationRelativeTo(null);
+        setLayout(new BorderLayout(10, 10));
+        try {
+            for (UIManager.LookAndFeelInfo info : UIManager.getInstalledLookAndFeels()) {
+                if ("Nimbus".equals(info.getName())) {
+                    UIManager.setLookAndFeel(info.getClassName());
+                    break;
+                }
+            }
+        } catch (Exception ignored) {}
+
+        // Input Panel
+        JPanel inputPanel = new JPanel(new GridLayout(4, 6, 8, 8));
+        inputPanel.setBorder(BorderFactory.createTitledBorder("Add Item / Customer"));
+
+        customerNameField = new JTextField();
+        customerIdField = new JTextField();
+        discountField = new JTextField("0");
+        taxField = new JTextField("0");
+
+        itemNameField = new JTextField();
+        quantityField = new JTextField("1");
+        barcodeField = new JTextField();
+
+        inputPanel.add(new JLabel("Customer Name:"));
+        inputPanel.add(customerNameField);
+        inputPanel.add(new JLabel("Phone / Loyalty ID:"));
+        inputPanel.add(customerIdField);
+        inputPanel.add(new JLabel("Bill No:"));
+        billNoLabel = new JLabel("…");
+        inputPanel.add(billNoLabel);
+
+        inputPanel.add(new JLabel("Item Name:"));
+        inputPanel.add(itemNameField);
+        inputPanel.add(new JLabel("Quantity:"));
+        inputPanel.add(quantityField);
+        inputPanel.add(new JLabel("Barcode:"));
+        inputPanel.add(barcodeField);
+
+        inputPanel.add(new JLabel("Discount (%):"));
+        inputPanel.add(discountField);
+        inputPanel.add(new JLabel("GST (%) if no HSN rate:"));
+        inputPanel.add(taxField);
+        inputPanel.add(new JLabel("Logged In:"));
+        loggedInLabel = new JLabel(); // set later
+        inputPanel.add(loggedInLabel);
+
+        JButton addButton = new JButton(" Add Item (Enter)");
+        JButton clearButton = new JButton(" New Bill");
+        JButton removeButton = new JButton(" Remove Selected");
+        JButton searchButton = new JButton(" Search Item");
+
+        inputPanel.add(addButton);
+        inputPanel.add(clearButton);
+        inputPanel.add(removeButton);
+        inputPanel.add(searchButton);
+        inputPanel.add(new JLabel("Loyalty:"));
+        loyaltyLabel = new JLabel(" ");
+        inputPanel.add(loyaltyLabel);
+
+        // Table
+        tableModel = new BillTableModel(catalog);
+        billTable = new JTable(tableModel);
+        billTable.setFont(new Font("Segoe UI", Font.PLAIN, 14));
+        billTable.setRowHeight(25);
+        billTable.setDefaultRenderer(Long.class, new BillTableModel.MoneyRenderer());
+        JScrollPane scrollPane = new JScrollPane(billTable);
+
+        // Side Panel buttons
+        JPanel sidePanel = new JPanel(new GridLayout(15, 1, 10, 10));
+        sidePanel.setBorder(BorderFactory.createTitledBorder("Options"));
+
+        JButton stockButton = new JButton("Edit Stock");
+        JButton importButton = new JButton(" Import Catalog");
+        JButton exportButton = new JButton(" Export Catalog");
+        JButton promotionsButton = new JButton(" Reload Promotions");
+        JButton checkStockButton = new JButton(" Check Stock");
+        JButton printButton = new JButton(" Print Receipt");
+        JButton viewBillsButton = new JButton(" View All Bills");
+        JButton reportButton = new JButton(" Sales Report");
+        JButton zReportButton = new JButton(" Z-Report");
+        JButton customerButton = new JButton(" Customer History");
+        JButton saveButton = new JButton(" Save Bills");
+        JButton loadButton = new JButton(" Load Bills");
+        JButton manageUsersButton = new JButton(" Manage Users");
+        JButton saveStockButton = new JButton(" Save Stock");
+        JButton exitButton = new JButton(" Exit");
+
+        sidePanel.add(stockButton);
+        sidePanel.add(importButton);
+        sidePanel.add(exportButton);
+        sidePanel.add(promotionsButton);
+        sidePanel.add(checkStockButton);
+        sidePanel.add(printButton);
+        sidePanel.add(viewBillsButton);
+        sidePanel.add(reportButton);
+        sidePanel.add(zReportButton);
+        sidePanel.add(customerButton);
+        sidePanel.add(saveButton);
+        sidePanel.add(loadButton);
+        sidePanel.add(manageUsersButton);
+        sidePanel.add(saveStockButton);
+        sidePanel.add(exitButton);
+
+        // Bottom Panel
+        JPanel bottomPanel = new JPanel(new GridLayout(3, 1));
+        totalLabel = new JLabel("Bill Total: ₹0.00", SwingConstants.CENTER);
+        totalLabel.setFont(new Font("Segoe UI", Font.BOLD, 20));
+        totalSalesLabel = new JLabel("Total Sales: ₹0.00", SwingConstants.CENTER);
+        totalSalesLabel.setFont(new Font("Segoe UI", Font.PLAIN, 16));
+        bottomPanel.add(totalLabel);
+        bottomPanel.add(totalSalesLabel);
+
+        JPanel statusPanel = new JPanel(new BorderLayout(8, 0));
+        loadProgress = new JProgressBar(0, 2);
+        loadProgress.setStringPainted(true);
+        loadProgress.setString("Loading…");
+        statusLabel = new JLabel(" ");
+        statusPanel.add(loadProgress, BorderLayout.WEST);
+        statusPanel.add(statusLabel, BorderLayout.CENTER);
+        scanStatusLabel = new JLabel(" ");
+        scanStatusLabel.setForeground(new Color(180, 0, 0));
+        statusPanel.add(scanStatusLabel, BorderLayout.EAST);
+        bottomPanel.add(statusPanel);
+        scanLog = openScanLog();
+
+        // Low-stock panel: most urgent first, kept current by StockAlerts
+        alertPanel = new JPanel(new BorderLayout(4, 4));
+        alertPanel.setBorder(BorderFactory.createTitledBorder("Low Stock"));
+        alertModel = new DefaultListModel<>();
+        JList<String> alertList = new JList<>(alertModel);
+        alertList.setFont(new Font("Segoe UI", Font.PLAIN, 12));
+        JButton reorderButton = new JButton(" Export Reorder List");
+        alertPanel.add(new JScrollPane(alertList), BorderLayout.CENTER);
+        alertPanel.add(reorderButton, BorderLayout.SOUTH);
+        alertPanel.setPreferredSize(new Dimension(240, 0));
+
+        // Add Panels to frame
+        add(inputPanel, BorderLayout.NORTH);
+        add(alertPanel, BorderLayout.WEST);
+        add(scrollPane, BorderLayout.CENTER);
+        add(sidePanel, BorderLayout.EAST);
+        add(bottomPanel, BorderLayout.SOUTH);
+
+        // Action wiring
+        addButton.addActionListener(e -> addItem());
+        clearButton.addActionListener(e -> {
+            if (catalogReady()) newBill();
+        });
+        removeButton.addActionListener(e -> removeSelectedItem());
+        checkStockButton.addActionListener(e -> {
+            if (catalogReady()) showStock();
+        });
+        stockButton.addActionListener(e -> {
+            if (!catalogReady()) return;
+            if (!isAdmin()) {
+                JOptionPane.showMessageDialog(this, "Only admin can edit stock.");
+                return;
+            }
+            editStock();
+        });
+        importButton.addActionListener(e -> {
+            if (!catalogReady()) return;
+            if (!isAdmin()) {
+                JOptionPane.showMessageDialog(this, "Only admin can import the catalog.");
+                return;
+            }
+            importCatalog();
+        });
+        exportButton.addActionListener(e -> {
+            if (catalogReady()) exportCatalog();
+        });
+        promotionsButton.addActionListener(e -> {
+            if (!catalogReady()) return;
+            if (!isAdmin()) {
+                JOptionPane.showMessageDialog(this, "Only admin can change promotions.");
+                return;
+            }
+            reloadPromotions();
+        });
+        printButton.addActionListener(e -> printReceipt());
+        viewBillsButton.addActionListener(e -> viewAllBills());
+        reportButton.addActionListener(e -> salesReportDialog());
+        zReportButton.addActionListener(e -> {
+            if (!isAdmin()) {
+                JOptionPane.showMessageDialog(this, "Only admin can view Z-reports.");
+                return;
+            }
+            zReportDialog();
+        });
+        customerButton.addActionListener(e -> customerHistoryDialog());
+        reorderButton.addActionListener(e -> {
+            if (catalogReady()) exportReorderList();
+        });
+        saveButton.addActionListener(e -> saveBillsToFile());
+        loadButton.addActionListener(e -> loadBillsFromFile());
+        exitButton.addActionListener(e -> exitApplication());
+        manageUsersButton.addActionListener(e -> {
+            if (!isAdmin()) {
+                JOptionPane.showMessageDialog(this, "Only admin can manage users.");
+                return;
+            }
+            manageUsersDialog();
+        });
+        saveStockButton.addActionListener(e -> {
+            if (catalogReady()) saveStockToFile();
+        });
+
+        searchButton.addActionListener(e -> {
+            if (catalogReady()) searchItem();
+        });
+
+        // Enter Key Support for item fields
+        KeyAdapter enterKeyHandler = new KeyAdapter() {
+            public void keyPressed(KeyEvent e) {
+                if (e.getKeyCode() == KeyEvent.VK_ENTER) addItem();
+            }
+        };
+        itemNameField.addKeyListener(enterKeyHandler);
+        quantityField.addKeyListener(enterKeyHandler);
+
+        // live suggestions while typing an item name
+        itemTypeahead = new TypeaheadPopup(itemNameField, text -> {
+            java.util.List<String> names = new ArrayList<>();
+            if (engine == null) return names;
+            for (int sku : searchIndex.search(text, 8)) names.add(catalog.name(sku));
+            return names;
+        });
+
+        // a returning customer's spend and tier discount show as soon as the id is entered
+        customerIdField.addActionListener(e -> lookUpCustomer());
+        customerIdField.addFocusListener(new FocusAdapter() {
+            public void focusLost(FocusEvent e) {
+                lookUpCustomer();
+            }
+        });
+
+        // Barcode field: when ENTER pressed, lookup barcode and auto-add quantity 1
+        barcodeField.addActionListener(e -> barcodeScanned());
+
+        // update UI labels for logged-in user
+        updateLoggedInLabel();
+
+        // finish startup on the EDT as each background load completes
+        stockFuture.whenComplete((load, err) -> SwingUtilities.invokeLater(() -> onStockLoaded(load, err)));
+        billArchiveFuture.whenComplete((archive, err) -> SwingUtilities.invokeLater(() -> onBillsLoaded(archive, err)));
+
+        // Show frame
+        getContentPane().setBackground(new Color(245, 248, 255));
+        setVisible(true);
+    }
+
+    // ---------------------------
+    // Login & User Management
+    // ---------------------------
+    private boolean showLoginDialog() {
+        // If no users exist, create default admin
+        if (users.isEmpty()) {
+            User admin = new User("admin", "admin123", ROLE_ADMIN);
+            users.put(admin.username, admin);
+            saveUsers();
+            JOptionPane.showMessageDialog(null,
+                    "No users found. A default admin account is created:\nusername: admin\npassword: admin123\nPlease change it after login.");
+        }
+
+        JDialog dialog = new JDialog((Frame) null, "Login", true);
+        dialog.setSize(420, 220);
+        dialog.setLayout(new BorderLayout(8, 8));
+        dialog.setLocationRelativeTo(null);
+
+        JPanel panel = new JPanel(new GridLayout(3, 2, 8, 8));
+        JTextField usernameField = new JTextField();
+        JPasswordField passwordField = new JPasswordField();
+        panel.add(new JLabel("Username:"));
+        panel.add(usernameField);
+        panel.add(new JLabel("Password:"));
+        panel.add(passwordField);
+
+        dialog.add(panel, BorderLayout.CENTER);
+
+        JPanel btnPanel = new JPanel(new FlowLayout());
+        JButton loginBtn = new JButton("Login");
+        JButton cancelBtn = new JButton("Cancel");
+        btnPanel.add(loginBtn);
+        btnPanel.add(cancelBtn);
+        dialog.add(btnPanel, BorderLayout.SOUTH);
+
+        final boolean[] success = {false};
+
+        loginBtn.addActionListener(e -> {
+            String user = usernameField.getText().trim();
+            String pass = new String(passwordField.getPassword());
+            if (authenticate(user, pass)) {
+                success[0] = true;
+                dialog.dispose();
+            } else {
+                JOptionPane.showMessageDialog(dialog, "Invalid credentials!");
+            }
+        });
+
+        cancelBtn.addActionListener(e -> {
+            success[0] = false;
+            dialog.dispose();
+        });
+
+        dialog.getRootPane().setDefaultButton(loginBtn);
+        dialog.setVisible(true);
+
+        return success[0];
+    }
+
+    private void manageUsersDialog() {
+        JDialog dialog = new JDialog(this, "Manage Users", true);
+        dialog.setSize(500, 400);
+        dialog.setLocationRelativeTo(this);
+        dialog.setLayout(new BorderLayout(8, 8));
+
+        DefaultListModel<String> listModel = new DefaultListModel<>();
+        JList<String> userList = new JList<>(listModel);
+        refreshUserListModel(listModel);
+
+        dialog.add(new JScrollPane(userList), BorderLayout.CENTER);
+
+        JPanel btnPanel = new JPanel(new GridLayout(1, 4, 8, 8));
+        JButton addUserBtn = new JButton("Add User");
+        JButton deleteUserBtn = new JButton("Delete User");
+        JButton changePassBtn = new JButton("Change Password");
+        JButton closeBtn = new JButton("Close");
+        btnPanel.add(addUserBtn);
+        btnPanel.add(deleteUserBtn);
+        btnPanel.add(changePassBtn);
+        btnPanel.add(closeBtn);
+        dialog.add(btnPanel, BorderLayout.SOUTH);
+
+        addUserBtn.addActionListener(e -> {
+            JPanel p = new JPanel(new GridLayout(3, 2, 8, 8));
+            JTextField uname = new JTextField();
+            JPasswordField pass = new JPasswordField();
+            JComboBox<String> role = new JComboBox<>(new String[]{ROLE_CASHIER, ROLE_ADMIN});
+            p.add(new JLabel("Username:"));
+            p.add(uname);
+            p.add(new JLabel("Password:"));
+            p.add(pass);
+            p.add(new JLabel("Role:"));
+            p.add(role);
+            int res = JOptionPane.showConfirmDialog(dialog, p, "Add User", JOptionPane.OK_CANCEL_OPTION);
+            if (res == JOptionPane.OK_OPTION) {
+                String u = uname.getText().trim();
+                String pw = new String(pass.getPassword());
+                String r = (String) role.getSelectedItem();
+                if (u.isEmpty() || pw.isEmpty()) {
+                    JOptionPane.showMessageDialog(dialog, "Enter username and password.");
+                } else {
+                    if (users.containsKey(u)) {
+                        JOptionPane.showMessageDialog(dialog, "User already exists.");
+                    } else {
+                        users.put(u, new User(u, pw, r));
+                        saveUsers();
+                        refreshUserListModel(listModel);
+                        JOptionPane.showMessageDialog(dialog, "User added.");
+                    }
+                }
+            }
+        });
+
+        deleteUserBtn.addActionListener(e -> {
+            String selected = userList.getSelectedValue();
+            if (selected == null) {
+                JOptionPane.showMessageDialog(dialog, "Select a user.");
+                return;
+            }
+            if (selected.equals(loggedInUser.username)) {
+                JOptionPane.showMessageDialog(dialog, "You cannot delete the logged-in user.");
+                return;
+            }
+            int r = JOptionPane.showConfirmDialog(dialog, "Delete user " + selected + "?", "Confirm", JOptionPane.YES_NO_OPTION);
+            if (r == JOptionPane.YES_OPTION) {
+                users.remove(selected);
+                saveUsers();
+                refreshUserListModel(listModel);
+            }
+        });
+
+        changePassBtn.addActionListener(e -> {
+            String selected = userList.getSelectedValue();
+            if (selected == null) {
+                JOptionPane.showMessageDialog(dialog, "Select a user.");
+                return;
+            }
+            JPasswordField pf = new JPasswordField();
+            int r = JOptionPane.showConfirmDialog(dialog, pf, "New password for " + selected, JOptionPane.OK_CANCEL_OPTION);
+            if (r == JOptionPane.OK_OPTION) {
+                String np = new String(pf.getPassword());
+                if (np.isEmpty()) {
+                    JOptionPane.showMessageDialog(dialog, "Password cannot be empty.");
+                } else {
+                    users.get(selected).password = np;
+                    saveUsers();
+                    JOptionPane.showMessageDialog(dialog, "Password changed.");
+                }
+            }
+        });
+
+        closeBtn.addActionListener(e -> dialog.dispose());
+
+        dialog.setVisible(true);
+    }
+
+    private void refreshUserListModel(DefaultListModel<String> model) {
+        model.clear();
+        for (String uname : users.keySet()) model.addElement(uname);
+    }
+
+    private boolean authenticate(String username, String password) {
+        if (!users.containsKey(username)) return false;
+        User u = users.get(username);
+        if (u.password.equals(password)) {
+            loggedInUser = u;
+            return true;
+        }
+        return false;
+    }
+
+    private void updateLoggedInLabel() {
+        if (loggedInUser != null) {
+            loggedInLabel.setText(loggedInUser.username + " (" + loggedInUser.role + ")");
+        } else {
+            loggedInLabel.setText("Not logged in");
+        }
+    }
+
+    private boolean isAdmin() {
+        return loggedInUser != null && ROLE_ADMIN.equals(loggedInUser.role);
+    }
+
+    // ---------------------------
+    // Barcode handling
+    // ---------------------------
+    private void barcodeScanned() {
+        String bc = barcodeField.getText().trim();
+        if (bc.isEmpty()) return;
+        if (scanLog != null) scanLog.scan(LANE, bc, 1);
+        if (engine == null) {
+            // catalog still loading: keep the scan and apply it once the catalog is ready
+            pendingScans.add(bc);
+            updateStatus();
+        } else {
+            scanPipeline.submit(bc);
+        }
+        // clear barcode field to accept next scan quickly
+        barcodeField.setText("");
+        barcodeField.requestFocusInWindow();
+    }
+
+    private final PersistenceService.Listener persistListener = (what, error) ->
+            JOptionPane.showMessageDialog(this, "Error saving " + what + ": " + error.getMessage());
+
+    private final ReceiptPrinter.Listener printListener = (billNo, error) ->
+            JOptionPane.showMessageDialog(this, "Receipt " + billNo + " was not printed: " + error.getMessage(),
+                    "Receipt", JOptionPane.WARNING_MESSAGE);
+
+    // Exit button and window close: return the open cart's stock, commit everything
+    // still queued for disk, then close the stores.
+    private void exitApplication() {
+        if (engine != null && cart != null && !cart.isEmpty()) {
+            scanPipeline.awaitIdle(1000);
+            engine.cancel(cart);
+        }
+        if (inventory != null) inventory.close();     // report sales, hand back unused leases
+        while (persistence != null && !persistence.close(5000)) {
+            int r = JOptionPane.showConfirmDialog(this, "Changes are still being written to disk. Keep waiting?",
+                    "Exit", JOptionPane.YES_NO_OPTION);
+            if (r != JOptionPane.YES_OPTION) break;
+        }
+        if (printer != null) printer.close();
+        if (priceLookup != null) priceLookup.close();
+        if (scanLog != null) scanLog.close();
+        closeBillArchive();
+        closeStockStore();
+        System.exit(0);
+    }
+
+    // Scan worker callbacks (on the EDT, coalesced): bring the table in line with the cart.
+    private final ScanPipeline.Listener scanListener = new ScanPipeline.Listener() {
+        public void cartChanged(Cart changed) {
+            if (changed != cart) return;
+            syncTableWithCart();
+            if (!cart.isEmpty()) reportFirstScan();
+        }
+
+        public void scanFailed(String barcode, String message) {
+            Toolkit.getDefaultToolkit().beep();
+            scanStatusLabel.setText("⚠ " + message);
+        }
+    };
+
+    private void syncTableWithCart() {
+        tableModel.sync(cart.lines());
+        updateTotalLabel();
+    }
+
+    private void reportFirstScan() {
+        if (firstScanReported) return;
+        firstScanReported = true;
+        long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        catalogStatus = catalogStatus + " · first scan after " + millis + " ms";
+        updateStatus();
+    }
+
+    // ---------------------------
+    // Billing logic
+    // ---------------------------
+    private void addItem() {
+        if (!catalogReady()) return;
+        itemTypeahead.accept();
+        String item = itemNameField.getText().trim();
+        String qtyText = quantityField.getText().trim();
+
+        if (item.isEmpty() || qtyText.isEmpty()) {
+            JOptionPane.showMessageDialog(this, "Enter item and quantity!");
+            return;
+        }
+
+        int qty;
+        try {
+            qty = Integer.parseInt(qtyText);
+        } catch (NumberFormatException ex) {
+            JOptionPane.showMessageDialog(this, "Invalid quantity.");
+            return;
+        }
+
+        // exact name first, then a case/accent-insensitive or unambiguous match
+        int sku = catalog.skuOf(item);
+        if (sku < 0) sku = searchIndex.resolve(item);
+        try {
+            showAddedLine(sku >= 0 ? engine.addSku(cart, sku, qty) : engine.addItem(cart, item, qty));
+            if (scanLog != null) scanLog.item(LANE, sku >= 0 ? catalog.name(sku) : item, qty);
+        } catch (BillingException ex) {
+            JOptionPane.showMessageDialog(this, ex.getMessage());
+            return;
+        }
+
+        itemNameField.setText("");
+        quantityField.setText("1");
+        itemNameField.requestFocus();
+    }
+
+    private void showAddedLine(CartLine line) {
+        tableModel.add(line);
+        updateTotalLabel();
+    }
+
+    private void updateTotalLabel() {
+        long promotion = cart.promotion();
+        long tax = cart.tax();
+        StringBuilder text = new StringBuilder("Bill Total: ₹").append(Money.format(cart.subtotal() - promotion));
+        if (promotion != 0 || tax != 0) {
+            text.append("  (");
+            if (promotion != 0) text.append("promotions -₹").append(Money.format(promotion));
+            if (promotion != 0 && tax != 0) text.append(" · ");
+            if (tax != 0) text.append("GST +₹").append(Money.format(tax));
+            text.append(')');
+        }
+        totalLabel.setText(text.toString());
+    }
+
+    private void removeSelectedItem() {
+        if (!catalogReady()) return;
+        scanPipeline.awaitIdle(1000);
+        int[] rows = billTable.getSelectedRows();
+        if (rows.length == 0) {
+            JOptionPane.showMessageDialog(this, "Select an item to remove!");
+            return;
+        }
+
+        // bottom-up so earlier indices stay valid; each contiguous run is one table event
+        Arrays.sort(rows);
+        int runEnd = rows.length - 1;
+        for (int i = rows.length - 1; i >= 0; i--) {
+            try {
+                // restores stock and updates the cart total
+                engine.removeLine(cart, rows[i]);
+                if (scanLog != null) scanLog.remove(LANE, rows[i]);
+            } catch (BillingException ex) {
+                JOptionPane.showMessageDialog(this, ex.getMessage());
+                if (i < runEnd) tableModel.removeRange(rows[i + 1], rows[runEnd] + 1);
+                updateTotalLabel();
+                return;
+            }
+            if (i == 0 || rows[i - 1] != rows[i] - 1) {
+                tableModel.removeRange(rows[i], rows[runEnd] + 1);
+                runEnd = i - 1;
+            }
+        }
+        updateTotalLabel();
+    }
+
+    private void showStock() {
+        StringBuilder sb = new StringBuilder(" Current Stock:\n\n");
+        for (int sku = 0; sku < catalog.size(); sku++) {
+            java.util.List<String> bcs = catalog.barcodesOf(sku);
+            sb.append(String.format("%-12s : %4d pcs (₹%s each)  Barcode: %s\n",
+                    catalog.name(sku), catalog.stock(sku), Money.format(catalog.price(sku)), (bcs.isEmpty() ? "-" : String.join(", ", bcs))));
+        }
+        JTextArea area = new JTextArea(sb.toString());
+        area.setFont(new Font("Monospaced", Font.PLAIN, 12));
+        area.setEditable(false);
+        JScrollPane sp = new JScrollPane(area);
+        sp.setPreferredSize(new Dimension(700, 400));
+        JOptionPane.showMessageDialog(this, sp, "Stock Details", JOptionPane.INFORMATION_MESSAGE);
+    }
+
+    private void editStock() {
+        // multi-field dialog: item, qty, price, barcode
+        JTextField itemField = new JTextField();
+        JTextField qtyField = new JTextField();
+        JTextField priceField = new JTextField();
+        JTextField barcodeFieldInput = new JTextField();
+        JTextField hsnField = new JTextField();
+        JTextField reorderField = new JTextField();
+
+        Object[] fields = {
+                "Item Name:", itemField,
+                "Quantity:", qtyField,
+                "Price (₹):", priceField,
+                "Barcode (optional):", barcodeFieldInput,
+                "HSN code (optional):", hsnField,
+                "Reorder at (units, optional):", reorderField
+        };
+        int result = JOptionPane.showConfirmDialog(this, fields, "Edit/Add Stock", JOptionPane.OK_CANCEL_OPTION);
+        if (result == JOptionPane.OK_OPTION) {
+            try {
+                String item = itemField.getText().trim();
+                if (item.isEmpty()) {
+                    JOptionPane.showMessageDialog(this, "Item name is required.");
+                    return;
+                }
+                int qty = Integer.parseInt(qtyField.getText().trim());
+                long price = Money.parse(priceField.getText().trim());
+                String bc = barcodeFieldInput.getText().trim();
+                String hsn = hsnField.getText().trim();
+                if (!hsn.isEmpty() && !TaxRates.validHsn(hsn)) {
+                    JOptionPane.showMessageDialog(this, "HSN code must be 2 to 8 digits.");
+                    return;
+                }
+                String reorder = reorderField.getText().trim();
+                int reorderLevel = reorder.isEmpty() ? -1 : Integer.parseInt(reorder);
+                if (reorderLevel < -1) {
+                    JOptionPane.showMessageDialog(this, "Reorder level cannot be negative.");
+                    return;
+                }
+
+                // If barcode provided and maps to another item, alert/confirm
+                if (!bc.isEmpty()) {
+                    int existing = catalog.skuForBarcode(bc);
+                    if (existing >= 0 && !catalog.name(existing).equals(item)) {
+                        int r = JOptionPane.showConfirmDialog(this, "Barcode already assigned to '" + catalog.name(existing) + "'. Overwrite?", "Confirm", JOptionPane.YES_NO_OPTION);
+                        if (r != JOptionPane.YES_OPTION) return;
+                    }
+                }
+
+                int sku = catalog.put(item, price, qty);
+                if (!hsn.isEmpty()) catalog.setHsn(sku, hsn);
+                if (!reorder.isEmpty()) catalog.setReorderLevel(sku, reorderLevel);
+                if (!bc.isEmpty()) catalog.assignBarcode(bc, sku);
+                engine.stockEdited(sku);
+                searchIndex.sync(catalog);
+                persistence.put(sku);
+                if (!bc.isEmpty()) persistence.barcode(sku, bc);
+                showSaveStatus("Stock updated for " + item);
+
+            } catch (NumberFormatException ex) {
+                JOptionPane.showMessageDialog(this, "Invalid number format for qty/price/reorder level.");
+            }
+        }
+    }
+
+    private void printReceipt() {
+        if (!catalogReady()) return;
+        long started = System.nanoTime();
+        // scans still in the queue belong on this bill
+        scanPipeline.awaitIdle(1000);
+        if (cart.isEmpty()) {
+            JOptionPane.showMessageDialog(this, "No items in bill!");
+            return;
+        }
+
+        int discount;
+        int tax;
+        try {
+            discount = Money.parseDiscount(discountField.getText().trim());
+            tax = Money.parsePercent(taxField.getText().trim());
+        } catch (NumberFormatException ex) {
+            JOptionPane.showMessageDialog(this, "Invalid discount or tax values (discount is at most 100%).");
+            return;
+        }
+
+        Bill bill;
+        try {
+            bill = engine.checkout(cart, customerNameField.getText().trim(), CustomerIndex.key(customerIdField.getText()),
+                    discount, tax, loggedInUser.username);
+        } catch (BillingException ex) {
+            JOptionPane.showMessageDialog(this, ex.getMessage());
+            return;
+        }
+        if (scanLog != null) scanLog.pay(LANE, discount, tax, bill.customerId);
+
+        // the bill and the stock it sold reach disk with the next group commit
+        persistence.bill(bill);
+        if (inventory != null) inventory.sold(bill);
+        printer.print(bill);
+        totalSalesLabel.setText("Total Sales: ₹" + Money.format(engine.totalSales()));
+
+        // Prepare new bill: the lane can scan again while the receipt prints
+        newBill();
+        Metrics.CHECKOUT.recordSince(started);
+
+        if (printer.preview()) {
+            JTextArea area = new JTextArea(BillingEngine.formatReceipt(bill));
+            area.setEditable(false);
+            area.setFont(new Font("Consolas", Font.PLAIN, 13));
+            JOptionPane.showMessageDialog(this, new JScrollPane(area), " Receipt", JOptionPane.INFORMATION_MESSAGE);
+        }
+    }
+
+    private void viewAllBills() {
+        BillArchive archive;
+        java.util.List<java.time.LocalDate> days;
+        try {
+            archive = readyBillArchive();
+            if (archive == null) return;
+            days = archive.days();
+        } catch (IOException e) {
+            JOptionPane.showMessageDialog(this, "Error loading bills: " + e.getMessage());
+            return;
+        }
+        if (days.size() == 1 && archive.active().size() == 0) {
+            JOptionPane.showMessageDialog(this, "No bills recorded yet.");
+            return;
+        }
+
+        // virtualized list: fixed cell size so JList never measures rows it does not show
+        JList<String> list = new JList<>();
+        list.setFont(new Font("Monospaced", Font.PLAIN, 12));
+        list.setFixedCellHeight(20);
+        list.setFixedCellWidth(620);
+        list.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+
+        JTextArea area = new JTextArea();
+        area.setEditable(false);
+        area.setFont(new Font("Consolas", Font.PLAIN, 13));
+        list.addListSelectionListener(e -> {
+            int idx = list.getSelectedIndex();
+            if (!e.getValueIsAdjusting() && idx >= 0) {
+                area.setText(((BillListModel) list.getModel()).getBill(idx));
+                area.setCaretPosition(0);
+            }
+        });
+
+        // one day at a time: earlier days are read from their sealed segments on demand
+        JComboBox<java.time.LocalDate> dayBox = new JComboBox<>(days.toArray(new java.time.LocalDate[0]));
+        JLabel countLabel = new JLabel();
+        BillSegment[] shown = {null};
+        ActionListener showDay = e -> {
+            java.time.LocalDate day = (java.time.LocalDate) dayBox.getSelectedItem();
+            try {
+                shown[0] = archive.segment(day);
+            } catch (IOException ex) {
+                JOptionPane.showMessageDialog(list, "Error reading bills of " + day + ": " + ex.getMessage());
+                shown[0] = null;
+            }
+            area.setText("");
+            if (shown[0] == null) {
+                list.setModel(new DefaultListModel<>());
+                countLabel.setText("  0 bills");
+                return;
+            }
+            BillListModel model = new BillListModel(shown[0]);
+            list.setModel(model);
+            countLabel.setText("  " + model.getSize() + " bills");
+            // open on the most recent bill
+            if (model.getSize() > 0) {
+                list.setSelectedIndex(model.getSize() - 1);
+                list.ensureIndexIsVisible(model.getSize() - 1);
+            }
+        };
+        dayBox.setSelectedItem(days.get(days.size() - 1));
+        dayBox.addActionListener(showDay);
+
+        JTextField jumpField = new JTextField(14);
+        JButton jumpBtn = new JButton("Go");
+        ActionListener jump = e -> {
+            try {
+                int idx = shown[0] == null ? -1 : shown[0].find(jumpField.getText().trim());
+                if (idx < 0) {
+                    JOptionPane.showMessageDialog(list, "Bill not found!");
+                    return;
+                }
+                list.setSelectedIndex(idx);
+                list.ensureIndexIsVisible(idx);
+            } catch (IOException ex) {
+                JOptionPane.showMessageDialog(list, "Error reading bills: " + ex.getMessage());
+            }
+        };
+        jumpField.addActionListener(jump);
+        jumpBtn.addActionListener(jump);
+
+        JPanel jumpPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        jumpPanel.add(new JLabel("Day:"));
+        jumpPanel.add(dayBox);
+        jumpPanel.add(new JLabel("  Jump to Bill No:"));
+        jumpPanel.add(jumpField);
+        jumpPanel.add(jumpBtn);
+        jumpPanel.add(countLabel);
+
+        JSplitPane split = new JSplitPane(JSplitPane.HORIZONTAL_SPLIT, new JScrollPane(list), new JScrollPane(area));
+        split.setResizeWeight(0.6);
+
+        JPanel panel = new JPanel(new BorderLayout(8, 8));
+        panel.add(jumpPanel, BorderLayout.NORTH);
+        panel.add(split, BorderLayout.CENTER);
+        panel.setPreferredSize(new Dimension(1000, 550));
+
+        showDay.actionPerformed(null);
+        JOptionPane.showMessageDialog(this, panel, "📑 All Bills", JOptionPane.INFORMATION_MESSAGE);
+    }
+
+    // ---------------------------
+    // Sales report
+    // ---------------------------
+    private void salesReportDialog() {
+        BillArchive archive;
+        try {
+            archive = readyBillArchive();
+            if (archive == null) return;
+        } catch (IOException e) {
+            JOptionPane.showMessageDialog(this, "Error loading bills: " + e.getMessage());
+            return;
+        }
+        String today = java.time.LocalDate.now().toString();
+        JTextField fromField = new JTextField(today, 10);
+        JTextField toField = new JTextField(today, 10);
+        JButton runBtn = new JButton("Run");
+        JLabel summary = new JLabel(" ");
+
+        DefaultTableModel itemsModel = new DefaultTableModel(new Object[]{"Item", "Units", "Revenue (₹)"}, 0);
+        DefaultTableModel cashiersModel = new DefaultTableModel(new Object[]{"Cashier", "Bills", "Units", "Revenue (₹)"}, 0);
+        DefaultTableModel hourlyModel = new DefaultTableModel(new Object[]{"Hour", "Bills", "Revenue (₹)"}, 0);
+        JTabbedPane tabs = new JTabbedPane();
+        tabs.addTab("Items", new JScrollPane(new JTable(itemsModel)));
+        tabs.addTab("Cashiers", new JScrollPane(new JTable(cashiersModel)));
+        tabs.addTab("Hourly", new JScrollPane(new JTable(hourlyModel)));
+
+        runBtn.addActionListener(e -> {
+            java.time.LocalDate fromDay, toDay;
+            try {
+                fromDay = java.time.LocalDate.parse(fromField.getText().trim());
+                toDay = java.time.LocalDate.parse(toField.getText().trim());
+            } catch (java.time.format.DateTimeParseException ex) {
+                JOptionPane.showMessageDialog(tabs, "Enter dates as yyyy-MM-dd.");
+                return;
+            }
+            java.time.ZoneId zone = java.time.ZoneId.systemDefault();
+            long from = fromDay.atStartOfDay(zone).toInstant().toEpochMilli();
+            long to = toDay.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli();
+            runBtn.setEnabled(false);
+            summary.setText("Running…");
+            long started = System.nanoTime();
+            new SwingWorker<SalesReport, Void>() {
+                @Override
+                protected SalesReport doInBackground() throws IOException {
+                    // only the days asked for are opened; sealed days are inflated block by block
+                    return new SalesAnalytics(archive.segments(fromDay, toDay)).run(from, to);
+                }
+
+                @Override
+                protected void done() {
+                    runBtn.setEnabled(true);
+                    SalesReport r;
+                    try {
+                        r = get();
+                    } catch (InterruptedException | ExecutionException ex) {
+                        summary.setText(" ");
+                        Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
+                        JOptionPane.showMessageDialog(tabs, "Error reading bills: " + cause.getMessage());
+                        return;
+                    }
+                    itemsModel.setRowCount(0);
+                    for (Map.Entry<String, long[]> en : SalesReport.sortedBy(r.items, 1)) {
+                        itemsModel.addRow(new Object[]{en.getKey(), en.getValue()[0], Money.format(en.getValue()[1])});
+                    }
+                    cashiersModel.setRowCount(0);
+                    for (Map.Entry<String, long[]> en : SalesReport.sortedBy(r.cashiers, 2)) {
+                        long[] v = en.getValue();
+                        cashiersModel.addRow(new Object[]{en.getKey(), v[0], v[1], Money.format(v[2])});
+                    }
+                    hourlyModel.setRowCount(0);
+                    for (int h = 0; h < 24; h++) {
+                        if (r.hourlyBills[h] == 0) continue;
+                        hourlyModel.addRow(new Object[]{String.format("%02d:00", h), r.hourlyBills[h], Money.format(r.hourlyRevenue[h])});
+                    }
+                    summary.setText(r.bills + " bills, " + r.lines + " lines, " + r.units + " units · Gross ₹"
+                            + Money.format(r.gross) + " · Discount ₹" + Money.format(r.discount) + " · GST ₹"
+                            + Money.format(r.tax) + " · Net ₹" + Money.format(r.net) + " · "
+                            + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started) + " ms");
+                }
+            }.execute();
+        });
+
+        JPanel rangePanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        rangePanel.add(new JLabel("From (yyyy-MM-dd):"));
+        rangePanel.add(fromField);
+        rangePanel.add(new JLabel("To:"));
+        rangePanel.add(toField);
+        rangePanel.add(runBtn);
+
+        JPanel panel = new JPanel(new BorderLayout(8, 8));
+        panel.add(rangePanel, BorderLayout.NORTH);
+        panel.add(tabs, BorderLayout.CENTER);
+        panel.add(summary, BorderLayout.SOUTH);
+        panel.setPreferredSize(new Dimension(900, 500));
+        runBtn.doClick();
+        JOptionPane.showMessageDialog(this, panel, "📊 Sales Report", JOptionPane.PLAIN_MESSAGE);
+    }
+
+    // End-of-day totals per cashier. Sealed days show the report written when they were
+    // sealed; the current day is summed from its journal.
+    private void zReportDialog() {
+        BillArchive archive;
+        java.util.List<java.time.LocalDate> days;
+        try {
+            archive = readyBillArchive();
+            if (archive == null) return;
+            days = archive.days();
+        } catch (IOException e) {
+            JOptionPane.showMessageDialog(this, "Error loading bills: " + e.getMessage());
+            return;
+        }
+        JComboBox<java.time.LocalDate> dayBox = new JComboBox<>(days.toArray(new java.time.LocalDate[0]));
+        // the last closed day, if any
+        dayBox.setSelectedIndex(Math.max(0, days.size() - 2));
+        JTextArea area = new JTextArea();
+        area.setEditable(false);
+        area.setFont(new Font("Monospaced", Font.PLAIN, 12));
+        ActionListener show = e -> {
+            java.time.LocalDate day = (java.time.LocalDate) dayBox.getSelectedItem();
+            area.setText("Running…");
+            new SwingWorker<String, Void>() {
+                @Override
+                protected String doInBackground() throws IOException {
+                    return archive.zReport(day);
+                }
+
+                @Override
+                protected void done() {
+                    try {
+                        area.setText(get());
+                    } catch (InterruptedException | ExecutionException ex) {
+                        Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
+                        area.setText("Error reading bills of " + day + ": " + cause.getMessage());
+                    }
+                    area.setCaretPosition(0);
+                }
+            }.execute();
+        };
+        dayBox.addActionListener(show);
+
+        JPanel dayPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        dayPanel.add(new JLabel("Day:"));
+        dayPanel.add(dayBox);
+        JPanel panel = new JPanel(new BorderLayout(8, 8));
+        panel.add(dayPanel, BorderLayout.NORTH);
+        panel.add(new JScrollPane(area), BorderLayout.CENTER);
+        panel.setPreferredSize(new Dimension(720, 400));
+        show.actionPerformed(null);
+        JOptionPane.showMessageDialog(this, panel, "Z-Report", JOptionPane.PLAIN_MESSAGE);
+    }
+
+    // ---------------------------
+    // Customers & loyalty
+    // ---------------------------
+    // Shows a returning customer's spend and puts their tier discount in the Discount field,
+    // unless the cashier has typed a discount of their own. A hash probe in CustomerIndex,
+    // cheap enough for the EDT.
+    private void lookUpCustomer() {
+        String key = CustomerIndex.key(customerIdField.getText());
+        if (key.equals(loyaltyShown)) return;
+        int bps = 0;
+        if (key.isEmpty()) {
+            loyaltyLabel.setText(" ");
+        } else {
+            BillArchive archive = loadedBillArchive();
+            if (archive == null) {
+                loyaltyLabel.setText("Customer history is still loading…");
+                return;
+            }
+            long started = System.nanoTime();
+            CustomerIndex.Summary summary = archive.customers().lookup(key);
+            Metrics.CUSTOMER_LOOKUP.recordSince(started);
+            loyaltyLabel.setText(summary == null ? "New customer" : loyalty.describe(summary));
+            if (summary != null) bps = loyalty.discountBps(summary.spend);
+        }
+        loyaltyShown = key;
+        String given = discountField.getText().trim();
+        if (given.isEmpty() || given.equals("0") || given.equals(loyaltyDiscount)) {
+            loyaltyDiscount = bps > 0 ? Money.formatPercent(bps) : "0";
+            discountField.setText(loyaltyDiscount);
+        }
+    }
+
+    // A customer's totals and latest receipts; the receipts are read off the EDT since
+    // older days have to be inflated.
+    private void customerHistoryDialog() {
+        String typed = JOptionPane.showInputDialog(this, "Phone or loyalty ID:", customerIdField.getText().trim());
+        String key = CustomerIndex.key(typed);
+        if (key.isEmpty()) return;
+        BillArchive archive;
+        try {
+            archive = readyBillArchive();
+            if (archive == null) return;
+        } catch (IOException e) {
+            JOptionPane.showMessageDialog(this, "Error loading bills: " + e.getMessage());
+            return;
+        }
+        CustomerIndex.Summary summary = archive.customers().lookup(key);
+        if (summary == null) {
+            JOptionPane.showMessageDialog(this, "No bills for customer " + key + ".");
+            return;
+        }
+        long[] recent = archive.customers().recentBills(key, 20);
+        java.time.ZoneId zone = java.time.ZoneId.systemDefault();
+        JLabel header = new JLabel(key + ": " + loyalty.describe(summary) + " · since "
+                + java.time.Instant.ofEpochMilli(summary.firstMillis).atZone(zone).toLocalDate() + ", last visit "
+                + java.time.Instant.ofEpochMilli(summary.lastMillis).atZone(zone).toLocalDate());
+        JTextArea area = new JTextArea("Reading the last " + recent.length + " bills…");
+        area.setEditable(false);
+        area.setFont(new Font("Monospaced", Font.PLAIN, 12));
+        new SwingWorker<String, Void>() {
+            @Override
+            protected String doInBackground() throws IOException {
+                StringBuilder sb = new StringBuilder();
+                for (long position : recent) {
+                    String receipt = archive.receipt(position);
+                    if (receipt != null) sb.append(receipt).append('\n');
+                }
+                return sb.toString();
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    area.setText(get());
+                } catch (InterruptedException | ExecutionException ex) {
+                    Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
+                    area.setText("Error reading bills: " + cause.getMessage());
+                }
+                area.setCaretPosition(0);
+            }
+        }.execute();
+
+        JPanel panel = new JPanel(new BorderLayout(8, 8));
+        panel.add(header, BorderLayout.NORTH);
+        panel.add(new JScrollPane(area), BorderLayout.CENTER);
+        panel.setPreferredSize(new Dimension(720, 400));
+        JOptionPane.showMessageDialog(this, panel, "Customer History", JOptionPane.PLAIN_MESSAGE);
+    }
+
+    // Bills are written behind as they are printed; this only waits for the pending commit.
+    private void saveBillsToFile() {
+        if (!catalogReady()) return;
+        long started = System.nanoTime();
+        persistence.flush().whenComplete((done, err) -> SwingUtilities.invokeLater(() -> {
+            Metrics.SAVE_BILLS.recordSince(started);
+            if (err == null) showSaveStatus("Bills saved");
+            else JOptionPane.showMessageDialog(this, "Error saving bills: " + err.getMessage());
+        }));
+    }
+
+    // (Re)builds the index of today's bills; bodies and earlier days stay on disk. The
+    // swap runs on the write-behind thread between commits, so no bill is appended to the
+    // archive being closed and every later one goes to the new archive.
+    private void loadBillsFromFile() {
+        if (!catalogReady() || stillLoadingBills()) return;
+        IOException[] failed = {null};
+        persistence.task("bill history", () -> {
+            try {
+                reopenBillArchive();
+            } catch (IOException e) {
+                failed[0] = e;
+            }
+        });
+        persistence.flush().whenComplete((done, err) -> SwingUtilities.invokeLater(() -> {
+            if (failed[0] != null) JOptionPane.showMessageDialog(this, "Error loading bills: " + failed[0].getMessage());
+            else if (err == null) showSaveStatus("Bills reloaded");
+        }));
+    }
+
+    private BillArchive openArchiveFiles() throws IOException {
+        return BillArchive.open(Paths.get(BILL_DIR), Paths.get(BILL_FILE), new File(LEGACY_BILL_FILE));
+    }
+
+    // Uses the archive opened at startup, waiting for today's index if it is still building;
+    // the EDT goes through readyBillArchive instead. If there is none, or opening it failed,
+    // this thread opens it while any others wait for the result.
+    private BillArchive openBillArchive() throws IOException {
+        while (true) {
+            CompletableFuture<BillArchive> current;
+            boolean mine = false;
+            synchronized (archiveLock) {
+                current = billArchiveFuture;
+                if (current == null || current.isCompletedExceptionally()) {
+                    current = billArchiveFuture = new CompletableFuture<>();
+                    mine = true;
+                }
+            }
+            if (mine) {
+                try {
+                    current.complete(openArchiveFiles());
+                } catch (IOException | RuntimeException e) {
+                    current.completeExceptionally(e);
+                    throw e;
+                }
+            }
+            try {
+                return current.join();
+            } catch (CompletionException e) {
+                // another thread's open failed: try it here
+            }
+        }
+    }
+
+    // Closes the archive and opens it again from disk. Others wait for the new one meanwhile.
+    private void reopenBillArchive() throws IOException {
+        CompletableFuture<BillArchive> next = new CompletableFuture<>();
+        CompletableFuture<BillArchive> old;
+        synchronized (archiveLock) {
+            old = billArchiveFuture;
+            billArchiveFuture = next;
+        }
+        try {
+            if (old != null) {
+                try {
+                    old.join().close();
+                } catch (CompletionException | IOException ignored) {
+                }
+            }
+            next.complete(openArchiveFiles());
+        } catch (IOException | RuntimeException e) {
+            next.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    // For the bill dialogs on the EDT: the archive, or null after telling the cashier that
+    // startup is still building today's index. Never waits for it.
+    private BillArchive readyBillArchive() throws IOException {
+        return stillLoadingBills() ? null : openBillArchive();
+    }
+
+    private boolean stillLoadingBills() {
+        CompletableFuture<BillArchive> current;
+        synchronized (archiveLock) {
+            current = billArchiveFuture;
+        }
+        boolean loading = current != null && !current.isDone();
+        if (loading) JOptionPane.showMessageDialog(this, "Bills are still loading, try again in a moment.");
+        return loading;
+    }
+
+    // The archive once startup has opened it, without waiting; null while it is loading.
+    private BillArchive loadedBillArchive() {
+        CompletableFuture<BillArchive> current;
+        synchronized (archiveLock) {
+            current = billArchiveFuture;
+        }
+        if (current == null || !current.isDone()) return null;
+        try {
+            return openBillArchive();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    // Waits for an archive still being opened, then closes it.
+    private void closeBillArchive() {
+        CompletableFuture<BillArchive> current;
+        synchronized (archiveLock) {
+            current = billArchiveFuture;
+            billArchiveFuture = null;
+        }
+        if (current == null) return;
+        try {
+            current.join().close();
+        } catch (CompletionException | IOException ignored) {
+        }
+    }
+
+    private void newBill() {
+        scanPipeline.awaitIdle(1000);
+        // an abandoned bill gives its stock back; a printed one is already closed
+        if (scanLog != null && !cart.isClosed() && !cart.isEmpty()) scanLog.cancel(LANE);
+        engine.cancel(cart);
+        cart = engine.newCart(cart.lane);
+        tableModel.clear();
+        scanStatusLabel.setText(" ");
+        totalLabel.setText("Bill Total: ₹0.00");
+        customerNameField.setText("");
+        customerIdField.setText("");
+        loyaltyLabel.setText(" ");
+        loyaltyShown = "";
+        loyaltyDiscount = "0";
+        discountField.setText("0");
+        taxField.setText("0");
+        billNoLabel.setText(cart.billNo);
+        // no popup to keep workflow fast
+    }
+
+    private void searchItem() {
+        String name = JOptionPane.showInputDialog(this, "Enter item name to search:");
+        if (name == null) return;
+
+        int sku = catalog.skuOf(name);
+        if (sku < 0) sku = searchIndex.resolve(name);
+        if (sku >= 0) {
+            java.util.List<String> bcs = catalog.barcodesOf(sku);
+            JOptionPane.showMessageDialog(this,
+                    catalog.name(sku) + " - Stock: " + catalog.stock(sku) + " Price: ₹" + Money.format(catalog.price(sku)) +
+                            " Barcode: " + (bcs.isEmpty() ? "-" : String.join(", ", bcs)));
+            return;
+        }
+        int[] matches = searchIndex.search(name, 10);
+        if (matches.length == 0) {
+            JOptionPane.showMessageDialog(this, "Item not found!");
+            return;
+        }
+        StringBuilder sb = new StringBuilder("Did you mean:\n");
+        for (int m : matches) {
+            sb.append("  ").append(catalog.name(m)).append(" - Stock: ").append(catalog.stock(m))
+                    .append(" Price: ₹").append(Money.format(catalog.price(m))).append("\n");
+        }
+        JOptionPane.showMessageDialog(this, sb.toString());
+    }
+
+    // ---------------------------
+    // Staged startup
+    // ---------------------------
+    private void startBackgroundLoads() {
+        stockFuture = CompletableFuture.supplyAsync(() -> {
+            try {
+                return loadStockFromFile();
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, startupLoader);
+        billArchiveFuture = CompletableFuture.supplyAsync(() -> {
+            try {
+                return openArchiveFiles();
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, startupLoader);
+    }
+
+    private void onStockLoaded(StockLoad load, Throwable err) {
+        if (err == null) {
+            catalog = load.catalog;
+            stockStore = load.store;
+            searchIndex = load.index;
+            catalogStatus = "Catalog: " + catalog.size() + " items in " + load.millis + " ms";
+            billIds = load.billIds;
+            if (load.billIdsError != null) billIdsFailed(load.billIdsError);
+            if (!load.taxErrors.isEmpty()) {
+                showErrors("GST rates", "Could not use " + GST_RATES_FILE + "; all items are taxed at the GST field's rate.",
+                        load.taxErrors, load.taxErrors.size() >= TaxRates.MAX_ERRORS);
+            }
+            inventory = load.inventory;
+            if (inventory != null) catalogStatus += " · stock leased from " + INVENTORY_SERVER;
+            if (load.inventoryError != null) {
+                JOptionPane.showMessageDialog(this, "Cannot reach inventory server " + INVENTORY_SERVER + ": "
+                        + load.inventoryError.getMessage() + "\nThis lane sells from its own stock and may oversell.");
+            }
+        } else {
+            // keep the damaged files untouched for inspection and run on default stock
+            catalog = new Catalog();
+            searchIndex = new ItemSearchIndex();
+            stockStore = null;
+            catalogStatus = "Catalog: defaults";
+            try {
+                billIds = BillIdAllocator.open(Paths.get(BILL_IDS_FILE), LANE);
+            } catch (IOException e) {
+                billIdsFailed(e);
+            }
+            Throwable cause = err instanceof CompletionException && err.getCause() != null ? err.getCause() : err;
+            JOptionPane.showMessageDialog(this, "Error loading stock: " + cause.getMessage()
+                    + "\nUsing default stock; changes will not be saved.");
+        }
+        engine = new BillingEngine(catalog, bill -> openBillArchive().append(bill));
+        engine.setStockSource(inventory);
+        engine.setBillIds(billIds);
+        if (load != null && load.promotions != null) onPromotionsLoaded(load.promotions, null, false);
+        if (load != null && load.promotionsError != null) {
+            showLoadWarning("Promotions not loaded: " + load.promotionsError.getMessage());
+        }
+        persistence = new PersistenceService(engine, () -> openBillArchive().sync(), stockStore, persistListener);
+        openReceiptPrinter();
+        // Setup defaults if empty
+        ensureDefaultStock();
+        searchIndex.sync(catalog);
+        tableModel.setCatalog(catalog);
+        stockAlerts = StockAlerts.fromProperties(catalog);
+        stockAlerts.setListener(this::alertsChanged);
+        engine.setStockListener(stockAlerts);
+        stockAlerts.rebuild();
+        seedStockAlerts();
+        openPriceLookup();
+        cart = engine.newCart(LANE);
+        scanPipeline = new ScanPipeline(engine, () -> cart, scanListener);
+        billNoLabel.setText(cart.billNo);
+        applyRestoredSales();
+        loadProgress.setValue(loadProgress.getValue() + 1);
+
+        // replay scans that arrived while the catalog was loading
+        for (String bc : pendingScans) scanPipeline.submit(bc);
+        pendingScans.clear();
+        updateStatus();
+    }
+
+    // A broken template or printer setting falls back to showing receipts on screen.
+    private void openReceiptPrinter() {
+        try {
+            printer = ReceiptPrinter.fromProperties(printListener);
+        } catch (IOException | IllegalArgumentException e) {
+            JOptionPane.showMessageDialog(this, "Receipt printing is off: " + e.getMessage(),
+                    "Receipt", JOptionPane.WARNING_MESSAGE);
+            ReceiptTemplate text = ReceiptTemplate.compile(ReceiptTemplate.DEFAULT, ReceiptTemplate.Encoding.TEXT);
+            printer = new ReceiptPrinter(text, null, null, false, true, printListener);
+        }
+    }
+
+    // Handhelds lose price checks but the lane keeps billing.
+    private void openPriceLookup() {
+        try {
+            priceLookup = PriceLookup.fromProperties(catalog);
+        } catch (IOException | RuntimeException e) {
+            JOptionPane.showMessageDialog(this, "Price lookup for handhelds is off: " + e.getMessage(),
+                    "Price Lookup", JOptionPane.WARNING_MESSAGE);
+        }
+    }
+
+    // Recording is optional, so a log that cannot be opened only costs the recording.
+    private ScanLog.Writer openScanLog() {
+        try {
+            return ScanLog.Writer.fromProperties();
+        } catch (IOException e) {
+            showLoadWarning("Scan log off: " + e.getMessage());
+            return null;
+        }
+    }
+
+    // Without persistent numbers this lane would reissue or collide with bill numbers.
+    private void billIdsFailed(IOException e) {
+        JOptionPane.showMessageDialog(this, "Cannot allocate bill numbers: " + e.getMessage(),
+                "Bill numbers", JOptionPane.ERROR_MESSAGE);
+        System.exit(1);
+    }
+
+    private void onBillsLoaded(BillArchive archive, Throwable err) {
+        if (err == null) {
+            billsStatus = "Bills: " + archive.active().size() + " today, ready after "
+                    + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos) + " ms";
+            restoreTodaysSales(archive.active());
+            seedStockAlerts();
+        } else {
+            billsStatus = "Bills: not loaded";
+            Throwable cause = err instanceof CompletionException && err.getCause() != null ? err.getCause() : err;
+            JOptionPane.showMessageDialog(this, "Error loading bills: " + cause.getMessage());
+        }
+        loadProgress.setValue(loadProgress.getValue() + 1);
+        updateStatus();
+    }
+
+    // Total Sales survives restarts: sum today's bills from the journal in the background.
+    private void restoreTodaysSales(BillSegment store) {
+        long from = java.time.LocalDate.now().atStartOfDay(java.time.ZoneId.systemDefault()).toInstant().toEpochMilli();
+        new SwingWorker<Long, Void>() {
+            @Override
+            protected Long doInBackground() throws IOException {
+                return new SalesAnalytics(store).run(from, Long.MAX_VALUE).net;
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    restoredSales = get();
+                    applyRestoredSales();
+                } catch (InterruptedException | ExecutionException e) {
+                    // keep counting from zero; the bills themselves are untouched
+                }
+            }
+        }.execute();
+    }
+
+    private void applyRestoredSales() {
+        if (engine == null || restoredSales < 0) return;
+        engine.addRestoredSales(restoredSales);
+        restoredSales = -1;
+        totalSalesLabel.setText("Total Sales: ₹" + Money.format(engine.totalSales()));
+    }
+
+    private void updateStatus() {
+        if (loadProgress.getValue() >= loadProgress.getMaximum()) {
+            loadProgress.setString("Ready");
+        } else {
+            loadProgress.setString(engine == null ? "Loading catalog…" : "Loading bills…");
+        }
+        String queued = pendingScans.isEmpty() ? "" : " · " + pendingScans.size() + " scans queued";
+        String saved = saveStatus.isEmpty() ? "" : " · " + saveStatus;
+        statusLabel.setText(catalogStatus + " · " + billsStatus + loadWarnings + queued + saved);
+    }
+
+    // An optional feature that failed to load is noted in the status bar; the lane keeps billing.
+    private void showLoadWarning(String message) {
+        loadWarnings += " · " + message;
+        updateStatus();
+    }
+
+    // Saves confirm in the status bar; only failures open a dialog.
+    private void showSaveStatus(String message) {
+        saveStatus = message;
+        updateStatus();
+    }
+
+    // Catalog-dependent actions wait until the background load has finished.
+    private boolean catalogReady() {
+        if (engine != null) return true;
+        JOptionPane.showMessageDialog(this, "Catalog is still loading, please wait.");
+        return false;
+    }
+
+    // ---------------------------
+    // Persistence: stock & users
+    // ---------------------------
+    // Writes a fresh snapshot now; edits and sales in between go to the delta log.
+    private void saveStockToFile() {
+        if (stockStore == null) {
+            JOptionPane.showMessageDialog(this, stockNotSaved() + "; stock is not being saved.");
+            return;
+        }
+        persistence.compactStock();
+        persistence.flush().whenComplete((done, err) -> SwingUtilities.invokeLater(() -> {
+            if (err == null) showSaveStatus("Stock saved to " + STOCK_SNAPSHOT_FILE);
+            else JOptionPane.showMessageDialog(this, "Error saving stock: " + err.getMessage());
+        }));
+    }
+
+    private String stockNotSaved() {
+        return inventory != null ? "Stock is leased from " + INVENTORY_SERVER + " and this lane's stock files are left as they were"
+                : "Stock files could not be opened";
+    }
+
+    // Parses, validates and applies the CSV off the EDT; a file with any bad line changes nothing.
+    private void importCatalog() {
+        JFileChooser chooser = new JFileChooser();
+        chooser.setDialogTitle("Import catalog CSV");
+        if (chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) return;
+        Path file = chooser.getSelectedFile().toPath();
+        statusLabel.setText("Importing " + file.getFileName() + "…");
+        long started = System.nanoTime();
+        CompletableFuture.supplyAsync(() -> {
+            try {
+                CatalogCsv.Import csv = CatalogCsv.read(file);
+                if (!csv.ok()) return csv;
+                csv.applyTo(catalog);
+                // the same notifications as Edit Stock, for every imported item
+                for (int row = 0; row < csv.count(); row++) engine.stockEdited(catalog.skuOf(csv.name(row)));
+                searchIndex.sync(catalog);
+                persistence.compactStock();
+                return csv;
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, startupLoader).whenComplete((csv, err) -> SwingUtilities.invokeLater(() -> onCatalogImported(file, csv, err, started)));
+    }
+
+    private void onCatalogImported(Path file, CatalogCsv.Import csv, Throwable err, long started) {
+        updateStatus();
+        if (err != null) {
+            Throwable cause = err instanceof CompletionException && err.getCause() != null ? err.getCause() : err;
+            JOptionPane.showMessageDialog(this, "Error importing " + file.getFileName() + ": " + cause.getMessage());
+            return;
+        }
+        if (!csv.ok()) {
+            showErrors("Import Catalog", csv.errorCount() + " invalid line(s) in " + file.getFileName()
+                    + "; the catalog was not changed.", csv.errors(), csv.errorCount() > csv.errors().size());
+            return;
+        }
+        // start rebuilding the handhelds' price snapshot now rather than on their next request
+        if (priceLookup != null) priceLookup.current();
+        if (stockStore == null) JOptionPane.showMessageDialog(this, stockNotSaved() + "; the import is not saved.");
+        showSaveStatus("Imported " + csv.count() + " items (" + csv.added() + " new) in "
+                + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started) + " ms");
+    }
+
+    private void showErrors(String title, String headline, java.util.List<String> errors, boolean more) {
+        StringBuilder sb = new StringBuilder(headline).append("\n\n");
+        for (String line : errors) sb.append(line).append('\n');
+        if (more) sb.append("…\n");
+        JTextArea area = new JTextArea(sb.toString());
+        area.setEditable(false);
+        JScrollPane sp = new JScrollPane(area);
+        sp.setPreferredSize(new Dimension(600, 300));
+        JOptionPane.showMessageDialog(this, sp, title, JOptionPane.ERROR_MESSAGE);
+    }
+
+    // Re-reads promotions.txt in the background; new rules apply from the next bill.
+    private void reloadPromotions() {
+        statusLabel.setText("Loading promotions…");
+        CompletableFuture.supplyAsync(() -> new PromotionLoad(catalog))
+                .whenComplete((load, err) -> SwingUtilities.invokeLater(() -> onPromotionsLoaded(load, err, true)));
+    }
+
+    private void onPromotionsLoaded(PromotionLoad load, Throwable err, boolean reload) {
+        updateStatus();
+        if (err != null) {
+            Throwable cause = err instanceof CompletionException && err.getCause() != null ? err.getCause() : err;
+            JOptionPane.showMessageDialog(this, "Error loading promotions: " + cause.getMessage());
+            return;
+        }
+        if (!load.errors.isEmpty()) {
+            showErrors("Promotions", load.errors.size() + " invalid rule(s) in " + PROMOTIONS_FILE
+                    + "; " + (reload ? "the current promotions stay in effect." : "no promotions are applied."),
+                    load.errors, load.errors.size() >= Promotions.MAX_ERRORS);
+            return;
+        }
+        engine.setPromotions(load.promotions);
+        if (reload) showSaveStatus("Promotions: " + load.promotions.size() + " rules, from the next bill");
+    }
+
+    // ---------------------------
+    // Low-stock alerts
+    // ---------------------------
+    // Stock events arrive from the scan worker and the EDT; one refresh per burst.
+    private void alertsChanged() {
+        if (alertsQueued.compareAndSet(false, true)) SwingUtilities.invokeLater(this::refreshAlerts);
+    }
+
+    private void refreshAlerts() {
+        alertsQueued.set(false);
+        java.util.List<StockAlerts.Alert> top = stockAlerts.top(100);
+        alertModel.clear();
+        for (StockAlerts.Alert a : top) {
+            String cover = Double.isInfinite(a.daysOfCover) ? "no recent sales"
+                    : String.format("%.1f days", a.daysOfCover);
+            alertModel.addElement(a.name + " — " + a.stock + " left, " + cover);
+        }
+        alertPanel.setBorder(BorderFactory.createTitledBorder("Low Stock (" + stockAlerts.size() + ")"));
+    }
+
+    // Starts sales velocity from recent bills once both the catalog and the bills are loaded.
+    private void seedStockAlerts() {
+        BillArchive archive = loadedBillArchive();
+        if (stockAlerts == null || archive == null || alertsSeeded) return;
+        alertsSeeded = true;
+        StockAlerts alerts = stockAlerts;
+        new SwingWorker<Void, Void>() {
+            @Override
+            protected Void doInBackground() throws IOException {
+                java.time.LocalDate today = java.time.LocalDate.now();
+                java.time.LocalDate from = today.minusDays((long) Math.ceil(alerts.velocityDays()) - 1);
+                java.util.List<java.time.LocalDate> days = archive.days();
+                java.time.LocalDate first = today;
+                for (java.time.LocalDate day : days) {
+                    if (!day.isBefore(from) && day.isBefore(first)) first = day;
+                }
+                java.time.ZoneId zone = java.time.ZoneId.systemDefault();
+                long fromMillis = first.atStartOfDay(zone).toInstant().toEpochMilli();
+                long now = System.currentTimeMillis();
+                SalesReport report = new SalesAnalytics(archive.segments(first, today)).run(fromMillis, Long.MAX_VALUE);
+                // a store with a few days of history divides by those days, not the whole window
+                alerts.seed(report.items, Math.max(1.0, (now - fromMillis) / 86_400_000.0));
+                return null;
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    get();
+                } catch (InterruptedException | ExecutionException e) {
+                    // alerts still work from stock levels; velocity builds up as items sell
+                    Throwable cause = e.getCause() != null ? e.getCause() : e;
+                    showLoadWarning("Sales velocity not seeded: " + cause.getMessage());
+                }
+            }
+        }.execute();
+    }
+
+    private void exportReorderList() {
+        JFileChooser chooser = new JFileChooser();
+        chooser.setDialogTitle("Export reorder list");
+        chooser.setSelectedFile(new File("reorder-" + java.time.LocalDate.now() + ".csv"));
+        if (chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) return;
+        try {
+            int rows = stockAlerts.writeReorderList(chooser.getSelectedFile().toPath());
+            JOptionPane.showMessageDialog(this, " Exported " + rows + " items to " + chooser.getSelectedFile().getName());
+        } catch (IOException e) {
+            JOptionPane.showMessageDialog(this, "Error exporting reorder list: " + e.getMessage());
+        }
+    }
+
+    private void exportCatalog() {
+        JFileChooser chooser = new JFileChooser();
+        chooser.setDialogTitle("Export catalog CSV");
+        chooser.setSelectedFile(new File("catalog.csv"));
+        if (chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) return;
+        try {
+            int rows = CatalogCsv.write(catalog, chooser.getSelectedFile().toPath());
+            JOptionPane.showMessageDialog(this, " Exported " + rows + " items to " + chooser.getSelectedFile().getName());
+        } catch (IOException e) {
+            JOptionPane.showMessageDialog(this, "Error exporting catalog: " + e.getMessage());
+        }
+    }
+
+    // Runs on a startup thread: no UI here, errors are reported by onStockLoaded.
+    private StockLoad loadStockFromFile() throws IOException {
+        long started = System.nanoTime();
+        Path snapshot = Paths.get(STOCK_SNAPSHOT_FILE);
+        Path delta = Paths.get(STOCK_DELTA_FILE);
+        File legacy = new File(STOCK_FILE);
+        if (!Files.exists(snapshot) && legacy.exists()) StockMigrator.migrate(legacy, snapshot);
+        Catalog loaded = StockStore.load(snapshot, delta);
+        InventoryClient inventory = null;
+        Exception inventoryError = null;
+        if (!INVENTORY_SERVER.isEmpty()) {
+            try {
+                inventory = InventoryClient.connect(LANE, loaded, INVENTORY_SERVER);
+            } catch (IOException | RuntimeException e) {
+                inventoryError = e;
+            }
+        }
+        // with a lease the catalog's stock counts leased units, not this lane's own stock:
+        // the stock files are left as they were, for a later start without the server
+        StockStore store = inventory == null ? StockStore.open(snapshot, delta, loaded) : null;
+        ItemSearchIndex index = new ItemSearchIndex();
+        index.sync(loaded);
+        StockLoad load = new StockLoad(loaded, store, index);
+        load.inventory = inventory;
+        load.inventoryError = inventoryError;
+        Path rates = Paths.get(GST_RATES_FILE);
+        if (Files.exists(rates)) {
+            try {
+                TaxRates parsed = TaxRates.load(rates, load.taxErrors);
+                if (load.taxErrors.isEmpty()) loaded.setTaxRates(parsed);
+            } catch (IOException e) {
+                load.taxErrors.add(e.getMessage());
+            }
+        }
+        try {
+            load.promotions = new PromotionLoad(loaded);
+        } catch (CompletionException e) {
+            load.promotionsError = e.getCause();
+        }
+        try {
+            load.billIds = BillIdAllocator.open(Paths.get(BILL_IDS_FILE), LANE);
+        } catch (IOException e) {
+            load.billIdsError = e;
+        }
+        long elapsed = System.nanoTime() - started;
+        Metrics.STOCK_LOAD_NANOS.set(elapsed);
+        load.millis = TimeUnit.NANOSECONDS.toMillis(elapsed);
+        return load;
+    }
+
+    private void closeStockStore() {
+        if (stockStore == null) return;
+        try {
+            stockStore.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    // Serialized here so later edits cannot race the write; the file itself is written behind.
+    private void saveUsers() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(users);
+        } catch (IOException e) {
+            JOptionPane.showMessageDialog(this, "Error saving users: " + e.getMessage());
+            return;
+        }
+        Path file = Paths.get(USERS_FILE);
+        PersistenceService.IOAction write = () -> {
+            Path tmp = file.resolveSibling(USERS_FILE + ".tmp");
+            Files.write(tmp, bytes.toByteArray());
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        };
+        if (persistence != null) {
+            persistence.task(USERS_FILE, write);
+            return;
+        }
+        // before the catalog has loaded (first start): write now
+        try {
+            write.run();
+        } catch (IOException e) {
+            JOptionPane.showMessageDialog(this, "Error saving users: " + e.getMessage());
+        }
+    }
+
+    private void loadUsers() {
+        File f = new File(USERS_FILE);
+        if (!f.exists()) return;
+        try (ObjectInputStream in = new ObjectInputStream(new FileInputStream(f))) {
+            Object o = in.readObject();
+            if (o instanceof Map) {
+                //noinspection unchecked
+                users = (Map<String, User>) o;
+            }
+        } catch (Exception e) {
+            // ignore
+        }
+    }
+
+    // ---------------------------
+    // Helpers & defaults
+    // ---------------------------
+    private void ensureDefaultStock() {
+        if (!catalog.isEmpty()) return;
+        if (Files.exists(Paths.get(SEED_CATALOG_FILE))) {
+            try {
+                CatalogCsv.Import seed = CatalogCsv.read(Paths.get(SEED_CATALOG_FILE));
+                if (seed.ok()) {
+                    seed.applyTo(catalog);
+                } else {
+                    JOptionPane.showMessageDialog(this, SEED_CATALOG_FILE + " has " + seed.errorCount()
+                            + " invalid line(s), first: " + seed.errors().get(0) + "\nUsing the built-in sample stock.");
+                }
+            } catch (IOException e) {
+                JOptionPane.showMessageDialog(this, "Error reading " + SEED_CATALOG_FILE + ": " + e.getMessage());
+            }
+        }
+        if (catalog.isEmpty()) {
+            int apple = catalog.put("Apple", 5000, 20);
+            int banana = catalog.put("Banana", 2000, 50);
+            int milk = catalog.put("Milk", 3000, 30);
+            catalog.put("Bread", 2500, 25);
+            catalog.put("Soap", 4000, 40);
+
+            // default barcodes (optional)
+            catalog.assignBarcode("111000111", apple);
+            catalog.assignBarcode("111000112", banana);
+            catalog.assignBarcode("111000113", milk);
+        }
+
+        // later delta records refer to these SKUs, so snapshot them right away
+        if (stockStore != null) persistence.compactStock();
+    }
+
+    // Reads promotions.txt against catalog; a missing file means no promotions.
+    private class PromotionLoad {
+        final java.util.List<String> errors = new ArrayList<>();
+        final Promotions promotions;
+
+        PromotionLoad(Catalog catalog) {
+            Path file = Paths.get(PROMOTIONS_FILE);
+            try {
+                promotions = Files.exists(file) ? Promotions.load(file, catalog, errors) : Promotions.NONE;
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }
+    }
+
+    private static class StockLoad {
+        final Catalog catalog;
+        final StockStore store;
+        final ItemSearchIndex index;
+        long millis;
+        InventoryClient inventory;
+        Exception inventoryError;
+        BillIdAllocator billIds;
+        IOException billIdsError;
+        PromotionLoad promotions;
+        Throwable promotionsError;
+        final java.util.List<String> taxErrors = new ArrayList<>();
+
+        StockLoad(Catalog catalog, StockStore store, ItemSearchIndex index) {
+            this.catalog = catalog;
+            this.store = store;
+            this.index = index;
+        }
+    }
+
+    // ---------------------------
+    // User class for simple persistence
+    // ---------------------------
+    private static class User implements Serializable {
+        String username;
+        String password; // plaintext for simplicity here. Replace with hashed in production.
+        String role;
+
+        User(String username, String password, String role) {
+            this.username = username;
+            this.password = password;
+            this.role = role;
+        }
+    }
+
+    // ---------------------------
+    // Main
+    // ---------------------------
+    public static void main(String[] args) {
+        if (args.length > 0 && args[0].equals("--replay")) {
+            System.exit(ScanReplay.run(Arrays.copyOfRange(args, 1, args.length), System.out));
+        }
+        startNanos = System.nanoTime();
+        // PersistenceService fsyncs once per commit, so the logs need no sync policy of their own
+        if (System.getProperty("billing.journal.sync") == null) System.setProperty("billing.journal.sync", "none");
+        if (System.getProperty("billing.stock.sync") == null) System.setProperty("billing.stock.sync", "none");
+        Metrics.start();
+        SwingUtilities.invokeLater(() -> {
+            SmartSupermarketBillingWithLogin app = new SmartSupermarketBillingWithLogin();
+            app.getContentPane().setBackground(new Color(245, 248, 255));
+        });
+    }
+}
@@ -0,0 +1,297 @@
+package supermarket;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.function.LongSupplier;
+
+// ---------------------------
+// Low-stock alerts
+// ---------------------------
+// The SKUs at risk of running out, kept in an indexed binary min-heap ordered by days of
+// cover (stock / recent daily sales) and maintained from BillingEngine's stock events: a
+// scan re-keys only its own SKU, one O(log n) sift, never a pass over the catalog. A SKU
+// is at risk when its stock is at or below its reorder level or covers fewer than
+// alertDays of sales.
+//
+// Sales velocity is a decaying rate per SKU with a time constant of velocityDays: units
+// taken add units / velocityDays and the rate decays by e^(-days / velocityDays) between
+// events, so steady sales of R a day settle at R. seed() starts the rates from the bills
+// of the last velocityDays days. A SKU's key is its cover as of its own last event.
+// Properties:
+//   billing.stock.alertDays      3    days of cover below which an item is at risk
+//   billing.stock.targetDays     14   a suggested order brings cover up to this
+//   billing.stock.velocityDays   14   how far back sales velocity looks
+final class StockAlerts implements BillingEngine.StockListener {
+
+    // Called on the thread that changed stock; should only schedule a refresh.
+    interface Listener {
+        void alertsChanged();
+    }
+
+    static final String HEADER = "item,barcode,stock,reorder_level,daily_sales,days_of_cover,suggested_qty";
+
+    private static final double DAY_MILLIS = 86_400_000.0;
+
+    // One at-risk SKU as of its last stock event.
+    static final class Alert {
+        final int sku;
+        final String name;
+        final int stock;
+        final int reorderLevel;     // -1: none
+        final double dailySales;
+        final double daysOfCover;   // infinite when nothing is selling
+        final int suggested;        // units to order
+
+        Alert(int sku, String name, int stock, int reorderLevel, double dailySales, double daysOfCover, int suggested) {
+            this.sku = sku;
+            this.name = name;
+            this.stock = stock;
+            this.reorderLevel = reorderLevel;
+            this.dailySales = dailySales;
+            this.daysOfCover = daysOfCover;
+            this.suggested = suggested;
+        }
+    }
+
+    private final Catalog catalog;
+    private final double alertDays;
+    private final double targetDays;
+    private final double velocityDays;
+    private final LongSupplier clock;
+    private volatile Listener listener;
+
+    // per SKU, grown with the catalog
+    private double[] rate = new double[0];      // units a day as of lastMillis
+    private long[] lastMillis = new long[0];
+    private int[] stock = new int[0];           // as of the last event
+    private double[] cover = new double[0];     // heap key
+    private int[] slot = new int[0];            // position in heap, -1 when not at risk
+
+    private int[] heap = new int[64];
+    private int heapSize = 0;
+
+    StockAlerts(Catalog catalog, double alertDays, double targetDays, double velocityDays, LongSupplier clock) {
+        this.catalog = catalog;
+        this.alertDays = alertDays;
+        this.targetDays = targetDays;
+        this.velocityDays = Math.max(1, velocityDays);
+        this.clock = clock;
+    }
+
+    static StockAlerts fromProperties(Catalog catalog) {
+        return new StockAlerts(catalog, days("billing.stock.alertDays", 3), days("billing.stock.targetDays", 14),
+                days("billing.stock.velocityDays", 14), System::currentTimeMillis);
+    }
+
+    void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    double velocityDays() {
+        return velocityDays;
+    }
+
+    @Override
+    public void stockChanged(int sku, int units, int sold) {
+        boolean changed;
+        synchronized (this) {
+            ensure(sku);
+            long now = clock.getAsLong();
+            double r = decayed(sku, now) + sold / velocityDays;
+            rate[sku] = Math.max(0, r);
+            lastMillis[sku] = now;
+            changed = update(sku, units) || slot[sku] >= 0;
+        }
+        Listener l = listener;
+        if (changed && l != null) l.alertsChanged();
+    }
+
+    // Re-reads every SKU's stock and level, e.g. after loading the catalog.
+    void rebuild() {
+        synchronized (this) {
+            int n = catalog.size();
+            if (n > 0) ensure(n - 1);
+            for (int sku = 0; sku < n; sku++) update(sku, catalog.stock(sku));
+        }
+        Listener l = listener;
+        if (l != null) l.alertsChanged();
+    }
+
+    // Starts each SKU's rate from units sold over the last `days` days (item name ->
+    // {units, ...}, as in SalesReport.items), then re-keys everything.
+    void seed(Map<String, long[]> unitsByItem, double days) {
+        synchronized (this) {
+            int n = catalog.size();
+            if (n > 0) ensure(n - 1);
+            long now = clock.getAsLong();
+            for (Map.Entry<String, long[]> e : unitsByItem.entrySet()) {
+                int sku = catalog.skuOf(e.getKey());
+                if (sku < 0) continue;
+                rate[sku] = e.getValue()[0] / Math.max(1, days);
+                lastMillis[sku] = now;
+            }
+        }
+        rebuild();
+    }
+
+    synchronized int size() {
+        return heapSize;
+    }
+
+    // The `max` most urgent SKUs, least cover first. Walks the heap best-first (a node's
+    // children are candidates once it is taken), so the panel's top 100 costs
+    // O(100 log 100) however many SKUs are at risk.
+    synchronized List<Alert> top(int max) {
+        List<Alert> out = new ArrayList<>(Math.min(max, heapSize));
+        PriorityQueue<Integer> candidates = new PriorityQueue<>(
+                (x, y) -> less(heap[x], heap[y]) ? -1 : less(heap[y], heap[x]) ? 1 : 0);
+        if (heapSize > 0) candidates.add(0);
+        while (!candidates.isEmpty() && out.size() < max) {
+            int i = candidates.poll();
+            out.add(alert(heap[i]));
+            if (2 * i + 1 < heapSize) candidates.add(2 * i + 1);
+            if (2 * i + 2 < heapSize) candidates.add(2 * i + 2);
+        }
+        return out;
+    }
+
+    // Writes every at-risk SKU with a suggested order quantity; returns the row count.
+    int writeReorderList(Path path) throws IOException {
+        List<Alert> alerts = top(Integer.MAX_VALUE);
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        StringBuilder line = new StringBuilder(128);
+        try (BufferedWriter out = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            out.write(HEADER);
+            out.write('\n');
+            for (Alert a : alerts) {
+                line.setLength(0);
+                CatalogCsv.appendField(line, a.name);
+                String barcode = catalog.barcodeOf(a.sku);
+                CatalogCsv.appendField(line.append(','), barcode == null ? "" : barcode);
+                line.append(',').append(a.stock).append(',');
+                if (a.reorderLevel >= 0) line.append(a.reorderLevel);
+                line.append(',').append(String.format(Locale.ROOT, "%.2f", a.dailySales)).append(',');
+                if (!Double.isInfinite(a.daysOfCover)) line.append(String.format(Locale.ROOT, "%.1f", a.daysOfCover));
+                line.append(',').append(a.suggested);
+                out.append(line).write('\n');
+            }
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return alerts.size();
+    }
+
+    // ---------------------------
+    // Heap
+    // ---------------------------
+    // Re-keys sku for its new stock; returns true if it entered or left the heap.
+    private boolean update(int sku, int units) {
+        stock[sku] = units;
+        cover[sku] = units <= 0 ? 0 : rate[sku] > 0 ? units / rate[sku] : Double.POSITIVE_INFINITY;
+        int level = catalog.reorderLevel(sku);
+        boolean atRisk = level >= 0 && units <= level || cover[sku] < alertDays;
+        int at = slot[sku];
+        if (atRisk) {
+            if (at < 0) {
+                if (heapSize == heap.length) heap = Arrays.copyOf(heap, heapSize * 2);
+                heap[heapSize] = sku;
+                slot[sku] = heapSize;
+                siftUp(heapSize++);
+                return true;
+            }
+            siftDown(siftUp(at));
+            return false;
+        }
+        if (at < 0) return false;
+        int last = heap[--heapSize];
+        slot[sku] = -1;
+        if (at < heapSize) {
+            heap[at] = last;
+            slot[last] = at;
+            siftDown(siftUp(at));
+        }
+        return true;
+    }
+
+    private int siftUp(int i) {
+        int sku = heap[i];
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!less(sku, heap[parent])) break;
+            heap[i] = heap[parent];
+            slot[heap[i]] = i;
+            i = parent;
+        }
+        heap[i] = sku;
+        slot[sku] = i;
+        return i;
+    }
+
+    private void siftDown(int i) {
+        int sku = heap[i];
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= heapSize) break;
+            if (child + 1 < heapSize && less(heap[child + 1], heap[child])) child++;
+            if (!less(heap[child], sku)) break;
+            heap[i] = heap[child];
+            slot[heap[i]] = i;
+            i = child;
+        }
+        heap[i] = sku;
+        slot[sku] = i;
+    }
+
+    // Less cover first; with equal cover (e.g. nothing selling), fewer units first.
+    private boolean less(int a, int b) {
+        int c = Double.compare(cover[a], cover[b]);
+        if (c != 0) return c < 0;
+        if (stock[a] != stock[b]) return stock[a] < stock[b];
+        return a < b;
+    }
+
+    // ---------------------------
+    // Helpers
+    // ---------------------------
+    private Alert alert(int sku) {
+        int level = catalog.reorderLevel(sku);
+        double target = Math.max(Math.ceil(rate[sku] * targetDays), level >= 0 ? 2.0 * level : 0);
+        int suggested = (int) Math.max(0, Math.min(Integer.MAX_VALUE, target - stock[sku]));
+        return new Alert(sku, catalog.name(sku), stock[sku], level, rate[sku], cover[sku], suggested);
+    }
+
+    private double decayed(int sku, long now) {
+        if (rate[sku] == 0) return 0;
+        double days = (now - lastMillis[sku]) / DAY_MILLIS;
+        return days <= 0 ? rate[sku] : rate[sku] * Math.exp(-days / velocityDays);
+    }
+
+    private void ensure(int sku) {
+        if (sku < slot.length) return;
+        int cap = Math.max(sku + 1, slot.length * 2);
+        int old = slot.length;
+        rate = Arrays.copyOf(rate, cap);
+        lastMillis = Arrays.copyOf(lastMillis, cap);
+        stock = Arrays.copyOf(stock, cap);
+        cover = Arrays.copyOf(cover, cap);
+        slot = Arrays.copyOf(slot, cap);
+        Arrays.fill(slot, old, cap, -1);
+    }
+
+    private static double days(String property, double fallback) {
+        try {
+            return Double.parseDouble(System.getProperty(property, Double.toString(fallback)).trim());
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+}
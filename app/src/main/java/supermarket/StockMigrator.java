@@ -0,0 +1,75 @@
+package supermarket;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.HashMap;
+import java.util.Map;
+
+// ---------------------------
+// stock.dat -> stock.snap migrator
+// ---------------------------
+// Converts the old Java-serialized stock file (stock, price and barcode maps keyed by
+// item name) into a binary snapshot. Run once by hand:
+//   java StockMigrator [stock.dat] [stock.snap]
+// The application also calls it on startup when only stock.dat exists.
+class StockMigrator {
+
+    static Catalog readLegacy(File file) throws IOException {
+        Map<String, Integer> stockList;
+        Map<String, Double> priceList;
+        Map<String, String> barcodeToItem;
+        try (ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            stockList = typed(in.readObject(), Integer.class);
+            priceList = typed(in.readObject(), Double.class);
+            barcodeToItem = typed(in.readObject(), String.class);
+        } catch (ClassNotFoundException | ClassCastException e) {
+            throw new IOException(file + " is not a stock file: " + e.getMessage(), e);
+        }
+
+        Catalog catalog = new Catalog(stockList.size());
+        for (Map.Entry<String, Integer> e : stockList.entrySet()) {
+            Double price = priceList.get(e.getKey());
+            if (price != null) catalog.put(e.getKey(), Money.ofRupees(price), e.getValue());
+        }
+        for (Map.Entry<String, String> e : barcodeToItem.entrySet()) {
+            int sku = catalog.skuOf(e.getValue());
+            if (sku >= 0) catalog.assignBarcode(e.getKey(), sku);
+        }
+        return catalog;
+    }
+
+    // Copies a deserialized map, checking every key and value, so a file holding the wrong
+    // types fails here rather than somewhere in the catalog. Anything but a map reads as empty.
+    private static <V> Map<String, V> typed(Object read, Class<V> valueType) {
+        Map<String, V> out = new HashMap<>();
+        if (!(read instanceof Map)) return out;
+        for (Map.Entry<?, ?> e : ((Map<?, ?>) read).entrySet()) {
+            out.put((String) e.getKey(), valueType.cast(e.getValue()));
+        }
+        return out;
+    }
+
+    // Writes the snapshot and renames the legacy file to *.migrated; returns the SKU count.
+    static int migrate(File legacy, Path snapshot) throws IOException {
+        Catalog catalog = readLegacy(legacy);
+        StockStore.writeSnapshot(catalog, snapshot);
+        Files.move(legacy.toPath(), legacy.toPath().resolveSibling(legacy.getName() + ".migrated"),
+                StandardCopyOption.REPLACE_EXISTING);
+        return catalog.size();
+    }
+
+    public static void main(String[] args) throws IOException {
+        File legacy = new File(args.length > 0 ? args[0] : "stock.dat");
+        Path snapshot = Paths.get(args.length > 1 ? args[1] : "stock.snap");
+        if (!legacy.exists()) {
+            System.err.println("No " + legacy + " to migrate.");
+            System.exit(1);
+        }
+        if (Files.exists(snapshot)) {
+            System.err.println(snapshot + " already exists; refusing to overwrite it.");
+            System.exit(1);
+        }
+        int skus = migrate(legacy, snapshot);
+        System.out.println("Migrated " + skus + " items from " + legacy + " to " + snapshot);
+    }
+}
@@ -0,0 +1,390 @@
+package supermarket;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.CRC32;
+
+// ---------------------------
+// Stock persistence: binary snapshot + delta log
+// ---------------------------
+// stock.snap is a fixed-layout, memory-mappable snapshot of the whole catalog:
+//
+//   header   magic "STOCKSN1", int version, int skuCount, int barcodeCount,
+//            int heapOffset, long createdMillis                          (32 bytes)
+//   skus     skuCount x [long price paise][int stock][int nameRef][int hsnRef, -1: none]
+//            [int reorderLevel, -1: none]                              (24 bytes each)
+//   barcodes barcodeCount x [int sku][int barcodeRef]                    (8 bytes each)
+//   heap     writeUTF strings ([short len][modified utf-8]), refs relative to heapOffset
+//   trailer  int crc32 of everything before it
+//
+// SKUs are written in id order, so ids survive a reload. Every change after the
+// snapshot is appended to stock.delta as an absolute-value record (put / stock / price /
+// barcode / hsn / reorder level), so replay is idempotent. Compaction rotates the delta aside, writes a
+// fresh snapshot from the live catalog in the background and then drops the rotated delta.
+//
+// Version 1 snapshots and the 'P'/'R' delta records stored prices as double rupees;
+// they are still read and converted to paise. Version 1 and 2 SKU records are 16 bytes,
+// without hsnRef; version 3 records are 20 bytes, without reorderLevel.
+class StockStore implements Closeable {
+
+    static final byte[] SNAPSHOT_MAGIC = {'S', 'T', 'O', 'C', 'K', 'S', 'N', '1'};
+    static final byte[] DELTA_MAGIC = {'S', 'T', 'O', 'C', 'K', 'D', 'L', '1'};
+    static final int VERSION = 4;
+
+    private static final int HEADER_SIZE = 32;
+    private static final int SKU_RECORD = 24;
+    private static final int V3_SKU_RECORD = 20;
+    private static final int OLD_SKU_RECORD = 16;
+    private static final int BARCODE_RECORD = 8;
+
+    private static final byte PUT = 'p';
+    private static final byte STOCK = 'S';
+    private static final byte PRICE = 'r';
+    private static final byte BARCODE = 'B';
+    private static final byte HSN = 'H';
+    private static final byte REORDER = 'L';
+    private static final byte LEGACY_PUT = 'P';     // price as double rupees
+    private static final byte LEGACY_PRICE = 'R';
+
+    private final Path snapshotPath;
+    private final Path deltaPath;
+    private final Path compactingPath;
+    private final Catalog catalog;
+    private final int compactEvery;
+    private final ExecutorService compactor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "stock-compactor");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final Object snapshotLock = new Object();
+    private BillJournal delta;
+    private int deltaRecords = 0;
+    private boolean compactionQueued = false;
+    private IOException compactionFailure;      // from the background compaction, not yet reported
+
+    private StockStore(Path snapshotPath, Path deltaPath, Catalog catalog) throws IOException {
+        this.snapshotPath = snapshotPath;
+        this.deltaPath = deltaPath;
+        this.compactingPath = compactingPath(deltaPath);
+        this.catalog = catalog;
+        this.compactEvery = Math.max(1, Integer.getInteger("billing.stock.compactEvery", 5000));
+        this.delta = openDelta(deltaPath, null);
+        // a compaction interrupted by a crash: its records are already in the catalog, fold them in now
+        if (Files.exists(compactingPath)) compact();
+    }
+
+    // Opens the store for an already loaded catalog (see load()).
+    static StockStore open(Path snapshotPath, Path deltaPath, Catalog catalog) throws IOException {
+        return new StockStore(snapshotPath, deltaPath, catalog);
+    }
+
+    // Maps the snapshot and replays only the delta tail written since it. Missing files
+    // simply mean an empty catalog; corrupt ones are reported, never silently ignored.
+    static Catalog load(Path snapshotPath, Path deltaPath) throws IOException {
+        Catalog catalog = Files.exists(snapshotPath) ? readSnapshot(snapshotPath) : new Catalog();
+        Path compacting = compactingPath(deltaPath);
+        if (Files.exists(compacting)) replay(catalog, compacting);
+        if (Files.exists(deltaPath)) replay(catalog, deltaPath);
+        return catalog;
+    }
+
+    // ---------------------------
+    // Change recording (values are read back from the catalog)
+    // ---------------------------
+    void recordPut(int sku) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(PUT);
+        out.writeInt(sku);
+        out.writeUTF(catalog.name(sku));
+        out.writeLong(catalog.price(sku));
+        out.writeInt(catalog.stock(sku));
+        append(bytes.toByteArray());
+    }
+
+    void recordStock(int sku) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(16);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(STOCK);
+        out.writeInt(sku);
+        out.writeInt(catalog.stock(sku));
+        append(bytes.toByteArray());
+    }
+
+    void recordPrice(int sku) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(16);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(PRICE);
+        out.writeInt(sku);
+        out.writeLong(catalog.price(sku));
+        append(bytes.toByteArray());
+    }
+
+    void recordBarcode(int sku, String barcode) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(32);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(BARCODE);
+        out.writeInt(sku);
+        out.writeUTF(barcode);
+        append(bytes.toByteArray());
+    }
+
+    void recordHsn(int sku) throws IOException {
+        String hsn = catalog.hsn(sku);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(16);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(HSN);
+        out.writeInt(sku);
+        out.writeUTF(hsn == null ? "" : hsn);
+        append(bytes.toByteArray());
+    }
+
+    void recordReorderLevel(int sku) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(16);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(REORDER);
+        out.writeInt(sku);
+        out.writeInt(catalog.reorderLevel(sku));
+        append(bytes.toByteArray());
+    }
+
+    private synchronized void append(byte[] record) throws IOException {
+        delta.append(record);
+        Metrics.STOCK_DELTA_BYTES.add(record.length);
+        if (++deltaRecords >= compactEvery && !compactionQueued) {
+            compactionQueued = true;
+            compactor.execute(() -> {
+                try {
+                    compact();
+                } catch (IOException e) {
+                    synchronized (this) {
+                        compactionFailure = e;
+                    }
+                }
+            });
+        }
+    }
+
+    // ---------------------------
+    // Compaction
+    // ---------------------------
+    // Writes a fresh snapshot of the live catalog and drops the delta it covers.
+    void compact() throws IOException {
+        long started = System.nanoTime();
+        synchronized (this) {
+            compactionQueued = false;
+            // if an earlier compaction failed, its rotated delta is still pending: keep
+            // appending to the current delta instead of overwriting the rotated one
+            if (!Files.exists(compactingPath)) {
+                delta.close();
+                Files.move(deltaPath, compactingPath, StandardCopyOption.ATOMIC_MOVE);
+                delta = openDelta(deltaPath, null);
+                deltaRecords = 0;
+            }
+        }
+        synchronized (snapshotLock) {
+            writeSnapshot(catalog, snapshotPath);
+            Files.deleteIfExists(compactingPath);
+        }
+        Metrics.STOCK_COMPACT.recordSince(started);
+    }
+
+    // The last background compaction failure since the previous call, or null. A later
+    // append queues the compaction again.
+    synchronized IOException takeCompactionFailure() {
+        IOException e = compactionFailure;
+        compactionFailure = null;
+        return e;
+    }
+
+    synchronized void sync() throws IOException {
+        delta.sync();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        compactor.shutdown();
+        delta.close();
+    }
+
+    // ---------------------------
+    // Snapshot format
+    // ---------------------------
+    static void writeSnapshot(Catalog catalog, Path path) throws IOException {
+        int skuCount = catalog.size();
+        ByteArrayOutputStream heapBytes = new ByteArrayOutputStream(skuCount * 16);
+        DataOutputStream heap = new DataOutputStream(heapBytes);
+        ByteBuffer skus = ByteBuffer.allocate(skuCount * SKU_RECORD);
+        ByteArrayOutputStream barcodeBytes = new ByteArrayOutputStream();
+        DataOutputStream barcodes = new DataOutputStream(barcodeBytes);
+        int barcodeCount = 0;
+
+        for (int sku = 0; sku < skuCount; sku++) {
+            skus.putLong(catalog.price(sku)).putInt(catalog.stock(sku)).putInt(heap.size());
+            heap.writeUTF(catalog.name(sku));
+            String hsn = catalog.hsn(sku);
+            skus.putInt(hsn == null ? -1 : heap.size());
+            if (hsn != null) heap.writeUTF(hsn);
+            skus.putInt(catalog.reorderLevel(sku));
+            // oldest first, so reassigning on load rebuilds the same primary barcode
+            List<String> codes = catalog.barcodesOf(sku);
+            for (int i = codes.size() - 1; i >= 0; i--) {
+                barcodes.writeInt(sku);
+                barcodes.writeInt(heap.size());
+                heap.writeUTF(codes.get(i));
+                barcodeCount++;
+            }
+        }
+
+        int heapOffset = HEADER_SIZE + skuCount * SKU_RECORD + barcodeCount * BARCODE_RECORD;
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.put(SNAPSHOT_MAGIC).putInt(VERSION).putInt(skuCount).putInt(barcodeCount)
+                .putInt(heapOffset).putLong(System.currentTimeMillis()).flip();
+        skus.flip();
+
+        CRC32 crc = new CRC32();
+        crc.update(header.duplicate());
+        crc.update(skus.duplicate());
+        crc.update(barcodeBytes.toByteArray());
+        crc.update(heapBytes.toByteArray());
+        ByteBuffer trailer = ByteBuffer.allocate(4).putInt((int) crc.getValue());
+        trailer.flip();
+
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (ByteBuffer b : new ByteBuffer[]{header, skus, ByteBuffer.wrap(barcodeBytes.toByteArray()),
+                    ByteBuffer.wrap(heapBytes.toByteArray()), trailer}) {
+                while (b.hasRemaining()) ch.write(b);
+            }
+            ch.force(true);
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    static Catalog readSnapshot(Path path) throws IOException {
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = ch.size();
+            if (size < HEADER_SIZE + 4) throw new IOException(path + " is truncated");
+            MappedByteBuffer map = ch.map(FileChannel.MapMode.READ_ONLY, 0, size);
+
+            for (int i = 0; i < SNAPSHOT_MAGIC.length; i++) {
+                if (map.get(i) != SNAPSHOT_MAGIC[i]) throw new IOException(path + " is not a stock snapshot");
+            }
+            int version = map.getInt(8);
+            if (version < 1 || version > VERSION) throw new IOException(path + " has unsupported version " + version);
+            int skuRecord = version >= 4 ? SKU_RECORD : version == 3 ? V3_SKU_RECORD : OLD_SKU_RECORD;
+            int skuCount = map.getInt(12);
+            int barcodeCount = map.getInt(16);
+            int heapOffset = map.getInt(20);
+            if (skuCount < 0 || barcodeCount < 0 || heapOffset != HEADER_SIZE + (long) skuCount * skuRecord + (long) barcodeCount * BARCODE_RECORD
+                    || heapOffset > size - 4) {
+                throw new IOException(path + " has an inconsistent header");
+            }
+
+            CRC32 crc = new CRC32();
+            ByteBuffer body = map.duplicate();
+            body.limit((int) size - 4);
+            crc.update(body);
+            if ((int) crc.getValue() != map.getInt((int) size - 4)) throw new IOException(path + " failed its checksum");
+
+            Catalog catalog = new Catalog(skuCount);
+            for (int sku = 0; sku < skuCount; sku++) {
+                int at = HEADER_SIZE + sku * skuRecord;
+                String name = heapString(map, heapOffset + map.getInt(at + 12));
+                long price = version == 1 ? Money.ofRupees(map.getDouble(at)) : map.getLong(at);
+                if (catalog.put(name, price, map.getInt(at + 8)) != sku) {
+                    throw new IOException(path + " lists '" + name + "' twice");
+                }
+                if (version >= 3 && map.getInt(at + 16) >= 0) catalog.setHsn(sku, heapString(map, heapOffset + map.getInt(at + 16)));
+                if (version >= 4) catalog.setReorderLevel(sku, map.getInt(at + 20));
+            }
+            int barcodeBase = HEADER_SIZE + skuCount * skuRecord;
+            for (int i = 0; i < barcodeCount; i++) {
+                int at = barcodeBase + i * BARCODE_RECORD;
+                catalog.assignBarcode(heapString(map, heapOffset + map.getInt(at + 4)), map.getInt(at));
+            }
+            return catalog;
+        }
+    }
+
+    // Strings are stored with writeUTF (modified UTF-8), so decode them the same way.
+    private static String heapString(ByteBuffer map, int at) throws IOException {
+        byte[] bytes = new byte[2 + (map.getShort(at) & 0xFFFF)];
+        map.get(at, bytes);
+        return new DataInputStream(new ByteArrayInputStream(bytes)).readUTF();
+    }
+
+    // ---------------------------
+    // Delta log
+    // ---------------------------
+    private static void replay(Catalog catalog, Path deltaPath) throws IOException {
+        IOException[] failure = {null};
+        BillJournal log = openDelta(deltaPath, (offset, buf, len) -> {
+            if (failure[0] != null) return;
+            try {
+                apply(catalog, new DataInputStream(new ByteArrayInputStream(buf, 0, len)));
+            } catch (IOException e) {
+                failure[0] = new IOException(deltaPath + " at offset " + offset + ": " + e.getMessage());
+            }
+        });
+        log.close();
+        if (failure[0] != null) throw failure[0];
+    }
+
+    private static void apply(Catalog catalog, DataInputStream in) throws IOException {
+        byte kind = in.readByte();
+        int sku = in.readInt();
+        if (kind == PUT || kind == LEGACY_PUT) {
+            String name = in.readUTF();
+            long price = kind == PUT ? in.readLong() : Money.ofRupees(in.readDouble());
+            int qty = in.readInt();
+            if (catalog.put(name, price, qty) != sku) throw new IOException("SKU " + sku + " out of step with snapshot");
+            return;
+        }
+        if (sku < 0 || sku >= catalog.size()) throw new IOException("unknown SKU " + sku);
+        switch (kind) {
+            case STOCK:
+                catalog.setStock(sku, in.readInt());
+                break;
+            case PRICE:
+                catalog.setPrice(sku, in.readLong());
+                break;
+            case LEGACY_PRICE:
+                catalog.setPrice(sku, Money.ofRupees(in.readDouble()));
+                break;
+            case BARCODE:
+                catalog.assignBarcode(in.readUTF(), sku);
+                break;
+            case HSN:
+                catalog.setHsn(sku, in.readUTF());
+                break;
+            case REORDER:
+                catalog.setReorderLevel(sku, in.readInt());
+                break;
+            default:
+                throw new IOException("unknown record type " + kind);
+        }
+    }
+
+    private static BillJournal openDelta(Path path, BillJournal.RecordVisitor visitor) throws IOException {
+        BillJournal.SyncPolicy policy;
+        try {
+            policy = BillJournal.SyncPolicy.valueOf(System.getProperty("billing.stock.sync", "group").trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            policy = BillJournal.SyncPolicy.GROUP;
+        }
+        return new BillJournal(path, DELTA_MAGIC, policy,
+                Integer.getInteger("billing.journal.groupSize", 32), Long.getLong("billing.journal.groupMillis", 200L), visitor);
+    }
+
+    private static Path compactingPath(Path deltaPath) {
+        return deltaPath.resolveSibling(deltaPath.getFileName() + ".compacting");
+    }
+}
@@ -0,0 +1,74 @@
+package supermarket;
+
+// ---------------------------
+// Open-addressed String -> int map
+// ---------------------------
+// Two flat arrays instead of a HashMap of boxed entries; used for the catalog's
+// name and barcode indexes. Absent keys return -1. Not thread-safe for writers.
+class StringIntMap {
+
+    private String[] keys;
+    private int[] values;
+    private int size = 0;
+
+    StringIntMap(int expected) {
+        int cap = 16;
+        while (cap < expected * 2) cap <<= 1;
+        keys = new String[cap];
+        values = new int[cap];
+    }
+
+    int size() {
+        return size;
+    }
+
+    // Safe to call under an optimistic read: works on local array references and gives up
+    // after one full sweep, so a concurrent resize yields a stale answer, never a hang.
+    int get(String key) {
+        String[] k = keys;
+        int[] v = values;
+        int mask = k.length - 1;
+        int slot = hash(key) & mask;
+        for (int probes = 0; probes < k.length && k[slot] != null; probes++, slot = (slot + 1) & mask) {
+            if (k[slot].equals(key)) return v[slot];
+        }
+        return -1;
+    }
+
+    // Returns the previous value or -1.
+    int put(String key, int value) {
+        if ((size + 1) * 2 > keys.length) resize(keys.length * 2);
+        int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+        while (keys[slot] != null) {
+            if (keys[slot].equals(key)) {
+                int old = values[slot];
+                values[slot] = value;
+                return old;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        size++;
+        return -1;
+    }
+
+    private void resize(int capacity) {
+        String[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new String[capacity];
+        values = new int[capacity];
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != null) put(oldKeys[i], oldValues[i]);
+        }
+    }
+
+    private static int hash(String key) {
+        int h = key.hashCode();
+        h ^= (h >>> 16);
+        h *= 0x85ebca6b;
+        return h ^ (h >>> 13);
+    }
+}
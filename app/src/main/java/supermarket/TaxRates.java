@@ -0,0 +1,95 @@
+package supermarket;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// ---------------------------
+// GST rates by HSN code
+// ---------------------------
+// gst-rates.txt, one "<hsn> <percent>" per line ('#' starts a comment), e.g.
+//   1006    5      rice
+//   3401    18     soap
+//   04      0      dairy, unless a longer code says otherwise
+// A product's rate is that of the longest listed prefix of its HSN code. Lookups happen
+// only when the catalog recomputes its per-SKU rate table (Catalog.setTaxRates), never
+// per scan.
+final class TaxRates {
+
+    static final TaxRates NONE = new TaxRates(new HashMap<>(), 0);
+    static final int MAX_ERRORS = 100;
+
+    private final Map<String, Integer> bps;
+    private final int longest;
+
+    private TaxRates(Map<String, Integer> bps, int longest) {
+        this.bps = bps;
+        this.longest = longest;
+    }
+
+    int size() {
+        return bps.size();
+    }
+
+    // Rate in basis points for an HSN code, or -1 if no listed code covers it.
+    int rateOf(String hsn) {
+        if (hsn == null) return -1;
+        for (int len = Math.min(hsn.length(), longest); len > 0; len--) {
+            Integer rate = bps.get(hsn.substring(0, len));
+            if (rate != null) return rate;
+        }
+        return -1;
+    }
+
+    // Problems are added to errors by line number (at most MAX_ERRORS); callers should not
+    // use the result if any were added.
+    static TaxRates load(Path file, List<String> errors) throws IOException {
+        return parse(Files.readAllLines(file, StandardCharsets.UTF_8), errors);
+    }
+
+    static TaxRates parse(List<String> lines, List<String> errors) {
+        Map<String, Integer> bps = new HashMap<>();
+        int longest = 0;
+        for (int ln = 0; ln < lines.size() && errors.size() < MAX_ERRORS; ln++) {
+            String line = lines.get(ln);
+            int hash = line.indexOf('#');
+            if (hash >= 0) line = line.substring(0, hash);
+            String[] f = line.trim().split("\\s+");
+            if (f[0].isEmpty()) continue;
+            if (f.length < 2) {
+                errors.add("Line " + (ln + 1) + ": expected <hsn> <percent>");
+                continue;
+            }
+            if (!validHsn(f[0])) {
+                errors.add("Line " + (ln + 1) + ": invalid HSN code '" + f[0] + "'");
+                continue;
+            }
+            int rate;
+            try {
+                rate = Money.parsePercent(f[1].endsWith("%") ? f[1].substring(0, f[1].length() - 1) : f[1]);
+            } catch (NumberFormatException e) {
+                errors.add("Line " + (ln + 1) + ": invalid rate '" + f[1] + "'");
+                continue;
+            }
+            if (bps.put(f[0], rate) != null) {
+                errors.add("Line " + (ln + 1) + ": HSN " + f[0] + " listed twice");
+                continue;
+            }
+            longest = Math.max(longest, f[0].length());
+        }
+        return new TaxRates(bps, longest);
+    }
+
+    // HSN/SAC codes are 2 to 8 digits.
+    static boolean validHsn(String hsn) {
+        if (hsn.length() < 2 || hsn.length() > 8) return false;
+        for (int i = 0; i < hsn.length(); i++) {
+            if (hsn.charAt(i) < '0' || hsn.charAt(i) > '9') return false;
+        }
+        return true;
+    }
+}
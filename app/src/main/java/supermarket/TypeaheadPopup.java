@@ -0,0 +1,123 @@
+package supermarket;
+
+import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import java.awt.*;
+import java.awt.event.*;
+import java.util.List;
+import java.util.function.Function;
+
+// ---------------------------
+// Suggestion popup for a text field
+// ---------------------------
+// Queries on every edit and lists the matches under the field. Up/Down move through
+// them, Escape closes the list; the owner calls accept() before acting on Enter so the
+// highlighted suggestion replaces what was typed. The field keeps the focus throughout.
+class TypeaheadPopup {
+
+    private final JTextField field;
+    private final Function<String, List<String>> suggest;
+    private final DefaultListModel<String> model = new DefaultListModel<>();
+    private final JList<String> list = new JList<>(model);
+    private final JPopupMenu popup = new JPopupMenu();
+    private boolean updating = false;
+
+    TypeaheadPopup(JTextField field, Function<String, List<String>> suggest) {
+        this.field = field;
+        this.suggest = suggest;
+
+        list.setFocusable(false);
+        list.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        list.setVisibleRowCount(8);
+        list.setFont(field.getFont());
+        list.setFixedCellHeight(field.getFontMetrics(field.getFont()).getHeight() + 4);
+        JScrollPane scroll = new JScrollPane(list);
+        scroll.setBorder(null);
+        popup.setFocusable(false);
+        popup.setBorder(BorderFactory.createLineBorder(Color.GRAY));
+        popup.add(scroll);
+
+        field.getDocument().addDocumentListener(new DocumentListener() {
+            public void insertUpdate(DocumentEvent e) {
+                refresh();
+            }
+
+            public void removeUpdate(DocumentEvent e) {
+                refresh();
+            }
+
+            public void changedUpdate(DocumentEvent e) {
+            }
+        });
+        field.addKeyListener(new KeyAdapter() {
+            public void keyPressed(KeyEvent e) {
+                if (!popup.isVisible()) return;
+                int n = model.getSize();
+                switch (e.getKeyCode()) {
+                    case KeyEvent.VK_DOWN:
+                        select(Math.min(list.getSelectedIndex() + 1, n - 1));
+                        e.consume();
+                        break;
+                    case KeyEvent.VK_UP:
+                        select(Math.max(list.getSelectedIndex() - 1, 0));
+                        e.consume();
+                        break;
+                    case KeyEvent.VK_ESCAPE:
+                        popup.setVisible(false);
+                        e.consume();
+                        break;
+                }
+            }
+        });
+        field.addFocusListener(new FocusAdapter() {
+            public void focusLost(FocusEvent e) {
+                popup.setVisible(false);
+            }
+        });
+        list.addMouseListener(new MouseAdapter() {
+            public void mouseClicked(MouseEvent e) {
+                if (list.locationToIndex(e.getPoint()) >= 0) {
+                    accept();
+                    field.requestFocusInWindow();
+                }
+            }
+        });
+    }
+
+    // Replaces the field text with the highlighted suggestion, if the list is showing.
+    void accept() {
+        if (!popup.isVisible()) return;
+        String chosen = list.getSelectedValue();
+        popup.setVisible(false);
+        if (chosen == null) return;
+        updating = true;
+        try {
+            field.setText(chosen);
+        } finally {
+            updating = false;
+        }
+    }
+
+    private void select(int index) {
+        list.setSelectedIndex(index);
+        list.ensureIndexIsVisible(index);
+    }
+
+    private void refresh() {
+        if (updating) return;
+        String text = field.getText().trim();
+        List<String> matches = text.isEmpty() ? List.of() : suggest.apply(text);
+        if (matches.isEmpty() || !field.isShowing()) {
+            popup.setVisible(false);
+            return;
+        }
+        model.clear();
+        for (String m : matches) model.addElement(m);
+        list.setSelectedIndex(0);
+        popup.setPopupSize(Math.max(field.getWidth(), 260),
+                Math.min(matches.size(), list.getVisibleRowCount()) * list.getFixedCellHeight() + 6);
+        if (!popup.isVisible()) popup.show(field, 0, field.getHeight());
+        else popup.revalidate();
+    }
+}
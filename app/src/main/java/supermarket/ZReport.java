@@ -0,0 +1,37 @@
+package supermarket;
+
+import java.time.LocalDate;
+import java.util.Map;
+
+// ---------------------------
+// End-of-day Z-report
+// ---------------------------
+// Text of a day's totals and per-cashier figures, from a SalesReport built in one
+// streaming pass over the day's bills (SalesAnalytics.stream). Written next to the
+// sealed segment when a day is sealed; for the current day it is a running (X) report.
+final class ZReport {
+
+    private static final String RULE = "--------------------------------------------------------------------------\n";
+
+    private ZReport() {
+    }
+
+    static String format(LocalDate day, SalesReport r, boolean closed) {
+        StringBuilder out = new StringBuilder(512);
+        out.append(closed ? "Z-REPORT " : "X-REPORT (day still open) ").append(day).append('\n').append(RULE);
+        out.append(String.format("%-20s %6s %12s %12s %10s %12s\n", "Cashier", "Bills", "Gross", "Discount", "GST", "Net"));
+        for (Map.Entry<String, long[]> en : SalesReport.sortedBy(r.cashiers, 2)) {
+            long[] v = en.getValue();
+            row(out, en.getKey(), v[0], v[3], v[4], v[5], v[2]);
+        }
+        out.append(RULE);
+        row(out, "Total", r.bills, r.gross, r.discount, r.tax, r.net);
+        out.append("Units sold: ").append(r.units).append(", lines: ").append(r.lines).append('\n');
+        return out.toString();
+    }
+
+    private static void row(StringBuilder out, String name, long bills, long gross, long discount, long tax, long net) {
+        out.append(String.format("%-20s %6d %12s %12s %10s %12s\n", name, bills, Money.format(gross),
+                Money.format(discount), Money.format(tax), Money.format(net)));
+    }
+}
@@ -0,0 +1,93 @@
+package supermarket;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BillArchiveTest {
+
+    @TempDir
+    Path dir;
+
+    private static Bill bill(String billNo, LocalDateTime time, String cashier, String customerId, int qty) {
+        long price = 4_000;
+        long subtotal = price * qty;
+        long tax = Money.percent(subtotal, 1_800, BillingEngine.GST_ROUNDING);
+        List<CartLine> lines = List.of(new CartLine(0, "Soap", qty, price, "3401", 1_800));
+        List<Bill.TaxLine> taxes = List.of(new Bill.TaxLine("3401", 1_800, subtotal, tax));
+        return new Bill(billNo, "lane-1", "Guest", customerId, cashier, time, lines, subtotal,
+                0, null, 0, 0, 1_800, tax, subtotal + tax, taxes);
+    }
+
+    private BillArchive open() throws IOException {
+        return BillArchive.open(dir, null, null);
+    }
+
+    @Test
+    void billsAreFiledUnderTheirDayAndCustomer() throws IOException {
+        LocalDateTime now = LocalDate.now().atTime(10, 0);
+        try (BillArchive archive = open()) {
+            assertEquals(0, archive.append(bill("B-1", now, "ann", "9845012345", 1)));
+            assertEquals(1, archive.append(bill("B-2", now.plusMinutes(5), "bob", "", 2)));
+            assertEquals(2, archive.active().size());
+            long[] recent = archive.customers().recentBills("9845012345", 5);
+            assertEquals(1, recent.length);
+            assertTrue(archive.receipt(recent[0]).contains("B-1"));
+        }
+        try (BillArchive archive = open()) {
+            assertEquals(2, archive.active().size());
+            assertEquals(1, archive.customers().lookup("9845012345").bills);
+            assertEquals(List.of(LocalDate.now()), archive.days());
+        }
+    }
+
+    @Test
+    void theNextDaySealsTheLastOneWithItsZReport() throws Exception {
+        LocalDate today = LocalDate.now();
+        LocalDate tomorrow = today.plusDays(1);
+        try (BillArchive archive = open()) {
+            archive.append(bill("B-1", today.atTime(9, 0), "ann", "GOLD42", 1));
+            archive.append(bill("B-2", today.atTime(9, 30), "ann", "", 3));
+            archive.append(bill("B-3", today.atTime(11, 0), "bob", "", 2));
+            String open = archive.zReport(today);
+            assertTrue(open.startsWith("X-REPORT"), open);
+
+            archive.append(bill("B-4", tomorrow.atTime(8, 0), "bob", "GOLD42", 1));
+            assertEquals(tomorrow, archive.activeDay());
+            assertEquals(1, archive.active().size());
+            // reads work while the day is being sealed, and after
+            assertEquals(3, archive.segment(today).size());
+
+            Path journal = dir.resolve(today + ".journal");
+            Path z = dir.resolve(today + ".z.txt");
+            for (int i = 0; i < 500 && (Files.exists(journal) || !Files.exists(z)); i++) Thread.sleep(10);
+            assertTrue(Files.exists(dir.resolve(today + ".seg")));
+            assertTrue(Files.exists(z));
+            assertFalse(Files.exists(journal));
+
+            BillSegment day = archive.segment(today);
+            assertEquals(3, day.size());
+            assertTrue(day.readRange(2, 3)[0].contains("B-3"));
+
+            String report = archive.zReport(today);
+            assertTrue(report.startsWith("Z-REPORT " + today), report);
+            String total = report.lines().filter(l -> l.startsWith("Total")).findFirst().orElseThrow();
+            assertTrue(total.matches("Total\\s+3\\s+240\\.00\\s+0\\.00\\s+43\\.20\\s+283\\.20"), total);
+            assertTrue(report.contains("Units sold: 6"), report);
+
+            long[] recent = archive.customers().recentBills("GOLD42", 5);
+            assertEquals(2, recent.length);
+            assertTrue(archive.receipt(recent[0]).contains("B-4"));
+            assertTrue(archive.receipt(recent[1]).contains("B-1"));
+            assertEquals(List.of(today, tomorrow), archive.days());
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package supermarket;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BillCodecTest {
+
+    private static final LocalDateTime TIME = LocalDateTime.of(2026, 10, 17, 10, 15, 30);
+
+    private static Bill bill() {
+        List<CartLine> lines = Arrays.asList(
+                new CartLine(3, "Rice 5kg", 2, 45_000, "1006", 500),
+                new CartLine(7, "Soap", 3, 4_000, "3401", 1_800),
+                new CartLine(9, "Crème Brûlée", 1, 12_345, "", -1));
+        long subtotal = 90_000 + 12_000 + 12_345;
+        long promotion = 4_000;
+        long discount = promotion + 5_717;
+        List<Bill.TaxLine> taxes = Arrays.asList(
+                new Bill.TaxLine("1006", 500, 85_500, 4_275),
+                new Bill.TaxLine("3401", 1_800, 9_000, 1_620));
+        return new Bill("LANE-1-261017-00000042", "lane-1", "Asha", "9845012345", "ann", TIME, lines, subtotal,
+                promotion, new long[]{0, promotion, 0}, 500, discount, 1_800, 5_895, subtotal - discount + 5_895, taxes);
+    }
+
+    @Test
+    void roundTripKeepsEveryField() throws IOException {
+        Bill in = bill();
+        byte[] record = BillCodec.encode(in);
+        assertTrue(BillCodec.isStructured(ByteBuffer.wrap(record)));
+
+        Bill out = BillCodec.decode(ByteBuffer.wrap(record));
+        assertEquals(in.billNo, out.billNo);
+        assertEquals(in.lane, out.lane);
+        assertEquals(in.customer, out.customer);
+        assertEquals(in.customerId, out.customerId);
+        assertEquals(in.cashier, out.cashier);
+        assertEquals(in.time, out.time);
+        assertEquals(in.subtotal, out.subtotal);
+        assertEquals(in.promotion, out.promotion);
+        assertEquals(in.discountBps, out.discountBps);
+        assertEquals(in.discount, out.discount);
+        assertEquals(in.taxBps, out.taxBps);
+        assertEquals(in.tax, out.tax);
+        assertEquals(in.total, out.total);
+        assertEquals(in.lines.size(), out.lines.size());
+        for (int i = 0; i < in.lines.size(); i++) {
+            assertEquals(in.lines.get(i).sku, out.lines.get(i).sku);
+            assertEquals(in.lines.get(i).item, out.lines.get(i).item);
+            assertEquals(in.lines.get(i).qty, out.lines.get(i).qty);
+            assertEquals(in.lines.get(i).unitPrice, out.lines.get(i).unitPrice);
+        }
+        assertEquals(in.taxes.size(), out.taxes.size());
+        for (int i = 0; i < in.taxes.size(); i++) {
+            assertEquals(in.taxes.get(i).hsn, out.taxes.get(i).hsn);
+            assertEquals(in.taxes.get(i).bps, out.taxes.get(i).bps);
+            assertEquals(in.taxes.get(i).taxable, out.taxes.get(i).taxable);
+            assertEquals(in.taxes.get(i).tax, out.taxes.get(i).tax);
+        }
+    }
+
+    @Test
+    void lineDiscountsAndTaxSumToTheBill() {
+        Bill in = bill();
+        ByteBuffer record = ByteBuffer.wrap(BillCodec.encode(in));
+        record.position(BillCodec.FIXED_HEADER);
+        for (int i = 0; i < 4; i++) BillCodec.skipUTF(record);
+        long discount = 0, tax = 0;
+        for (int i = 0; i < in.lines.size(); i++) {
+            record.position(record.position() + 16);        // sku, qty, unit price
+            long lineDiscount = record.getLong();
+            assertTrue(lineDiscount >= 0 && lineDiscount <= in.lines.get(i).total(), "line " + i);
+            discount += lineDiscount;
+            tax += record.getLong();
+            BillCodec.skipUTF(record);
+        }
+        assertEquals(in.discount, discount);
+        assertEquals(in.tax, tax);
+    }
+
+    @Test
+    void recordsWithoutTrailingFieldsReadAsBefore() throws IOException {
+        // the layout before promotions, GST slabs and customer ids were appended
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(BillCodec.STRUCTURED_V1);
+            out.writeLong(0L);
+            out.writeLong(10_000);
+            out.writeLong(500);
+            out.writeLong(1_710);
+            out.writeLong(11_210);
+            out.writeInt(500);
+            out.writeInt(1_800);
+            out.writeInt(1);
+            out.writeUTF("B-1");
+            out.writeUTF("lane-2");
+            out.writeUTF("Walk-in");
+            out.writeUTF("bob");
+            out.writeInt(4);
+            out.writeInt(2);
+            out.writeLong(5_000);
+            out.writeLong(500);
+            out.writeLong(1_710);
+            out.writeUTF("Tea");
+        }
+        Bill out = BillCodec.decode(ByteBuffer.wrap(bytes.toByteArray()));
+        assertEquals("B-1", out.billNo);
+        assertEquals(0, out.promotion);
+        assertEquals("", out.customerId);
+        assertEquals(1, out.taxes.size());
+        assertEquals(1_800, out.taxes.get(0).bps);
+        assertEquals(9_500, out.taxes.get(0).taxable);
+        assertEquals(1_710, out.taxes.get(0).tax);
+    }
+
+    @Test
+    void plainTextIsNotStructured() {
+        byte[] text = "Bill No: OLD-1\nCashier: ann\nDate: 01-01-2020 10:00:00\nTotal: ₹1.00\n".getBytes();
+        assertFalse(BillCodec.isStructured(ByteBuffer.wrap(text)));
+    }
+}
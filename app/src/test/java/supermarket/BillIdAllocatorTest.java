@@ -0,0 +1,73 @@
+package supermarket;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BillIdAllocatorTest {
+
+    @TempDir
+    Path dir;
+
+    @BeforeEach
+    void smallBlocks() {
+        System.setProperty("billing.billIds.block", "8");
+    }
+
+    @AfterEach
+    void defaultBlocks() {
+        System.clearProperty("billing.billIds.block");
+    }
+
+    private static long seq(String id) {
+        return Long.parseLong(id.substring(id.lastIndexOf('-') + 1));
+    }
+
+    @Test
+    void numbersCarryTerminalAndDate() throws IOException {
+        try (BillIdAllocator ids = BillIdAllocator.open(dir.resolve("billids.dat"), "lane-3")) {
+            String id = ids.next();
+            assertTrue(id.matches("LANE-3-\\d{6}-\\d{8}"), id);
+            assertEquals(1, seq(id));
+            assertEquals(2, seq(ids.next()));
+        }
+    }
+
+    @Test
+    void reopeningNeverReusesANumber() throws IOException {
+        Path file = dir.resolve("billids.dat");
+        Set<String> issued = new HashSet<>();
+        long highest = 0;
+        for (int run = 0; run < 5; run++) {
+            // each run stops mid-block without giving back the rest, as a crash would
+            try (BillIdAllocator ids = BillIdAllocator.open(file, "lane-1")) {
+                String first = ids.next();
+                assertTrue(seq(first) > highest, "run " + run + " started at " + first);
+                assertTrue(issued.add(first));
+                highest = Math.max(highest, seq(first));
+                for (int i = 0; i < 3 + 7 * run; i++) {
+                    String id = ids.next();
+                    assertTrue(issued.add(id), "issued twice: " + id);
+                    highest = Math.max(highest, seq(id));
+                }
+            }
+        }
+    }
+
+    @Test
+    void aSecondOpenOfTheSameFileFails() throws IOException {
+        Path file = dir.resolve("billids.dat");
+        try (BillIdAllocator ids = BillIdAllocator.open(file, "lane-1")) {
+            ids.next();
+            assertThrows(IOException.class, () -> BillIdAllocator.open(file, "lane-1"));
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package supermarket;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BillJournalTest {
+
+    @TempDir
+    Path dir;
+
+    private static BillJournal open(Path file) throws IOException {
+        return new BillJournal(file, BillJournal.SyncPolicy.EACH, 1, 200);
+    }
+
+    private static List<String> read(Path file) throws IOException {
+        List<String> bills = new ArrayList<>();
+        try (BillJournal journal = open(file)) {
+            journal.readAll(bills::add);
+        }
+        return bills;
+    }
+
+    private static long[] write(Path file, String... bills) throws IOException {
+        long[] offsets = new long[bills.length];
+        try (BillJournal journal = open(file)) {
+            for (int i = 0; i < bills.length; i++) offsets[i] = journal.append(bills[i]);
+        }
+        return offsets;
+    }
+
+    @Test
+    void recordsReadBackAfterReopening() throws IOException {
+        Path file = dir.resolve("bills.journal");
+        long[] offsets = write(file, "Bill No: 1\n", "Bill No: 2 – ₹10\n");
+        assertEquals(BillJournal.HEADER_SIZE, offsets[0]);
+        write(file, "Bill No: 3\n");
+
+        List<Long> seen = new ArrayList<>();
+        try (BillJournal journal = open(file)) {
+            journal.scanAll((offset, buf, len) -> seen.add(offset));
+        }
+        assertEquals(3, seen.size());
+        assertEquals(offsets[1], seen.get(1));
+        assertEquals(List.of("Bill No: 1\n", "Bill No: 2 – ₹10\n", "Bill No: 3\n"), read(file));
+    }
+
+    @Test
+    void aRecordCutOffAtTheEndIsDropped() throws IOException {
+        Path file = dir.resolve("bills.journal");
+        long[] offsets = write(file, "Bill No: 1\n", "Bill No: 2\n", "Bill No: 3\n");
+        long whole = Files.size(file);
+        // a crash part way through the last record's payload
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            ch.truncate(whole - 3);
+        }
+
+        try (BillJournal journal = open(file)) {
+            assertEquals(offsets[2], Files.size(file));
+            journal.append("Bill No: 4\n");
+        }
+        assertEquals(List.of("Bill No: 1\n", "Bill No: 2\n", "Bill No: 4\n"), read(file));
+    }
+
+    @Test
+    void aPartialHeaderAtTheEndIsDropped() throws IOException {
+        Path file = dir.resolve("bills.journal");
+        write(file, "Bill No: 1\n");
+        long whole = Files.size(file);
+        Files.write(file, new byte[]{0, 0, 0}, StandardOpenOption.APPEND);
+
+        assertEquals(List.of("Bill No: 1\n"), read(file));
+        assertEquals(whole, Files.size(file));
+    }
+
+    @Test
+    void aLastRecordFailingItsChecksumIsDropped() throws IOException {
+        Path file = dir.resolve("bills.journal");
+        long[] offsets = write(file, "Bill No: 1\n", "Bill No: 2\n");
+        flip(file, Files.size(file) - 1);
+
+        assertEquals(List.of("Bill No: 1\n"), read(file));
+        assertEquals(offsets[1], Files.size(file));
+    }
+
+    @Test
+    void damageBeforeLaterRecordsRefusesToOpen() throws IOException {
+        Path file = dir.resolve("bills.journal");
+        long[] offsets = write(file, "Bill No: 1\n", "Bill No: 2\n", "Bill No: 3\n");
+        flip(file, offsets[1] + BillJournal.RECORD_HEADER + 2);
+        byte[] before = Files.readAllBytes(file);
+
+        IOException e = assertThrows(IOException.class, () -> open(file));
+        assertTrue(e.getMessage().contains("byte " + offsets[1]), e.getMessage());
+        assertArrayEquals(before, Files.readAllBytes(file));
+    }
+
+    @Test
+    void aBadLengthBeforeLaterRecordsRefusesToOpen() throws IOException {
+        Path file = dir.resolve("bills.journal");
+        long[] offsets = write(file, "Bill No: 1\n", "Bill No: 2\n");
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            ch.write(ByteBuffer.allocate(4).putInt(0, -5), offsets[0]);
+        }
+        byte[] before = Files.readAllBytes(file);
+
+        assertThrows(IOException.class, () -> open(file));
+        assertArrayEquals(before, Files.readAllBytes(file));
+    }
+
+    @Test
+    void legacyBillsAreImportedInOrder() throws IOException {
+        Path legacy = dir.resolve("bills.txt");
+        Files.write(legacy, Arrays.asList("Bill No: 1", "Total: 5", "###END###", "Bill No: 2", "###END###"));
+        List<String> bills = new ArrayList<>();
+        assertEquals(2, BillJournal.migrateLegacy(legacy.toFile(), bills::add));
+        assertEquals(List.of("Bill No: 1\nTotal: 5\n", "Bill No: 2\n"), bills);
+    }
+
+    private static void flip(Path file, long at) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer b = ByteBuffer.allocate(1);
+            ch.read(b, at);
+            b.put(0, (byte) (b.get(0) ^ 0x5A)).rewind();
+            ch.write(b, at);
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package supermarket;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BillingEngineTest {
+
+    @Test
+    void concurrentLanesNeverOversell() throws Exception {
+        Catalog catalog = new Catalog();
+        int milk = catalog.put("Milk", 3_000, 1_000);
+        int bread = catalog.put("Bread", 2_500, 700);
+        catalog.assignBarcode("111", milk);
+        BillingEngine engine = new BillingEngine(catalog, null);
+
+        int lanes = 8;
+        ExecutorService pool = Executors.newFixedThreadPool(lanes);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<long[]>> results = new ArrayList<>();
+        for (int l = 0; l < lanes; l++) {
+            String lane = "lane-" + l;
+            results.add(pool.submit(() -> {
+                start.await();
+                long milkSold = 0, breadSold = 0, sales = 0;
+                boolean milkLeft = true, breadLeft = true;
+                for (int n = 0; milkLeft || breadLeft; n++) {
+                    Cart cart = engine.newCart(lane);
+                    try {
+                        if (milkLeft) {
+                            engine.addScanned(cart, "111", 3);
+                            engine.addScanned(cart, "111", 2);
+                        }
+                    } catch (BillingException e) {
+                        milkLeft = false;
+                    }
+                    try {
+                        if (breadLeft) engine.addSku(cart, bread, 4);
+                    } catch (BillingException e) {
+                        breadLeft = false;
+                    }
+                    // every fifth cart is abandoned and gives its stock back
+                    if (cart.isEmpty() || (n % 5 == 4 && milkLeft && breadLeft)) {
+                        engine.cancel(cart);
+                        continue;
+                    }
+                    Bill bill = engine.checkout(cart, "", 0, 0, "ann");
+                    for (CartLine line : bill.lines) {
+                        if (line.sku == milk) milkSold += line.qty;
+                        else breadSold += line.qty;
+                    }
+                    sales += bill.total;
+                }
+                return new long[]{milkSold, breadSold, sales};
+            }));
+        }
+        start.countDown();
+        long milkSold = 0, breadSold = 0, sales = 0;
+        for (Future<long[]> f : results) {
+            long[] r = f.get(30, TimeUnit.SECONDS);
+            milkSold += r[0];
+            breadSold += r[1];
+            sales += r[2];
+        }
+        pool.shutdown();
+
+        assertEquals(1_000, milkSold + catalog.stock(milk));
+        assertEquals(700, breadSold + catalog.stock(bread));
+        assertTrue(catalog.stock(milk) >= 0 && catalog.stock(milk) < 3, "milk left " + catalog.stock(milk));
+        assertTrue(catalog.stock(bread) >= 0 && catalog.stock(bread) < 4, "bread left " + catalog.stock(bread));
+        assertEquals(milkSold * 3_000 + breadSold * 2_500, sales);
+        assertEquals(sales, engine.totalSales());
+    }
+
+    @Test
+    void repeatScansMergeIntoOneLine() throws BillingException {
+        Catalog catalog = new Catalog();
+        catalog.assignBarcode("111", catalog.put("Milk", 3_000, 10));
+        BillingEngine engine = new BillingEngine(catalog, null);
+        Cart cart = engine.newCart("lane-1");
+        assertEquals(0, engine.addScanned(cart, "111", 1));
+        assertEquals(0, engine.addScanned(cart, "111", 2));
+        assertEquals(1, cart.size());
+        assertEquals(3, cart.lines().get(0).qty);
+        assertThrows(BillingException.class, () -> engine.addScanned(cart, "111", 8));
+        assertEquals(7, catalog.stock(0));
+    }
+
+    @Test
+    void removedLinesAndClosedCartsReturnStock() throws BillingException {
+        Catalog catalog = new Catalog();
+        int milk = catalog.put("Milk", 3_000, 10);
+        BillingEngine engine = new BillingEngine(catalog, null);
+        Cart cart = engine.newCart("lane-1");
+        engine.addSku(cart, milk, 4);
+        engine.addSku(cart, milk, 5);
+        engine.removeLine(cart, 0);
+        assertEquals(5, catalog.stock(milk));
+
+        engine.checkout(cart, "", 0, 0, "ann");
+        assertThrows(BillingException.class, () -> engine.addSku(cart, milk, 1));
+        assertEquals(5, catalog.stock(milk));
+    }
+
+    @Test
+    void totalsAddUp() throws BillingException {
+        Catalog catalog = new Catalog();
+        int rice = catalog.put("Rice", 4_599, 100);
+        int soap = catalog.put("Soap", 3_333, 100);
+        BillingEngine engine = new BillingEngine(catalog, null);
+        Cart cart = engine.newCart("lane-1");
+        engine.addSku(cart, rice, 3);
+        engine.addSku(cart, soap, 7);
+
+        Bill bill = engine.checkout(cart, "", 1_250, 1_800, "ann");
+        assertEquals(3 * 4_599 + 7 * 3_333, bill.subtotal);
+        assertEquals(Money.percent(bill.subtotal, 1_250, BillingEngine.DISCOUNT_ROUNDING), bill.discount);
+        assertEquals(bill.subtotal - bill.discount + bill.tax, bill.total);
+        long taxable = 0, tax = 0;
+        for (Bill.TaxLine t : bill.taxes) {
+            taxable += t.taxable;
+            tax += t.tax;
+        }
+        assertEquals(bill.subtotal - bill.discount, taxable);
+        assertEquals(bill.tax, tax);
+    }
+
+    @Test
+    void discountsOverOneHundredPercentAreRefused() throws BillingException {
+        Catalog catalog = new Catalog();
+        int milk = catalog.put("Milk", 3_000, 10);
+        BillingEngine engine = new BillingEngine(catalog, null);
+        Cart cart = engine.newCart("lane-1");
+        engine.addSku(cart, milk, 1);
+        assertThrows(BillingException.class, () -> engine.checkout(cart, "", 10_001, 0, "ann"));
+        assertFalse(cart.isClosed());
+        assertEquals(0, engine.checkout(cart, "", 10_000, 1_800, "ann").total);
+    }
+}
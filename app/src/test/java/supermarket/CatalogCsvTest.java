@@ -0,0 +1,123 @@
+package supermarket;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CatalogCsvTest {
+
+    @TempDir
+    Path dir;
+
+    private CatalogCsv.Import read(String text) throws IOException {
+        Path file = dir.resolve("catalog.csv");
+        Files.write(file, text.getBytes(StandardCharsets.UTF_8));
+        return CatalogCsv.read(file);
+    }
+
+    @Test
+    void quotedFieldsKeepCommasAndQuotes() throws IOException {
+        CatalogCsv.Import csv = read("item,price,stock,barcode\n"
+                + "\"Biscuits, Marie\",30.5,12,890001\n"
+                + "\"12\"\" Pizza\" , 199 ,3\n"
+                + "Crème Brûlée,120.00,4,890002,890003\r\n");
+        assertTrue(csv.ok(), () -> csv.errors().toString());
+        assertEquals(3, csv.count());
+        assertEquals("Biscuits, Marie", csv.name(0));
+        assertEquals(3_050, csv.price(0));
+        assertEquals(12, csv.stock(0));
+        assertEquals("12\" Pizza", csv.name(1));
+        assertEquals(19_900, csv.price(1));
+        assertEquals(0, csv.barcodeCount(1));
+        assertEquals("Crème Brûlée", csv.name(2));
+        assertEquals(2, csv.barcodeCount(2));
+        assertEquals("890003", csv.barcode(2, 1));
+    }
+
+    @Test
+    void hsnColumnIsReadWhenTheHeaderNamesIt() throws IOException {
+        CatalogCsv.Import csv = read("\uFEFFitem,price,stock,hsn,barcode\nRice,60,10,1006,890010\nSalt,20,5,,890011\n");
+        assertTrue(csv.ok(), () -> csv.errors().toString());
+        assertEquals("1006", csv.hsn(0));
+        assertEquals("", csv.hsn(1));
+        assertEquals("890011", csv.barcode(1, 0));
+    }
+
+    @Test
+    void errorsNameTheLineAndApplyNothing() throws IOException {
+        CatalogCsv.Import csv = read("item,price,stock\n"
+                + "Rice,60,10,890010\n"
+                + "\"Tea,40,5\n"
+                + "Milk,abc,5\n"
+                + "Oil,150,-1\n"
+                + "Rice,61,10\n"
+                + "Salt,20,5,890010\n"
+                + "Dal,90\n");
+        assertFalse(csv.ok());
+        assertEquals(6, csv.errorCount());
+        List<String> errors = csv.errors();
+        assertEquals("line 3: unterminated quote", errors.get(0));
+        assertEquals("line 4: invalid price 'abc'", errors.get(1));
+        assertEquals("line 5: invalid stock '-1'", errors.get(2));
+        assertTrue(errors.get(3).startsWith("line 6: duplicate item 'Rice'"), errors.get(3));
+        assertTrue(errors.get(4).startsWith("line 7: barcode 890010"), errors.get(4));
+        assertTrue(errors.get(5).startsWith("line 8: expected"), errors.get(5));
+
+        Catalog catalog = new Catalog();
+        assertThrows(IllegalStateException.class, () -> csv.applyTo(catalog));
+        assertEquals(0, catalog.size());
+    }
+
+    @Test
+    void lineNumbersHoldAcrossChunks() throws IOException {
+        StringBuilder sb = new StringBuilder("item,price,stock,barcode\n");
+        int rows = 3 * CatalogCsv.CHUNK_BYTES / 24;
+        for (int i = 0; i < rows; i++) sb.append("Item ").append(i).append(",1.00,1,89").append(i).append('\n');
+        sb.append("Broken,x,1\n");
+        CatalogCsv.Import csv = read(sb.toString());
+        assertEquals(1, csv.errorCount());
+        assertEquals("line " + (rows + 2) + ": invalid price 'x'", csv.errors().get(0));
+        assertEquals(rows, csv.count());
+    }
+
+    @Test
+    void writtenCatalogReadsBack(@TempDir Path out) throws IOException {
+        Catalog catalog = new Catalog();
+        int pizza = catalog.put("12\" Pizza, large", 19_900, 3);
+        int rice = catalog.put("Rice", 6_000, 10);
+        catalog.setHsn(rice, "1006");
+        catalog.assignBarcode("890001", pizza);
+        catalog.assignBarcode("890002", pizza);
+        Path file = out.resolve("export.csv");
+        assertEquals(2, CatalogCsv.write(catalog, file));
+
+        CatalogCsv.Import csv = CatalogCsv.read(file);
+        assertTrue(csv.ok(), () -> csv.errors().toString());
+        Catalog copy = new Catalog();
+        assertEquals(2, csv.applyTo(copy));
+        assertEquals(19_900, copy.price(copy.skuOf("12\" Pizza, large")));
+        assertEquals(3, copy.stock(copy.skuOf("12\" Pizza, large")));
+        assertEquals("1006", copy.hsn(copy.skuOf("Rice")));
+        assertEquals(catalog.barcodesOf(pizza), copy.barcodesOf(copy.skuOf("12\" Pizza, large")));
+    }
+
+    @Test
+    void importKeepsStockOfExistingItems() throws IOException {
+        Catalog catalog = new Catalog();
+        int milk = catalog.put("Milk", 3_000, 10);
+        catalog.tryTake(milk, 4);        // held by an open cart
+        CatalogCsv.Import csv = read("Milk,35.00,50\nTea,12.00,7\n");
+        assertEquals(1, csv.applyTo(catalog));
+        catalog.giveBack(milk, 4);
+        assertEquals(10, catalog.stock(milk));
+        assertEquals(3_500, catalog.price(milk));
+        assertEquals(7, catalog.stock(catalog.skuOf("Tea")));
+    }
+}
@@ -0,0 +1,93 @@
+package supermarket;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CustomerIndexTest {
+
+    private static final LocalDate MONDAY = LocalDate.of(2026, 10, 12);
+    private static final LocalDate TUESDAY = MONDAY.plusDays(1);
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void keysIgnoreFormatting() {
+        assertEquals("9845012345", CustomerIndex.key("+91 98450-12345"));
+        assertEquals("9845012345", CustomerIndex.key("(98450) 12345"));
+        assertEquals("GOLD42", CustomerIndex.key(" gold-42 "));
+        assertEquals("", CustomerIndex.key("  "));
+        assertEquals("", CustomerIndex.key(null));
+    }
+
+    @Test
+    void positionsKeepDayAndOrdinal() {
+        long p = CustomerIndex.position(TUESDAY, 70_000);
+        assertEquals(TUESDAY, CustomerIndex.dayOf(p));
+        assertEquals(70_000, CustomerIndex.ordinalOf(p));
+        assertTrue(CustomerIndex.position(MONDAY, Integer.MAX_VALUE) < CustomerIndex.position(TUESDAY, 0));
+    }
+
+    @Test
+    void totalsSurviveAReopen() throws IOException {
+        Path file = dir.resolve("customers.log");
+        try (CustomerIndex index = CustomerIndex.open(file)) {
+            assertEquals(-1, index.indexedTo());
+            index.add("9845012345", MONDAY, 0, 1_000, 10_000);
+            index.add("", MONDAY, 1, 2_000, 5_000);
+            index.add("9845012345", MONDAY, 2, 3_000, 2_500);
+            index.add("GOLD42", TUESDAY, 0, 4_000, 7_000);
+            index.mark(TUESDAY, 5);
+        }
+        try (CustomerIndex index = CustomerIndex.open(file)) {
+            assertEquals(CustomerIndex.position(TUESDAY, 5), index.indexedTo());
+            assertEquals(2, index.customers());
+            CustomerIndex.Summary s = index.lookup("9845012345");
+            assertEquals(2, s.bills);
+            assertEquals(12_500, s.spend);
+            assertEquals(1_000, s.firstMillis);
+            assertEquals(3_000, s.lastMillis);
+            assertArrayEquals(new long[]{CustomerIndex.position(MONDAY, 2), CustomerIndex.position(MONDAY, 0)},
+                    index.recentBills("9845012345", 5));
+            assertNull(index.lookup("NOBODY"));
+        }
+    }
+
+    @Test
+    void billsAlreadyIndexedAreNotCountedTwice() throws IOException {
+        try (CustomerIndex index = CustomerIndex.open(dir.resolve("customers.log"))) {
+            index.add("GOLD42", MONDAY, 3, 1_000, 7_000);
+            // a catch-up after a crash offers the same bill again
+            index.add("GOLD42", MONDAY, 3, 1_000, 7_000);
+            index.add("GOLD42", MONDAY, 1, 900, 7_000);
+            assertEquals(1, index.lookup("GOLD42").bills);
+            for (int i = 4; i < 30; i++) index.add("GOLD42", MONDAY, i, 1_000 + i, 100);
+            assertEquals(27, index.lookup("GOLD42").bills);
+            assertEquals(7_000 + 26 * 100, index.lookup("GOLD42").spend);
+            assertEquals(3, index.recentBills("GOLD42", 3).length);
+            assertEquals(CustomerIndex.position(MONDAY, 29), index.recentBills("GOLD42", 3)[0]);
+        }
+    }
+
+    @Test
+    void clearStartsAfresh() throws IOException {
+        Path file = dir.resolve("customers.log");
+        try (CustomerIndex index = CustomerIndex.open(file)) {
+            index.add("GOLD42", MONDAY, 0, 1_000, 7_000);
+            index.clear();
+            assertEquals(-1, index.indexedTo());
+            assertEquals(0, index.customers());
+            index.add("SILVER7", MONDAY, 0, 1_000, 3_000);
+        }
+        try (CustomerIndex index = CustomerIndex.open(file)) {
+            assertNull(index.lookup("GOLD42"));
+            assertEquals(3_000, index.lookup("SILVER7").spend);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package supermarket;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InventoryLeaseTest {
+
+    private static final long TTL = 60_000;
+
+    private static Catalog shelf(int milk, int bread) {
+        Catalog catalog = new Catalog();
+        catalog.put("Milk", 3_000, milk);
+        catalog.put("Bread", 2_500, bread);
+        return catalog;
+    }
+
+    @Test
+    void lanesSharingTheServerNeverSellTheSameUnit() throws Exception {
+        Catalog store = shelf(137, 90);
+        try (InventoryServer server = new InventoryServer(store, null, 0, TTL)) {
+            server.start();
+            int lanes = 4;
+            ExecutorService pool = Executors.newFixedThreadPool(lanes);
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<int[]>> results = new ArrayList<>();
+            for (int l = 0; l < lanes; l++) {
+                String lane = "lane-" + l;
+                // each lane's catalog starts from a stale stock count; connecting zeroes it
+                Catalog local = shelf(1_000, 1_000);
+                InventoryClient client = InventoryClient.connect(lane, local, "localhost", server.port());
+                assertEquals(0, local.stock(0));
+                BillingEngine engine = new BillingEngine(local, null);
+                engine.setStockSource(client);
+                results.add(pool.submit(() -> {
+                    start.await();
+                    int[] sold = new int[2];
+                    try (client) {
+                        boolean left = true;
+                        while (left) {
+                            left = false;
+                            Cart cart = engine.newCart(lane);
+                            for (int sku = 0; sku < 2; sku++) {
+                                try {
+                                    engine.addSku(cart, sku, 3);
+                                    left = true;
+                                } catch (BillingException ignored) {
+                                    // this lane could not lease three more
+                                }
+                            }
+                            if (cart.isEmpty()) {
+                                engine.cancel(cart);
+                                continue;
+                            }
+                            Bill bill = engine.checkout(cart, "", 0, 0, "ann");
+                            for (CartLine line : bill.lines) sold[line.sku] += line.qty;
+                            client.sold(bill);
+                        }
+                    }
+                    return sold;
+                }));
+            }
+            start.countDown();
+            int milkSold = 0, breadSold = 0;
+            for (Future<int[]> f : results) {
+                int[] r = f.get(30, TimeUnit.SECONDS);
+                milkSold += r[0];
+                breadSold += r[1];
+            }
+            pool.shutdown();
+
+            assertEquals(137, milkSold + server.shelf(0));
+            assertEquals(90, breadSold + server.shelf(1));
+            assertTrue(server.shelf(0) >= 0 && server.shelf(1) >= 0);
+            // closing a lane hands back every unit it did not sell
+            assertEquals(server.shelf(0), server.available(0));
+            assertEquals(server.shelf(1), server.available(1));
+        }
+    }
+
+    @Test
+    void aShortfallLeasesOnlyWhatIsLeft() throws Exception {
+        Catalog store = shelf(5, 0);
+        try (InventoryServer server = new InventoryServer(store, null, 0, TTL)) {
+            server.start();
+            Catalog first = shelf(0, 0), second = shelf(0, 0);
+            try (InventoryClient a = InventoryClient.connect("lane-1", first, "localhost", server.port());
+                 InventoryClient b = InventoryClient.connect("lane-2", second, "localhost", server.port())) {
+                BillingEngine laneA = new BillingEngine(first, null);
+                BillingEngine laneB = new BillingEngine(second, null);
+                laneA.setStockSource(a);
+                laneB.setStockSource(b);
+
+                Cart cartA = laneA.newCart("lane-1");
+                laneA.addSku(cartA, 0, 2);
+                assertEquals(0, server.available(0));       // the lease takes the whole shelf
+                Cart cartB = laneB.newCart("lane-2");
+                assertThrows(BillingException.class, () -> laneB.addSku(cartB, 0, 1));
+                assertThrows(BillingException.class, () -> laneB.addSku(cartB, 1, 1));
+
+                a.sold(laneA.checkout(cartA, "", 0, 0, "ann"));
+                laneB.cancel(cartB);
+            }
+            assertEquals(3, server.shelf(0));
+            assertEquals(3, server.available(0));
+        }
+    }
+
+    @Test
+    void aLaneWithAnotherCatalogIsTurnedAway() throws IOException {
+        try (InventoryServer server = new InventoryServer(shelf(5, 5), null, 0, TTL)) {
+            server.start();
+            Catalog bigger = shelf(0, 0);
+            bigger.put("Jam", 9_000, 0);
+            IOException e = assertThrows(IOException.class,
+                    () -> InventoryClient.connect("lane-1", bigger, "localhost", server.port()));
+            assertTrue(e.getMessage().contains("Catalog mismatch"), e.getMessage());
+        }
+    }
+}
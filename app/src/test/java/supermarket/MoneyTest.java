@@ -0,0 +1,84 @@
+package supermarket;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MoneyTest {
+
+    private static final RoundingMode[] MODES = {RoundingMode.DOWN, RoundingMode.UP, RoundingMode.FLOOR,
+            RoundingMode.CEILING, RoundingMode.HALF_UP, RoundingMode.HALF_DOWN, RoundingMode.HALF_EVEN};
+
+    @Test
+    void parseRoundsToThePaisa() {
+        assertEquals(1_250, Money.parse("12.5"));
+        assertEquals(1_250, Money.parse(" 12.50 "));
+        assertEquals(1_251, Money.parse("12.505"));
+        assertEquals(1_250, Money.parse("12.5049"));
+        assertEquals(-1_251, Money.parse("-12.505"));
+        assertThrows(NumberFormatException.class, () -> Money.parse("12,5"));
+        assertThrows(NumberFormatException.class, () -> Money.parse("1e30"));
+    }
+
+    @Test
+    void percentagesAreBasisPoints() {
+        assertEquals(1_250, Money.parsePercent("12.5"));
+        assertEquals(0, Money.parsePercent("0"));
+        assertEquals(28_000, Money.parsePercent("280"));
+        assertThrows(NumberFormatException.class, () -> Money.parsePercent("-1"));
+    }
+
+    @Test
+    void discountsStopAtOneHundredPercent() {
+        assertEquals(10_000, Money.parseDiscount("100"));
+        assertEquals(10_000, Money.parseDiscount("100.004"));
+        assertThrows(NumberFormatException.class, () -> Money.parseDiscount("100.01"));
+        assertThrows(NumberFormatException.class, () -> Money.parseDiscount("150"));
+        assertThrows(NumberFormatException.class, () -> Money.parseDiscount("-5"));
+    }
+
+    @Test
+    void divideMatchesBigDecimalInEveryMode() {
+        Random random = new Random(7);
+        for (int i = 0; i < 20_000; i++) {
+            long num = random.nextInt(2_000_001) - 1_000_000;
+            long den = 1 + random.nextInt(i % 2 == 0 ? 10 : 20_000);
+            for (RoundingMode mode : MODES) {
+                long expected = BigDecimal.valueOf(num).divide(BigDecimal.valueOf(den), 0, mode).longValueExact();
+                assertEquals(expected, Money.divide(num, den, mode), num + "/" + den + " " + mode);
+            }
+        }
+        assertThrows(ArithmeticException.class, () -> Money.divide(1, 0, RoundingMode.HALF_UP));
+        assertThrows(ArithmeticException.class, () -> Money.divide(1, 3, RoundingMode.UNNECESSARY));
+        assertEquals(2, Money.divide(6, 3, RoundingMode.UNNECESSARY));
+    }
+
+    @Test
+    void percentRoundsTheHalfPaisa() {
+        // 18% of ₹0.25 is 4.5 paise
+        assertEquals(5, Money.percent(25, 1_800, RoundingMode.HALF_UP));
+        assertEquals(4, Money.percent(25, 1_800, RoundingMode.HALF_EVEN));
+        assertEquals(4, Money.percent(25, 1_800, RoundingMode.DOWN));
+        assertEquals(-5, Money.percent(-25, 1_800, RoundingMode.HALF_UP));
+        assertEquals(12_345, Money.percent(12_345, 10_000, RoundingMode.HALF_UP));
+        assertThrows(ArithmeticException.class, () -> Money.percent(Long.MAX_VALUE / 2, 10_000, RoundingMode.HALF_UP));
+    }
+
+    @Test
+    void formatting() {
+        assertEquals("1234.50", Money.format(123_450));
+        assertEquals("0.05", Money.format(5));
+        assertEquals("-0.05", Money.format(-5));
+        assertEquals("-12.00", Money.format(-1_200));
+        assertEquals("12.5", Money.formatPercent(1_250));
+        assertEquals("12.25", Money.formatPercent(1_225));
+        assertEquals("0.05", Money.formatPercent(5));
+        assertEquals("18.0", Money.formatPercent(1_800));
+        assertEquals(1_999, Money.ofRupees(19.99));
+        assertEquals(1_000, Money.ofRupees(9.995));
+    }
+}
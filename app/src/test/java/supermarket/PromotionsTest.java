@@ -0,0 +1,102 @@
+package supermarket;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PromotionsTest {
+
+    private Catalog catalog;
+    private Promotions promotions;
+    private int soap, juice, mango, rice, milk, bread;
+
+    @BeforeEach
+    void setUp() {
+        catalog = new Catalog();
+        soap = catalog.put("Soap", 4_000, 100);
+        juice = catalog.put("Juice", 4_500, 100);
+        mango = catalog.put("Mango", 3_900, 100);
+        rice = catalog.put("Rice", 6_000, 100);
+        milk = catalog.put("Milk", 3_000, 100);
+        bread = catalog.put("Bread", 2_500, 100);
+        List<String> errors = new ArrayList<>();
+        promotions = Promotions.parse(Arrays.asList(
+                "BUY_GET    | Soap 2+1          | 2 1         | Soap",
+                "MULTI_BUY  | Juice 3 for 100   | 3 100.00    | Juice, Mango",
+                "QTY_TIER   | Rice bulk         | 10:5 25:10  | Rice",
+                "SPEND_TIER | Dairy             | 500:10      | Milk, Soap"), catalog, errors);
+        assertEquals(List.of(), errors);
+    }
+
+    private void add(Promotions.Tally tally, int sku, int qty) {
+        tally.add(sku, qty, Money.times(catalog.price(sku), qty));
+    }
+
+    @Test
+    void rulesPriceTheirItems() {
+        Promotions.Tally tally = promotions.newTally();
+        add(tally, soap, 3);
+        assertEquals(4_000, tally.discount());          // third soap free; ₹120 is under the dairy tier
+        add(tally, juice, 2);
+        add(tally, mango, 1);
+        assertEquals(4_000, tally.discount());          // juice and mango count separately
+        add(tally, juice, 1);
+        assertEquals(4_000 + 3_500, tally.discount());  // 3 juices: ₹135 for ₹100
+        add(tally, bread, 5);
+        assertEquals(7_500, tally.discount());          // no rule
+    }
+
+    @Test
+    void removingEveryLineGivesBackEveryDiscount() {
+        int[] skus = {soap, juice, mango, rice, milk, bread};
+        Random random = new Random(42);
+        for (int round = 0; round < 200; round++) {
+            Promotions.Tally tally = promotions.newTally();
+            List<int[]> lines = new ArrayList<>();
+            for (int i = 0, n = 1 + random.nextInt(12); i < n; i++) {
+                int[] line = {skus[random.nextInt(skus.length)], 1 + random.nextInt(30)};
+                lines.add(line);
+                add(tally, line[0], line[1]);
+            }
+            assertTrue(tally.discount() >= 0);
+            long full = tally.discount();
+
+            // the same lines added in another order reach the same discount
+            List<int[]> shuffled = new ArrayList<>(lines);
+            Collections.shuffle(shuffled, random);
+            Promotions.Tally other = promotions.newTally();
+            for (int[] line : shuffled) add(other, line[0], line[1]);
+            assertEquals(full, other.discount(), "round " + round);
+
+            // and removing them, in any order, undoes it exactly
+            for (int[] line : shuffled) add(tally, line[0], -line[1]);
+            assertEquals(0, tally.discount(), "round " + round);
+        }
+    }
+
+    @Test
+    void perLineSharesSumToTheDiscount() {
+        Promotions.Tally tally = promotions.newTally();
+        List<CartLine> lines = new ArrayList<>();
+        int[][] cart = {{soap, 7}, {milk, 11}, {juice, 4}, {rice, 12}, {bread, 2}};
+        for (int[] c : cart) {
+            lines.add(new CartLine(c[0], catalog.name(c[0]), c[1], catalog.price(c[0])));
+            add(tally, c[0], c[1]);
+        }
+        long discount = tally.discount();
+        assertTrue(discount > 0);
+        for (long total : new long[]{discount, discount / 3, 1}) {
+            long[] share = tally.perLine(lines, total);
+            assertEquals(total, Arrays.stream(share).sum(), "total " + total);
+            for (long s : share) assertTrue(s >= 0, "total " + total);
+        }
+        assertEquals(0, tally.perLine(lines, 4_000)[4]);    // bread has no promotion
+    }
+}
@@ -0,0 +1,122 @@
+package supermarket;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StockAlertsTest {
+
+    private static final long NOW = 1_700_000_000_000L;
+
+    @Test
+    void reorderLevelPutsAnItemAtRisk() {
+        Catalog catalog = new Catalog();
+        int milk = catalog.put("Milk", 3_000, 10);
+        catalog.setReorderLevel(milk, 5);
+        StockAlerts alerts = new StockAlerts(catalog, 3, 14, 14, () -> NOW);
+        alerts.rebuild();
+        assertEquals(0, alerts.size());
+
+        alerts.stockChanged(milk, 5, 0);
+        assertEquals(1, alerts.size());
+        StockAlerts.Alert a = alerts.top(10).get(0);
+        assertEquals("Milk", a.name);
+        assertEquals(5, a.stock);
+        assertEquals(5, a.suggested);               // back up to twice the reorder level
+        assertTrue(Double.isInfinite(a.daysOfCover));
+
+        alerts.stockChanged(milk, 6, -1);
+        assertEquals(0, alerts.size());
+    }
+
+    @Test
+    void topMatchesASortOfEveryItemAtRisk() {
+        Catalog catalog = new Catalog();
+        int n = 300;
+        for (int i = 0; i < n; i++) {
+            int sku = catalog.put("Item " + i, 1_000, 100);
+            if (i % 7 == 0) catalog.setReorderLevel(sku, 20);
+        }
+        double velocityDays = 14;
+        StockAlerts alerts = new StockAlerts(catalog, 3, 14, velocityDays, () -> NOW);
+        int[] counter = {0};
+        alerts.setListener(() -> counter[0]++);
+        alerts.rebuild();
+
+        int[] stock = new int[n];
+        double[] rate = new double[n];
+        Arrays.fill(stock, 100);
+        Random random = new Random(11);
+        for (int step = 0; step < 20_000; step++) {
+            int sku = random.nextInt(n);
+            int sold = random.nextInt(10) - 2;      // now and then a line is given back
+            stock[sku] = Math.max(0, stock[sku] - sold);
+            rate[sku] = Math.max(0, rate[sku] + sold / velocityDays);
+            alerts.stockChanged(sku, stock[sku], sold);
+
+            if (step % 1_000 == 999) {
+                List<Integer> expected = new ArrayList<>();
+                for (int s = 0; s < n; s++) {
+                    int level = catalog.reorderLevel(s);
+                    if (level >= 0 && stock[s] <= level || cover(stock[s], rate[s]) < 3) expected.add(s);
+                }
+                expected.sort((a, b) -> {
+                    int c = Double.compare(cover(stock[a], rate[a]), cover(stock[b], rate[b]));
+                    if (c != 0) return c;
+                    return stock[a] != stock[b] ? Integer.compare(stock[a], stock[b]) : Integer.compare(a, b);
+                });
+                assertEquals(expected.size(), alerts.size(), "step " + step);
+                List<StockAlerts.Alert> top = alerts.top(25);
+                assertEquals(Math.min(25, expected.size()), top.size());
+                for (int i = 0; i < top.size(); i++) assertEquals((int) expected.get(i), top.get(i).sku, "step " + step + " #" + i);
+            }
+        }
+        assertTrue(counter[0] > 0);
+    }
+
+    @Test
+    void seededVelocityCountsTowardsCover() {
+        Catalog catalog = new Catalog();
+        int bread = catalog.put("Bread", 2_500, 20);
+        catalog.put("Jam", 9_000, 20);
+        StockAlerts alerts = new StockAlerts(catalog, 3, 14, 14, () -> NOW);
+        alerts.seed(Map.of("Bread", new long[]{140}, "Unknown", new long[]{50}), 7);
+
+        // 20 breads selling 20 a day cover one day; jam is not selling
+        List<StockAlerts.Alert> top = alerts.top(10);
+        assertEquals(1, top.size());
+        assertEquals(bread, top.get(0).sku);
+        assertEquals(1.0, top.get(0).daysOfCover, 1e-9);
+        assertEquals(14 * 20 - 20, top.get(0).suggested);
+    }
+
+    @Test
+    void reorderListHasARowPerAlert(@TempDir Path dir) throws IOException {
+        Catalog catalog = new Catalog();
+        int tea = catalog.put("Tea, green", 12_000, 0);
+        catalog.assignBarcode("890001", tea);
+        catalog.put("Salt", 2_000, 50);
+        StockAlerts alerts = new StockAlerts(catalog, 3, 14, 14, () -> NOW);
+        alerts.rebuild();
+
+        Path file = dir.resolve("reorder.csv");
+        assertEquals(1, alerts.writeReorderList(file));
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        assertEquals(List.of(StockAlerts.HEADER, "\"Tea, green\",890001,0,,0.00,0.0,0"), lines);
+    }
+
+    private static double cover(int stock, double rate) {
+        return stock <= 0 ? 0 : rate > 0 ? stock / rate : Double.POSITIVE_INFINITY;
+    }
+}
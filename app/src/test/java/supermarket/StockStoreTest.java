@@ -0,0 +1,173 @@
+package supermarket;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StockStoreTest {
+
+    @TempDir
+    Path dir;
+
+    @AfterEach
+    void defaultCompaction() {
+        System.clearProperty("billing.stock.compactEvery");
+    }
+
+    private Path snapshot() {
+        return dir.resolve("stock.snap");
+    }
+
+    private Path delta() {
+        return dir.resolve("stock.delta");
+    }
+
+    private static Catalog sample() {
+        Catalog catalog = new Catalog();
+        int rice = catalog.put("Rice 5kg", 45_000, 12);
+        int soap = catalog.put("Crème Soap", 4_000, 40);
+        catalog.put("Bread", 2_500, 0);
+        catalog.setHsn(rice, "1006");
+        catalog.setReorderLevel(soap, 10);
+        catalog.assignBarcode("890001", rice);
+        catalog.assignBarcode("890002", rice);
+        catalog.assignBarcode("890003", soap);
+        return catalog;
+    }
+
+    private static void assertSameCatalog(Catalog expected, Catalog actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int sku = 0; sku < expected.size(); sku++) {
+            assertEquals(expected.name(sku), actual.name(sku));
+            assertEquals(expected.price(sku), actual.price(sku));
+            assertEquals(expected.stock(sku), actual.stock(sku));
+            assertEquals(expected.hsn(sku), actual.hsn(sku));
+            assertEquals(expected.reorderLevel(sku), actual.reorderLevel(sku));
+            assertEquals(expected.barcodesOf(sku), actual.barcodesOf(sku));
+            assertEquals(expected.barcodeOf(sku), actual.barcodeOf(sku));
+        }
+    }
+
+    @Test
+    void snapshotRoundTrip() throws IOException {
+        Catalog catalog = sample();
+        StockStore.writeSnapshot(catalog, snapshot());
+        assertSameCatalog(catalog, StockStore.readSnapshot(snapshot()));
+    }
+
+    @Test
+    void aDamagedSnapshotIsReported() throws IOException {
+        StockStore.writeSnapshot(sample(), snapshot());
+        try (FileChannel ch = FileChannel.open(snapshot(), StandardOpenOption.WRITE)) {
+            ch.write(ByteBuffer.wrap(new byte[]{'X'}), 40);
+        }
+        assertThrows(IOException.class, () -> StockStore.load(snapshot(), delta()));
+    }
+
+    @Test
+    void changesAfterTheSnapshotAreReplayed() throws IOException {
+        Catalog catalog = sample();
+        StockStore.writeSnapshot(catalog, snapshot());
+        try (StockStore store = StockStore.open(snapshot(), delta(), catalog)) {
+            int tea = catalog.put("Tea", 1_200, 7);
+            store.recordPut(tea);
+            catalog.assignBarcode("890010", tea);
+            store.recordBarcode(tea, "890010");
+            catalog.setStock(0, 9);
+            store.recordStock(0);
+            catalog.setPrice(1, 4_250);
+            store.recordPrice(1);
+            catalog.setHsn(1, "3401");
+            store.recordHsn(1);
+            catalog.setReorderLevel(2, 5);
+            store.recordReorderLevel(2);
+            store.sync();
+        }
+        assertSameCatalog(catalog, StockStore.load(snapshot(), delta()));
+    }
+
+    @Test
+    void compactionFoldsTheDeltaIntoTheSnapshot() throws IOException {
+        Catalog catalog = sample();
+        StockStore.writeSnapshot(catalog, snapshot());
+        try (StockStore store = StockStore.open(snapshot(), delta(), catalog)) {
+            catalog.setStock(1, 3);
+            store.recordStock(1);
+            store.compact();
+            catalog.setStock(1, 2);
+            store.recordStock(1);
+            store.sync();
+        }
+        assertEquals(3, StockStore.readSnapshot(snapshot()).stock(1));
+        assertEquals(2, StockStore.load(snapshot(), delta()).stock(1));
+    }
+
+    @Test
+    void aTornDeltaTailIsDropped() throws IOException {
+        Catalog catalog = sample();
+        StockStore.writeSnapshot(catalog, snapshot());
+        try (StockStore store = StockStore.open(snapshot(), delta(), catalog)) {
+            catalog.setStock(0, 5);
+            store.recordStock(0);
+            catalog.setStock(0, 4);
+            store.recordStock(0);
+            store.sync();
+        }
+        try (FileChannel ch = FileChannel.open(delta(), StandardOpenOption.WRITE)) {
+            ch.truncate(ch.size() - 2);
+        }
+        assertEquals(5, StockStore.load(snapshot(), delta()).stock(0));
+    }
+
+    @Test
+    void damageInsideTheDeltaRefusesToLoad() throws IOException {
+        Catalog catalog = sample();
+        StockStore.writeSnapshot(catalog, snapshot());
+        try (StockStore store = StockStore.open(snapshot(), delta(), catalog)) {
+            for (int qty = 10; qty > 0; qty--) {
+                catalog.setStock(0, qty);
+                store.recordStock(0);
+            }
+            store.sync();
+        }
+        // the first record's sku field
+        try (FileChannel ch = FileChannel.open(delta(), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ch.write(ByteBuffer.wrap(new byte[]{0x7F}), BillJournal.HEADER_SIZE + BillJournal.RECORD_HEADER + 1);
+        }
+        byte[] before = Files.readAllBytes(delta());
+
+        assertThrows(IOException.class, () -> StockStore.load(snapshot(), delta()));
+        assertThrows(IOException.class, () -> StockStore.open(snapshot(), delta(), sample()));
+        assertArrayEquals(before, Files.readAllBytes(delta()));
+    }
+
+    @Test
+    void aFailedBackgroundCompactionIsReportedOnce() throws Exception {
+        System.setProperty("billing.stock.compactEvery", "2");
+        Catalog catalog = sample();
+        // a directory in the snapshot's place makes writing it fail
+        Files.createDirectories(snapshot().resolve("in-the-way"));
+        try (StockStore store = StockStore.open(snapshot(), delta(), catalog)) {
+            store.recordStock(0);
+            store.recordStock(1);
+            IOException failure = null;
+            for (int i = 0; i < 200 && failure == null; i++) {
+                Thread.sleep(10);
+                failure = store.takeCompactionFailure();
+            }
+            assertNotNull(failure);
+            assertNull(store.takeCompactionFailure());
+        }
+        // nothing was lost: the rotated delta waits for the next compaction
+        assertTrue(Files.exists(dir.resolve("stock.delta.compacting")));
+    }
+}
@@ -0,0 +1,138 @@
+package supermarket;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Bill persistence: appending a printed bill (saveBillsToFile), reopening and indexing
+// the journal (loadBillsFromFile), bill-number lookup and the sales report scan, and the
+// same history as a sealed, block-compressed day (BillArchive): read, report, Z-report.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BillStoreBenchmark {
+
+    @Param({"10000", "200000"})
+    public int history;
+
+    @Param({"20"})
+    public int lines;
+
+    private Path dir;
+    private Path journal;
+    private Path scratch;
+    private BillStore store;
+    private BillStore scratchStore;
+    private SealedSegment sealed;
+    private BillingEngine engine;
+    private Bill bill;
+    private String[] billNos;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, BillingException {
+        dir = Fixtures.tempDir();
+        journal = dir.resolve("bills.journal");
+        Catalog catalog = Fixtures.catalog(5000);
+        Fixtures.writeHistory(journal, catalog, history, lines);
+        store = BillStore.open(journal, null);
+        Path seg = dir.resolve("history.seg");
+        try (SealedSegment.Writer out = new SealedSegment.Writer(seg)) {
+            store.scanRange(0, store.size(), SalesAnalytics.CHUNK_BYTES, (ordinal, record) -> out.add(record, 0));
+            out.finish();
+        }
+        sealed = SealedSegment.open(seg);
+        engine = new BillingEngine(catalog, null);
+        bill = Fixtures.bill(engine, lines, new Random(5));
+
+        Random rnd = new Random(9);
+        billNos = new String[1024];
+        for (int i = 0; i < billNos.length; i++) billNos[i] = String.format("BILL-%04d", 1 + rnd.nextInt(history));
+    }
+
+    // appends land in a separate journal so the history stays the size asked for
+    @Setup(Level.Iteration)
+    public void openScratch() throws IOException {
+        scratch = dir.resolve("scratch.journal");
+        Files.deleteIfExists(scratch);
+        scratchStore = BillStore.open(scratch, null);
+    }
+
+    @TearDown(Level.Iteration)
+    public void closeScratch() throws IOException {
+        scratchStore.close();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        store.close();
+        sealed.close();
+        Fixtures.delete(dir);
+    }
+
+    @Benchmark
+    public int appendBill() throws IOException {
+        return scratchStore.append(bill);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 2)
+    @Measurement(iterations = 5)
+    public int openAndIndex() throws IOException {
+        try (BillStore reopened = BillStore.open(journal, null)) {
+            return reopened.size();
+        }
+    }
+
+    @Benchmark
+    public int findBill() throws IOException {
+        return store.find(billNos[next++ & 1023]);
+    }
+
+    @Benchmark
+    public String readBill() throws IOException {
+        return store.read(Math.floorMod(next++ * 7919L, history));
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 2)
+    @Measurement(iterations = 5)
+    public long salesReport() throws IOException {
+        return new SalesAnalytics(store).run(0, Long.MAX_VALUE).net;
+    }
+
+    @Benchmark
+    public String readBillSealed() throws IOException {
+        int ordinal = Math.floorMod(next++ * 7919L, history);
+        return sealed.readRange(ordinal, ordinal + 1)[0];
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 2)
+    @Measurement(iterations = 5)
+    public long salesReportSealed() throws IOException {
+        return new SalesAnalytics(sealed).run(0, Long.MAX_VALUE).net;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 2)
+    @Measurement(iterations = 5)
+    public long zReportSealed() throws IOException {
+        return new SalesAnalytics(sealed).stream().net;
+    }
+}
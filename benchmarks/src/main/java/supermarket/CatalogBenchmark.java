@@ -0,0 +1,80 @@
+package supermarket;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Barcode lookup and addItem-style line insertion against catalogs of different sizes.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CatalogBenchmark {
+
+    @Param({"1000", "150000"})
+    public int skus;
+
+    private Catalog catalog;
+    private BillingEngine engine;
+    private String[] barcodes;
+    private String[] names;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        catalog = Fixtures.catalog(skus);
+        engine = new BillingEngine(catalog, null);
+        // random probe order, fixed up front so the benchmark measures lookups only
+        Random rnd = new Random(1);
+        barcodes = new String[4096];
+        names = new String[4096];
+        for (int i = 0; i < barcodes.length; i++) {
+            int sku = rnd.nextInt(skus);
+            barcodes[i] = Fixtures.barcode(sku);
+            names[i] = catalog.name(sku);
+        }
+    }
+
+    @Benchmark
+    public int barcodeLookup() {
+        return catalog.skuForBarcode(barcodes[next++ & 4095]);
+    }
+
+    @Benchmark
+    public int nameLookup() {
+        return catalog.skuOf(names[next++ & 4095]);
+    }
+
+    // One scanned line: barcode -> SKU -> stock CAS -> cart. The cart is abandoned
+    // every 64 lines so it stays bill-sized and the stock is returned.
+    @State(Scope.Thread)
+    public static class Lane {
+        Cart cart;
+        int lines;
+    }
+
+    @Benchmark
+    public CartLine addLine(Lane lane) throws BillingException {
+        if (lane.cart == null || lane.lines == 64) {
+            if (lane.cart != null) engine.cancel(lane.cart);
+            lane.cart = engine.newCart("bench");
+            lane.lines = 0;
+        }
+        lane.lines++;
+        return engine.addBarcode(lane.cart, barcodes[next++ & 4095], 1);
+    }
+
+    @Benchmark
+    public int addScannedLine(Lane lane) throws BillingException {
+        if (lane.cart == null || lane.lines == 64) {
+            if (lane.cart != null) engine.cancel(lane.cart);
+            lane.cart = engine.newCart("bench");
+            lane.lines = 0;
+        }
+        lane.lines++;
+        return engine.addScanned(lane.cart, barcodes[next++ & 4095], 1);
+    }
+}
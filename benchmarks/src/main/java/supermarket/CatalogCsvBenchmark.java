@@ -0,0 +1,55 @@
+package supermarket;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+// Bulk catalog CSV: parsing and validating an ERP export, applying it to an empty
+// catalog, and writing the catalog back out.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class CatalogCsvBenchmark {
+
+    @Param({"1000", "150000"})
+    public int skus;
+
+    private Path dir;
+    private Path csv;
+    private Catalog catalog;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dir = Fixtures.tempDir();
+        csv = dir.resolve("catalog.csv");
+        catalog = Fixtures.catalog(skus);
+        CatalogCsv.write(catalog, csv);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Fixtures.delete(dir);
+    }
+
+    @Benchmark
+    public CatalogCsv.Import parse() throws IOException {
+        return CatalogCsv.read(csv);
+    }
+
+    @Benchmark
+    public Catalog parseAndApply() throws IOException {
+        Catalog fresh = new Catalog();
+        CatalogCsv.read(csv).applyTo(fresh);
+        return fresh;
+    }
+
+    @Benchmark
+    public int export() throws IOException {
+        return CatalogCsv.write(catalog, dir.resolve("export.csv"));
+    }
+}
@@ -0,0 +1,77 @@
+package supermarket;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Customer lookup at the lane (lookUpCustomer) for a regular with `visits` bills among
+// `customers` others, the history dialog's recent bills, and reopening the index log.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CustomerIndexBenchmark {
+
+    @Param({"100000"})
+    public int customers;
+
+    @Param({"10", "5000"})
+    public int visits;
+
+    private Path dir;
+    private Path log;
+    private CustomerIndex index;
+    private final String regular = "9845012345";
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dir = Fixtures.tempDir();
+        log = dir.resolve("customers.log");
+        Random rnd = new Random(11);
+        LocalDate day = LocalDate.of(2026, 1, 1);
+        int ordinal = 0;
+        try (CustomerIndex build = CustomerIndex.open(log)) {
+            for (int i = 0; i < customers; i++) {
+                if (ordinal == 2000) {
+                    day = day.plusDays(1);
+                    ordinal = 0;
+                }
+                String key = i % (customers / visits) == 0 ? regular : Long.toString(9_000_000_000L + rnd.nextInt(customers));
+                build.add(key, day, ordinal++, 0, 10_000 + rnd.nextInt(500_000));
+            }
+            build.mark(day, ordinal);
+        }
+        index = CustomerIndex.open(log);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        index.close();
+        Fixtures.delete(dir);
+    }
+
+    @Benchmark
+    public CustomerIndex.Summary lookup() {
+        return index.lookup(regular);
+    }
+
+    @Benchmark
+    public long[] recentBills() {
+        return index.recentBills(regular, 20);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public int open() throws IOException {
+        try (CustomerIndex reopened = CustomerIndex.open(log)) {
+            return reopened.customers();
+        }
+    }
+}
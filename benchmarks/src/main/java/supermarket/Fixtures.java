@@ -0,0 +1,67 @@
+package supermarket;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.Stream;
+
+// ---------------------------
+// Benchmark data
+// ---------------------------
+// Deterministic catalogs and bill histories, so runs with the same parameters compare.
+final class Fixtures {
+
+    private static final String[] WORDS = {
+            "Milk", "Bread", "Rice", "Sugar", "Oil", "Soap", "Tea", "Coffee", "Apple", "Banana",
+            "Paneer", "Butter", "Cheese", "Masala", "Chips", "Juice", "Mango", "Tomato", "Onion", "Atta"
+    };
+
+    private Fixtures() {
+    }
+
+    static String barcode(int sku) {
+        return Long.toString(8_900_000_000_000L + sku * 7L);
+    }
+
+    // skus products with one barcode each and plenty of stock.
+    static Catalog catalog(int skus) {
+        Random rnd = new Random(42);
+        Catalog catalog = new Catalog(skus);
+        for (int sku = 0; sku < skus; sku++) {
+            String name = WORDS[rnd.nextInt(WORDS.length)] + " " + WORDS[rnd.nextInt(WORDS.length)] + " " + sku;
+            catalog.put(name, 500 + rnd.nextInt(50_000), 1_000_000_000);
+            catalog.assignBarcode(barcode(sku), sku);
+        }
+        return catalog;
+    }
+
+    // A checked-out bill of `lines` random lines (5% discount, 18% GST).
+    static Bill bill(BillingEngine engine, int lines, Random rnd) throws BillingException {
+        Catalog catalog = engine.catalog();
+        Cart cart = engine.newCart("bench");
+        for (int i = 0; i < lines; i++) engine.addSku(cart, rnd.nextInt(catalog.size()), 1 + rnd.nextInt(3));
+        return engine.checkout(cart, "Guest", 500, 1800, "bench");
+    }
+
+    // Journal with `bills` bills of `lines` lines each.
+    static void writeHistory(Path journal, Catalog catalog, int bills, int lines) throws IOException, BillingException {
+        Random rnd = new Random(7);
+        try (BillStore store = BillStore.open(journal, null)) {
+            BillingEngine engine = new BillingEngine(catalog, store::append);
+            for (int i = 0; i < bills; i++) engine.record(bill(engine, lines, rnd));
+            store.sync();
+        }
+    }
+
+    static Path tempDir() throws IOException {
+        return Files.createTempDirectory("billing-bench");
+    }
+
+    static void delete(Path dir) throws IOException {
+        if (dir == null || !Files.exists(dir)) return;
+        try (Stream<Path> paths = Files.walk(dir)) {
+            for (Path p : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) Files.deleteIfExists(p);
+        }
+    }
+}
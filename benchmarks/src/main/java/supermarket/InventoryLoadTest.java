@@ -0,0 +1,107 @@
+package supermarket;
+
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+// ---------------------------
+// Inventory server load test
+// ---------------------------
+// Not a JMH benchmark: an in-process InventoryServer and `lanes` terminals, each with its
+// own catalog, engine and InventoryClient, scanning and checking out against shared stock
+// for a fixed time. Prints sustained scans/sec and checks that the server's shelf equals
+// the initial stock minus what the lanes sold, i.e. nothing was oversold.
+//   java -cp benchmarks/target/benchmarks.jar supermarket.InventoryLoadTest [lanes] [seconds] [skus] [stockPerSku]
+public final class InventoryLoadTest {
+
+    private InventoryLoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int lanes = args.length > 0 ? Integer.parseInt(args[0]) : 30;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        int skus = args.length > 2 ? Integer.parseInt(args[2]) : 5000;
+        int stock = args.length > 3 ? Integer.parseInt(args[3]) : 100_000;
+
+        Catalog shelf = Fixtures.catalog(skus);
+        for (int sku = 0; sku < skus; sku++) shelf.setStock(sku, stock);
+        InventoryServer server = new InventoryServer(shelf, null, 0, 60_000);
+        server.start();
+
+        LongAdder scans = new LongAdder(), bills = new LongAdder(), shortages = new LongAdder();
+        long[] sold = new long[skus];
+        AtomicBoolean running = new AtomicBoolean(true);
+        CountDownLatch done = new CountDownLatch(lanes);
+        Thread[] threads = new Thread[lanes];
+        for (int l = 0; l < lanes; l++) {
+            String lane = "lane-" + (l + 1);
+            Catalog catalog = Fixtures.catalog(skus);
+            InventoryClient client = InventoryClient.connect(lane, catalog, "localhost", server.port());
+            BillingEngine engine = new BillingEngine(catalog, null);
+            engine.setStockSource(client);
+            Random rnd = new Random(l);
+            threads[l] = new Thread(() -> {
+                long[] mine = new long[skus];
+                try {
+                    while (running.get()) {
+                        Cart cart = engine.newCart(lane);
+                        int items = 5 + rnd.nextInt(25);
+                        for (int i = 0; i < items; i++) {
+                            // a skewed basket: a quarter of the scans hit the 50 fast movers
+                            int sku = rnd.nextInt(4) == 0 ? rnd.nextInt(50) : rnd.nextInt(skus);
+                            try {
+                                engine.addScanned(cart, Fixtures.barcode(sku), 1);
+                                scans.increment();
+                            } catch (BillingException e) {
+                                shortages.increment();
+                            }
+                        }
+                        if (cart.isEmpty()) {
+                            engine.cancel(cart);
+                            continue;
+                        }
+                        Bill bill = engine.checkout(cart, "Guest", 0, 1800, "load");
+                        for (CartLine line : bill.lines) mine[line.sku] += line.qty;
+                        client.sold(bill);
+                        bills.increment();
+                    }
+                } catch (BillingException e) {
+                    throw new IllegalStateException(e);
+                } finally {
+                    client.close();
+                    synchronized (sold) {
+                        for (int sku = 0; sku < skus; sku++) sold[sku] += mine[sku];
+                    }
+                    done.countDown();
+                }
+            }, lane);
+        }
+
+        long started = System.nanoTime();
+        for (Thread t : threads) t.start();
+        long lastScans = 0;
+        for (int s = 1; s <= seconds; s++) {
+            Thread.sleep(1000);
+            long now = scans.sum();
+            System.out.printf("%3ds  %,10d scans/s  %,8d bills  %,6d out of stock%n", s, now - lastScans, bills.sum(), shortages.sum());
+            lastScans = now;
+        }
+        running.set(false);
+        if (!done.await(30, TimeUnit.SECONDS)) throw new IllegalStateException("lanes did not finish");
+        double elapsed = (System.nanoTime() - started) / 1e9;
+
+        int oversold = 0, mismatched = 0, stillLeased = 0;
+        for (int sku = 0; sku < skus; sku++) {
+            if (sold[sku] > stock) oversold++;
+            if (server.shelf(sku) != stock - sold[sku]) mismatched++;
+            if (server.available(sku) != server.shelf(sku)) stillLeased++;
+        }
+        server.close();
+        System.out.printf("%d lanes, %.1f s: %,d scans (%,.0f scans/s sustained), %,d bills%n",
+                lanes, elapsed, scans.sum(), scans.sum() / elapsed, bills.sum());
+        System.out.printf("oversold SKUs: %d, shelf mismatches: %d, leases not returned: %d%n", oversold, mismatched, stillLeased);
+        if (oversold + mismatched + stillLeased > 0) System.exit(1);
+    }
+}
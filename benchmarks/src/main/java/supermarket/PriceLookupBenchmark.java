@@ -0,0 +1,83 @@
+package supermarket;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.concurrent.TimeUnit;
+
+// A handheld's price check over loopback HTTP (GET /item, keep-alive), with and without
+// a lane scanning against the same catalog (`Checkout` threads taking and giving back
+// stock), and rebuilding the lookup snapshot after a catalog edit that added no SKUs.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PriceLookupBenchmark {
+
+    @Param({"150000"})
+    public int skus;
+
+    private Catalog catalog;
+    private PriceLookup lookup;
+    private String base;
+    private final byte[] buf = new byte[4096];
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, InterruptedException {
+        catalog = Fixtures.catalog(skus);
+        lookup = new PriceLookup(catalog, "127.0.0.1", 0, 4, 500);
+        while (lookup.current() == null) Thread.sleep(10);
+        base = "http://127.0.0.1:" + lookup.port() + "/item?barcode=";
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        lookup.close();
+    }
+
+    @Benchmark
+    @Group("idle")
+    public int lookup() throws IOException {
+        return get();
+    }
+
+    @Benchmark
+    @Group("checkout")
+    @GroupThreads(1)
+    public int lookupWhileScanning() throws IOException {
+        return get();
+    }
+
+    @Benchmark
+    @Group("checkout")
+    @GroupThreads(1)
+    public int scan() {
+        int sku = next++ % skus;
+        int left = catalog.tryTake(sku, 1);
+        catalog.giveBack(sku, 1);
+        return left;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public PriceLookup.Snapshot rebuild() {
+        return new PriceLookup.Snapshot(catalog, lookup.current());
+    }
+
+    private int get() throws IOException {
+        next = (next + 7919) % skus;
+        HttpURLConnection con = (HttpURLConnection) new URL(base + Fixtures.barcode(next)).openConnection();
+        int n = 0;
+        try (InputStream in = con.getInputStream()) {
+            for (int r = in.read(buf); r > 0; r = in.read(buf)) n += r;
+        }
+        return n;
+    }
+}
@@ -0,0 +1,70 @@
+package supermarket;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Scanning into a cart with a promotion set of `rules` rules (every SKU is in some rule).
+// The per-scan cost should follow the rules on the scanned SKU, not the cart or rule count.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PromotionBenchmark {
+
+    private static final int SKUS = 20_000;
+
+    @Param({"0", "1000", "10000"})
+    public int rules;
+
+    @Param({"16", "256"})
+    public int cartLines;
+
+    private BillingEngine engine;
+    private String[] barcodes;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        Catalog catalog = Fixtures.catalog(SKUS);
+        engine = new BillingEngine(catalog, null);
+        Random rnd = new Random(3);
+        List<String> text = new ArrayList<>();
+        String[] kinds = {"BUY_GET | r | 2 1", "MULTI_BUY | r | 3 10.00", "QTY_TIER | r | 3:5 10:10", "SPEND_TIER | r | 100:5"};
+        for (int r = 0; r < rules; r++) {
+            StringBuilder items = new StringBuilder();
+            // every SKU in one rule, plus a few SKUs in a second, category-sized one
+            for (int sku = r; sku < SKUS; sku += rules) items.append(items.length() == 0 ? "" : ",").append(Fixtures.barcode(sku));
+            items.append(',').append(Fixtures.barcode(rnd.nextInt(SKUS)));
+            text.add(kinds[r & 3] + " | " + items);
+        }
+        List<String> errors = new ArrayList<>();
+        engine.setPromotions(Promotions.parse(text, catalog, errors));
+        if (!errors.isEmpty()) throw new IllegalStateException(errors.get(0));
+        barcodes = new String[4096];
+        for (int i = 0; i < barcodes.length; i++) barcodes[i] = Fixtures.barcode(rnd.nextInt(SKUS));
+    }
+
+    @State(Scope.Thread)
+    public static class Lane {
+        Cart cart;
+        int lines;
+    }
+
+    @Benchmark
+    public long scan(Lane lane) throws BillingException {
+        if (lane.cart == null || lane.lines == cartLines) {
+            if (lane.cart != null) engine.cancel(lane.cart);
+            lane.cart = engine.newCart("bench");
+            lane.lines = 0;
+        }
+        lane.lines++;
+        engine.addScanned(lane.cart, barcodes[next++ & 4095], 1);
+        return lane.cart.promotion();
+    }
+}
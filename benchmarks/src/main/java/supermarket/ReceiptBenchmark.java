@@ -0,0 +1,52 @@
+package supermarket;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Checkout arithmetic, receipt text (printReceipt), printer bytes (ReceiptPrinter's worker,
+// rendering into a reused buffer) and the journal record encoding.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReceiptBenchmark {
+
+    @Param({"10", "100", "1000"})
+    public int lines;
+
+    private Bill bill;
+    private final ReceiptTemplate text = ReceiptTemplate.compile(ReceiptTemplate.DEFAULT, ReceiptTemplate.Encoding.TEXT);
+    private final ReceiptTemplate escPos = ReceiptTemplate.compile(ReceiptTemplate.DEFAULT, ReceiptTemplate.Encoding.ESC_POS);
+    private ByteBuffer buffer = ByteBuffer.allocateDirect(8192);
+
+    @Setup
+    public void setUp() throws BillingException {
+        BillingEngine engine = new BillingEngine(Fixtures.catalog(5000), null);
+        bill = Fixtures.bill(engine, lines, new Random(3));
+    }
+
+    @Benchmark
+    public String formatReceipt() {
+        return BillingEngine.formatReceipt(bill);
+    }
+
+    @Benchmark
+    public ByteBuffer renderText() {
+        return buffer = text.render(bill, buffer);
+    }
+
+    @Benchmark
+    public ByteBuffer renderEscPos() {
+        return buffer = escPos.render(bill, buffer);
+    }
+
+    @Benchmark
+    public byte[] encodeRecord() {
+        return BillCodec.encode(bill);
+    }
+}
@@ -0,0 +1,53 @@
+package supermarket;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Low-stock upkeep per scan (the engine's stock event re-keying one SKU in the heap) with
+// a fifth of the catalog at risk, and the alert panel's refresh of the top 100.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StockAlertsBenchmark {
+
+    @Param({"10000", "200000"})
+    public int skus;
+
+    private Catalog catalog;
+    private StockAlerts alerts;
+    private int[] events;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        catalog = Fixtures.catalog(skus);
+        Random rnd = new Random(13);
+        for (int sku = 0; sku < skus; sku++) catalog.setStock(sku, rnd.nextInt(1000));
+        alerts = new StockAlerts(catalog, 3, 14, 14, System::currentTimeMillis);
+        alerts.rebuild();
+        // warm the rates: ~20% of SKUs end up under three days of cover
+        for (int i = 0; i < skus * 4; i++) {
+            int sku = rnd.nextInt(skus);
+            alerts.stockChanged(sku, catalog.stock(sku), rnd.nextInt(100));
+        }
+        events = new int[4096];
+        for (int i = 0; i < events.length; i++) events[i] = rnd.nextInt(skus);
+    }
+
+    @Benchmark
+    public void stockChanged() {
+        int sku = events[next++ & (events.length - 1)];
+        alerts.stockChanged(sku, (next * 31) & 1023, 1);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public Object top100() {
+        return alerts.top(100);
+    }
+}
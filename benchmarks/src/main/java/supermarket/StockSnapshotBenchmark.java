@@ -0,0 +1,64 @@
+package supermarket;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+// Stock persistence: writing the binary snapshot and loading it back, plus a delta
+// log replay on top of a snapshot as at startup.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class StockSnapshotBenchmark {
+
+    @Param({"1000", "150000"})
+    public int skus;
+
+    private Path dir;
+    private Path snapshot;
+    private Path delta;
+    private Catalog catalog;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dir = Fixtures.tempDir();
+        snapshot = dir.resolve("stock.snap");
+        delta = dir.resolve("stock.delta");
+        catalog = Fixtures.catalog(skus);
+        StockStore.writeSnapshot(catalog, snapshot);
+        // a day of sales in the delta log: one stock record per SKU, kept uncompacted
+        System.setProperty("billing.stock.compactEvery", Integer.toString(Integer.MAX_VALUE));
+        try (StockStore store = StockStore.open(snapshot, delta, catalog)) {
+            for (int sku = 0; sku < skus; sku++) {
+                catalog.setStock(sku, catalog.stock(sku) - 1);
+                store.recordStock(sku);
+            }
+            store.sync();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Fixtures.delete(dir);
+    }
+
+    @Benchmark
+    public void saveSnapshot() throws IOException {
+        StockStore.writeSnapshot(catalog, dir.resolve("bench.snap"));
+    }
+
+    @Benchmark
+    public Catalog loadSnapshot() throws IOException {
+        return StockStore.readSnapshot(snapshot);
+    }
+
+    @Benchmark
+    public Catalog loadWithDelta() throws IOException {
+        return StockStore.load(snapshot, delta);
+    }
+}